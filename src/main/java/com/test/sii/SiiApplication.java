@@ -2,8 +2,10 @@ package com.test.sii;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SiiApplication {
 
 	public static void main(String[] args) {
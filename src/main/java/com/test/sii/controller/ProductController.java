@@ -1,15 +1,27 @@
 package com.test.sii.controller;
 
+import com.test.sii.dto.CursorPageResponse;
+import com.test.sii.dto.ProductBulkRequest;
+import com.test.sii.dto.ProductBulkResponse;
+import com.test.sii.dto.ETaggedResponse;
 import com.test.sii.dto.ProductCreateRequest;
 import com.test.sii.dto.ProductRequest;
 import com.test.sii.dto.ProductResponse;
+import com.test.sii.dto.ProductSearchResponse;
+import com.test.sii.service.ProductBulkService;
+import com.test.sii.service.ProductExportService;
 import com.test.sii.service.ProductService;
+import com.test.sii.util.CursorPagination;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -19,14 +31,66 @@ import java.util.List;
 @Validated
 public class ProductController {
 
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
     private final ProductService productService;
+    private final ProductExportService productExportService;
+    private final ProductBulkService productBulkService;
+    private final CursorPagination cursorPagination;
 
+    /**
+     * A page whose products are unchanged since the {@code If-None-Match} tag is answered with 304 from their versions,
+     * without loading the products.
+     */
     @GetMapping
     public ResponseEntity<List<ProductResponse>> getAllProducts(
+            @RequestParam(value = "page", required = false) Integer page,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            WebRequest request
+    ) {
+        String eTag = productService.getAllProductsETag(page, size, cursor);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        CursorPageResponse<ProductResponse> result = productService.getAllProducts(page, size, cursor);
+        return ResponseEntity.ok()
+                .headers(cursorPagination.headers(result))
+                .eTag(eTag)
+                .body(result.content());
+    }
+
+    @GetMapping("{id}")
+    public ResponseEntity<ProductResponse> getProduct(@PathVariable("id") Integer id, WebRequest request) {
+        ETaggedResponse<ProductResponse> product = productService.getProductDetails(id);
+        if (request.checkNotModified(product.eTag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(product.eTag())
+                .body(product.content());
+    }
+
+    /**
+     * Page of the best matches, the number of all matches is returned in the {@value #TOTAL_COUNT_HEADER} header.
+     */
+    @GetMapping("search")
+    public ResponseEntity<List<ProductResponse>> searchProducts(
+            @RequestParam("q") String query,
             @RequestParam(value = "page", required = false) Integer page,
             @RequestParam(value = "size", required = false) Integer size
-            ) {
-        return new ResponseEntity<>(productService.getAllProducts(page, size), HttpStatus.OK);
+    ) {
+        ProductSearchResponse result = productService.searchProducts(query, page, size);
+        return ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, String.valueOf(result.total()))
+                .body(result.content());
+    }
+
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportProducts() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+        return new ResponseEntity<>(productExportService::exportProducts, headers, HttpStatus.OK);
     }
 
     @PostMapping
@@ -34,9 +98,21 @@ public class ProductController {
         return new ResponseEntity<>(productService.createProduct(productRequest), HttpStatus.CREATED);
     }
 
+    @PostMapping("bulk")
+    public ResponseEntity<ProductBulkResponse> bulkProducts(@RequestBody ProductBulkRequest productBulkRequest) {
+        return new ResponseEntity<>(productBulkService.bulk(productBulkRequest), HttpStatus.OK);
+    }
+
     @PatchMapping("{id}")
-    public ResponseEntity<ProductResponse> updateProduct(@PathVariable("id") Integer id, @RequestBody ProductRequest productRequest) {
-        return new ResponseEntity<>(productService.updateProduct(id, productRequest), HttpStatus.OK);
+    public ResponseEntity<ProductResponse> updateProduct(
+            @PathVariable("id") Integer id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody ProductRequest productRequest
+    ) {
+        ETaggedResponse<ProductResponse> product = productService.updateProduct(id, productRequest, ifMatch);
+        return ResponseEntity.ok()
+                .eTag(product.eTag())
+                .body(product.content());
     }
 
 }
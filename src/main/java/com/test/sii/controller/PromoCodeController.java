@@ -1,9 +1,16 @@
 package com.test.sii.controller;
 
+import com.test.sii.dto.CursorPageResponse;
 import com.test.sii.dto.PromoCodeDetailsResponse;
+import com.test.sii.dto.PromoCodeFilterResponse;
+import com.test.sii.dto.PromoCodeGenerationRequest;
+import com.test.sii.dto.PromoCodeImportFormat;
+import com.test.sii.dto.PromoCodeJobResponse;
 import com.test.sii.dto.PromoCodeRequest;
 import com.test.sii.dto.PromoCodeResponse;
+import com.test.sii.service.PromoCodeBulkService;
 import com.test.sii.service.PromoCodeService;
+import com.test.sii.util.CursorPagination;
 import com.test.sii.util.PromoCodePattern;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -12,7 +19,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("v1/api/promo-codes")
@@ -21,13 +30,17 @@ import java.util.List;
 public class PromoCodeController {
 
     private final PromoCodeService promoCodeService;
+    private final CursorPagination cursorPagination;
+    private final PromoCodeBulkService promoCodeBulkService;
 
     @GetMapping
     public ResponseEntity<List<PromoCodeResponse>> getAllPromoCodes(
             @RequestParam(value = "page", required = false) Integer page,
-            @RequestParam(value = "size", required = false) Integer size
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "cursor", required = false) String cursor
     ) {
-        return new ResponseEntity<>(promoCodeService.getAllPromoCodes(page, size), HttpStatus.OK);
+        CursorPageResponse<PromoCodeResponse> result = promoCodeService.getAllPromoCodes(page, size, cursor);
+        return new ResponseEntity<>(result.content(), cursorPagination.headers(result), HttpStatus.OK);
     }
 
     @PostMapping("monetary")
@@ -44,4 +57,29 @@ public class PromoCodeController {
     public ResponseEntity<PromoCodeDetailsResponse> getPromoCodeDetails(@PathVariable("promoCode") @PromoCodePattern String promoCode) {
         return new ResponseEntity<>(promoCodeService.getPromoCodeDetails(promoCode), HttpStatus.OK);
     }
+
+    @PostMapping("filter/rebuild")
+    public ResponseEntity<PromoCodeFilterResponse> rebuildPromoCodeFilter() {
+        return new ResponseEntity<>(promoCodeService.rebuildPromoCodeFilter(), HttpStatus.OK);
+    }
+
+    @PostMapping("bulk")
+    public ResponseEntity<PromoCodeJobResponse> generatePromoCodes(@Valid @RequestBody PromoCodeGenerationRequest promoCodeGenerationRequest) {
+        return new ResponseEntity<>(promoCodeBulkService.generatePromoCodes(promoCodeGenerationRequest), HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping("bulk/{jobId}")
+    public ResponseEntity<PromoCodeJobResponse> getPromoCodeJob(@PathVariable("jobId") UUID jobId) {
+        return new ResponseEntity<>(promoCodeBulkService.getJob(jobId), HttpStatus.OK);
+    }
+
+    @PostMapping(value = "import", consumes = "text/csv")
+    public ResponseEntity<PromoCodeJobResponse> importPromoCodesCsv(InputStream body) {
+        return new ResponseEntity<>(promoCodeBulkService.importPromoCodes(body, PromoCodeImportFormat.CSV), HttpStatus.OK);
+    }
+
+    @PostMapping(value = "import", consumes = "application/x-ndjson")
+    public ResponseEntity<PromoCodeJobResponse> importPromoCodesNdjson(InputStream body) {
+        return new ResponseEntity<>(promoCodeBulkService.importPromoCodes(body, PromoCodeImportFormat.NDJSON), HttpStatus.OK);
+    }
 }
@@ -1,28 +1,54 @@
 package com.test.sii.controller;
 
+import com.test.sii.dto.CheckoutRequest;
+import com.test.sii.dto.CheckoutResponse;
 import com.test.sii.dto.PurchaseDiscountResponse;
 import com.test.sii.dto.PurchaseRequest;
 import com.test.sii.dto.PurchaseResponse;
+import com.test.sii.service.CheckoutService;
+import com.test.sii.service.PurchaseIdempotency;
 import com.test.sii.service.PurchaseService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("v1/api/purchases")
 @RequiredArgsConstructor
 public class PurchaseController {
 
     private final PurchaseService purchaseService;
+    private final CheckoutService checkoutService;
+    private final PurchaseIdempotency purchaseIdempotency;
 
     @GetMapping("discount")
     public ResponseEntity<PurchaseDiscountResponse> getDiscountPrice(@RequestParam("productId") Integer productId, @RequestParam("promoCode") String promoCode) {
         return new ResponseEntity<>(purchaseService.getDiscountPrice(productId, promoCode), HttpStatus.OK);
     }
 
+    @GetMapping("discounts")
+    public ResponseEntity<Map<Integer, PurchaseDiscountResponse>> getDiscountPrices(@RequestParam("productIds") List<Integer> productIds, @RequestParam("promoCode") String promoCode) {
+        return new ResponseEntity<>(purchaseService.getDiscountPrices(productIds, promoCode), HttpStatus.OK);
+    }
+
     @PostMapping
-    public ResponseEntity<PurchaseResponse> createPurchase(@RequestBody PurchaseRequest purchaseRequest) {
-        return new ResponseEntity<>(purchaseService.createPurchase(purchaseRequest), HttpStatus.CREATED);
+    public ResponseEntity<PurchaseResponse> createPurchase(
+            @RequestHeader(value = PurchaseIdempotency.HEADER, required = false) String idempotencyKey,
+            @RequestBody PurchaseRequest purchaseRequest
+    ) {
+        PurchaseResponse purchaseResponse = idempotencyKey != null
+                ? purchaseIdempotency.createPurchase(idempotencyKey, purchaseRequest, () -> purchaseService.createPurchase(purchaseRequest))
+                : purchaseService.createPurchase(purchaseRequest);
+        return new ResponseEntity<>(purchaseResponse, HttpStatus.CREATED);
+    }
+
+    @PostMapping("checkout")
+    public ResponseEntity<CheckoutResponse> checkout(@Valid @RequestBody CheckoutRequest checkoutRequest) {
+        return new ResponseEntity<>(checkoutService.checkout(checkoutRequest), HttpStatus.CREATED);
     }
 }
@@ -1,14 +1,28 @@
 package com.test.sii.controller;
 
+import com.test.sii.dto.CursorPageResponse;
+import com.test.sii.dto.DiscountStatisticsResponse;
+import com.test.sii.dto.PromoCodeSalesResponse;
+import com.test.sii.dto.SalesDriftResponse;
+import com.test.sii.dto.SalesReportBucketResponse;
 import com.test.sii.dto.SalesReportEntryResponse;
+import com.test.sii.dto.SalesRankingMetric;
+import com.test.sii.dto.SalesReportGranularity;
+import com.test.sii.dto.SalesWindow;
+import com.test.sii.dto.TopProductResponse;
 import com.test.sii.service.SalesService;
+import com.test.sii.util.CursorPagination;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -17,9 +31,49 @@ import java.util.List;
 public class SalesController {
 
     private final SalesService salesService;
+    private final CursorPagination cursorPagination;
 
     @GetMapping("report")
     public ResponseEntity<List<SalesReportEntryResponse>> getSalesReport() {
         return new ResponseEntity<>(salesService.getSalesReport(), HttpStatus.OK);
     }
+
+    @GetMapping(value = "report", params = {"from", "to"})
+    public ResponseEntity<List<SalesReportBucketResponse>> getSalesReport(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "granularity", defaultValue = "DAY") SalesReportGranularity granularity
+    ) {
+        return new ResponseEntity<>(salesService.getSalesReport(from, to, granularity), HttpStatus.OK);
+    }
+
+    @GetMapping("report/promo-codes")
+    public ResponseEntity<List<PromoCodeSalesResponse>> getPromoCodeReport(
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "cursor", required = false) String cursor
+    ) {
+        CursorPageResponse<PromoCodeSalesResponse> result = salesService.getPromoCodeReport(size, cursor);
+        return new ResponseEntity<>(result.content(), cursorPagination.headers(result), HttpStatus.OK);
+    }
+
+    @GetMapping("report/discounts")
+    public ResponseEntity<List<DiscountStatisticsResponse>> getDiscountStatistics() {
+        return new ResponseEntity<>(salesService.getDiscountStatistics(), HttpStatus.OK);
+    }
+
+    @GetMapping("top-products")
+    public ResponseEntity<List<TopProductResponse>> getTopProducts(
+            @RequestParam("currency") String currency,
+            @RequestParam(value = "window", defaultValue = "HOUR") SalesWindow window,
+            @RequestParam(value = "metric", defaultValue = "REVENUE") SalesRankingMetric metric,
+            @RequestParam(value = "limit", defaultValue = "100") int limit,
+            @RequestParam(value = "exact", defaultValue = "false") boolean exact
+    ) {
+        return new ResponseEntity<>(salesService.getTopProducts(currency, window, metric, limit, exact), HttpStatus.OK);
+    }
+
+    @PostMapping("reconcile")
+    public ResponseEntity<List<SalesDriftResponse>> reconcileSales(@RequestParam(defaultValue = "false") boolean fix) {
+        return new ResponseEntity<>(salesService.reconcileSales(fix), HttpStatus.OK);
+    }
 }
@@ -0,0 +1,17 @@
+package com.test.sii.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.util.Objects;
+
+public record CheckoutItemRequest(
+        @NotNull
+        Integer productId,
+        @Positive
+        Integer quantity
+) {
+    public CheckoutItemRequest {
+        quantity = Objects.requireNonNullElse(quantity, 1);
+    }
+}
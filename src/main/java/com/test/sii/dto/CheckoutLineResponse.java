@@ -0,0 +1,17 @@
+package com.test.sii.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * @param regularPrice   price of a single item
+ * @param discountAmount discount of all items of the line
+ * @param totalPrice     price of all items of the line after the discount
+ */
+public record CheckoutLineResponse(
+        ProductResponse product,
+        int quantity,
+        BigDecimal regularPrice,
+        BigDecimal discountAmount,
+        BigDecimal totalPrice,
+        String warning
+) {}
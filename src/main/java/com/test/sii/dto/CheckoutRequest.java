@@ -0,0 +1,13 @@
+package com.test.sii.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+public record CheckoutRequest(
+        @NotEmpty
+        List<@Valid @NotNull CheckoutItemRequest> items,
+        String promoCode
+) {}
@@ -0,0 +1,15 @@
+package com.test.sii.dto;
+
+import java.sql.Date;
+import java.util.List;
+
+/**
+ * @param totals  sums of the lines per currency
+ * @param warning why the promo code was not applied to the cart, if so
+ */
+public record CheckoutResponse(
+        Date date,
+        List<CheckoutLineResponse> lines,
+        List<CheckoutTotalResponse> totals,
+        String warning
+) {}
@@ -0,0 +1,10 @@
+package com.test.sii.dto;
+
+import java.math.BigDecimal;
+
+public record CheckoutTotalResponse(
+        String currency,
+        BigDecimal regularPrice,
+        BigDecimal discountAmount,
+        BigDecimal totalPrice
+) {}
@@ -0,0 +1,10 @@
+package com.test.sii.dto;
+
+import java.math.BigDecimal;
+
+public record DiscountPercentilesResponse(
+        BigDecimal p50,
+        BigDecimal p90,
+        BigDecimal p99,
+        BigDecimal max
+) {}
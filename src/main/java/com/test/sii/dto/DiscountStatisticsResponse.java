@@ -0,0 +1,8 @@
+package com.test.sii.dto;
+
+public record DiscountStatisticsResponse(
+        String currency,
+        Long numberOfPurchases,
+        DiscountPercentilesResponse discountAmount,
+        DiscountPercentilesResponse discountRatio
+) {}
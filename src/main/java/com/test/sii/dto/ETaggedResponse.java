@@ -0,0 +1,6 @@
+package com.test.sii.dto;
+
+public record ETaggedResponse<T>(
+        T content,
+        String eTag
+) {}
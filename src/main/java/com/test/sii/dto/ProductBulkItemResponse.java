@@ -0,0 +1,8 @@
+package com.test.sii.dto;
+
+public record ProductBulkItemResponse(
+        Integer id,
+        ProductBulkStatus status,
+        Long version,
+        String message
+) {}
@@ -0,0 +1,14 @@
+package com.test.sii.dto;
+
+import java.util.List;
+
+/**
+ * Results in the order of the request arrays.
+ */
+public record ProductBulkResponse(
+        int created,
+        int updated,
+        int failed,
+        List<ProductBulkItemResponse> create,
+        List<ProductBulkItemResponse> update
+) {}
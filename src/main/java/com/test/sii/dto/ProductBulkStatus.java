@@ -0,0 +1,5 @@
+package com.test.sii.dto;
+
+public enum ProductBulkStatus {
+    CREATED, UPDATED, NOT_FOUND, VERSION_CONFLICT, VALIDATION_ERROR
+}
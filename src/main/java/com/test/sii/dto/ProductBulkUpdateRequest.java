@@ -0,0 +1,21 @@
+package com.test.sii.dto;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/**
+ * Changes of one product, the fields work as in {@link ProductRequest}. With a version the product is only updated if
+ * it is still at that version, like with an {@code If-Match} header.
+ */
+public record ProductBulkUpdateRequest(
+        Integer id,
+        Long version,
+        String name,
+        String description,
+        BigDecimal price,
+        String currency
+) {
+    public ProductBulkUpdateRequest {
+        currency = currency != null ? currency.toUpperCase(Locale.ROOT) : null;
+    }
+}
@@ -16,6 +16,6 @@ public record ProductCreateRequest(
         String currency
 ) {
     public ProductCreateRequest {
-        currency = currency.toUpperCase(Locale.ROOT);
+        currency = currency != null ? currency.toUpperCase(Locale.ROOT) : null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.test.sii.dto;
+
+import java.util.List;
+
+public record ProductSearchResponse(
+        List<ProductResponse> content,
+        int total
+) {}
@@ -0,0 +1,8 @@
+package com.test.sii.dto;
+
+public record PromoCodeFilterResponse(
+        long rebuiltCodes,
+        long bits,
+        int hashFunctions,
+        double falsePositiveRate
+) {}
@@ -0,0 +1,37 @@
+package com.test.sii.dto;
+
+import jakarta.validation.constraints.*;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.Locale;
+import java.util.Objects;
+
+public record PromoCodeGenerationRequest(
+
+        @NotNull
+        DiscountMethod discountMethod,
+        @NotNull
+        BigDecimal amount,
+        @NotBlank
+        String currency,
+        @NotNull
+        Date expirationDate,
+        int maxUsages,
+        @Min(1)
+        @Max(5_000_000)
+        int count,
+        @Min(3)
+        @Max(24)
+        int codeLength,
+        // distinct characters only, the code space is computed from the length
+        @Pattern(regexp = "^(?!.*(.).*\\1)[0-9a-zA-Z]{2,62}$")
+        String alphabet
+) {
+    public static final String DEFAULT_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+    public PromoCodeGenerationRequest {
+        currency = currency != null ? currency.toUpperCase(Locale.ROOT) : null;
+        alphabet = Objects.requireNonNullElse(alphabet, DEFAULT_ALPHABET);
+    }
+}
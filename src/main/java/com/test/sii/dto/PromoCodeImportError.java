@@ -0,0 +1,7 @@
+package com.test.sii.dto;
+
+public record PromoCodeImportError(
+        long line,
+        String code,
+        String message
+) {}
@@ -0,0 +1,5 @@
+package com.test.sii.dto;
+
+public enum PromoCodeImportFormat {
+    CSV, NDJSON
+}
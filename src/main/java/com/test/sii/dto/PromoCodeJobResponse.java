@@ -0,0 +1,19 @@
+package com.test.sii.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public record PromoCodeJobResponse(
+        UUID id,
+        PromoCodeJobStatus status,
+        long requested,
+        long inserted,
+        long collisions,
+        long rejected,
+        List<PromoCodeImportError> errors,
+        Instant startedAt,
+        Instant finishedAt,
+        double insertedPerSecond,
+        String error
+) {}
@@ -0,0 +1,5 @@
+package com.test.sii.dto;
+
+public enum PromoCodeJobStatus {
+    RUNNING, COMPLETED, FAILED
+}
@@ -0,0 +1,12 @@
+package com.test.sii.dto;
+
+import java.math.BigDecimal;
+
+public record PromoCodeSalesResponse(
+        Integer promoCodeId,
+        String code,
+        String currency,
+        Long redemptions,
+        BigDecimal totalDiscount,
+        BigDecimal totalRevenue
+) {}
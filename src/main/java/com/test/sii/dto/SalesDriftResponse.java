@@ -0,0 +1,10 @@
+package com.test.sii.dto;
+
+import java.math.BigDecimal;
+
+public record SalesDriftResponse(
+        String currency,
+        BigDecimal amountDrift,
+        BigDecimal discountDrift,
+        Long purchasesDrift
+) {}
@@ -0,0 +1,12 @@
+package com.test.sii.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record SalesReportBucketResponse(
+        LocalDateTime periodStart,
+        String currency,
+        BigDecimal totalAmount,
+        BigDecimal totalDiscount,
+        Long numberOfPurchases
+) {}
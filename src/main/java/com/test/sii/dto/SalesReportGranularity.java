@@ -0,0 +1,31 @@
+package com.test.sii.dto;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+public enum SalesReportGranularity {
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS),
+    MONTH(ChronoUnit.MONTHS);
+
+    private final ChronoUnit unit;
+
+    SalesReportGranularity(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * @return start of the bucket containing the given time
+     */
+    public LocalDateTime truncate(LocalDateTime time) {
+        LocalDateTime start = time.truncatedTo(unit == ChronoUnit.MONTHS ? ChronoUnit.DAYS : unit);
+        return unit == ChronoUnit.MONTHS ? start.withDayOfMonth(1) : start;
+    }
+
+    /**
+     * @return number of buckets starting in the given range
+     */
+    public long buckets(LocalDateTime from, LocalDateTime to) {
+        return unit.between(truncate(from), to.minusNanos(1)) + 1;
+    }
+}
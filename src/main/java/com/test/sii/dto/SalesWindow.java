@@ -0,0 +1,26 @@
+package com.test.sii.dto;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Sliding window of the top products report, tracked in {@code slots} consecutive slots of {@code slot} each.
+ */
+@Getter
+public enum SalesWindow {
+    HOUR(Duration.ofMinutes(1), 60),
+    DAY(Duration.ofHours(1), 24);
+
+    private final Duration slot;
+    private final int slots;
+
+    SalesWindow(Duration slot, int slots) {
+        this.slot = slot;
+        this.slots = slots;
+    }
+
+    public Duration duration() {
+        return slot.multipliedBy(slots);
+    }
+}
@@ -0,0 +1,9 @@
+package com.test.sii.dto;
+
+import java.math.BigDecimal;
+
+public record TopProductResponse(
+        Integer productId,
+        BigDecimal value,
+        BigDecimal maxError
+) {}
@@ -0,0 +1,26 @@
+package com.test.sii.error;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Thrown for unknown promo codes. Code-guessing traffic produces lots of these, so neither this exception nor its
+ * cause capture a stack trace.
+ */
+public class PromoCodeNotFoundException extends ResponseStatusException {
+
+    public PromoCodeNotFoundException(String code) {
+        super(HttpStatus.NOT_FOUND, "Promo code not found", new Detail("Promo code " + code + " was not found"));
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+    private static final class Detail extends Exception {
+        private Detail(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
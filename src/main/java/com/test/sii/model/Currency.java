@@ -16,7 +16,8 @@ import java.util.Objects;
 public class Currency {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = IdSequences.CURRENCIES)
+    @SequenceGenerator(name = IdSequences.CURRENCIES, sequenceName = IdSequences.CURRENCIES, allocationSize = IdSequences.ALLOCATION_SIZE)
     private Integer id;
 
     @Column(unique = true)
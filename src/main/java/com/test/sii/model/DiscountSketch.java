@@ -0,0 +1,54 @@
+package com.test.sii.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.util.Objects;
+
+/**
+ * Checkpoint of the discount quantile sketches of one currency, serialized
+ * {@link com.test.sii.util.QuantileSketch}es of the discount amounts and of the discount to regular price ratios.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "discount_sketches")
+public class DiscountSketch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(nullable = false, unique = true)
+    private String currency;
+
+    @Lob
+    @ToString.Exclude
+    @Column(nullable = false)
+    private byte[] amounts;
+
+    @Lob
+    @ToString.Exclude
+    @Column(nullable = false)
+    private byte[] ratios;
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        Class<?> oEffectiveClass = o instanceof HibernateProxy ? ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        DiscountSketch discountSketch = (DiscountSketch) o;
+        return getId() != null && Objects.equals(getId(), discountSketch.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass().hashCode() : getClass().hashCode();
+    }
+}
@@ -0,0 +1,18 @@
+package com.test.sii.model;
+
+/**
+ * Database sequences of the entity ids. Ids are handed out in blocks of {@link #ALLOCATION_SIZE}, a sequence value is
+ * the lowest id of its block (Hibernate's pooled-lo optimizer), so JDBC writers can take blocks from the same sequence.
+ */
+public final class IdSequences {
+
+    public static final int ALLOCATION_SIZE = 50;
+
+    public static final String CURRENCIES = "currencies_seq";
+    public static final String PRODUCTS = "products_seq";
+    public static final String PROMO_CODES = "promo_codes_seq";
+    public static final String PURCHASES = "purchases_seq";
+
+    private IdSequences() {
+    }
+}
@@ -0,0 +1,30 @@
+package com.test.sii.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Purchase accepted by the write-behind pipeline but not inserted yet, as recorded in the purchase journal.
+ *
+ * @param sequence position in the journal, assigned when the purchase is appended
+ */
+public record PendingPurchase(
+        long sequence,
+        LocalDate date,
+        BigDecimal regularPrice,
+        BigDecimal discountAmount,
+        Integer productId,
+        Integer promoCodeId,
+        String currency,
+        LocalDateTime purchasedAt
+) {
+
+    public PendingPurchase withSequence(long sequence) {
+        return new PendingPurchase(sequence, date, regularPrice, discountAmount, productId, promoCodeId, currency, purchasedAt);
+    }
+
+    public PurchaseCreatedEvent toEvent() {
+        return new PurchaseCreatedEvent(productId, promoCodeId, currency, purchasedAt, regularPrice, discountAmount);
+    }
+}
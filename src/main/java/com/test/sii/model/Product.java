@@ -4,8 +4,10 @@ import com.test.sii.dto.ProductUpdateRequest;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.proxy.HibernateProxy;
+import org.springframework.data.domain.DomainEvents;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Objects;
 
 @Entity
@@ -18,7 +20,8 @@ import java.util.Objects;
 public class Product {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = IdSequences.PRODUCTS)
+    @SequenceGenerator(name = IdSequences.PRODUCTS, sequenceName = IdSequences.PRODUCTS, allocationSize = IdSequences.ALLOCATION_SIZE)
     private Integer id;
 
     @Column(
@@ -59,6 +62,11 @@ public class Product {
         this.currency = productRequest.currency().getCurrency() != null && !productRequest.currency().getCurrency().isEmpty() ? productRequest.currency() : this.currency;
     }
 
+    @DomainEvents
+    protected List<ProductSavedEvent> domainEvents() {
+        return List.of(new ProductSavedEvent(this));
+    }
+
     @Override
     public final boolean equals(Object o) {
         if (this == o) return true;
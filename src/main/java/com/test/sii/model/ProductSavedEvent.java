@@ -0,0 +1,9 @@
+package com.test.sii.model;
+
+/**
+ * Published when a product is saved. Its version is only final once the transaction commits, so listeners which need
+ * it read the product after commit.
+ */
+public record ProductSavedEvent(
+        Product product
+) {}
@@ -0,0 +1,45 @@
+package com.test.sii.model;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Read-only copy of a product, tagged with the {@link Product#getVersion() version} it was read at so that a copy of
+ * an older version never replaces a newer one.
+ */
+public record ProductSnapshot(
+        int id,
+        String name,
+        String description,
+        BigDecimal price,
+        Integer currencyId,
+        String currency,
+        long version
+) {
+    public static ProductSnapshot of(Product product) {
+        return new ProductSnapshot(
+                product.getId(),
+                product.getName(),
+                product.getDescription(),
+                product.getPrice(),
+                product.getCurrency().getId(),
+                // a handful of codes shared by every product
+                product.getCurrency().getCurrency().intern(),
+                Objects.requireNonNullElse(product.getVersion(), 0L)
+        );
+    }
+
+    public boolean isNewerThan(ProductSnapshot other) {
+        return this.version > other.version;
+    }
+
+    /**
+     * Detached product, which may also be referenced by a new purchase - having a version it is never taken for a
+     * transient one.
+     */
+    public Product toProduct() {
+        Product product = new Product(id, name, description, price, new Currency(currencyId, currency));
+        product.setVersion(version);
+        return product;
+    }
+}
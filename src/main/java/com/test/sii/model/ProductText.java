@@ -0,0 +1,11 @@
+package com.test.sii.model;
+
+/**
+ * Searchable text of a product, enough to build the search index without loading products and their currencies.
+ */
+public record ProductText(
+        Integer id,
+        String name,
+        String description,
+        Long version
+) {}
@@ -0,0 +1,9 @@
+package com.test.sii.model;
+
+/**
+ * Id and version of a product, enough to tell whether a page of products changed without loading it.
+ */
+public record ProductVersion(
+        Integer id,
+        Long version
+) {}
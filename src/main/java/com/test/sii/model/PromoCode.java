@@ -4,12 +4,12 @@ import com.test.sii.dto.DiscountMethod;
 import com.test.sii.util.PromoCodePattern;
 import jakarta.persistence.*;
 import lombok.*;
-import org.springframework.http.HttpStatus;
-import org.springframework.web.server.ResponseStatusException;
+import org.springframework.data.domain.DomainEvents;
 
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.time.Instant;
+import java.util.List;
 
 @Entity
 @Getter
@@ -21,7 +21,8 @@ import java.time.Instant;
 public abstract class PromoCode {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = IdSequences.PROMO_CODES)
+    @SequenceGenerator(name = IdSequences.PROMO_CODES, sequenceName = IdSequences.PROMO_CODES, allocationSize = IdSequences.ALLOCATION_SIZE)
     protected Integer id;
 
     @Column(
@@ -38,6 +39,9 @@ public abstract class PromoCode {
 
     protected int usages;
 
+    @Column(nullable = false)
+    protected int reservedUsages;
+
     @ManyToOne(cascade = CascadeType.MERGE)
     @JoinColumn(
             name = "currency_id",
@@ -46,20 +50,19 @@ public abstract class PromoCode {
     )
     protected Currency currency;
 
-    public void use() throws ResponseStatusException {
-        if (this.usages >= this.maxUsages) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot use this code", new Exception("Cannot use this code - reached maximum usages"));
-        }
-        if (this.isExpired()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot use this code", new Exception("Cannot use this code - the promo code has expired"));
-        }
-        this.usages++;
+    public boolean isExhausted() {
+        return this.usages + this.reservedUsages >= this.maxUsages;
     }
 
     public boolean isExpired() {
         return this.expirationDate.before(Date.from(Instant.now()));
     }
 
+    @DomainEvents
+    protected List<PromoCodeSavedEvent> domainEvents() {
+        return List.of(new PromoCodeSavedEvent(this.code));
+    }
+
     public abstract BigDecimal calculateDiscountPrice(Product product);
 
     public abstract BigDecimal calculateDiscountAmount(Product product);
@@ -0,0 +1,23 @@
+package com.test.sii.model;
+
+import com.test.sii.dto.DiscountMethod;
+import com.test.sii.dto.PromoCodeResponse;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+
+/**
+ * Promo code listing row selected straight from the table, with the id the keyset pagination needs.
+ */
+public record PromoCodeListItem(
+        Integer id,
+        String code,
+        Date expirationDate,
+        BigDecimal amount,
+        String currency,
+        DiscountMethod discountMethod
+) {
+    public PromoCodeResponse toResponse() {
+        return new PromoCodeResponse(code, expirationDate, amount, currency, discountMethod);
+    }
+}
@@ -21,7 +21,7 @@ public class PromoCodeMonetary extends PromoCode {
 
 
     public PromoCodeMonetary(String code, Date expirationDate, int maxUsages, BigDecimal amount, Currency currency) {
-        super(null, code, expirationDate, maxUsages, 0, currency);
+        super(null, code, expirationDate, maxUsages, 0, 0, currency);
         this.amount = amount;
     }
 
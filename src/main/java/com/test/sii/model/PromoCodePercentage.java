@@ -21,7 +21,7 @@ public class PromoCodePercentage extends PromoCode {
     private BigDecimal amount;
 
     public PromoCodePercentage(String code, Date expirationDate, int maxUsages, BigDecimal amount, Currency currency) {
-        super(null, code, expirationDate, maxUsages, 0, currency);
+        super(null, code, expirationDate, maxUsages, 0, 0, currency);
         this.amount = amount;
     }
 
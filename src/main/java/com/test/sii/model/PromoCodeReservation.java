@@ -0,0 +1,53 @@
+package com.test.sii.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.util.Objects;
+
+/**
+ * Part of a promo code's {@code reservedUsages} held by one application instance, so that an instance restarting after
+ * a crash reconciles only the blocks it reserved itself.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(
+        name = "promo_code_reservations",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"code", "owner"})
+)
+public class PromoCodeReservation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(nullable = false, length = 24)
+    private String code;
+
+    @Column(nullable = false)
+    private String owner;
+
+    @Column(nullable = false)
+    private int reserved;
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        Class<?> oEffectiveClass = o instanceof HibernateProxy ? ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        PromoCodeReservation reservation = (PromoCodeReservation) o;
+        return getId() != null && Objects.equals(getId(), reservation.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass().hashCode() : getClass().hashCode();
+    }
+}
@@ -0,0 +1,60 @@
+package com.test.sii.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Running redemption totals of one promo code, striped like {@link SalesTotal} so purchases with a popular code do not
+ * queue on one row lock.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(
+        name = "promo_code_sales",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"promo_code_id", "stripe"})
+)
+public class PromoCodeSales {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "promo_code_id", nullable = false)
+    private Integer promoCodeId;
+
+    @Column(nullable = false)
+    private int stripe;
+
+    @Column(nullable = false)
+    private long redemptions;
+
+    @Column(nullable = false)
+    private BigDecimal totalDiscount;
+
+    @Column(nullable = false)
+    private BigDecimal totalRevenue;
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        Class<?> oEffectiveClass = o instanceof HibernateProxy ? ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        PromoCodeSales promoCodeSales = (PromoCodeSales) o;
+        return getId() != null && Objects.equals(getId(), promoCodeSales.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass().hashCode() : getClass().hashCode();
+    }
+}
@@ -0,0 +1,5 @@
+package com.test.sii.model;
+
+public record PromoCodeSavedEvent(
+        String code
+) {}
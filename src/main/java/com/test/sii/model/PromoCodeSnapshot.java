@@ -0,0 +1,57 @@
+package com.test.sii.model;
+
+import com.test.sii.dto.DiscountMethod;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.Instant;
+
+/**
+ * Read-only copy of the promo code fields that never change after creation. Usages are deliberately left out - the
+ * database stays the only source of truth for them.
+ */
+public record PromoCodeSnapshot(
+        String code,
+        Date expirationDate,
+        BigDecimal amount,
+        String currency,
+        DiscountMethod discountMethod
+) {
+    public PromoCodeSnapshot {
+        expirationDate = new Date(expirationDate.getTime());
+    }
+
+    public static PromoCodeSnapshot of(PromoCode promoCode) {
+        return new PromoCodeSnapshot(
+                promoCode.getCode(),
+                promoCode.getExpirationDate(),
+                promoCode.getAmount(),
+                promoCode.getCurrency().getCurrency(),
+                promoCode.getDiscountMethod()
+        );
+    }
+
+    @Override
+    public Date expirationDate() {
+        return new Date(expirationDate.getTime());
+    }
+
+    public boolean isExpired() {
+        return this.expirationDate.before(Date.from(Instant.now()));
+    }
+
+    public BigDecimal calculateDiscountPrice(Product product) {
+        return toPromoCode().calculateDiscountPrice(product);
+    }
+
+    public BigDecimal calculateDiscountAmount(Product product) {
+        return toPromoCode().calculateDiscountAmount(product);
+    }
+
+    private PromoCode toPromoCode() {
+        return switch (discountMethod) {
+            case MONETARY -> new PromoCodeMonetary(code, expirationDate, 0, amount, null);
+            case PERCENTAGE -> new PromoCodePercentage(code, expirationDate, 0, amount, null);
+        };
+    }
+}
@@ -3,9 +3,11 @@ package com.test.sii.model;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.proxy.HibernateProxy;
+import org.springframework.data.domain.AbstractAggregateRoot;
 
 import java.math.BigDecimal;
 import java.sql.Date;
+import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Entity
@@ -14,15 +16,24 @@ import java.util.Objects;
 @ToString
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "purchases")
-public class Purchase {
+@Table(
+        name = "purchases",
+        indexes = @Index(name = "idx_purchases_promo_code_id", columnList = "promo_code_id")
+)
+public class Purchase extends AbstractAggregateRoot<Purchase> {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = IdSequences.PURCHASES)
+    @SequenceGenerator(name = IdSequences.PURCHASES, sequenceName = IdSequences.PURCHASES, allocationSize = IdSequences.ALLOCATION_SIZE)
     private Integer id;
 
     private Date date;
 
+    /**
+     * Time of the purchase, the hourly sales buckets are keyed by it.
+     */
+    private LocalDateTime purchasedAt;
+
     private BigDecimal regularPrice;
 
     private BigDecimal discountAmount;
@@ -34,6 +45,43 @@ public class Purchase {
     )
     private Product product;
 
+    @ToString.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(
+            name = "promo_code_id",
+            referencedColumnName = "id"
+    )
+    private PromoCode promoCode;
+
+    /**
+     * Purchase without a redeemed promo code.
+     */
+    public Purchase(Integer id, Date date, BigDecimal regularPrice, BigDecimal discountAmount, Product product) {
+        this(id, date, regularPrice, discountAmount, product, null);
+    }
+
+    /**
+     * Purchase without a time of day, it is made at the start of its date.
+     */
+    public Purchase(Integer id, Date date, BigDecimal regularPrice, BigDecimal discountAmount, Product product, PromoCode promoCode) {
+        this(id, date, null, regularPrice, discountAmount, product, promoCode);
+    }
+
+    @PrePersist
+    protected void registerCreatedEvent() {
+        if (purchasedAt == null) {
+            purchasedAt = date.toLocalDate().atStartOfDay();
+        }
+        registerEvent(new PurchaseCreatedEvent(
+                product.getId(),
+                promoCode != null ? promoCode.getId() : null,
+                product.getCurrency().getCurrency(),
+                purchasedAt,
+                regularPrice,
+                Objects.requireNonNullElse(discountAmount, BigDecimal.ZERO)
+        ));
+    }
+
     @Override
     public final boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,13 @@
+package com.test.sii.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record PurchaseCreatedEvent(
+        Integer productId,
+        Integer promoCodeId,
+        String currency,
+        LocalDateTime purchasedAt,
+        BigDecimal regularPrice,
+        BigDecimal discountAmount
+) {}
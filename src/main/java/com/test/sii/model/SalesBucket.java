@@ -0,0 +1,70 @@
+package com.test.sii.model;
+
+import com.test.sii.dto.SalesReportGranularity;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Sales of one currency within an hour, day or month. Every purchase is added to the bucket of each granularity, so
+ * reports over long ranges read the coarse buckets instead of the purchases. Like {@link SalesTotal}, each bucket is
+ * split into stripes which the report sums up.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(
+        name = "sales_buckets",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"granularity", "bucket_start", "currency", "stripe"})
+)
+public class SalesBucket {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private SalesReportGranularity granularity;
+
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false)
+    private String currency;
+
+    @Column(nullable = false)
+    private int stripe;
+
+    @Column(nullable = false)
+    private BigDecimal totalAmount;
+
+    @Column(nullable = false)
+    private BigDecimal totalDiscount;
+
+    @Column(nullable = false)
+    private long numberOfPurchases;
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        Class<?> oEffectiveClass = o instanceof HibernateProxy ? ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        SalesBucket salesBucket = (SalesBucket) o;
+        return getId() != null && Objects.equals(getId(), salesBucket.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass().hashCode() : getClass().hashCode();
+    }
+}
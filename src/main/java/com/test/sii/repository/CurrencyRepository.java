@@ -2,6 +2,8 @@ package com.test.sii.repository;
 
 import com.test.sii.model.Currency;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -9,4 +11,11 @@ import java.util.Optional;
 @Repository
 public interface CurrencyRepository extends JpaRepository<Currency, Integer> {
     Optional<Currency> findByCurrency(String currency);
+
+    /**
+     * Locks the currency row until the end of the transaction. Creating sales rows of the currency takes this lock
+     * first, so concurrent purchases wait for each other's rows instead of failing on the unique key.
+     */
+    @Query(value = "select id from currencies where currency = :currency for update", nativeQuery = true)
+    Optional<Integer> lockByCurrency(@Param("currency") String currency);
 }
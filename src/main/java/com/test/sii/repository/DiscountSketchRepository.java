@@ -0,0 +1,16 @@
+package com.test.sii.repository;
+
+import com.test.sii.model.DiscountSketch;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface DiscountSketchRepository extends JpaRepository<DiscountSketch, Integer> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<DiscountSketch> findByCurrency(String currency);
+}
@@ -0,0 +1,55 @@
+package com.test.sii.repository;
+
+import com.test.sii.model.IdSequences;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plain JDBC access to the id sequences of {@link IdSequences}, for writers which insert rows without JPA.
+ */
+@Repository
+@RequiredArgsConstructor
+public class IdSequenceRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Takes as many blocks from the sequence as needed for the ids, the same way Hibernate does, so the ids never
+     * collide with ids of entities saved through JPA.
+     */
+    public List<Integer> nextIds(String sequence, int count) {
+        List<Integer> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            int lowestId = jdbcTemplate.queryForObject("select next value for " + sequence, Integer.class);
+            for (int id = lowestId; id < lowestId + IdSequences.ALLOCATION_SIZE && ids.size() < count; id++) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Restarts the sequence after the highest id of the table, if the table holds ids the sequence would hand out
+     * again (e.g. rows inserted while the table still used identity ids).
+     *
+     * @return true if the sequence was restarted
+     */
+    public boolean restartAfterExistingIds(String sequence, String table) {
+        Long nextValue = jdbcTemplate.queryForObject(
+                "select base_value from information_schema.sequences where sequence_name = ?",
+                Long.class,
+                sequence.toUpperCase()
+        );
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from " + table, Long.class);
+
+        if (maxId == null || nextValue == null || nextValue > maxId) {
+            return false;
+        }
+        jdbcTemplate.execute("alter sequence " + sequence + " restart with " + (maxId + 1));
+        return true;
+    }
+}
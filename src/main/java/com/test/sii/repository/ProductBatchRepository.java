@@ -0,0 +1,147 @@
+package com.test.sii.repository;
+
+import com.test.sii.model.IdSequences;
+import com.test.sii.model.Product;
+import com.test.sii.model.ProductSnapshot;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Statement;
+import java.util.*;
+
+/**
+ * Plain JDBC access to products for bulk writes, sent as JDBC batches without loading entities into the persistence
+ * context. Ids are taken from the product id sequence, updates are only applied to the version they were read at.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductBatchRepository {
+
+    private static final String INSERT = "insert into products \n" +
+            "(id, name, description, price, currency_id, version) \n" +
+            "values (:id, :name, :description, :price, :currencyId, 0)";
+
+    private static final String UPDATE = "update products set \n" +
+            "name = :name, description = :description, price = :price, currency_id = :currencyId, version = :version + 1 \n" +
+            "where id = :id \n" +
+            "and coalesce(version, 0) = :version";
+
+    private static final String SELECT_BY_IDS = "select p.id, p.name, p.description, p.price, p.currency_id, c.currency, p.version \n" +
+            "from products p join currencies c on c.id = p.currency_id \n" +
+            "where p.id in (:ids)";
+
+    private static final String SELECT_IDS_BY_NAMES = "select id, name from products where name in (:names)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final IdSequenceRepository idSequenceRepository;
+
+    public Map<Integer, ProductSnapshot> findAllById(Collection<Integer> ids) {
+        Map<Integer, ProductSnapshot> products = new HashMap<>();
+        if (ids.isEmpty()) {
+            return products;
+        }
+        jdbcTemplate.query(SELECT_BY_IDS, Map.of("ids", ids), (rs, rowNum) -> products.put(rs.getInt("id"), new ProductSnapshot(
+                rs.getInt("id"),
+                rs.getString("name"),
+                rs.getString("description"),
+                rs.getBigDecimal("price"),
+                rs.getInt("currency_id"),
+                rs.getString("currency"),
+                rs.getLong("version")
+        )));
+        return products;
+    }
+
+    /**
+     * @return ids of the products with the given names
+     */
+    public Map<String, Integer> findIdsByName(Collection<String> names) {
+        Map<String, Integer> ids = new HashMap<>();
+        if (names.isEmpty()) {
+            return ids;
+        }
+        jdbcTemplate.query(SELECT_IDS_BY_NAMES, Map.of("names", names), (rs, rowNum) -> ids.put(rs.getString("name"), rs.getInt("id")));
+        return ids;
+    }
+
+    /**
+     * Inserts the products at version 0 and sets their ids. Must run in a transaction, a concurrent insert of the same
+     * name surfaces as {@link org.springframework.dao.DuplicateKeyException}.
+     */
+    public void insert(List<Product> products) {
+        if (products.isEmpty()) {
+            return;
+        }
+        Iterator<Integer> ids = idSequenceRepository.nextIds(IdSequences.PRODUCTS, products.size()).iterator();
+        products.forEach(product -> {
+            product.setId(ids.next());
+            product.setVersion(0L);
+        });
+
+        jdbcTemplate.batchUpdate(INSERT, products.stream()
+                .map(product -> parameters(product)
+                        .addValue("id", product.getId()))
+                .toArray(SqlParameterSource[]::new));
+    }
+
+    /**
+     * Writes the products if they are still at the version they carry, and increments the version of those.
+     * <p>
+     * Drivers which rewrite batches report {@link Statement#SUCCESS_NO_INFO} instead of update counts. Those rows are
+     * read back in the same transaction: a row updated by the batch is locked until commit, so it is at the next version
+     * with the written values, while a row changed by someone else before the batch is not (unless they wrote exactly
+     * the same values, which makes no difference).
+     *
+     * @return whether each product was updated, false if it changed since it was read
+     */
+    public boolean[] update(List<Product> products) {
+        if (products.isEmpty()) {
+            return new boolean[0];
+        }
+        int[] counts = jdbcTemplate.batchUpdate(UPDATE, products.stream()
+                .map(product -> parameters(product)
+                        .addValue("id", product.getId())
+                        .addValue("version", product.getVersion()))
+                .toArray(SqlParameterSource[]::new));
+
+        List<Integer> unknown = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                unknown.add(products.get(i).getId());
+            }
+        }
+        Map<Integer, ProductSnapshot> current = findAllById(unknown);
+
+        boolean[] updated = new boolean[products.size()];
+        for (int i = 0; i < counts.length; i++) {
+            Product product = products.get(i);
+            updated[i] = counts[i] == Statement.SUCCESS_NO_INFO
+                    ? isWritten(current.get(product.getId()), product)
+                    : counts[i] > 0;
+            if (updated[i]) {
+                product.setVersion(product.getVersion() + 1);
+            }
+        }
+        return updated;
+    }
+
+    private static boolean isWritten(ProductSnapshot current, Product product) {
+        return current != null
+                && current.version() == product.getVersion() + 1
+                && Objects.equals(current.name(), product.getName())
+                && Objects.equals(current.description(), product.getDescription())
+                && current.price().compareTo(product.getPrice()) == 0
+                && Objects.equals(current.currencyId(), product.getCurrency().getId());
+    }
+
+    private static MapSqlParameterSource parameters(Product product) {
+        return new MapSqlParameterSource()
+                .addValue("name", product.getName())
+                .addValue("description", product.getDescription())
+                .addValue("price", product.getPrice())
+                .addValue("currencyId", product.getCurrency().getId());
+    }
+}
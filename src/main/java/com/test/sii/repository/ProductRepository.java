@@ -1,9 +1,62 @@
 package com.test.sii.repository;
 
+import com.test.sii.dto.ProductResponse;
 import com.test.sii.model.Product;
+import com.test.sii.model.ProductText;
+import com.test.sii.model.ProductVersion;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Integer> {
+
+    List<ProductVersion> findVersionsByIdGreaterThanOrderById(Integer id, Limit limit);
+
+    /**
+     * Listing page selected straight into responses, without managed entities.
+     */
+    @Query("select new com.test.sii.dto.ProductResponse(p.id, p.name, p.description, p.price, c.currency) \n" +
+           "from Product p join p.currency c \n" +
+           "where p.id > :id \n" +
+           "order by p.id")
+    List<ProductResponse> findResponsesByIdGreaterThan(@Param("id") Integer id, Limit limit);
+
+    @Query("select new com.test.sii.dto.ProductResponse(p.id, p.name, p.description, p.price, c.currency) \n" +
+           "from Product p join p.currency c")
+    List<ProductResponse> findResponses(Pageable pageable);
+
+    List<ProductVersion> findVersionsBy(Pageable pageable);
+
+    @Query("select p from Product p join fetch p.currency where p.id in :ids")
+    List<Product> findAllWithCurrencyByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Forward-only stream of all products with their currency, must be consumed inside a transaction and closed.
+     */
+    @Query("select p from Product p join fetch p.currency order by p.id")
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    Stream<Product> streamAll();
+
+    /**
+     * Forward-only stream of the searchable text of all products, must be consumed inside a transaction and closed.
+     */
+    @Query("select new com.test.sii.model.ProductText(p.id, p.name, p.description, p.version) from Product p")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<ProductText> streamTexts();
 }
@@ -0,0 +1,83 @@
+package com.test.sii.repository;
+
+import com.test.sii.dto.DiscountMethod;
+import com.test.sii.model.IdSequences;
+import com.test.sii.model.PromoCodeMonetary;
+import com.test.sii.model.PromoCodePercentage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.*;
+
+/**
+ * Plain JDBC access to promo_codes for bulk writes, sent as a single JDBC batch without loading entities into the
+ * persistence context. Ids are taken from the promo code id sequence.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PromoCodeBatchRepository {
+
+    private static final String INSERT = "insert into promo_codes \n" +
+            "(id, dtype, code, expiration_date, max_usages, usages, reserved_usages, amount, currency_id) \n" +
+            "values (:id, :dtype, :code, :expirationDate, :maxUsages, 0, 0, :amount, :currencyId)";
+
+    private static final String SELECT_EXISTING = "select code from promo_codes where code in (:codes)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final IdSequenceRepository idSequenceRepository;
+
+    public record Row(
+            String code,
+            DiscountMethod discountMethod,
+            Date expirationDate,
+            int maxUsages,
+            BigDecimal amount,
+            Integer currencyId
+    ) {}
+
+    /**
+     * Inserts the rows whose codes are not taken yet. Must run in a transaction, a concurrent insert of the same code
+     * surfaces as {@link org.springframework.dao.DuplicateKeyException}.
+     *
+     * @return codes that were inserted
+     */
+    public List<String> insertAbsent(Collection<Row> rows) {
+        List<String> codes = rows.stream()
+                .map(Row::code)
+                .toList();
+        Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(SELECT_EXISTING, Map.of("codes", codes), String.class));
+
+        List<Row> absent = rows.stream()
+                .filter(row -> !existing.contains(row.code()))
+                .toList();
+
+        Iterator<Integer> ids = idSequenceRepository.nextIds(IdSequences.PROMO_CODES, absent.size()).iterator();
+        Map<String, ?>[] batch = absent.stream()
+                .map(row -> Map.of(
+                        "id", ids.next(),
+                        "dtype", dtype(row.discountMethod()),
+                        "code", row.code(),
+                        "expirationDate", row.expirationDate(),
+                        "maxUsages", row.maxUsages(),
+                        "amount", row.amount(),
+                        "currencyId", row.currencyId()
+                ))
+                .toArray(Map[]::new);
+
+        jdbcTemplate.batchUpdate(INSERT, batch);
+
+        return absent.stream()
+                .map(Row::code)
+                .toList();
+    }
+
+    private static String dtype(DiscountMethod discountMethod) {
+        return switch (discountMethod) {
+            case MONETARY -> PromoCodeMonetary.class.getSimpleName();
+            case PERCENTAGE -> PromoCodePercentage.class.getSimpleName();
+        };
+    }
+}
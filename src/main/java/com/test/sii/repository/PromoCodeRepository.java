@@ -1,12 +1,109 @@
 package com.test.sii.repository;
 
 import com.test.sii.model.PromoCode;
+import com.test.sii.model.PromoCodeListItem;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface PromoCodeRepository extends JpaRepository<PromoCode, Integer> {
     Optional<PromoCode> findByCode(String code);
+
+    /**
+     * Locks the promo code row until the end of the transaction, see {@link CurrencyRepository#lockByCurrency}.
+     */
+    @Query(value = "select id from promo_codes where id = :id for update", nativeQuery = true)
+    Optional<Integer> lockById(@Param("id") Integer id);
+
+    /**
+     * Listing page selected straight into rows, without managed entities. Both kinds of codes store their amount in
+     * the same column, the discount method follows from the type.
+     */
+    @Query("select new com.test.sii.model.PromoCodeListItem(p.id, p.code, p.expirationDate, \n" +
+           "coalesce(treat(p as PromoCodeMonetary).amount, treat(p as PromoCodePercentage).amount), \n" +
+           "c.currency, \n" +
+           "case type(p) when PromoCodeMonetary then com.test.sii.dto.DiscountMethod.MONETARY else com.test.sii.dto.DiscountMethod.PERCENTAGE end) \n" +
+           "from PromoCode p join p.currency c \n" +
+           "where p.id > :id \n" +
+           "order by p.id")
+    List<PromoCodeListItem> findListItemsByIdGreaterThan(@Param("id") Integer id, Limit limit);
+
+    @Query("select new com.test.sii.model.PromoCodeListItem(p.id, p.code, p.expirationDate, \n" +
+           "coalesce(treat(p as PromoCodeMonetary).amount, treat(p as PromoCodePercentage).amount), \n" +
+           "c.currency, \n" +
+           "case type(p) when PromoCodeMonetary then com.test.sii.dto.DiscountMethod.MONETARY else com.test.sii.dto.DiscountMethod.PERCENTAGE end) \n" +
+           "from PromoCode p join p.currency c")
+    List<PromoCodeListItem> findListItems(Pageable pageable);
+
+    @Query("select p.code from PromoCode p")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<String> streamAllCodes();
+
+    /**
+     * Atomically consumes one usage of the promo code. The guard in the where clause is evaluated by the database
+     * under the row lock, so concurrent redemptions can never push usages above maxUsages. Usages reserved by
+     * {@link com.test.sii.service.HotPromoCodeCounters} are treated as already taken.
+     *
+     * @return number of updated rows - 1 if the code was redeemed, 0 if it is exhausted, expired or does not exist
+     */
+    @Modifying
+    @Query("update PromoCode p set p.usages = p.usages + 1 \n" +
+           "where p.code = :code \n" +
+           "and p.usages + p.reservedUsages < p.maxUsages \n" +
+           "and p.expirationDate > :today")
+    int redeem(@Param("code") String code, @Param("today") Date today);
+
+    @Query("select p.maxUsages - p.usages - p.reservedUsages from PromoCode p \n" +
+           "where p.code = :code \n" +
+           "and p.expirationDate > :today")
+    Optional<Integer> findRemainingUsages(@Param("code") String code, @Param("today") Date today);
+
+    /**
+     * Moves a block of remaining usages into reservedUsages, so it can be handed out without touching the row.
+     *
+     * @return 1 if the whole block was reserved, 0 otherwise
+     */
+    @Modifying
+    @Query("update PromoCode p set p.reservedUsages = p.reservedUsages + :amount \n" +
+           "where p.code = :code \n" +
+           "and p.usages + p.reservedUsages + :amount <= p.maxUsages \n" +
+           "and p.expirationDate > :today")
+    int reserve(@Param("code") String code, @Param("amount") int amount, @Param("today") Date today);
+
+    @Modifying
+    @Query("update PromoCode p set p.usages = p.usages + :amount, p.reservedUsages = p.reservedUsages - :amount \n" +
+           "where p.code = :code")
+    int confirmReserved(@Param("code") String code, @Param("amount") int amount);
+
+    @Modifying
+    @Query("update PromoCode p set p.reservedUsages = p.reservedUsages - :amount \n" +
+           "where p.code = :code")
+    int releaseReserved(@Param("code") String code, @Param("amount") int amount);
+
+    /**
+     * Counts reservations left behind by the owner's previous process, which did not shut down cleanly, as used. Their
+     * consumed part was never flushed, so returning them could oversell the code - losing a few usages is the safe side.
+     * Reservations of other owners are left alone. The owner's {@link com.test.sii.model.PromoCodeReservation} rows
+     * must be deleted in the same transaction.
+     */
+    @Modifying
+    @Query("update PromoCode p set \n" +
+           "p.usages = p.usages + (select r.reserved from PromoCodeReservation r where r.code = p.code and r.owner = :owner), \n" +
+           "p.reservedUsages = p.reservedUsages - (select r.reserved from PromoCodeReservation r where r.code = p.code and r.owner = :owner) \n" +
+           "where p.code in (select r.code from PromoCodeReservation r where r.owner = :owner and r.reserved > 0)")
+    int reconcileReserved(@Param("owner") String owner);
 }
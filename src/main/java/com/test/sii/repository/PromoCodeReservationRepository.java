@@ -0,0 +1,25 @@
+package com.test.sii.repository;
+
+import com.test.sii.model.PromoCodeReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PromoCodeReservationRepository extends JpaRepository<PromoCodeReservation, Integer> {
+
+    /**
+     * @return 1 if the reservation was updated, 0 if the owner has none for the code yet
+     */
+    @Modifying
+    @Query("update PromoCodeReservation r set r.reserved = r.reserved + :amount \n" +
+           "where r.code = :code \n" +
+           "and r.owner = :owner")
+    int add(@Param("code") String code, @Param("owner") String owner, @Param("amount") int amount);
+
+    @Modifying
+    @Query("delete from PromoCodeReservation r where r.owner = :owner")
+    int deleteByOwner(@Param("owner") String owner);
+}
@@ -0,0 +1,64 @@
+package com.test.sii.repository;
+
+import com.test.sii.dto.PromoCodeSalesResponse;
+import com.test.sii.model.PromoCodeSales;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface PromoCodeSalesRepository extends JpaRepository<PromoCodeSales, Integer> {
+
+    /**
+     * @return 1 if the stripe was updated, 0 if it does not exist yet
+     */
+    @Modifying
+    @Query(value = "update promo_code_sales set \n" +
+           "redemptions = redemptions + 1, \n" +
+           "total_discount = total_discount + :discount, \n" +
+           "total_revenue = total_revenue + :revenue \n" +
+           "where promo_code_id = :promoCodeId \n" +
+           "and stripe = :stripe",
+           nativeQuery = true)
+    int add(
+            @Param("promoCodeId") Integer promoCodeId,
+            @Param("stripe") int stripe,
+            @Param("discount") BigDecimal discount,
+            @Param("revenue") BigDecimal revenue
+    );
+
+    /**
+     * Creates the empty stripe unless it exists. Callers hold {@link PromoCodeRepository#lockById}, so nobody else
+     * creates it meanwhile.
+     */
+    @Modifying
+    @Query(value = "insert into promo_code_sales (promo_code_id, stripe, redemptions, total_discount, total_revenue) \n" +
+           "select :promoCodeId, :stripe, 0, 0, 0 \n" +
+           "where not exists (select 1 from promo_code_sales where promo_code_id = :promoCodeId and stripe = :stripe)",
+           nativeQuery = true)
+    int createIfMissing(@Param("promoCodeId") Integer promoCodeId, @Param("stripe") int stripe);
+
+    /**
+     * Keyset page of per-code totals, ordered by promo code id.
+     */
+    @Query("select new com.test.sii.dto.PromoCodeSalesResponse(\n" +
+           "s.promoCodeId, \n" +
+           "pc.code, \n" +
+           "c.currency, \n" +
+           "sum(s.redemptions), \n" +
+           "sum(s.totalDiscount), \n" +
+           "sum(s.totalRevenue))\n" +
+           "from PromoCodeSales s \n" +
+           "inner join PromoCode pc on s.promoCodeId = pc.id \n" +
+           "inner join Currency c on pc.currency.id = c.id \n" +
+           "where s.promoCodeId > :afterId \n" +
+           "group by s.promoCodeId, pc.code, c.currency \n" +
+           "order by s.promoCodeId")
+    List<PromoCodeSalesResponse> generatePromoCodeReport(@Param("afterId") Integer afterId, Pageable pageable);
+}
@@ -0,0 +1,46 @@
+package com.test.sii.repository;
+
+import com.test.sii.model.IdSequences;
+import com.test.sii.model.PendingPurchase;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Plain JDBC access to purchases for the write-behind pipeline, sent as a single JDBC batch without loading entities
+ * into the persistence context. Ids are taken from the purchase id sequence.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PurchaseBatchRepository {
+
+    private static final String INSERT = "insert into purchases \n" +
+            "(id, date, purchased_at, regular_price, discount_amount, product_id, promo_code_id) \n" +
+            "values (:id, :date, :purchasedAt, :regularPrice, :discountAmount, :productId, :promoCodeId)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final IdSequenceRepository idSequenceRepository;
+
+    public void insert(Collection<PendingPurchase> purchases) {
+        Iterator<Integer> ids = idSequenceRepository.nextIds(IdSequences.PURCHASES, purchases.size()).iterator();
+        SqlParameterSource[] batch = purchases.stream()
+                .map(purchase -> new MapSqlParameterSource()
+                        .addValue("id", ids.next())
+                        .addValue("date", Date.valueOf(purchase.date()))
+                        .addValue("purchasedAt", Timestamp.valueOf(purchase.purchasedAt()))
+                        .addValue("regularPrice", purchase.regularPrice())
+                        .addValue("discountAmount", purchase.discountAmount())
+                        .addValue("productId", purchase.productId())
+                        .addValue("promoCodeId", purchase.promoCodeId()))
+                .toArray(SqlParameterSource[]::new);
+
+        jdbcTemplate.batchUpdate(INSERT, batch);
+    }
+}
@@ -0,0 +1,38 @@
+package com.test.sii.repository;
+
+import com.test.sii.model.PurchaseIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface PurchaseIdempotencyKeyRepository extends JpaRepository<PurchaseIdempotencyKey, String> {
+
+    /**
+     * Claims the key, unlike {@code save} never updates a key stored by someone else.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if the key is stored already
+     */
+    @Modifying
+    @Query(value = "insert into purchase_idempotency_keys \n" +
+           "(idempotency_key, request_fingerprint, created_at) \n" +
+           "values (:key, :requestFingerprint, :createdAt)",
+           nativeQuery = true)
+    void insert(
+            @Param("key") String key,
+            @Param("requestFingerprint") String requestFingerprint,
+            @Param("createdAt") LocalDateTime createdAt
+    );
+
+    @Modifying
+    @Query("update PurchaseIdempotencyKey k set k.response = :response where k.key = :key")
+    void setResponse(@Param("key") String key, @Param("response") String response);
+
+    @Modifying
+    @Query("delete from PurchaseIdempotencyKey k where k.createdAt < :createdAt")
+    int deleteCreatedBefore(@Param("createdAt") LocalDateTime createdAt);
+}
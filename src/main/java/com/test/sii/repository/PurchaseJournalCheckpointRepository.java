@@ -0,0 +1,9 @@
+package com.test.sii.repository;
+
+import com.test.sii.model.PurchaseJournalCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PurchaseJournalCheckpointRepository extends JpaRepository<PurchaseJournalCheckpoint, String> {
+}
@@ -1,11 +1,15 @@
 package com.test.sii.repository;
 
 import com.test.sii.dto.SalesReportEntryResponse;
+import com.test.sii.dto.TopProductResponse;
 import com.test.sii.model.Purchase;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Date;
 import java.util.List;
 
 @Repository
@@ -21,4 +25,30 @@ public interface PurchaseRepository extends JpaRepository<Purchase, Integer> {
            "inner join Currency c on pr.currency.id = c.id \n" +
            "group by c.currency")
     List<SalesReportEntryResponse> generateSalesReport();
+
+    @Query("select new com.test.sii.dto.TopProductResponse(\n" +
+           "pr.id, \n" +
+           "cast(count(*) as BigDecimal), \n" +
+           "cast(0 as BigDecimal))\n" +
+           "from Purchase p \n" +
+           "inner join Product pr on p.product.id = pr.id \n" +
+           "inner join Currency c on pr.currency.id = c.id \n" +
+           "where c.currency = :currency \n" +
+           "and p.date >= :since \n" +
+           "group by pr.id \n" +
+           "order by count(*) desc, pr.id")
+    List<TopProductResponse> findTopProductsByUnits(@Param("currency") String currency, @Param("since") Date since, Pageable pageable);
+
+    @Query("select new com.test.sii.dto.TopProductResponse(\n" +
+           "pr.id, \n" +
+           "sum(p.regularPrice - coalesce(p.discountAmount, 0)), \n" +
+           "cast(0 as BigDecimal))\n" +
+           "from Purchase p \n" +
+           "inner join Product pr on p.product.id = pr.id \n" +
+           "inner join Currency c on pr.currency.id = c.id \n" +
+           "where c.currency = :currency \n" +
+           "and p.date >= :since \n" +
+           "group by pr.id \n" +
+           "order by sum(p.regularPrice - coalesce(p.discountAmount, 0)) desc, pr.id")
+    List<TopProductResponse> findTopProductsByRevenue(@Param("currency") String currency, @Param("since") Date since, Pageable pageable);
 }
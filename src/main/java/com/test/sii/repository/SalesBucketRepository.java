@@ -0,0 +1,79 @@
+package com.test.sii.repository;
+
+import com.test.sii.dto.SalesReportBucketResponse;
+import com.test.sii.dto.SalesReportGranularity;
+import com.test.sii.model.SalesBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SalesBucketRepository extends JpaRepository<SalesBucket, Integer> {
+
+    /**
+     * @return 1 if the bucket stripe was updated, 0 if it does not exist yet
+     */
+    @Modifying
+    @Query(value = "update sales_buckets set \n" +
+           "total_amount = total_amount + :amount, \n" +
+           "total_discount = total_discount + :discount, \n" +
+           "number_of_purchases = number_of_purchases + :purchases \n" +
+           "where granularity = :granularity \n" +
+           "and bucket_start = :bucketStart \n" +
+           "and currency = :currency \n" +
+           "and stripe = :stripe",
+           nativeQuery = true)
+    int add(
+            @Param("granularity") String granularity,
+            @Param("bucketStart") LocalDateTime bucketStart,
+            @Param("currency") String currency,
+            @Param("stripe") int stripe,
+            @Param("amount") BigDecimal amount,
+            @Param("discount") BigDecimal discount,
+            @Param("purchases") long purchases
+    );
+
+    /**
+     * Creates the empty bucket stripe unless it exists. Callers hold {@link CurrencyRepository#lockByCurrency}, so
+     * nobody else creates it meanwhile.
+     */
+    @Modifying
+    @Query(value = "insert into sales_buckets (granularity, bucket_start, currency, stripe, total_amount, total_discount, number_of_purchases) \n" +
+           "select :granularity, :bucketStart, :currency, :stripe, 0, 0, 0 \n" +
+           "where not exists (select 1 from sales_buckets \n" +
+           "where granularity = :granularity \n" +
+           "and bucket_start = :bucketStart \n" +
+           "and currency = :currency \n" +
+           "and stripe = :stripe)",
+           nativeQuery = true)
+    int createIfMissing(
+            @Param("granularity") String granularity,
+            @Param("bucketStart") LocalDateTime bucketStart,
+            @Param("currency") String currency,
+            @Param("stripe") int stripe
+    );
+
+    @Query("select new com.test.sii.dto.SalesReportBucketResponse(\n" +
+           "b.bucketStart, \n" +
+           "b.currency, \n" +
+           "sum(b.totalAmount), \n" +
+           "sum(b.totalDiscount), \n" +
+           "sum(b.numberOfPurchases))\n" +
+           "from SalesBucket b \n" +
+           "where b.granularity = :granularity \n" +
+           "and b.bucketStart >= :from \n" +
+           "and b.bucketStart < :to \n" +
+           "group by b.bucketStart, b.currency \n" +
+           "order by b.bucketStart, b.currency")
+    List<SalesReportBucketResponse> generateSalesReport(
+            @Param("granularity") SalesReportGranularity granularity,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to
+    );
+}
@@ -0,0 +1,57 @@
+package com.test.sii.repository;
+
+import com.test.sii.dto.SalesReportEntryResponse;
+import com.test.sii.model.SalesTotal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface SalesTotalRepository extends JpaRepository<SalesTotal, Integer> {
+
+    /**
+     * @return 1 if the stripe was updated, 0 if it does not exist yet
+     */
+    @Modifying
+    @Query(value = "update sales_totals set \n" +
+           "total_amount = total_amount + :amount, \n" +
+           "total_discount = total_discount + :discount, \n" +
+           "number_of_purchases = number_of_purchases + :purchases \n" +
+           "where currency = :currency \n" +
+           "and stripe = :stripe",
+           nativeQuery = true)
+    int add(
+            @Param("currency") String currency,
+            @Param("stripe") int stripe,
+            @Param("amount") BigDecimal amount,
+            @Param("discount") BigDecimal discount,
+            @Param("purchases") long purchases
+    );
+
+    /**
+     * Creates the empty stripe unless it exists. Callers hold {@link CurrencyRepository#lockByCurrency}, so nobody else
+     * creates it meanwhile.
+     */
+    @Modifying
+    @Query(value = "insert into sales_totals (currency, stripe, total_amount, total_discount, number_of_purchases) \n" +
+           "select :currency, :stripe, 0, 0, 0 \n" +
+           "where not exists (select 1 from sales_totals where currency = :currency and stripe = :stripe)",
+           nativeQuery = true)
+    int createIfMissing(@Param("currency") String currency, @Param("stripe") int stripe);
+
+    @Query("select new com.test.sii.dto.SalesReportEntryResponse(\n" +
+           "s.currency, \n" +
+           "sum(s.totalAmount), \n" +
+           "sum(s.totalDiscount), \n" +
+           "sum(s.numberOfPurchases))\n" +
+           "from SalesTotal s \n" +
+           "group by s.currency \n" +
+           "having sum(s.numberOfPurchases) > 0 \n" +
+           "order by s.currency")
+    List<SalesReportEntryResponse> generateSalesReport();
+}
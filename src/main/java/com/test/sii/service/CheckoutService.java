@@ -0,0 +1,227 @@
+package com.test.sii.service;
+
+import com.test.sii.dto.*;
+import com.test.sii.error.PromoCodeNotFoundException;
+import com.test.sii.model.Product;
+import com.test.sii.model.PromoCode;
+import com.test.sii.model.PromoCodeMonetary;
+import com.test.sii.model.Purchase;
+import com.test.sii.repository.ProductRepository;
+import com.test.sii.repository.PromoCodeRepository;
+import com.test.sii.repository.PurchaseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Checkout of a cart with many items and at most one promo code, in a single transaction.
+ * <p>
+ * Products are loaded with one query and the promo code is redeemed once for the whole cart. A percentage code
+ * discounts every item in its currency, a monetary code discounts the cart once by its amount, split across the items
+ * in its currency in proportion to their prices. Every item becomes a purchase, all inserted in JDBC batches.
+ */
+@Service
+public class CheckoutService {
+
+    private final PurchaseRepository purchaseRepository;
+    private final ProductRepository productRepository;
+    private final PromoCodeRepository promoCodeRepository;
+    private final PromoCodeService promoCodeService;
+    private final int maxItems;
+
+    public CheckoutService(
+            PurchaseRepository purchaseRepository,
+            ProductRepository productRepository,
+            PromoCodeRepository promoCodeRepository,
+            PromoCodeService promoCodeService,
+            @Value("${purchases.checkout.max-items:1000}") int maxItems
+    ) {
+        this.purchaseRepository = purchaseRepository;
+        this.productRepository = productRepository;
+        this.promoCodeRepository = promoCodeRepository;
+        this.promoCodeService = promoCodeService;
+        this.maxItems = maxItems;
+    }
+
+    @Transactional
+    public CheckoutResponse checkout(CheckoutRequest checkoutRequest) {
+        long items = checkoutRequest.items().stream()
+                .mapToLong(CheckoutItemRequest::quantity)
+                .sum();
+        if (items > maxItems) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many items in cart", new Exception("Cart has " + items + " items, at most " + maxItems + " are allowed"));
+        }
+
+        Map<Integer, Product> products = getProducts(checkoutRequest.items());
+        PromoCode promoCode = checkoutRequest.promoCode() != null ? getPromoCode(checkoutRequest.promoCode()) : null;
+        LocalDateTime purchasedAt = LocalDateTime.now();
+        Date date = Date.valueOf(purchasedAt.toLocalDate());
+
+        List<Line> lines = checkoutRequest.items().stream()
+                .map(item -> new Line(products.get(item.productId()), item.quantity()))
+                .toList();
+
+        String warning = null;
+        if (promoCode != null && promoCode.isExpired()) {
+            warning = "Promo code has expired";
+        } else if (promoCode != null) {
+            String currency = promoCode.getCurrency().getCurrency();
+            lines.forEach(line -> {
+                line.eligible = line.product.getCurrency().getCurrency().equals(currency);
+                line.warning = line.eligible ? null : "Currencies of promo code and product don't match";
+            });
+
+            if (lines.stream().noneMatch(line -> line.eligible)) {
+                warning = "Currencies of promo code and products don't match";
+            } else if (!promoCodeService.redeem(promoCode)) {
+                warning = "Cannot use this code - reached maximum usages";
+                lines.forEach(line -> line.eligible = false);
+            }
+        }
+
+        List<Purchase> purchases = new ArrayList<>();
+        List<Purchase> discounted = new ArrayList<>();
+        for (Line line : lines) {
+            for (int i = 0; i < line.quantity; i++) {
+                Purchase purchase = new Purchase(null, date, purchasedAt, line.product.getPrice(), BigDecimal.ZERO, line.product, null);
+                if (line.eligible) {
+                    purchase.setPromoCode(promoCode);
+                    discounted.add(purchase);
+                }
+                line.purchases.add(purchase);
+                purchases.add(purchase);
+            }
+        }
+        if (!discounted.isEmpty()) {
+            applyDiscount(promoCode, discounted);
+        }
+
+        purchaseRepository.saveAll(purchases);
+
+        List<CheckoutLineResponse> lineResponses = lines.stream()
+                .map(Line::toResponse)
+                .toList();
+
+        return new CheckoutResponse(date, lineResponses, totals(lineResponses), warning);
+    }
+
+    private Map<Integer, Product> getProducts(List<CheckoutItemRequest> items) {
+        Set<Integer> productIds = items.stream()
+                .map(CheckoutItemRequest::productId)
+                .collect(Collectors.toSet());
+
+        Map<Integer, Product> products = productRepository.findAllWithCurrencyByIdIn(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        if (products.size() < productIds.size()) {
+            SortedSet<Integer> missing = new TreeSet<>(productIds);
+            missing.removeAll(products.keySet());
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found", new Exception("Products with ids " + missing + " were not found"));
+        }
+        return products;
+    }
+
+    private PromoCode getPromoCode(String promoCode) {
+        return promoCodeRepository.findByCode(promoCode)
+                .orElseThrow(() -> new PromoCodeNotFoundException(promoCode));
+    }
+
+    /**
+     * Sets the discount of the purchases. A monetary amount is split across them proportionally to their prices, the
+     * rounding remainder going to the last one.
+     */
+    private static void applyDiscount(PromoCode promoCode, List<Purchase> purchases) {
+        if (!(promoCode instanceof PromoCodeMonetary)) {
+            purchases.forEach(purchase -> purchase.setDiscountAmount(promoCode.calculateDiscountAmount(purchase.getProduct())));
+            return;
+        }
+
+        BigDecimal total = purchases.stream()
+                .map(Purchase::getRegularPrice)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (total.signum() == 0) {
+            return;
+        }
+        BigDecimal discount = promoCode.getAmount().min(total);
+        int scale = Math.max(2, purchases.stream()
+                .mapToInt(purchase -> purchase.getRegularPrice().scale())
+                .max()
+                .orElse(0));
+
+        BigDecimal remaining = discount;
+        for (int i = 0; i < purchases.size(); i++) {
+            Purchase purchase = purchases.get(i);
+            BigDecimal share = i < purchases.size() - 1
+                    ? discount.multiply(purchase.getRegularPrice()).divide(total, scale, RoundingMode.DOWN)
+                    : remaining.min(purchase.getRegularPrice());
+            purchase.setDiscountAmount(share);
+            remaining = remaining.subtract(share);
+        }
+    }
+
+    private static List<CheckoutTotalResponse> totals(List<CheckoutLineResponse> lines) {
+        Map<String, List<CheckoutLineResponse>> byCurrency = lines.stream()
+                .collect(Collectors.groupingBy(line -> line.product().currency(), TreeMap::new, Collectors.toList()));
+
+        return byCurrency.entrySet().stream()
+                .map(entry -> new CheckoutTotalResponse(
+                        entry.getKey(),
+                        sum(entry.getValue(), line -> line.regularPrice().multiply(BigDecimal.valueOf(line.quantity()))),
+                        sum(entry.getValue(), CheckoutLineResponse::discountAmount),
+                        sum(entry.getValue(), CheckoutLineResponse::totalPrice)
+                ))
+                .toList();
+    }
+
+    private static BigDecimal sum(List<CheckoutLineResponse> lines, Function<CheckoutLineResponse, BigDecimal> field) {
+        return lines.stream()
+                .map(field)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static final class Line {
+
+        private final Product product;
+        private final int quantity;
+        private final List<Purchase> purchases = new ArrayList<>();
+        private boolean eligible;
+        private String warning;
+
+        private Line(Product product, int quantity) {
+            this.product = product;
+            this.quantity = quantity;
+        }
+
+        private CheckoutLineResponse toResponse() {
+            BigDecimal discountAmount = purchases.stream()
+                    .map(Purchase::getDiscountAmount)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            BigDecimal regularTotal = product.getPrice().multiply(BigDecimal.valueOf(quantity));
+
+            return new CheckoutLineResponse(
+                    new ProductResponse(
+                            product.getId(),
+                            product.getName(),
+                            product.getDescription(),
+                            product.getPrice(),
+                            product.getCurrency().getCurrency()
+                    ),
+                    quantity,
+                    product.getPrice(),
+                    discountAmount,
+                    regularTotal.subtract(discountAmount),
+                    warning
+            );
+        }
+    }
+}
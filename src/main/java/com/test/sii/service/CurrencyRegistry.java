@@ -0,0 +1,97 @@
+package com.test.sii.service;
+
+import com.test.sii.model.Currency;
+import com.test.sii.repository.CurrencyRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * All currencies, kept in memory as an immutable snapshot which is replaced (copy-on-write) whenever a currency is
+ * added. Lookups of known currencies never touch the database.
+ * <p>
+ * Unknown currencies are inserted in their own transaction, so they are visible to other requests right away. Concurrent
+ * requests for the same new currency wait for a single insert; an insert losing the race against another instance falls
+ * back to reading the winner's row. Returned currencies are detached and must not be modified.
+ */
+@Component
+public class CurrencyRegistry {
+
+    private final CurrencyRepository currencyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, CompletableFuture<Currency>> inserting = new ConcurrentHashMap<>();
+
+    private volatile Map<String, Currency> currencies = Map.of();
+
+    public CurrencyRegistry(CurrencyRepository currencyRepository, PlatformTransactionManager transactionManager) {
+        this.currencyRepository = currencyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Reloads the snapshot from the database, dropping currencies which no longer exist.
+     */
+    @PostConstruct
+    public void refresh() {
+        currencies = transactionTemplate.execute(status -> currencyRepository.findAll().stream()
+                .filter(currency -> currency.getCurrency() != null)
+                .collect(Collectors.toUnmodifiableMap(Currency::getCurrency, Function.identity())));
+    }
+
+    public Currency getOrCreate(String currency) {
+        Currency known = currencies.get(currency);
+        if (known != null) {
+            return known;
+        }
+
+        CompletableFuture<Currency> insert = new CompletableFuture<>();
+        CompletableFuture<Currency> pending = inserting.putIfAbsent(currency, insert);
+        if (pending != null) {
+            try {
+                return pending.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            Currency created = findOrInsert(currency);
+            publish(created);
+            insert.complete(created);
+            return created;
+        } catch (RuntimeException e) {
+            insert.completeExceptionally(e);
+            throw e;
+        } finally {
+            inserting.remove(currency, insert);
+        }
+    }
+
+    private Currency findOrInsert(String currency) {
+        try {
+            return transactionTemplate.execute(status -> currencyRepository.findByCurrency(currency)
+                    .orElseGet(() -> currencyRepository.saveAndFlush(new Currency(null, currency))));
+        } catch (DataIntegrityViolationException e) {
+            return transactionTemplate.execute(status -> currencyRepository.findByCurrency(currency)
+                    .orElseThrow(() -> e));
+        }
+    }
+
+    private synchronized void publish(Currency currency) {
+        Map<String, Currency> next = new HashMap<>(currencies);
+        next.put(currency.getCurrency(), currency);
+        currencies = Map.copyOf(next);
+    }
+}
@@ -0,0 +1,191 @@
+package com.test.sii.service;
+
+import com.test.sii.dto.DiscountPercentilesResponse;
+import com.test.sii.dto.DiscountStatisticsResponse;
+import com.test.sii.model.DiscountSketch;
+import com.test.sii.model.PurchaseCreatedEvent;
+import com.test.sii.repository.DiscountSketchRepository;
+import com.test.sii.util.QuantileSketch;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Percentiles of discount amounts and of discount to regular price ratios per currency, from {@link QuantileSketch}es
+ * of committed purchases.
+ * <p>
+ * Purchases are added to pending sketches which are periodically merged into the checkpointed ones in the database
+ * (under a row lock, so several instances can checkpoint). Statistics merge the last checkpoint with the pending
+ * sketches, their cost does not depend on the number of purchases.
+ */
+@Component
+public class DiscountStatistics {
+
+    private record Sketches(QuantileSketch amounts, QuantileSketch ratios) {
+
+        private Sketches(double relativeAccuracy) {
+            this(new QuantileSketch(relativeAccuracy), new QuantileSketch(relativeAccuracy));
+        }
+
+        private void merge(Sketches other) {
+            amounts.merge(other.amounts);
+            ratios.merge(other.ratios);
+        }
+
+    }
+
+    /**
+     * Last checkpoint and the sketches being merged into it, replaced together so none are counted twice.
+     */
+    private record Checkpoint(Map<String, Sketches> checkpointed, Map<String, Sketches> flushing) {}
+
+    private final DiscountSketchRepository discountSketchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final double relativeAccuracy;
+    private final ReadWriteLock pendingLock = new ReentrantReadWriteLock();
+
+    private volatile Map<String, Sketches> pending = new ConcurrentHashMap<>();
+    private volatile Checkpoint lastCheckpoint = new Checkpoint(Map.of(), Map.of());
+
+    public DiscountStatistics(
+            DiscountSketchRepository discountSketchRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${sales.discounts.relative-accuracy:0.01}") double relativeAccuracy
+    ) {
+        this.discountSketchRepository = discountSketchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPurchaseCreated(PurchaseCreatedEvent event) {
+        BigDecimal discount = Objects.requireNonNullElse(event.discountAmount(), BigDecimal.ZERO);
+        double ratio = event.regularPrice().signum() > 0
+                ? discount.divide(event.regularPrice(), MathContext.DECIMAL64).doubleValue()
+                : 0;
+
+        pendingLock.readLock().lock();
+        try {
+            Sketches sketches = pending.computeIfAbsent(event.currency(), currency -> new Sketches(relativeAccuracy));
+            sketches.amounts().add(discount.doubleValue());
+            sketches.ratios().add(ratio);
+        } finally {
+            pendingLock.readLock().unlock();
+        }
+    }
+
+    public List<DiscountStatisticsResponse> getStatistics() {
+        List<Map<String, Sketches>> parts;
+        pendingLock.readLock().lock();
+        try {
+            Checkpoint current = lastCheckpoint;
+            parts = List.of(current.checkpointed(), current.flushing(), pending);
+        } finally {
+            pendingLock.readLock().unlock();
+        }
+
+        SortedSet<String> currencies = new TreeSet<>();
+        parts.forEach(part -> currencies.addAll(part.keySet()));
+
+        return currencies.stream()
+                .map(currency -> {
+                    Sketches sketches = new Sketches(relativeAccuracy);
+                    parts.stream()
+                            .map(part -> part.get(currency))
+                            .filter(Objects::nonNull)
+                            .forEach(sketches::merge);
+                    return new DiscountStatisticsResponse(
+                            currency,
+                            sketches.amounts().count(),
+                            percentiles(sketches.amounts(), 2),
+                            percentiles(sketches.ratios(), 4)
+                    );
+                })
+                .filter(statistics -> statistics.numberOfPurchases() > 0)
+                .toList();
+    }
+
+    private static DiscountPercentilesResponse percentiles(QuantileSketch sketch, int scale) {
+        return new DiscountPercentilesResponse(
+                decimal(sketch.quantile(0.5), scale),
+                decimal(sketch.quantile(0.9), scale),
+                decimal(sketch.quantile(0.99), scale),
+                decimal(sketch.max(), scale)
+        );
+    }
+
+    private static BigDecimal decimal(double value, int scale) {
+        return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    @Scheduled(fixedDelayString = "${sales.discounts.checkpoint-interval-ms:60000}")
+    public synchronized void checkpoint() {
+        flush();
+        load();
+    }
+
+    @PostConstruct
+    public void load() {
+        Map<String, Sketches> loaded = transactionTemplate.execute(status -> discountSketchRepository.findAll().stream()
+                .collect(Collectors.toUnmodifiableMap(
+                        DiscountSketch::getCurrency,
+                        row -> new Sketches(QuantileSketch.fromBytes(row.getAmounts()), QuantileSketch.fromBytes(row.getRatios()))
+                )));
+        lastCheckpoint = new Checkpoint(loaded, Map.of());
+    }
+
+    @PreDestroy
+    public synchronized void flush() {
+        Map<String, Sketches> drained;
+        pendingLock.writeLock().lock();
+        try {
+            drained = pending;
+            pending = new ConcurrentHashMap<>();
+            lastCheckpoint = new Checkpoint(lastCheckpoint.checkpointed(), drained);
+        } finally {
+            pendingLock.writeLock().unlock();
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> drained.forEach(this::save));
+        } catch (RuntimeException e) {
+            pendingLock.writeLock().lock();
+            try {
+                drained.forEach((currency, sketches) -> pending.computeIfAbsent(currency, key -> new Sketches(relativeAccuracy)).merge(sketches));
+                lastCheckpoint = new Checkpoint(lastCheckpoint.checkpointed(), Map.of());
+            } finally {
+                pendingLock.writeLock().unlock();
+            }
+            throw e;
+        }
+    }
+
+    private void save(String currency, Sketches sketches) {
+        DiscountSketch row = discountSketchRepository.findByCurrency(currency)
+                .orElseGet(() -> new DiscountSketch(null, currency, null, null));
+        Sketches merged = row.getId() == null
+                ? new Sketches(relativeAccuracy)
+                : new Sketches(QuantileSketch.fromBytes(row.getAmounts()), QuantileSketch.fromBytes(row.getRatios()));
+        merged.merge(sketches);
+        row.setAmounts(merged.amounts().toBytes());
+        row.setRatios(merged.ratios().toBytes());
+        discountSketchRepository.save(row);
+    }
+}
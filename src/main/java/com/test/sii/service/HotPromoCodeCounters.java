@@ -0,0 +1,311 @@
+package com.test.sii.service;
+
+import com.test.sii.model.PromoCodeReservation;
+import com.test.sii.repository.PromoCodeRepository;
+import com.test.sii.repository.PromoCodeReservationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-process redemption counters for promo codes configured as hot ({@code promo-codes.hot.codes}).
+ * <p>
+ * Instead of updating the promo code row on every purchase, blocks of remaining usages are reserved in the database
+ * (moved to {@code reservedUsages}) and handed out from a striped, lock-free counter. Consumed usages are flushed back
+ * periodically, unused ones are released on shutdown and reservations left by a crashed process are reconciled on
+ * startup.
+ * <p>
+ * Every block is also recorded as a {@link PromoCodeReservation} of this instance ({@code promo-codes.hot.instance-id}),
+ * and startup only reconciles the reservations of the same instance id, so instances sharing the database never
+ * consume each other's live blocks. Instance ids must therefore be unique and survive a restart; reservations of an
+ * instance which never comes back under its id stay reserved.
+ * <p>
+ * A usage taken within a transaction is put back into the counter when that transaction rolls back, so a failed
+ * purchase does not use up the code.
+ */
+@Slf4j
+@Component
+public class HotPromoCodeCounters {
+
+    private static final String METRIC_PREFIX = "promo.codes.hot.";
+
+    private final PromoCodeRepository promoCodeRepository;
+    private final PromoCodeReservationRepository reservationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, HotPromoCode> hotPromoCodes;
+    private final int blockSize;
+    private final Duration refillTimeout;
+    private final String instanceId;
+
+    public HotPromoCodeCounters(
+            PromoCodeRepository promoCodeRepository,
+            PromoCodeReservationRepository reservationRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${promo-codes.hot.codes:}") Set<String> codes,
+            @Value("${promo-codes.hot.block-size:100}") int blockSize,
+            @Value("${promo-codes.hot.stripes:8}") int stripes,
+            @Value("${promo-codes.hot.refill-timeout:200ms}") Duration refillTimeout,
+            @Value("${promo-codes.hot.instance-id:${HOSTNAME:local}}") String instanceId
+    ) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Hot promo code block size must be positive, got " + blockSize);
+        }
+        this.promoCodeRepository = promoCodeRepository;
+        this.reservationRepository = reservationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = blockSize;
+        this.refillTimeout = refillTimeout;
+        this.instanceId = instanceId;
+        int stripeCount = Integer.highestOneBit(Math.max(1, stripes));
+        this.hotPromoCodes = codes.stream()
+                .collect(Collectors.toUnmodifiableMap(Function.identity(), code -> new HotPromoCode(code, stripeCount, meterRegistry)));
+    }
+
+    public boolean isHot(String code) {
+        return hotPromoCodes.containsKey(code);
+    }
+
+    /**
+     * Takes one usage of a hot promo code, reserving a new block from the database when the local one is used up.
+     *
+     * @return true if the usage was granted, false if the code has no usages left
+     * @throws ResponseStatusException with 503 if the block could not be refilled in time, the code may still have
+     *                                 usages left
+     */
+    public boolean tryAcquire(String code) {
+        HotPromoCode hotPromoCode = hotPromoCodes.get(code);
+        if (hotPromoCode == null) {
+            throw new IllegalArgumentException("Promo code " + code + " is not configured as hot");
+        }
+        while (!hotPromoCode.tryTake()) {
+            if (!refill(hotPromoCode)) {
+                return false;
+            }
+        }
+        hotPromoCode.consumed.increment();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        hotPromoCode.giveBack();
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    private boolean refill(HotPromoCode hotPromoCode) {
+        // Waiting is bounded: the refill needs its own connection, and callers block here while holding one.
+        try {
+            if (!hotPromoCode.refillLock.tryLock(refillTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                hotPromoCode.refillTimeouts.increment();
+                throw unavailable(hotPromoCode, "Refill of hot promo code " + hotPromoCode.code + " timed out");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw unavailable(hotPromoCode, "Interrupted while waiting for the refill of hot promo code " + hotPromoCode.code);
+        }
+        try {
+            if (hotPromoCode.remaining() > 0) {
+                return true;
+            }
+            Integer reserved = transactionTemplate.execute(status -> reserveBlock(hotPromoCode.code));
+            if (reserved == null || reserved == 0) {
+                return false;
+            }
+            hotPromoCode.distribute(reserved);
+            hotPromoCode.refills.increment();
+            hotPromoCode.refillSize.record(reserved);
+            return true;
+        } finally {
+            hotPromoCode.refillLock.unlock();
+        }
+    }
+
+    private static ResponseStatusException unavailable(HotPromoCode hotPromoCode, String detail) {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Promo code is temporarily unavailable, try again later", new Exception(detail));
+    }
+
+    private int reserveBlock(String code) {
+        Date today = Date.valueOf(LocalDate.now());
+        while (true) {
+            int block = Math.min(blockSize, promoCodeRepository.findRemainingUsages(code, today).orElse(0));
+            if (block <= 0) {
+                return 0;
+            }
+            if (promoCodeRepository.reserve(code, block, today) == 1) {
+                if (reservationRepository.add(code, instanceId, block) == 0) {
+                    reservationRepository.save(new PromoCodeReservation(null, code, instanceId, block));
+                }
+                return block;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${promo-codes.hot.flush-interval-ms:1000}")
+    public void flush() {
+        hotPromoCodes.values().forEach(hotPromoCode -> {
+            long consumed = hotPromoCode.consumed.sumThenReset();
+            if (consumed == 0) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    promoCodeRepository.confirmReserved(hotPromoCode.code, (int) consumed);
+                    reservationRepository.add(hotPromoCode.code, instanceId, (int) -consumed);
+                });
+            } catch (RuntimeException e) {
+                // kept for the next flush, the other codes are still flushed
+                hotPromoCode.consumed.add(consumed);
+                log.error("Cannot flush {} consumed usages of hot promo code {}", consumed, hotPromoCode.code, e);
+            }
+        });
+    }
+
+    @PostConstruct
+    public void reconcile() {
+        Integer reconciled = transactionTemplate.execute(status -> {
+            int codes = promoCodeRepository.reconcileReserved(instanceId);
+            reservationRepository.deleteByOwner(instanceId);
+            return codes;
+        });
+        if (reconciled != null && reconciled > 0) {
+            log.warn("Counted unflushed reservations of instance {} for {} promo codes as used", instanceId, reconciled);
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        flush();
+        hotPromoCodes.values().forEach(hotPromoCode -> {
+            int unused = hotPromoCode.drain();
+            if (unused == 0) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    promoCodeRepository.releaseReserved(hotPromoCode.code, unused);
+                    reservationRepository.add(hotPromoCode.code, instanceId, -unused);
+                });
+            } catch (RuntimeException e) {
+                log.error("Cannot release {} unused usages of hot promo code {}, they are reconciled on the next startup", unused, hotPromoCode.code, e);
+            }
+        });
+    }
+
+    private static final class HotPromoCode {
+
+        // Each stripe sits on its own cache line, 16 ints apart, so threads on different stripes don't false-share.
+        private static final int PADDING = 16;
+
+        private final String code;
+        private final AtomicIntegerArray stripes;
+        private final int mask;
+        private final LongAdder consumed = new LongAdder();
+        private final ReentrantLock refillLock = new ReentrantLock();
+        private final Counter refills;
+        private final DistributionSummary refillSize;
+        private final Counter refillTimeouts;
+        private final Counter contention;
+
+        private HotPromoCode(String code, int stripeCount, MeterRegistry meterRegistry) {
+            this.code = code;
+            this.stripes = new AtomicIntegerArray(stripeCount * PADDING);
+            this.mask = stripeCount - 1;
+            this.refills = meterRegistry.counter(METRIC_PREFIX + "refills", "code", code);
+            this.refillSize = meterRegistry.summary(METRIC_PREFIX + "refill.size", "code", code);
+            this.refillTimeouts = meterRegistry.counter(METRIC_PREFIX + "refill.timeouts", "code", code);
+            this.contention = meterRegistry.counter(METRIC_PREFIX + "contention", "code", code);
+            Gauge.builder(METRIC_PREFIX + "remaining", this, HotPromoCode::remaining)
+                    .tag("code", code)
+                    .register(meterRegistry);
+        }
+
+        private boolean tryTake() {
+            int start = (int) mix(Thread.currentThread().threadId());
+            for (int i = 0; i <= mask; i++) {
+                int index = ((start + i) & mask) * PADDING;
+                int current = stripes.get(index);
+                while (current > 0) {
+                    if (stripes.compareAndSet(index, current, current - 1)) {
+                        return true;
+                    }
+                    contention.increment();
+                    current = stripes.get(index);
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns a usage taken by a rolled back transaction. If it was flushed meanwhile, the next flush moves it back
+         * from the usages to the reserved usages.
+         */
+        private void giveBack() {
+            stripes.incrementAndGet(((int) mix(Thread.currentThread().threadId()) & mask) * PADDING);
+            consumed.decrement();
+        }
+
+        private void distribute(int amount) {
+            int stripeCount = mask + 1;
+            for (int i = 0; i < stripeCount; i++) {
+                int share = amount / stripeCount + (i < amount % stripeCount ? 1 : 0);
+                if (share > 0) {
+                    stripes.addAndGet(i * PADDING, share);
+                }
+            }
+        }
+
+        private int drain() {
+            int drained = 0;
+            for (int i = 0; i <= mask; i++) {
+                drained += stripes.getAndSet(i * PADDING, 0);
+            }
+            return drained;
+        }
+
+        private int remaining() {
+            int remaining = 0;
+            for (int i = 0; i <= mask; i++) {
+                remaining += stripes.get(i * PADDING);
+            }
+            return remaining;
+        }
+
+        private static long mix(long value) {
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdL;
+            return value ^ value >>> 33;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.test.sii.service;
+
+import com.test.sii.model.IdSequences;
+import com.test.sii.repository.IdSequenceRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Migration of existing ids to the id sequences: on startup every sequence is restarted after the highest id of its
+ * table, so tables filled while ids were identity columns keep working. A no-op once the sequences are ahead.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class IdSequenceAlignment {
+
+    private static final Map<String, String> TABLES = Map.of(
+            IdSequences.CURRENCIES, "currencies",
+            IdSequences.PRODUCTS, "products",
+            IdSequences.PROMO_CODES, "promo_codes",
+            IdSequences.PURCHASES, "purchases"
+    );
+
+    private final IdSequenceRepository idSequenceRepository;
+    private final boolean enabled;
+
+    public IdSequenceAlignment(
+            IdSequenceRepository idSequenceRepository,
+            @Value("${ids.sequences.restart-after-existing-ids:true}") boolean enabled
+    ) {
+        this.idSequenceRepository = idSequenceRepository;
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    public void align() {
+        if (!enabled) {
+            return;
+        }
+        TABLES.forEach((sequence, table) -> {
+            if (idSequenceRepository.restartAfterExistingIds(sequence, table)) {
+                log.info("Restarted id sequence {} after the existing ids of {}", sequence, table);
+            }
+        });
+    }
+}
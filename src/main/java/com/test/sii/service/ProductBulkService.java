@@ -0,0 +1,243 @@
+package com.test.sii.service;
+
+import com.test.sii.dto.ProductBulkItemResponse;
+import com.test.sii.dto.ProductBulkRequest;
+import com.test.sii.dto.ProductBulkResponse;
+import com.test.sii.dto.ProductBulkStatus;
+import com.test.sii.dto.ProductBulkUpdateRequest;
+import com.test.sii.dto.ProductCreateRequest;
+import com.test.sii.dto.ProductUpdateRequest;
+import com.test.sii.model.Currency;
+import com.test.sii.model.Product;
+import com.test.sii.model.ProductSavedEvent;
+import com.test.sii.model.ProductSnapshot;
+import com.test.sii.repository.ProductBatchRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Creates and updates products in bulk. Items are processed in batches of {@code products.bulk.batch-size}, each read
+ * with one query per table and written as a JDBC batch in its own transaction, so a failing item never fails the others
+ * and a large request does not hold locks until its end.
+ * <p>
+ * Currencies are resolved once per request. Updates carrying a version are only applied to that version, others to
+ * the version read by their batch; either way an update committed meanwhile is reported as a version conflict.
+ * Saved products replace their {@link ProductCache} entries once their batch commits.
+ */
+@Service
+public class ProductBulkService {
+
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+
+    private final ProductBatchRepository productBatchRepository;
+    private final CurrencyRegistry currencyRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final int batchSize;
+    private final int maxItems;
+
+    public ProductBulkService(
+            ProductBatchRepository productBatchRepository,
+            CurrencyRegistry currencyRegistry,
+            ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager,
+            Validator validator,
+            @Value("${products.bulk.batch-size:1000}") int batchSize,
+            @Value("${products.bulk.max-items:100000}") int maxItems
+    ) {
+        this.productBatchRepository = productBatchRepository;
+        this.currencyRegistry = currencyRegistry;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * Names and ids claimed by earlier items of the request, and the currencies resolved so far.
+     */
+    private record RequestState(Set<String> names, Set<Integer> ids, Map<String, Currency> currencies) {}
+
+    public ProductBulkResponse bulk(ProductBulkRequest request) {
+        List<ProductCreateRequest> creates = Objects.requireNonNullElse(request.create(), List.of());
+        List<ProductBulkUpdateRequest> updates = Objects.requireNonNullElse(request.update(), List.of());
+        if (creates.size() + updates.size() > maxItems) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many products", new Exception("At most " + maxItems + " products can be created or updated at once, got " + (creates.size() + updates.size())));
+        }
+
+        RequestState state = new RequestState(new HashSet<>(), new HashSet<>(), new HashMap<>());
+        ProductBulkItemResponse[] created = new ProductBulkItemResponse[creates.size()];
+        ProductBulkItemResponse[] updated = new ProductBulkItemResponse[updates.size()];
+
+        for (int from = 0; from < creates.size(); from += batchSize) {
+            createBatch(creates, from, Math.min(from + batchSize, creates.size()), created, state);
+        }
+        for (int from = 0; from < updates.size(); from += batchSize) {
+            updateBatch(updates, from, Math.min(from + batchSize, updates.size()), updated, state);
+        }
+
+        return new ProductBulkResponse(
+                count(created, ProductBulkStatus.CREATED),
+                count(updated, ProductBulkStatus.UPDATED),
+                created.length + updated.length - count(created, ProductBulkStatus.CREATED) - count(updated, ProductBulkStatus.UPDATED),
+                List.of(created),
+                List.of(updated)
+        );
+    }
+
+    private void createBatch(List<ProductCreateRequest> requests, int from, int to, ProductBulkItemResponse[] results, RequestState state) {
+        Map<Integer, ProductCreateRequest> batch = new LinkedHashMap<>();
+        for (int i = from; i < to; i++) {
+            ProductCreateRequest request = requests.get(i);
+            String violations = request != null ? violations(request) : "Product must not be null";
+            if (violations != null) {
+                results[i] = invalid(violations);
+            } else if (!state.names().add(request.name())) {
+                results[i] = invalid("Duplicate product name");
+            } else {
+                state.currencies().computeIfAbsent(request.currency(), currencyRegistry::getOrCreate);
+                batch.put(i, request);
+            }
+        }
+        inTransaction(() -> insert(batch, results, state));
+    }
+
+    private void insert(Map<Integer, ProductCreateRequest> batch, ProductBulkItemResponse[] results, RequestState state) {
+        Map<String, Integer> existing = productBatchRepository.findIdsByName(batch.values().stream()
+                .map(ProductCreateRequest::name)
+                .toList());
+
+        Map<Integer, Product> products = new LinkedHashMap<>();
+        batch.forEach((index, request) -> {
+            if (existing.containsKey(request.name())) {
+                results[index] = invalid("Product name already exists");
+            } else {
+                products.put(index, new Product(null, request.name(), request.description(), request.price(), state.currencies().get(request.currency())));
+            }
+        });
+
+        productBatchRepository.insert(List.copyOf(products.values()));
+
+        products.forEach((index, product) -> {
+            results[index] = new ProductBulkItemResponse(product.getId(), ProductBulkStatus.CREATED, product.getVersion(), null);
+            eventPublisher.publishEvent(new ProductSavedEvent(product));
+        });
+    }
+
+    private void updateBatch(List<ProductBulkUpdateRequest> requests, int from, int to, ProductBulkItemResponse[] results, RequestState state) {
+        Map<Integer, ProductBulkUpdateRequest> batch = new LinkedHashMap<>();
+        for (int i = from; i < to; i++) {
+            ProductBulkUpdateRequest request = requests.get(i);
+            if (request == null || request.id() == null) {
+                results[i] = invalid("Product id must not be null");
+            } else if (!state.ids().add(request.id())) {
+                results[i] = new ProductBulkItemResponse(request.id(), ProductBulkStatus.VALIDATION_ERROR, null, "Duplicate product id");
+            } else if (request.name() != null && !state.names().add(request.name())) {
+                results[i] = new ProductBulkItemResponse(request.id(), ProductBulkStatus.VALIDATION_ERROR, null, "Duplicate product name");
+            } else {
+                if (request.currency() != null && !request.currency().isEmpty()) {
+                    state.currencies().computeIfAbsent(request.currency(), currencyRegistry::getOrCreate);
+                }
+                batch.put(i, request);
+            }
+        }
+        inTransaction(() -> update(batch, results, state));
+    }
+
+    private void update(Map<Integer, ProductBulkUpdateRequest> batch, ProductBulkItemResponse[] results, RequestState state) {
+        Map<Integer, ProductSnapshot> current = productBatchRepository.findAllById(batch.values().stream()
+                .map(ProductBulkUpdateRequest::id)
+                .toList());
+        Map<String, Integer> existing = productBatchRepository.findIdsByName(batch.values().stream()
+                .map(ProductBulkUpdateRequest::name)
+                .filter(Objects::nonNull)
+                .toList());
+
+        Map<Integer, Product> products = new LinkedHashMap<>();
+        batch.forEach((index, request) -> {
+            ProductSnapshot snapshot = current.get(request.id());
+            if (snapshot == null) {
+                results[index] = new ProductBulkItemResponse(request.id(), ProductBulkStatus.NOT_FOUND, null, "Product with id " + request.id() + " was not found");
+            } else if (request.version() != null && request.version() != snapshot.version()) {
+                results[index] = new ProductBulkItemResponse(request.id(), ProductBulkStatus.VERSION_CONFLICT, snapshot.version(), "Product is at version " + snapshot.version());
+            } else if (request.name() != null && existing.containsKey(request.name()) && !existing.get(request.name()).equals(request.id())) {
+                results[index] = new ProductBulkItemResponse(request.id(), ProductBulkStatus.VALIDATION_ERROR, snapshot.version(), "Product name already exists");
+            } else {
+                Product product = snapshot.toProduct();
+                // a missing currency keeps the current one, see Product.updateFieldsByRequest
+                product.updateFieldsByRequest(new ProductUpdateRequest(
+                        request.name(),
+                        request.description(),
+                        request.price(),
+                        Objects.requireNonNullElseGet(state.currencies().get(request.currency()), () -> new Currency(null, request.currency()))
+                ));
+                products.put(index, product);
+            }
+        });
+
+        List<Integer> indexes = List.copyOf(products.keySet());
+        List<Product> changed = List.copyOf(products.values());
+        boolean[] updated = productBatchRepository.update(changed);
+
+        for (int i = 0; i < changed.size(); i++) {
+            Product product = changed.get(i);
+            if (updated[i]) {
+                results[indexes.get(i)] = new ProductBulkItemResponse(product.getId(), ProductBulkStatus.UPDATED, product.getVersion(), null);
+                eventPublisher.publishEvent(new ProductSavedEvent(product));
+            } else {
+                results[indexes.get(i)] = new ProductBulkItemResponse(product.getId(), ProductBulkStatus.VERSION_CONFLICT, null, "Product was updated concurrently");
+            }
+        }
+    }
+
+    /**
+     * A product of the same name inserted concurrently fails the whole batch, the retry sees the name as taken.
+     */
+    private void inTransaction(Runnable batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> batch.run());
+                return;
+            } catch (DuplicateKeyException e) {
+                if (attempt == MAX_BATCH_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private String violations(ProductCreateRequest request) {
+        Set<ConstraintViolation<ProductCreateRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private static ProductBulkItemResponse invalid(String message) {
+        return new ProductBulkItemResponse(null, ProductBulkStatus.VALIDATION_ERROR, null, message);
+    }
+
+    private static int count(ProductBulkItemResponse[] results, ProductBulkStatus status) {
+        return (int) Stream.of(results)
+                .filter(result -> result.status() == status)
+                .count();
+    }
+}
@@ -0,0 +1,75 @@
+package com.test.sii.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.test.sii.model.ProductSavedEvent;
+import com.test.sii.model.ProductSnapshot;
+import com.test.sii.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+/**
+ * Bounded read-through cache of {@link ProductSnapshot}s for the discount quote and purchase paths. Entries are evicted
+ * by W-TinyLFU once the maximum size is reached.
+ * <p>
+ * A saved product replaces its entry once the transaction commits. Entries are only ever replaced by a newer version,
+ * so a read of the previous version which finishes after the commit cannot bring it back.
+ */
+@Component
+public class ProductCache {
+
+    private final ProductRepository productRepository;
+    private final Cache<Integer, ProductSnapshot> cache;
+
+    public ProductCache(
+            ProductRepository productRepository,
+            MeterRegistry meterRegistry,
+            @Value("${products.cache.maximum-size:1000000}") long maximumSize
+    ) {
+        this.productRepository = productRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "products");
+    }
+
+    public Optional<ProductSnapshot> get(Integer id) {
+        return Optional.ofNullable(cache.get(id, key -> productRepository.findById(key)
+                .map(ProductSnapshot::of)
+                .orElse(null)));
+    }
+
+    /**
+     * Returns the cached products and loads the missing ones with a single query. Unknown ids are left out.
+     */
+    public Map<Integer, ProductSnapshot> getAll(Collection<Integer> ids) {
+        Map<Integer, ProductSnapshot> products = new HashMap<>(cache.getAllPresent(ids));
+        if (products.size() < ids.size()) {
+            Set<Integer> missing = new HashSet<>(ids);
+            missing.removeAll(products.keySet());
+            productRepository.findAllWithCurrencyByIdIn(missing).stream()
+                    .map(ProductSnapshot::of)
+                    .forEach(product -> products.put(product.id(), put(product)));
+        }
+        return products;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductSaved(ProductSavedEvent event) {
+        put(ProductSnapshot.of(event.product()));
+    }
+
+    private ProductSnapshot put(ProductSnapshot product) {
+        return cache.asMap().merge(product.id(), product, (cached, loaded) -> cached.isNewerThan(loaded) ? cached : loaded);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
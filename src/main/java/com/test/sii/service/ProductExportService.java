@@ -0,0 +1,54 @@
+package com.test.sii.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.sii.dto.ProductResponse;
+import com.test.sii.model.Product;
+import com.test.sii.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes the whole product catalog as NDJSON, one {@link ProductResponse} per line. Products are read through a
+ * forward-only stream and detached once written, so memory use does not grow with the catalog.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductExportService {
+
+    private static final int FLUSH_EVERY = 1000;
+
+    private final ProductRepository productRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public void exportProducts(OutputStream outputStream) throws IOException {
+        try (Stream<Product> products = productRepository.streamAll();
+             JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+            int written = 0;
+            for (Iterator<Product> iterator = products.iterator(); iterator.hasNext(); ) {
+                Product product = iterator.next();
+                generator.writeObject(new ProductResponse(
+                        product.getId(),
+                        product.getName(),
+                        product.getDescription(),
+                        product.getPrice(),
+                        product.getCurrency().getCurrency()
+                ));
+                generator.writeRaw('\n');
+                entityManager.detach(product);
+                if (++written % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+        }
+    }
+}
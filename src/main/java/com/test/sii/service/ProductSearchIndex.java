@@ -0,0 +1,102 @@
+package com.test.sii.service;
+
+import com.test.sii.model.Product;
+import com.test.sii.model.ProductSavedEvent;
+import com.test.sii.model.ProductText;
+import com.test.sii.repository.ProductRepository;
+import com.test.sii.util.InvertedIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * In-memory {@link InvertedIndex} of product names and descriptions, so that searches never scan the products table.
+ * It is built at startup from a stream of all products and updated with every saved product once its transaction
+ * commits. Products saved while the index is rebuilt go into both indexes; as in {@link ProductCache} an older version
+ * of a product never replaces a newer one.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int minPrefixLength;
+    private final Timer searches;
+
+    private volatile InvertedIndex current;
+    private volatile InvertedIndex next;
+
+    public ProductSearchIndex(
+            ProductRepository productRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${products.search.min-prefix-length:3}") int minPrefixLength
+    ) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.minPrefixLength = minPrefixLength;
+        this.searches = Timer.builder("products.search")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.current = new InvertedIndex(minPrefixLength);
+        Gauge.builder("products.search.documents", this, index -> index.current.size())
+                .register(meterRegistry);
+    }
+
+    /**
+     * @see InvertedIndex#search
+     */
+    public InvertedIndex.Hits search(List<String> words, int offset, int limit) {
+        return searches.record(() -> current.search(words, offset, limit));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductSaved(ProductSavedEvent event) {
+        Product product = event.product();
+        long version = Objects.requireNonNullElse(product.getVersion(), 0L);
+        InvertedIndex rebuilding = next;
+        if (rebuilding != null) {
+            rebuilding.put(product.getId(), version, product.getName(), product.getDescription());
+        }
+        current.put(product.getId(), version, product.getName(), product.getDescription());
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * Replaces the index with one built from the products currently in the database.
+     *
+     * @return number of indexed products
+     */
+    public synchronized int rebuild() {
+        InvertedIndex rebuilt = new InvertedIndex(minPrefixLength);
+        next = rebuilt;
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<ProductText> products = productRepository.streamTexts()) {
+                products.forEach(product -> rebuilt.put(
+                        product.id(),
+                        Objects.requireNonNullElse(product.version(), 0L),
+                        product.name(),
+                        product.description()
+                ));
+            }
+        });
+        current = rebuilt;
+        next = null;
+        return rebuilt.size();
+    }
+}
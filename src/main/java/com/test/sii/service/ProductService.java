@@ -1,17 +1,26 @@
 package com.test.sii.service;
 
+import com.test.sii.dto.CursorPageResponse;
+import com.test.sii.dto.ETaggedResponse;
 import com.test.sii.dto.ProductCreateRequest;
 import com.test.sii.dto.ProductRequest;
 import com.test.sii.dto.ProductResponse;
+import com.test.sii.dto.ProductSearchResponse;
 import com.test.sii.dto.ProductUpdateRequest;
 import com.test.sii.model.Currency;
 import com.test.sii.model.Product;
-import com.test.sii.repository.CurrencyRepository;
+import com.test.sii.model.ProductSnapshot;
+import com.test.sii.model.ProductVersion;
 import com.test.sii.repository.ProductRepository;
-import jakarta.persistence.OptimisticLockException;
+import com.test.sii.util.CursorPagination;
+import com.test.sii.util.ETags;
+import com.test.sii.util.InvertedIndex;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,17 +28,63 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 @Validated
 public class ProductService {
 
+    private static final int MAX_SEARCH_WORDS = 8;
+
     private final ProductRepository productRepository;
-    private final CurrencyRepository currencyRepository;
+    private final CurrencyRegistry currencyRegistry;
+    private final CursorPagination cursorPagination;
+    private final ProductCache productCache;
+    private final ProductSearchIndex productSearchIndex;
+
+    /**
+     * Returns products by page number (offset pagination) or, without a page number, the first page after the cursor
+     * (keyset pagination). Pages of both kinds are capped by {@link CursorPagination}, keyset pages also when no size is
+     * given. Rows are selected straight into responses, no entities are loaded.
+     */
+    public CursorPageResponse<ProductResponse> getAllProducts(Integer page, Integer size, String cursor) {
+        validatePage(page, size, cursor);
+
+        if (page != null) {
+            return new CursorPageResponse<>(
+                    productRepository.findResponses(PageRequest.of(page - 1, cursorPagination.pageSize(size), Sort.by("id"))),
+                    null
+            );
+        }
+
+        int pageSize = cursorPagination.pageSize(size);
+        List<ProductResponse> result = productRepository.findResponsesByIdGreaterThan(cursorPagination.afterId(cursor), Limit.of(pageSize + 1));
+
+        return cursorPagination.page(result, pageSize, ProductResponse::id, Function.identity());
+    }
 
+    /**
+     * Tag of the page {@link #getAllProducts} returns for the same parameters, computed from the ids and versions of
+     * its products only. Keyset pages include the row which tells whether there is a next page.
+     */
+    public String getAllProductsETag(Integer page, Integer size, String cursor) {
+        validatePage(page, size, cursor);
+
+        List<ProductVersion> versions = page != null
+                ? productRepository.findVersionsBy(PageRequest.of(page - 1, cursorPagination.pageSize(size), Sort.by("id")))
+                : productRepository.findVersionsByIdGreaterThanOrderById(cursorPagination.afterId(cursor), Limit.of(cursorPagination.pageSize(size) + 1));
+
+        return ETags.of(versions, ProductVersion::id, product -> Objects.requireNonNullElse(product.version(), 0L));
+    }
+
+    private void validatePage(Integer page, Integer size, String cursor) {
+        if (page != null && cursor != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page number and cursor cannot be combined", new Exception("Use either page number or cursor"));
+        }
 
-    public List<ProductResponse> getAllProducts(Integer page, Integer size) {
         if (page != null && size == null) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be specified", new Exception("Page size cannot be null when providing page number"));
         }
@@ -37,26 +92,55 @@ public class ProductService {
         if (page != null && page <= 0) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page number must not be less than zero", new Exception("Page number cannot be " + page));
         }
+    }
 
-        List<Product> result = page != null ? productRepository.findAll(PageRequest.of(page - 1, size)).getContent() : productRepository.findAll();
+    /**
+     * Served from the {@link ProductCache}, tagged with the version of the product.
+     */
+    public ETaggedResponse<ProductResponse> getProductDetails(Integer id) {
+        ProductSnapshot product = productCache.get(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found", new Exception("Product with id " + id + " was not found")));
 
-        return result.stream()
-                .map(product -> new ProductResponse(
-                        product.getId(),
-                        product.getName(),
-                        product.getDescription(),
-                        product.getPrice(),
-                        product.getCurrency().getCurrency()
-                        ))
-                .toList();
+        return new ETaggedResponse<>(toResponse(product), ETags.of(product.version()));
     }
 
-    private Currency getCurrency(String currency) {
-        Currency curr = currencyRepository.findByCurrency(currency).orElse(null);
-        if (curr == null) {
-            curr = currencyRepository.save(new Currency(null, currency));
+    /**
+     * Page of the products whose name or description has a word starting with each word of the query, best matches
+     * first, see {@link InvertedIndex}. Pages are numbered from 1 and capped like listing pages; the hits are looked up
+     * in the {@link ProductCache}.
+     */
+    public ProductSearchResponse searchProducts(String query, Integer page, Integer size) {
+        List<String> words = InvertedIndex.tokenize(query).stream()
+                .distinct()
+                .toList();
+        if (words.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search query must not be blank", new Exception("Search query must contain a letter or digit"));
         }
-        return curr;
+        if (words.size() > MAX_SEARCH_WORDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search query is too long", new Exception("Search query cannot have more than " + MAX_SEARCH_WORDS + " words, got " + words.size()));
+        }
+        if (page != null && page <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page number must not be less than zero", new Exception("Page number cannot be " + page));
+        }
+
+        int pageSize = cursorPagination.pageSize(size);
+        long offset = (long) (Objects.requireNonNullElse(page, 1) - 1) * pageSize;
+        InvertedIndex.Hits hits = productSearchIndex.search(words, (int) Math.min(offset, Integer.MAX_VALUE), pageSize);
+
+        Map<Integer, ProductSnapshot> products = productCache.getAll(hits.ids());
+        return new ProductSearchResponse(
+                hits.ids().stream()
+                        .map(products::get)
+                        // deleted since it was indexed
+                        .filter(Objects::nonNull)
+                        .map(ProductService::toResponse)
+                        .toList(),
+                hits.total()
+        );
+    }
+
+    private static ProductResponse toResponse(ProductSnapshot product) {
+        return new ProductResponse(product.id(), product.name(), product.description(), product.price(), product.currency());
     }
 
     private Product getProduct(Integer id) {
@@ -72,11 +156,11 @@ public class ProductService {
         product.setDescription(productRequest.description());
         product.setPrice(productRequest.price());
 
-        Currency currency = getCurrency(productRequest.currency());
+        Currency currency = currencyRegistry.getOrCreate(productRequest.currency());
         product.setCurrency(currency);
 
         try {
-            product = productRepository.save(product);
+            product = productRepository.saveAndFlush(product);
         }
         catch (Exception e) {
             e.printStackTrace();
@@ -85,12 +169,23 @@ public class ProductService {
         return new ProductResponse(product.getId(), product.getName(), product.getDescription(), product.getPrice(), product.getCurrency().getCurrency());
     }
 
+    /**
+     * Updates the product if it is still at the version the {@code If-Match} header names (any version without the
+     * header). An update committed meanwhile fails the version check of the flush, also with precondition failed.
+     */
     @Transactional
-    public ProductResponse updateProduct(Integer id, ProductRequest productRequest) {
+    public ETaggedResponse<ProductResponse> updateProduct(Integer id, ProductRequest productRequest, String ifMatch) {
 
         Product product = getProduct(id);
 
-        Currency currency = getCurrency(productRequest.currency());
+        if (!ETags.matches(ifMatch, ETags.of(version(product)))) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Product was modified", new Exception("Product with id " + id + " is at version " + version(product) + ", not " + ifMatch));
+        }
+
+        // a missing currency keeps the current one, see Product.updateFieldsByRequest
+        Currency currency = productRequest.currency() != null && !productRequest.currency().isEmpty()
+                ? currencyRegistry.getOrCreate(productRequest.currency())
+                : new Currency(null, productRequest.currency());
 
         ProductUpdateRequest productUpdateRequest = new ProductUpdateRequest(
                 productRequest.name(),
@@ -102,20 +197,26 @@ public class ProductService {
         product.updateFieldsByRequest(productUpdateRequest);
 
         try {
-            product = productRepository.save(product);
+            product = productRepository.saveAndFlush(product);
         }
-        catch (OptimisticLockException e) {
-            e.printStackTrace();
-            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+        catch (OptimisticLockingFailureException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Product was modified", new Exception("Product with id " + id + " was updated concurrently"));
         }
 
-        return new ProductResponse(
-                product.getId(),
-                product.getName(),
-                product.getDescription(),
-                product.getPrice(),
-                product.getCurrency().getCurrency()
+        return new ETaggedResponse<>(
+                new ProductResponse(
+                        product.getId(),
+                        product.getName(),
+                        product.getDescription(),
+                        product.getPrice(),
+                        product.getCurrency().getCurrency()
+                ),
+                ETags.of(version(product))
         );
     }
 
+    private static long version(Product product) {
+        return Objects.requireNonNullElse(product.getVersion(), 0L);
+    }
+
 }
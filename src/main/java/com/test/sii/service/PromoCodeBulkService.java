@@ -0,0 +1,346 @@
+package com.test.sii.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.test.sii.dto.DiscountMethod;
+import com.test.sii.dto.PromoCodeGenerationRequest;
+import com.test.sii.dto.PromoCodeImportFormat;
+import com.test.sii.dto.PromoCodeJobResponse;
+import com.test.sii.dto.PromoCodeRequest;
+import com.test.sii.model.Currency;
+import com.test.sii.repository.PromoCodeBatchRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * Generates and imports promo codes in bulk. Codes are inserted in JDBC batches of {@code promo-codes.bulk.batch-size},
+ * progress is tracked as a {@link PromoCodeJob} which can be polled until it is evicted
+ * ({@code promo-codes.bulk.job-retention} after it finished).
+ * <p>
+ * Generated codes are random strings over the requested alphabet; codes which are already taken are counted as
+ * collisions and replaced by new ones in the next batch. Imported codes are read from the request body line by line,
+ * rows which fail validation or whose code is taken are reported as errors.
+ */
+@Slf4j
+@Service
+public class PromoCodeBulkService {
+
+    // The code space must be much larger than the requested count, otherwise collisions dominate the job.
+    private static final int MIN_CODE_SPACE_RATIO = 10;
+    private static final int MAX_BATCHES_WITHOUT_PROGRESS = 10;
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+    private static final List<String> CSV_COLUMNS = List.of("code", "discountMethod", "expirationDate", "maxUsages", "amount", "currency");
+
+    private final PromoCodeBatchRepository promoCodeBatchRepository;
+    private final CurrencyRegistry currencyRegistry;
+    private final PromoCodeFilter promoCodeFilter;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor executor;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader promoCodeRequestReader;
+    private final int batchSize;
+    private final int maxReportedErrors;
+    private final Duration jobRetention;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<UUID, PromoCodeJob> jobs = new ConcurrentHashMap<>();
+
+    public PromoCodeBulkService(
+            PromoCodeBatchRepository promoCodeBatchRepository,
+            CurrencyRegistry currencyRegistry,
+            PromoCodeFilter promoCodeFilter,
+            PlatformTransactionManager transactionManager,
+            @Qualifier("applicationTaskExecutor") Executor executor,
+            Validator validator,
+            ObjectMapper objectMapper,
+            @Value("${promo-codes.bulk.batch-size:1000}") int batchSize,
+            @Value("${promo-codes.bulk.max-reported-errors:1000}") int maxReportedErrors,
+            @Value("${promo-codes.bulk.job-retention:1h}") Duration jobRetention
+    ) {
+        this.promoCodeBatchRepository = promoCodeBatchRepository;
+        this.currencyRegistry = currencyRegistry;
+        this.promoCodeFilter = promoCodeFilter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = executor;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.promoCodeRequestReader = objectMapper.readerFor(PromoCodeRequest.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+        this.jobRetention = jobRetention;
+    }
+
+    private record ImportRow(long line, PromoCodeBatchRepository.Row row) {}
+
+    private PromoCodeJob startJob(long requested) {
+        Instant evictBefore = Instant.now().minus(jobRetention);
+        jobs.values().removeIf(job -> job.finishedBefore(evictBefore));
+
+        PromoCodeJob job = new PromoCodeJob(requested, maxReportedErrors);
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    public PromoCodeJobResponse getJob(UUID id) {
+        PromoCodeJob job = jobs.get(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Job not found", new Exception("Promo code job " + id + " was not found"));
+        }
+        return job.toResponse();
+    }
+
+    public PromoCodeJobResponse generatePromoCodes(PromoCodeGenerationRequest request) {
+        BigInteger codeSpace = BigInteger.valueOf(request.alphabet().length()).pow(request.codeLength());
+        if (codeSpace.compareTo(BigInteger.valueOf((long) request.count() * MIN_CODE_SPACE_RATIO)) < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Code length or alphabet too small", new Exception("Cannot generate " + request.count() + " unique codes of length " + request.codeLength() + " from " + request.alphabet().length() + " characters"));
+        }
+
+        Currency currency = currencyRegistry.getOrCreate(request.currency());
+
+        PromoCodeJob job = startJob(request.count());
+        executor.execute(() -> generate(job, request, currency.getId()));
+
+        return job.toResponse();
+    }
+
+    private void generate(PromoCodeJob job, PromoCodeGenerationRequest request, Integer currencyId) {
+        char[] alphabet = request.alphabet().toCharArray();
+        try {
+            int batchesWithoutProgress = 0;
+            while (job.getInserted().sum() < request.count()) {
+                int size = (int) Math.min(batchSize, request.count() - job.getInserted().sum());
+                List<PromoCodeBatchRepository.Row> rows = generateCodes(size, alphabet, request.codeLength(), job).stream()
+                        .map(code -> new PromoCodeBatchRepository.Row(
+                                code,
+                                request.discountMethod(),
+                                request.expirationDate(),
+                                request.maxUsages(),
+                                request.amount(),
+                                currencyId
+                        ))
+                        .toList();
+
+                List<String> inserted;
+                try {
+                    inserted = transactionTemplate.execute(status -> promoCodeBatchRepository.insertAbsent(rows));
+                } catch (DuplicateKeyException e) {
+                    // a code was inserted concurrently by someone else, the whole batch is retried with new codes
+                    inserted = List.of();
+                }
+
+                inserted.forEach(promoCodeFilter::add);
+                job.getInserted().add(inserted.size());
+                job.getCollisions().add(rows.size() - inserted.size());
+
+                batchesWithoutProgress = inserted.isEmpty() ? batchesWithoutProgress + 1 : 0;
+                if (batchesWithoutProgress >= MAX_BATCHES_WITHOUT_PROGRESS) {
+                    throw new IllegalStateException("No codes inserted in " + batchesWithoutProgress + " consecutive batches");
+                }
+            }
+            job.complete();
+        } catch (Exception e) {
+            log.error("Promo code job {} failed", job.getId(), e);
+            job.fail(e);
+        }
+    }
+
+    private Set<String> generateCodes(int count, char[] alphabet, int codeLength, PromoCodeJob job) {
+        // Random bytes at or above the limit are skipped, so every character of the alphabet is equally likely.
+        int limit = 256 - 256 % alphabet.length;
+        byte[] bytes = new byte[count * codeLength * 2];
+        int position = bytes.length;
+
+        Set<String> codes = new LinkedHashSet<>(count * 2);
+        char[] code = new char[codeLength];
+        while (codes.size() < count) {
+            for (int i = 0; i < codeLength; ) {
+                if (position == bytes.length) {
+                    random.nextBytes(bytes);
+                    position = 0;
+                }
+                int value = bytes[position++] & 0xFF;
+                if (value < limit) {
+                    code[i++] = alphabet[value % alphabet.length];
+                }
+            }
+            if (!codes.add(new String(code))) {
+                job.getCollisions().increment();
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Imports promo codes from the body, one row per line. CSV bodies start with a header naming the columns, NDJSON
+     * rows are objects with the {@link PromoCodeRequest} fields plus {@code discountMethod}. Only the current batch is
+     * held in memory, the job is returned once the whole body was read.
+     */
+    public PromoCodeJobResponse importPromoCodes(InputStream body, PromoCodeImportFormat format) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        long lineNumber = 0;
+        Map<String, Integer> columns = null;
+        if (format == PromoCodeImportFormat.CSV) {
+            lineNumber++;
+            columns = readCsvHeader(readLine(reader));
+        }
+
+        PromoCodeJob job = startJob(0);
+        Map<String, ImportRow> batch = new LinkedHashMap<>();
+
+        try (reader) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                job.getRequested().increment();
+
+                DiscountMethod discountMethod;
+                PromoCodeRequest request;
+                try {
+                    if (format == PromoCodeImportFormat.CSV) {
+                        String[] values = line.split(",", -1);
+                        discountMethod = DiscountMethod.valueOf(csvValue(values, columns, "discountMethod").toUpperCase(Locale.ROOT));
+                        request = new PromoCodeRequest(
+                                csvValue(values, columns, "code"),
+                                Date.valueOf(csvValue(values, columns, "expirationDate")),
+                                Integer.parseInt(csvValue(values, columns, "maxUsages")),
+                                new BigDecimal(csvValue(values, columns, "amount")),
+                                csvValue(values, columns, "currency")
+                        );
+                    } else {
+                        JsonNode node = objectMapper.readTree(line);
+                        discountMethod = DiscountMethod.valueOf(node.path("discountMethod").asText().toUpperCase(Locale.ROOT));
+                        request = promoCodeRequestReader.readValue(node);
+                    }
+                } catch (Exception e) {
+                    job.reject(lineNumber, null, "Malformed row: " + Objects.requireNonNullElse(e.getMessage(), e.getClass().getSimpleName()).lines().findFirst().orElse(""));
+                    continue;
+                }
+
+                Set<ConstraintViolation<PromoCodeRequest>> violations = validator.validate(request);
+                if (!violations.isEmpty()) {
+                    job.reject(lineNumber, request.code(), violations.stream()
+                            .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                            .sorted()
+                            .collect(Collectors.joining(", ")));
+                    continue;
+                }
+                if (batch.containsKey(request.code())) {
+                    job.reject(lineNumber, request.code(), "Duplicate promo code");
+                    continue;
+                }
+
+                Integer currencyId = currencyRegistry.getOrCreate(request.currency()).getId();
+                batch.put(request.code(), new ImportRow(lineNumber, new PromoCodeBatchRepository.Row(
+                        request.code(),
+                        discountMethod,
+                        request.expirationDate(),
+                        request.maxUsages(),
+                        request.amount(),
+                        currencyId
+                )));
+
+                if (batch.size() >= batchSize) {
+                    insertImported(job, batch);
+                }
+            }
+            insertImported(job, batch);
+            job.complete();
+        } catch (IOException | RuntimeException e) {
+            log.error("Promo code job {} failed", job.getId(), e);
+            job.fail(e);
+        }
+
+        return job.toResponse();
+    }
+
+    private static String readLine(BufferedReader reader) {
+        try {
+            return reader.readLine();
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot read request body", e);
+        }
+    }
+
+    private Map<String, Integer> readCsvHeader(String header) {
+        if (header == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing CSV header", new Exception("CSV import must start with a header of columns " + CSV_COLUMNS));
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        String[] names = header.split(",", -1);
+        for (int i = 0; i < names.length; i++) {
+            columns.put(names[i].trim(), i);
+        }
+        if (!columns.keySet().containsAll(CSV_COLUMNS)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid CSV header", new Exception("CSV header must contain columns " + CSV_COLUMNS + ", got " + header));
+        }
+        return columns;
+    }
+
+    private static String csvValue(String[] values, Map<String, Integer> columns, String column) {
+        int index = columns.get(column);
+        if (index >= values.length) {
+            throw new IllegalArgumentException("missing column " + column);
+        }
+        return values[index].trim();
+    }
+
+    private void insertImported(PromoCodeJob job, Map<String, ImportRow> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<PromoCodeBatchRepository.Row> rows = batch.values().stream()
+                .map(ImportRow::row)
+                .toList();
+
+        // a concurrent insert of one of the codes fails the whole batch, the retry sees it as taken
+        List<String> insertedCodes = null;
+        for (int attempt = 1; insertedCodes == null; attempt++) {
+            try {
+                insertedCodes = transactionTemplate.execute(status -> promoCodeBatchRepository.insertAbsent(rows));
+            } catch (DuplicateKeyException e) {
+                if (attempt == MAX_BATCH_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+        Set<String> inserted = new HashSet<>(insertedCodes);
+
+        inserted.forEach(promoCodeFilter::add);
+        job.getInserted().add(inserted.size());
+        batch.values().stream()
+                .filter(importRow -> !inserted.contains(importRow.row().code()))
+                .forEach(importRow -> job.reject(importRow.line(), importRow.row().code(), "Promo code already exists"));
+        batch.clear();
+    }
+}
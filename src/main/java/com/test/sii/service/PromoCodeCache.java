@@ -0,0 +1,74 @@
+package com.test.sii.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.test.sii.model.PromoCodeSnapshot;
+import com.test.sii.repository.PromoCodeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Bounded read-through cache of {@link PromoCodeSnapshot}s for the discount quote path. Entries are evicted by
+ * W-TinyLFU once the maximum size is reached and expire on their own at the promo code's expiration date.
+ */
+@Component
+public class PromoCodeCache {
+
+    private final PromoCodeRepository promoCodeRepository;
+    private final Cache<String, PromoCodeSnapshot> cache;
+
+    public PromoCodeCache(
+            PromoCodeRepository promoCodeRepository,
+            MeterRegistry meterRegistry,
+            @Value("${promo-codes.cache.maximum-size:10000}") long maximumSize
+    ) {
+        this.promoCodeRepository = promoCodeRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, PromoCodeSnapshot>() {
+                    @Override
+                    public long expireAfterCreate(String code, PromoCodeSnapshot snapshot, long currentTime) {
+                        return untilExpiration(snapshot);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String code, PromoCodeSnapshot snapshot, long currentTime, long currentDuration) {
+                        return untilExpiration(snapshot);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String code, PromoCodeSnapshot snapshot, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "promoCodes");
+    }
+
+    private static long untilExpiration(PromoCodeSnapshot snapshot) {
+        Duration remaining = Duration.between(Instant.now(), Instant.ofEpochMilli(snapshot.expirationDate().getTime()));
+        return remaining.isNegative() ? 0 : remaining.toNanos();
+    }
+
+    public Optional<PromoCodeSnapshot> get(String code) {
+        return Optional.ofNullable(cache.get(code, key -> promoCodeRepository.findByCode(key)
+                .map(PromoCodeSnapshot::of)
+                .orElse(null)));
+    }
+
+    public void invalidate(String code) {
+        cache.invalidate(code);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
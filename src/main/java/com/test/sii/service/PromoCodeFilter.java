@@ -0,0 +1,149 @@
+package com.test.sii.service;
+
+import com.test.sii.model.PromoCodeSavedEvent;
+import com.test.sii.repository.PromoCodeRepository;
+import com.test.sii.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter of all existing promo codes, consulted before looking a code up in the database so that guessed codes
+ * are rejected without a query. Codes are added whenever a promo code is saved; deleted codes stay in the filter as
+ * false positives until the next {@link #rebuild()}.
+ */
+@Component
+public class PromoCodeFilter {
+
+    private static final String METRIC_NAME = "promo.codes.filter.lookups";
+
+    private final PromoCodeRepository promoCodeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final Counter filtered;
+    private final Counter passed;
+    private final Counter missed;
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter next;
+    private volatile long rebuiltCodes;
+
+    public PromoCodeFilter(
+            PromoCodeRepository promoCodeRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${promo-codes.filter.expected-insertions:1000000}") long expectedInsertions,
+            @Value("${promo-codes.filter.false-positive-rate:0.01}") double falsePositiveRate
+    ) {
+        this.promoCodeRepository = promoCodeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filtered = meterRegistry.counter(METRIC_NAME, "result", "filtered");
+        this.passed = meterRegistry.counter(METRIC_NAME, "result", "passed");
+        this.missed = meterRegistry.counter(METRIC_NAME, "result", "missed");
+        this.current = BloomFilter.create(expectedInsertions, falsePositiveRate);
+    }
+
+    /**
+     * @return false if the promo code definitely does not exist
+     */
+    public boolean mightExist(String code) {
+        if (current.mightContain(code)) {
+            passed.increment();
+            return true;
+        }
+        filtered.increment();
+        return false;
+    }
+
+    /**
+     * Records a lookup that passed the filter but found nothing - a false positive or a deleted code.
+     */
+    public void recordMiss() {
+        missed.increment();
+    }
+
+    @EventListener
+    public void onPromoCodeSaved(PromoCodeSavedEvent event) {
+        add(event.code());
+        // Repeated after commit: a rebuild reading the table before this commit would otherwise miss the code.
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(event.code());
+                }
+            });
+        }
+    }
+
+    /**
+     * Adds a committed promo code, for writes which bypass JPA and so publish no {@link PromoCodeSavedEvent}.
+     */
+    public void add(String code) {
+        BloomFilter rebuilding = next;
+        if (rebuilding != null) {
+            rebuilding.put(code);
+        }
+        current.put(code);
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * Replaces the filter with one built from the codes currently in the database, sized for at least twice their
+     * number. Codes saved while the rebuild runs go into both filters.
+     *
+     * @return number of codes read from the database
+     */
+    public synchronized long rebuild() {
+        long count = transactionTemplate.execute(status -> promoCodeRepository.count());
+        BloomFilter rebuilt = BloomFilter.create(Math.max(expectedInsertions, count * 2), falsePositiveRate);
+        next = rebuilt;
+        LongAdder codeCount = new LongAdder();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<String> codes = promoCodeRepository.streamAllCodes()) {
+                codes.forEach(code -> {
+                    rebuilt.put(code);
+                    codeCount.increment();
+                });
+            }
+        });
+        current = rebuilt;
+        next = null;
+        rebuiltCodes = codeCount.sum();
+        return rebuiltCodes;
+    }
+
+    public long rebuiltCodes() {
+        return rebuiltCodes;
+    }
+
+    public long bits() {
+        return current.bitCount();
+    }
+
+    public int hashFunctions() {
+        return current.hashFunctions();
+    }
+
+    public double falsePositiveRate() {
+        return falsePositiveRate;
+    }
+}
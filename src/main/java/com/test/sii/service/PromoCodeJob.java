@@ -0,0 +1,80 @@
+package com.test.sii.service;
+
+import com.test.sii.dto.PromoCodeImportError;
+import com.test.sii.dto.PromoCodeJobResponse;
+import com.test.sii.dto.PromoCodeJobStatus;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress of a bulk promo code job, updated by the worker thread and read by status requests. Only the first
+ * {@code maxErrors} rejected rows are reported, the rest are just counted.
+ */
+@Getter
+public class PromoCodeJob {
+
+    private final UUID id = UUID.randomUUID();
+    private final Instant startedAt = Instant.now();
+    private final LongAdder requested = new LongAdder();
+    private final LongAdder inserted = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final List<PromoCodeImportError> errors = new CopyOnWriteArrayList<>();
+    private final int maxErrors;
+    private volatile PromoCodeJobStatus status = PromoCodeJobStatus.RUNNING;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    public PromoCodeJob(long requested, int maxErrors) {
+        this.requested.add(requested);
+        this.maxErrors = maxErrors;
+    }
+
+    void reject(long line, String code, String message) {
+        rejected.increment();
+        if (errors.size() < maxErrors) {
+            errors.add(new PromoCodeImportError(line, code, message));
+        }
+    }
+
+    void complete() {
+        this.finishedAt = Instant.now();
+        this.status = PromoCodeJobStatus.COMPLETED;
+    }
+
+    void fail(Exception e) {
+        this.finishedAt = Instant.now();
+        this.error = e.getMessage();
+        this.status = PromoCodeJobStatus.FAILED;
+    }
+
+    boolean finishedBefore(Instant instant) {
+        return finishedAt != null && finishedAt.isBefore(instant);
+    }
+
+    public PromoCodeJobResponse toResponse() {
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        long millis = Math.max(1, Duration.between(startedAt, end).toMillis());
+        long insertedCount = inserted.sum();
+
+        return new PromoCodeJobResponse(
+                id,
+                status,
+                requested.sum(),
+                insertedCount,
+                collisions.sum(),
+                rejected.sum(),
+                List.copyOf(errors),
+                startedAt,
+                finishedAt,
+                insertedCount * 1000.0 / millis,
+                error
+        );
+    }
+}
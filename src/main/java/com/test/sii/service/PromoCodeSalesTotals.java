@@ -0,0 +1,50 @@
+package com.test.sii.service;
+
+import com.test.sii.model.PromoCodeSales;
+import com.test.sii.model.PurchaseCreatedEvent;
+import com.test.sii.repository.PromoCodeRepository;
+import com.test.sii.repository.PromoCodeSalesRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Adds purchases made with a promo code to its {@link PromoCodeSales} totals, in the transaction which saves the
+ * purchase. The first purchase in a stripe creates it there too, after locking the promo code row.
+ */
+@Component
+public class PromoCodeSalesTotals {
+
+    private final PromoCodeSalesRepository promoCodeSalesRepository;
+    private final PromoCodeRepository promoCodeRepository;
+    private final int stripes;
+
+    public PromoCodeSalesTotals(
+            PromoCodeSalesRepository promoCodeSalesRepository,
+            PromoCodeRepository promoCodeRepository,
+            @Value("${sales.totals.stripes:4}") int stripes
+    ) {
+        this.promoCodeSalesRepository = promoCodeSalesRepository;
+        this.promoCodeRepository = promoCodeRepository;
+        this.stripes = Math.max(1, stripes);
+    }
+
+    @EventListener
+    @Transactional
+    public void onPurchaseCreated(PurchaseCreatedEvent event) {
+        if (event.promoCodeId() == null) {
+            return;
+        }
+        int stripe = ThreadLocalRandom.current().nextInt(stripes);
+        BigDecimal revenue = event.regularPrice().subtract(event.discountAmount());
+        if (promoCodeSalesRepository.add(event.promoCodeId(), stripe, event.discountAmount(), revenue) == 0) {
+            promoCodeRepository.lockById(event.promoCodeId());
+            promoCodeSalesRepository.createIfMissing(event.promoCodeId(), stripe);
+            promoCodeSalesRepository.add(event.promoCodeId(), stripe, event.discountAmount(), revenue);
+        }
+    }
+}
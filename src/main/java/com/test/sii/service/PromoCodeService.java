@@ -1,18 +1,25 @@
 package com.test.sii.service;
 
+import com.test.sii.dto.CursorPageResponse;
 import com.test.sii.dto.PromoCodeDetailsResponse;
+import com.test.sii.dto.PromoCodeFilterResponse;
 import com.test.sii.dto.PromoCodeRequest;
 import com.test.sii.dto.PromoCodeResponse;
+import com.test.sii.error.PromoCodeNotFoundException;
 import com.test.sii.model.*;
-import com.test.sii.repository.CurrencyRepository;
 import com.test.sii.repository.PromoCodeRepository;
+import com.test.sii.util.CursorPagination;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.sql.Date;
+import java.time.LocalDate;
 import java.util.List;
 
 @Service
@@ -20,22 +27,47 @@ import java.util.List;
 public class PromoCodeService {
 
     private final PromoCodeRepository promoCodeRepository;
-    private final CurrencyRepository currencyRepository;
+    private final CurrencyRegistry currencyRegistry;
+    private final HotPromoCodeCounters hotPromoCodeCounters;
+    private final PromoCodeCache promoCodeCache;
+    private final PromoCodeFilter promoCodeFilter;
+    private final CursorPagination cursorPagination;
 
     private PromoCode getPromoCode(String code) {
+        if (!promoCodeFilter.mightExist(code)) {
+            throw new PromoCodeNotFoundException(code);
+        }
         return promoCodeRepository.findByCode(code)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Promo code not found", new Exception("Promo code " + code + " was not found")));
+                .orElseThrow(() -> {
+                    promoCodeFilter.recordMiss();
+                    return new PromoCodeNotFoundException(code);
+                });
     }
 
-    private Currency getCurrency(String currency) {
-        Currency curr = currencyRepository.findByCurrency(currency).orElse(null);
-        if (curr == null) {
-            curr = currencyRepository.save(new Currency(null, currency));
+    /**
+     * Looks the promo code up in {@link PromoCodeCache}. Meant for read-only paths, the snapshot carries no usages.
+     */
+    public PromoCodeSnapshot getPromoCodeSnapshot(String code) {
+        if (!promoCodeFilter.mightExist(code)) {
+            throw new PromoCodeNotFoundException(code);
         }
-        return curr;
+        return promoCodeCache.get(code)
+                .orElseThrow(() -> {
+                    promoCodeFilter.recordMiss();
+                    return new PromoCodeNotFoundException(code);
+                });
     }
 
-    public List<PromoCodeResponse> getAllPromoCodes(Integer page, Integer size) {
+    /**
+     * Returns promo codes by page number (offset pagination) or, without a page number, the first page after the
+     * cursor (keyset pagination). Pages of both kinds are capped by {@link CursorPagination}, keyset pages also when no
+     * size is given. Rows are selected straight into {@link PromoCodeListItem}s, no entities are loaded.
+     */
+    public CursorPageResponse<PromoCodeResponse> getAllPromoCodes(Integer page, Integer size, String cursor) {
+        if (page != null && cursor != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page number and cursor cannot be combined", new Exception("Use either page number or cursor"));
+        }
+
         if (page != null && size == null) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be specified", new Exception("Page size cannot be null when providing page number"));
         }
@@ -44,22 +76,24 @@ public class PromoCodeService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page number must not be less than zero", new Exception("Page number cannot be " + page));
         }
 
-        List<PromoCode> result = page != null ? promoCodeRepository.findAll(PageRequest.of(page - 1, size)).getContent() : promoCodeRepository.findAll();
-
-        return result.stream()
-                .map(promoCode -> new PromoCodeResponse(
-                        promoCode.getCode(),
-                        promoCode.getExpirationDate(),
-                        promoCode.getAmount(),
-                        promoCode.getCurrency().getCurrency(),
-                        promoCode.getDiscountMethod()
-                ))
-                .toList();
+        if (page != null) {
+            return new CursorPageResponse<>(
+                    promoCodeRepository.findListItems(PageRequest.of(page - 1, cursorPagination.pageSize(size), Sort.by("id"))).stream()
+                            .map(PromoCodeListItem::toResponse)
+                            .toList(),
+                    null
+            );
+        }
+
+        int pageSize = cursorPagination.pageSize(size);
+        List<PromoCodeListItem> result = promoCodeRepository.findListItemsByIdGreaterThan(cursorPagination.afterId(cursor), Limit.of(pageSize + 1));
+
+        return cursorPagination.page(result, pageSize, PromoCodeListItem::id, PromoCodeListItem::toResponse);
     }
 
     @Transactional
     public PromoCodeResponse createMonetaryPromoCode(PromoCodeRequest promoCodeRequest) {
-        Currency currency = getCurrency(promoCodeRequest.currency());
+        Currency currency = currencyRegistry.getOrCreate(promoCodeRequest.currency());
 
         PromoCode promoCode = new PromoCodeMonetary(
                 promoCodeRequest.code(),
@@ -70,7 +104,8 @@ public class PromoCodeService {
         );
 
         try {
-            promoCodeRepository.save(promoCode);
+            promoCodeRepository.saveAndFlush(promoCode);
+            promoCodeCache.invalidate(promoCode.getCode());
         } catch (Exception e) {
             e.printStackTrace();
             throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
@@ -87,7 +122,7 @@ public class PromoCodeService {
 
     @Transactional
     public PromoCodeResponse createPercentagePromoCode(PromoCodeRequest promoCodeRequest) {
-        Currency currency = getCurrency(promoCodeRequest.currency());
+        Currency currency = currencyRegistry.getOrCreate(promoCodeRequest.currency());
 
         PromoCode promoCode = new PromoCodePercentage(
                 promoCodeRequest.code(),
@@ -98,7 +133,8 @@ public class PromoCodeService {
         );
 
         try {
-            promoCodeRepository.save(promoCode);
+            promoCodeRepository.saveAndFlush(promoCode);
+            promoCodeCache.invalidate(promoCode.getCode());
         } catch (Exception e) {
             e.printStackTrace();
             throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
@@ -128,5 +164,29 @@ public class PromoCodeService {
         );
     }
 
+    /**
+     * Consumes one usage of the promo code. Hot codes are served from in-process counters, all others by a single
+     * guarded update of the promo code row. A hot code whose counter cannot be refilled in time fails with 503, see
+     * {@link HotPromoCodeCounters#tryAcquire}.
+     *
+     * @return true if the code was used, false if it has reached its maximum usages
+     */
+    @Transactional
+    public boolean redeem(PromoCode promoCode) {
+        if (hotPromoCodeCounters.isHot(promoCode.getCode())) {
+            return hotPromoCodeCounters.tryAcquire(promoCode.getCode());
+        }
+        return !promoCode.isExhausted() && promoCodeRepository.redeem(promoCode.getCode(), Date.valueOf(LocalDate.now())) == 1;
+    }
 
+    public PromoCodeFilterResponse rebuildPromoCodeFilter() {
+        long rebuiltCodes = promoCodeFilter.rebuild();
+
+        return new PromoCodeFilterResponse(
+                rebuiltCodes,
+                promoCodeFilter.bits(),
+                promoCodeFilter.hashFunctions(),
+                promoCodeFilter.falsePositiveRate()
+        );
+    }
 }
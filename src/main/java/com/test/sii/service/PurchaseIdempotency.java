@@ -0,0 +1,186 @@
+package com.test.sii.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.test.sii.dto.PurchaseRequest;
+import com.test.sii.dto.PurchaseResponse;
+import com.test.sii.model.PurchaseIdempotencyKey;
+import com.test.sii.repository.PurchaseIdempotencyKeyRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Runs purchase requests carrying an {@code Idempotency-Key} header at most once per key.
+ * <p>
+ * Executions are kept in a bounded in-memory map for the TTL, so a retry (or a concurrent duplicate, which waits for
+ * the running execution) gets the original response without touching the database. Keys are also stored with their
+ * response in the transaction which creates the purchase: after a restart, or on another instance, a retry gets the
+ * stored response, and a duplicate racing on another instance fails to claim the key and rolls back.
+ * <p>
+ * Reusing a key for a different request is rejected with 422. A failed execution is forgotten, so it can be retried.
+ */
+@Slf4j
+@Component
+public class PurchaseIdempotency {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final PurchaseIdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final Cache<String, Execution> executions;
+
+    private record Execution(String requestFingerprint, CompletableFuture<PurchaseResponse> response) {}
+
+    private static class KeyClaimedException extends RuntimeException {
+    }
+
+    public PurchaseIdempotency(
+            PurchaseIdempotencyKeyRepository idempotencyKeyRepository,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${purchases.idempotency.ttl:24h}") Duration ttl,
+            @Value("${purchases.idempotency.maximum-size:100000}") long maximumSize
+    ) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = ttl;
+        this.executions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, executions, "purchaseIdempotencyKeys");
+    }
+
+    public PurchaseResponse createPurchase(String key, PurchaseRequest purchaseRequest, Supplier<PurchaseResponse> createPurchase) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid idempotency key", new Exception(HEADER + " must have 1 to " + MAX_KEY_LENGTH + " characters"));
+        }
+        String requestFingerprint = fingerprint(purchaseRequest);
+
+        Execution execution = new Execution(requestFingerprint, new CompletableFuture<>());
+        Execution running = executions.asMap().putIfAbsent(key, execution);
+        if (running != null) {
+            return await(key, running, requestFingerprint);
+        }
+
+        try {
+            PurchaseResponse response = findStored(key, requestFingerprint)
+                    .orElseGet(() -> execute(key, requestFingerprint, createPurchase));
+            execution.response().complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            executions.asMap().remove(key, execution);
+            execution.response().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private PurchaseResponse await(String key, Execution execution, String requestFingerprint) {
+        checkSameRequest(key, execution.requestFingerprint(), requestFingerprint);
+        try {
+            return execution.response().join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private PurchaseResponse execute(String key, String requestFingerprint, Supplier<PurchaseResponse> createPurchase) {
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    idempotencyKeyRepository.insert(key, requestFingerprint, LocalDateTime.now());
+                } catch (DataIntegrityViolationException e) {
+                    throw new KeyClaimedException();
+                }
+                PurchaseResponse response = createPurchase.get();
+                idempotencyKeyRepository.setResponse(key, toJson(response));
+                return response;
+            });
+        } catch (KeyClaimedException e) {
+            log.debug("Idempotency key {} claimed concurrently", key);
+            return findStored(key, requestFingerprint)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT, "Request with this idempotency key is in progress", new Exception("Retry the request with " + HEADER + " " + key + " later")));
+        }
+    }
+
+    private Optional<PurchaseResponse> findStored(String key, String requestFingerprint) {
+        return idempotencyKeyRepository.findById(key)
+                .filter(stored -> stored.getResponse() != null)
+                .filter(stored -> stored.getCreatedAt().isAfter(LocalDateTime.now().minus(ttl)))
+                .map(stored -> {
+                    checkSameRequest(key, stored.getRequestFingerprint(), requestFingerprint);
+                    return fromJson(stored.getResponse());
+                });
+    }
+
+    private static void checkSameRequest(String key, String expectedFingerprint, String requestFingerprint) {
+        if (!expectedFingerprint.equals(requestFingerprint)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency key reused", new Exception(HEADER + " " + key + " was used for a different request"));
+        }
+    }
+
+    /**
+     * Drops stored keys older than the TTL.
+     */
+    @Scheduled(fixedDelayString = "${purchases.idempotency.purge-interval-ms:3600000}")
+    public void purge() {
+        int purged = transactionTemplate.execute(status -> idempotencyKeyRepository.deleteCreatedBefore(LocalDateTime.now().minus(ttl)));
+        if (purged > 0) {
+            log.debug("Purged {} purchase idempotency keys", purged);
+        }
+    }
+
+    private String fingerprint(PurchaseRequest purchaseRequest) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(toJson(purchaseRequest).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + value, e);
+        }
+    }
+
+    private PurchaseResponse fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, PurchaseResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot deserialize stored purchase response", e);
+        }
+    }
+}
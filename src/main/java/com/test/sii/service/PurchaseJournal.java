@@ -0,0 +1,375 @@
+package com.test.sii.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.sii.model.PendingPurchase;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Append-only local log of purchases accepted by the write-behind pipeline, one JSON line per purchase.
+ * <p>
+ * Every appended purchase gets the next sequence number. Appends are made durable with {@link #sync(long)}, which
+ * forces the file once for all appends written so far (group commit), so concurrent purchases share a single fsync.
+ * <p>
+ * The log is split into numbered segment files. Appends go to the last one, which is synced and closed once it reaches
+ * the segment size; closed segments are deleted as soon as all their purchases are inserted, and the last one is
+ * emptied when everything appended is. On open every segment is read line by line, a line torn by a crash is cut off,
+ * and appends continue in a new segment. Sequence numbers continue from the inserted checkpoint.
+ */
+@Slf4j
+public class PurchaseJournal implements Closeable {
+
+    static final String ID_FILE = "journal.id";
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("purchases-(\\d+)\\.log");
+
+    /**
+     * Takes a batch of replayed purchases, see {@link #replay}.
+     */
+    @FunctionalInterface
+    public interface Replay {
+
+        void accept(List<PendingPurchase> batch) throws InterruptedException;
+    }
+
+    /**
+     * Closed segment file, holding purchases up to the sequence.
+     */
+    private record Segment(Path path, long lastSequence) {}
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final String journalId;
+    private final long segmentSize;
+    private final Deque<Segment> closed;
+    private final Object syncLock = new Object();
+
+    private FileChannel channel;
+    private Path activePath;
+    private long activeNumber;
+    private long activeBytes;
+    private long lastSequence;
+    // bytes appended since the journal was opened, over all segments
+    private volatile long writtenPosition;
+    private long syncedPosition;
+
+    private PurchaseJournal(Path directory, ObjectMapper objectMapper, String journalId, long segmentSize, Deque<Segment> closed, long activeNumber, long lastSequence) throws IOException {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.journalId = journalId;
+        this.segmentSize = segmentSize;
+        this.closed = closed;
+        this.activeNumber = activeNumber;
+        this.activePath = segment(directory, activeNumber);
+        this.channel = FileChannel.open(activePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.lastSequence = lastSequence;
+    }
+
+    /**
+     * Opens (or creates) the journal in the directory, checking the segments left in it.
+     *
+     * @param segmentSize size in bytes at which appends move on to a new segment file
+     */
+    public static PurchaseJournal open(Path directory, ObjectMapper objectMapper, long segmentSize) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Journal segment size must be positive, got " + segmentSize);
+        }
+        try {
+            Files.createDirectories(directory);
+            String journalId = readOrCreateId(directory.resolve(ID_FILE));
+
+            Deque<Segment> segments = new ArrayDeque<>();
+            long lastNumber = 0;
+            long lastSequence = 0;
+            for (Path file : segmentFiles(directory)) {
+                long validLength;
+                try (SegmentReader reader = new SegmentReader(file, objectMapper)) {
+                    for (PendingPurchase purchase = reader.next(); purchase != null; purchase = reader.next()) {
+                        lastSequence = purchase.sequence();
+                    }
+                    validLength = reader.validLength();
+                }
+                if (validLength < Files.size(file)) {
+                    log.warn("Truncating torn tail of purchase journal {} segment {} at byte {}", journalId, file.getFileName(), validLength);
+                    try (FileChannel torn = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        torn.truncate(validLength);
+                        torn.force(true);
+                    }
+                }
+                segments.add(new Segment(file, lastSequence));
+                lastNumber = number(file);
+            }
+
+            return new PurchaseJournal(directory, objectMapper, journalId, segmentSize, segments, lastNumber + 1, lastSequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open purchase journal in " + directory, e);
+        }
+    }
+
+    private static String readOrCreateId(Path idFile) throws IOException {
+        if (Files.exists(idFile)) {
+            return Files.readString(idFile).strip();
+        }
+        String journalId = UUID.randomUUID().toString();
+        Files.writeString(idFile, journalId, StandardOpenOption.CREATE_NEW, StandardOpenOption.SYNC);
+        return journalId;
+    }
+
+    private static List<Path> segmentFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> SEGMENT_FILE.matcher(file.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingLong(PurchaseJournal::number))
+                    .toList();
+        }
+    }
+
+    static Path segment(Path directory, long number) {
+        return directory.resolve("purchases-%010d.log".formatted(number));
+    }
+
+    private static long number(Path segment) {
+        Matcher matcher = SEGMENT_FILE.matcher(segment.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(segment + " is not a journal segment");
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    public String journalId() {
+        return journalId;
+    }
+
+    /**
+     * Streams the purchases after the checkpoint found in the journal when it was opened, in sequence order and in
+     * batches of at most the batch size. Must be called before the first append.
+     *
+     * @return sequence of the last replayed purchase, or the checkpoint if there was none after it
+     */
+    public synchronized long replay(long checkpoint, int batchSize, Replay replay) throws InterruptedException {
+        long replayed = checkpoint;
+        List<PendingPurchase> batch = new ArrayList<>(batchSize);
+        for (Segment segment : closed) {
+            if (segment.lastSequence() <= checkpoint) {
+                continue;
+            }
+            try (SegmentReader reader = new SegmentReader(segment.path(), objectMapper)) {
+                for (PendingPurchase purchase = reader.next(); purchase != null; purchase = reader.next()) {
+                    if (purchase.sequence() <= checkpoint) {
+                        continue;
+                    }
+                    batch.add(purchase);
+                    if (batch.size() == batchSize) {
+                        replay.accept(batch);
+                        replayed = purchase.sequence();
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot replay purchase journal " + journalId, e);
+            }
+        }
+        if (!batch.isEmpty()) {
+            replay.accept(batch);
+            replayed = batch.getLast().sequence();
+        }
+        return replayed;
+    }
+
+    /**
+     * Sequence numbers continue after the checkpoint when the journal holds no later purchases.
+     */
+    public synchronized void continueAfter(long checkpoint) {
+        lastSequence = Math.max(lastSequence, checkpoint);
+    }
+
+    /**
+     * Writes the purchase with the next sequence number, without making it durable yet.
+     *
+     * @param written called with the numbered purchase while appends are still serialized, so the callee sees
+     *                purchases in sequence order
+     * @return position to {@link #sync(long)} to make the purchase durable
+     */
+    public synchronized long append(PendingPurchase purchase, Consumer<PendingPurchase> written) {
+        PendingPurchase numbered = purchase.withSequence(lastSequence + 1);
+        try {
+            byte[] line = (objectMapper.writeValueAsString(numbered) + "\n").getBytes(StandardCharsets.UTF_8);
+            if (activeBytes > 0 && activeBytes + line.length > segmentSize) {
+                roll();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            activeBytes += line.length;
+            writtenPosition += line.length;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize purchase " + numbered, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to purchase journal " + journalId, e);
+        }
+        lastSequence = numbered.sequence();
+        written.accept(numbered);
+        return writtenPosition;
+    }
+
+    /**
+     * Closes the full segment after forcing it to disk, so syncs only ever need to force the segment appended to.
+     */
+    private void roll() throws IOException {
+        Path nextPath = segment(directory, activeNumber + 1);
+        FileChannel next = FileChannel.open(nextPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            synchronized (syncLock) {
+                channel.force(false);
+                channel.close();
+                channel = next;
+                syncedPosition = writtenPosition;
+            }
+        } catch (IOException e) {
+            next.close();
+            Files.deleteIfExists(nextPath);
+            throw e;
+        }
+        closed.add(new Segment(activePath, lastSequence));
+        activePath = nextPath;
+        activeNumber++;
+        activeBytes = 0;
+    }
+
+    /**
+     * Forces the journal to disk up to at least the position, unless a concurrent sync already did.
+     */
+    public void sync(long position) {
+        synchronized (syncLock) {
+            if (syncedPosition >= position) {
+                return;
+            }
+            long target = writtenPosition;
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot sync purchase journal " + journalId, e);
+            }
+            syncedPosition = target;
+        }
+    }
+
+    /**
+     * Deletes the closed segments holding only purchases up to the sequence, i.e. inserted ones, and empties the
+     * segment appended to if the sequence is the last appended one.
+     */
+    public synchronized void deleteFlushed(long sequence) {
+        while (!closed.isEmpty() && closed.peekFirst().lastSequence() <= sequence) {
+            Path path = closed.peekFirst().path();
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Cannot delete segment {} of purchase journal {}, its inserted purchases are skipped on replay", path.getFileName(), journalId, e);
+                return;
+            }
+            closed.pollFirst();
+        }
+        if (sequence < lastSequence || activeBytes == 0) {
+            return;
+        }
+        synchronized (syncLock) {
+            try {
+                channel.truncate(0);
+                channel.force(false);
+            } catch (IOException e) {
+                log.warn("Cannot truncate purchase journal {}, inserted purchases are skipped on replay", journalId, e);
+                return;
+            }
+            syncedPosition = writtenPosition;
+        }
+        activeBytes = 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Cannot close purchase journal {}", journalId, e);
+        }
+    }
+
+    /**
+     * Reads a segment one line at a time, up to the first incomplete or unreadable line.
+     */
+    private static final class SegmentReader implements Closeable {
+
+        private final InputStream input;
+        private final ObjectMapper objectMapper;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private long validLength;
+        private boolean ended;
+
+        private SegmentReader(Path segment, ObjectMapper objectMapper) throws IOException {
+            this.input = new BufferedInputStream(Files.newInputStream(segment));
+            this.objectMapper = objectMapper;
+        }
+
+        /**
+         * @return the next purchase, null at the end of the valid part of the segment
+         */
+        private PendingPurchase next() throws IOException {
+            if (ended) {
+                return null;
+            }
+            for (int b = input.read(); b >= 0; b = input.read()) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                try {
+                    PendingPurchase purchase = objectMapper.readValue(line.toByteArray(), PendingPurchase.class);
+                    validLength += line.size() + 1;
+                    line.reset();
+                    return purchase;
+                } catch (JsonProcessingException e) {
+                    break;
+                }
+            }
+            ended = true;
+            return null;
+        }
+
+        /**
+         * @return length of the segment up to the end of the last purchase read
+         */
+        private long validLength() {
+            return validLength;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
@@ -4,56 +4,125 @@ import com.test.sii.dto.ProductResponse;
 import com.test.sii.dto.PurchaseDiscountResponse;
 import com.test.sii.dto.PurchaseRequest;
 import com.test.sii.dto.PurchaseResponse;
+import com.test.sii.error.PromoCodeNotFoundException;
+import com.test.sii.model.PendingPurchase;
 import com.test.sii.model.Product;
+import com.test.sii.model.ProductSnapshot;
 import com.test.sii.model.PromoCode;
+import com.test.sii.model.PromoCodeSnapshot;
 import com.test.sii.model.Purchase;
-import com.test.sii.repository.ProductRepository;
 import com.test.sii.repository.PromoCodeRepository;
 import com.test.sii.repository.PurchaseRepository;
-import lombok.RequiredArgsConstructor;
+import com.test.sii.util.ConcurrentLookups;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.sql.Date;
-import java.time.Instant;
-import java.util.Objects;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 public class PurchaseService {
 
     private final PurchaseRepository purchaseRepository;
-    private final ProductRepository productRepository;
+    private final ProductCache productCache;
     private final PromoCodeRepository promoCodeRepository;
+    private final PromoCodeService promoCodeService;
+    private final Optional<PurchaseWriteBehind> purchaseWriteBehind;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxQuoteProducts;
+
+    public PurchaseService(
+            PurchaseRepository purchaseRepository,
+            ProductCache productCache,
+            PromoCodeRepository promoCodeRepository,
+            PromoCodeService promoCodeService,
+            Optional<PurchaseWriteBehind> purchaseWriteBehind,
+            PlatformTransactionManager transactionManager,
+            @Value("${purchases.discount.max-products:100}") int maxQuoteProducts
+    ) {
+        this.purchaseRepository = purchaseRepository;
+        this.productCache = productCache;
+        this.promoCodeRepository = promoCodeRepository;
+        this.promoCodeService = promoCodeService;
+        this.purchaseWriteBehind = purchaseWriteBehind;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxQuoteProducts = maxQuoteProducts;
+    }
 
     private PromoCode getPromoCode(String promoCode) {
         return promoCodeRepository.findByCode(promoCode)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Promo code not found", new Exception("Promo code " + promoCode + " was not found")));
+                .orElseThrow(() -> new PromoCodeNotFoundException(promoCode));
     }
 
     private Product getProduct(Integer productId) {
-        return productRepository.findById(productId)
+        return productCache.get(productId)
+                .map(ProductSnapshot::toProduct)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found", new Exception("Product with id " + productId + " was not found")));
     }
 
-    private PurchaseDiscountResponse validatePromoCodeWithProduct(PromoCode promoCode, Product product) {
+    private PurchaseDiscountResponse validatePromoCodeWithProduct(PromoCodeSnapshot promoCode, Product product) {
         if (promoCode.isExpired()) {
             return new PurchaseDiscountResponse(product.getPrice(), product.getCurrency().getCurrency(), "Promo code has expired");
         }
-        if (!promoCode.getCurrency().equals(product.getCurrency())) {
+        if (!promoCode.currency().equals(product.getCurrency().getCurrency())) {
             return new PurchaseDiscountResponse(product.getPrice(), product.getCurrency().getCurrency(), "Currencies of promo code and product don't match");
         }
         return null;
     }
 
+    /**
+     * The product and the promo code are looked up concurrently, see {@link ConcurrentLookups}.
+     */
     public PurchaseDiscountResponse getDiscountPrice(Integer productId, String code) {
-        Product product = getProduct(productId);
+        return ConcurrentLookups.join(
+                () -> getProduct(productId),
+                () -> promoCodeService.getPromoCodeSnapshot(code),
+                this::quote
+        );
+    }
+
+    /**
+     * Quotes one promo code against many products, e.g. a whole product listing page. The code is resolved once and the
+     * products missing from the cache are loaded with a single query, concurrently. Quotes are keyed by product id, in the order of the
+     * requested ids.
+     */
+    public Map<Integer, PurchaseDiscountResponse> getDiscountPrices(List<Integer> productIds, String code) {
+        Set<Integer> ids = new LinkedHashSet<>(productIds);
+        if (ids.size() > maxQuoteProducts) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many products to quote", new Exception("Requested " + ids.size() + " products, at most " + maxQuoteProducts + " are allowed"));
+        }
+
+        return ConcurrentLookups.join(
+                () -> getProducts(ids),
+                () -> promoCodeService.getPromoCodeSnapshot(code),
+                (products, promoCode) -> {
+                    Map<Integer, PurchaseDiscountResponse> quotes = new LinkedHashMap<>();
+                    ids.forEach(id -> quotes.put(id, quote(products.get(id), promoCode)));
+                    return quotes;
+                }
+        );
+    }
 
-        PromoCode promoCode = getPromoCode(code);
+    private Map<Integer, Product> getProducts(Set<Integer> ids) {
+        Map<Integer, Product> products = productCache.getAll(ids).values().stream()
+                .collect(Collectors.toMap(ProductSnapshot::id, ProductSnapshot::toProduct));
 
+        if (products.size() < ids.size()) {
+            SortedSet<Integer> missing = new TreeSet<>(ids);
+            missing.removeAll(products.keySet());
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found", new Exception("Products with ids " + missing + " were not found"));
+        }
+        return products;
+    }
+
+    private PurchaseDiscountResponse quote(Product product, PromoCodeSnapshot promoCode) {
         PurchaseDiscountResponse error = validatePromoCodeWithProduct(promoCode, product);
 
         if (error != null) {
@@ -65,37 +134,58 @@ public class PurchaseService {
         return new PurchaseDiscountResponse(discountPrice, product.getCurrency().getCurrency(), null);
     }
 
-@Transactional
+    /**
+     * The product and the promo code are looked up concurrently before the transaction starts (or one after another
+     * within the caller's transaction, see {@link ConcurrentLookups}), the code is redeemed and the purchase stored in it.
+     */
     public PurchaseResponse createPurchase(PurchaseRequest purchaseRequest) {
-        Product product = getProduct(purchaseRequest.productId());
+        return ConcurrentLookups.join(
+                () -> getProduct(purchaseRequest.productId()),
+                () -> getPromoCode(purchaseRequest.promoCode()),
+                (product, promoCode) -> transactionTemplate.execute(status -> createPurchase(product, promoCode))
+        );
+    }
 
-        PromoCode promoCode = getPromoCode(purchaseRequest.promoCode());
+    private PurchaseResponse createPurchase(Product product, PromoCode promoCode) {
+        // taken before the redemption, so a full write-behind queue rejects the purchase without using the code
+        Optional<PurchaseWriteBehind.Reservation> reservation = purchaseWriteBehind.map(PurchaseWriteBehind::reserve);
 
         Purchase purchase = new Purchase();
 
-        purchase.setDate(new Date(Date.from(Instant.now()).getTime()));
+        LocalDateTime purchasedAt = LocalDateTime.now();
+        purchase.setDate(Date.valueOf(purchasedAt.toLocalDate()));
+        purchase.setPurchasedAt(purchasedAt);
         purchase.setRegularPrice(product.getPrice());
         purchase.setDiscountAmount(promoCode.getAmount());
         purchase.setProduct(product);
 
         String warning = Objects.requireNonNullElse(
-                validatePromoCodeWithProduct(promoCode, product),
+                validatePromoCodeWithProduct(PromoCodeSnapshot.of(promoCode), product),
                 new PurchaseDiscountResponse(null, null, null))
                 .warning();
 
-        if (warning == null) {
-            try {
-                promoCode.use();
-                promoCodeRepository.save(promoCode);
-            } catch (ResponseStatusException e) {
-                warning = e.getCause().getMessage();
-            }
+        if (warning == null && !promoCodeService.redeem(promoCode)) {
+            warning = "Cannot use this code - reached maximum usages";
         }
 
         BigDecimal discountAmount = warning == null ? promoCode.calculateDiscountAmount(product) : BigDecimal.ZERO;
         purchase.setDiscountAmount(discountAmount);
-
-        purchaseRepository.save(purchase);
+        purchase.setPromoCode(warning == null ? promoCode : null);
+
+        if (reservation.isPresent()) {
+            reservation.get().submit(new PendingPurchase(
+                    0,
+                    purchase.getDate().toLocalDate(),
+                    purchase.getRegularPrice(),
+                    discountAmount,
+                    product.getId(),
+                    warning == null ? promoCode.getId() : null,
+                    product.getCurrency().getCurrency(),
+                    purchasedAt
+            ));
+        } else {
+            purchaseRepository.save(purchase);
+        }
 
         ProductResponse productResponse = new ProductResponse(
                 product.getId(),
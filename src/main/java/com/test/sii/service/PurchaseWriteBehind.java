@@ -0,0 +1,273 @@
+package com.test.sii.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.sii.model.PendingPurchase;
+import com.test.sii.model.PurchaseJournalCheckpoint;
+import com.test.sii.repository.PurchaseBatchRepository;
+import com.test.sii.repository.PurchaseJournalCheckpointRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind insertion of purchases, enabled with {@code purchases.write-behind.enabled}.
+ * <p>
+ * A purchase takes a slot of the bounded queue before its promo code is redeemed; when no slot frees up within the
+ * enqueue timeout the purchase is rejected with 503, which is the backpressure. Once the redemption is committed the
+ * purchase is appended to the {@link PurchaseJournal}, synced and queued. A single writer inserts queued purchases in
+ * JDBC batches and stores the last inserted journal sequence in the same transaction, so after a crash exactly the
+ * purchases after the checkpoint are replayed from the journal.
+ * <p>
+ * Purchase events are published by the writer, so the sales aggregates follow the inserted purchases. On shutdown new
+ * purchases are rejected and the queue is drained after the web server stopped; purchases not inserted within the
+ * shutdown timeout stay in the journal.
+ * <p>
+ * Purchases are lost in two cases. A crash after the redemption commits but before the purchase is appended (or, for a
+ * machine crash, synced) to the journal loses it. A failing journal append (e.g. a full disk) loses the purchase as
+ * well: the redemption is already committed, so the request fails with 500 and the purchase is logged at error level
+ * with all its details, to be inserted by hand. A failing sync only logs the purchase, it is still queued and inserted.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "purchases.write-behind.enabled", havingValue = "true")
+public class PurchaseWriteBehind implements SmartLifecycle {
+
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+
+    private final PurchaseBatchRepository purchaseBatchRepository;
+    private final PurchaseJournalCheckpointRepository checkpointRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Path journalDirectory;
+    private final DataSize journalSegmentSize;
+    private final int batchSize;
+    private final Duration enqueueTimeout;
+    private final Duration shutdownTimeout;
+    private final BlockingQueue<PendingPurchase> queue = new LinkedBlockingQueue<>();
+    private final Semaphore slots;
+
+    private volatile boolean running;
+    private PurchaseJournal journal;
+    private Thread writer;
+
+    public PurchaseWriteBehind(
+            PurchaseBatchRepository purchaseBatchRepository,
+            PurchaseJournalCheckpointRepository checkpointRepository,
+            ApplicationEventPublisher eventPublisher,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${purchases.write-behind.journal-dir:purchase-journal}") Path journalDirectory,
+            @Value("${purchases.write-behind.journal-segment-size:64MB}") DataSize journalSegmentSize,
+            @Value("${purchases.write-behind.queue-capacity:10000}") int queueCapacity,
+            @Value("${purchases.write-behind.batch-size:500}") int batchSize,
+            @Value("${purchases.write-behind.enqueue-timeout:100ms}") Duration enqueueTimeout,
+            @Value("${purchases.write-behind.shutdown-timeout:30s}") Duration shutdownTimeout
+    ) {
+        if (queueCapacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Write-behind queue capacity and batch size must be positive, got " + queueCapacity + " and " + batchSize);
+        }
+        this.purchaseBatchRepository = purchaseBatchRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journalDirectory = journalDirectory;
+        this.journalSegmentSize = journalSegmentSize;
+        this.batchSize = batchSize;
+        this.enqueueTimeout = enqueueTimeout;
+        this.shutdownTimeout = shutdownTimeout;
+        this.slots = new Semaphore(queueCapacity);
+        meterRegistry.gaugeCollectionSize("purchases.write-behind.queue", List.of(), queue);
+    }
+
+    /**
+     * Opens the journal and inserts the purchases a previous run did not, before accepting new ones.
+     */
+    @Override
+    public void start() {
+        journal = PurchaseJournal.open(journalDirectory, objectMapper, journalSegmentSize.toBytes());
+        long checkpoint = transactionTemplate.execute(status -> checkpointRepository.findById(journal.journalId())
+                .map(PurchaseJournalCheckpoint::getSequence)
+                .orElse(0L));
+        journal.continueAfter(checkpoint);
+
+        long replayed;
+        try {
+            replayed = journal.replay(checkpoint, batchSize, this::insert);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while replaying purchase journal " + journal.journalId(), e);
+        }
+        if (replayed > checkpoint) {
+            log.info("Replayed purchases {} to {} from journal {}", checkpoint + 1, replayed, journal.journalId());
+        }
+        journal.deleteFlushed(replayed);
+
+        running = true;
+        writer = Thread.ofPlatform().name("purchase-write-behind").start(this::write);
+    }
+
+    /**
+     * Takes a queue slot for a purchase of the current transaction, waiting up to the enqueue timeout.
+     * The slot is given back if the transaction does not commit.
+     *
+     * @throws ResponseStatusException 503 if the queue stays full or the application is shutting down
+     */
+    public Reservation reserve() {
+        if (!running) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Purchases are not accepted", new Exception("Write-behind purchase queue is stopped"));
+        }
+        boolean acquired;
+        try {
+            acquired = slots.tryAcquire(enqueueTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many purchases, try again later", new Exception("Write-behind purchase queue is full"));
+        }
+
+        Reservation reservation = new Reservation();
+        TransactionSynchronizationManager.registerSynchronization(reservation);
+        return reservation;
+    }
+
+    private void write() {
+        List<PendingPurchase> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingPurchase first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                insert(batch);
+                slots.release(batch.size());
+                journal.deleteFlushed(batch.getLast().sequence());
+                batch.clear();
+            } catch (InterruptedException e) {
+                log.warn("Purchase writer interrupted, {} purchases left in journal {}", queue.size() + batch.size(), journal.journalId());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Inserts the batch, retrying until it succeeds or the writer is interrupted.
+     */
+    private void insert(List<PendingPurchase> batch) throws InterruptedException {
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    purchaseBatchRepository.insert(batch);
+                    batch.forEach(purchase -> eventPublisher.publishEvent(purchase.toEvent()));
+                    checkpointRepository.save(new PurchaseJournalCheckpoint(journal.journalId(), batch.getLast().sequence()));
+                });
+                return;
+            } catch (RuntimeException e) {
+                log.error("Cannot insert {} purchases up to sequence {}, retrying in {}", batch.size(), batch.getLast().sequence(), RETRY_DELAY, e);
+                Thread.sleep(RETRY_DELAY.toMillis());
+            }
+        }
+    }
+
+    /**
+     * Rejects new purchases and waits up to the shutdown timeout for the queued ones to be inserted.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            writer.join(shutdownTimeout);
+            if (writer.isAlive()) {
+                log.warn("Purchase writer did not drain within {}, {} purchases left in journal {}", shutdownTimeout, queue.size(), journal.journalId());
+                writer.interrupt();
+                writer.join(shutdownTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Started before and stopped after the web server, so no request arrives while draining.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    /**
+     * Queue slot of a purchase, released when the transaction rolls back or the purchase is never submitted.
+     */
+    public class Reservation implements TransactionSynchronization {
+
+        private PendingPurchase purchase;
+        private boolean queued;
+
+        /**
+         * Journals and queues the purchase once the transaction commits.
+         */
+        public void submit(PendingPurchase purchase) {
+            this.purchase = purchase;
+        }
+
+        @Override
+        public void afterCommit() {
+            if (purchase == null) {
+                return;
+            }
+            long position;
+            try {
+                position = journal.append(purchase, queue::add);
+            } catch (RuntimeException e) {
+                // the redemption is committed and cannot be undone any more, so the purchase is only in this log
+                log.error("Lost purchase {}: its promo code redemption is committed, but it could not be journaled", purchase, e);
+                throw e;
+            }
+            queued = true;
+            try {
+                journal.sync(position);
+            } catch (RuntimeException e) {
+                log.error("Purchase {} is queued but not synced to the journal, it is lost if the process stops before it is inserted", purchase, e);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (!queued) {
+                slots.release();
+            }
+        }
+    }
+}
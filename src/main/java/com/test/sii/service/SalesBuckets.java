@@ -0,0 +1,65 @@
+package com.test.sii.service;
+
+import com.test.sii.dto.SalesReportGranularity;
+import com.test.sii.model.PurchaseCreatedEvent;
+import com.test.sii.repository.CurrencyRepository;
+import com.test.sii.repository.SalesBucketRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Adds every purchase to its hourly bucket and rolls it up into the daily and monthly buckets, in the transaction which
+ * saves the purchase. A missing bucket stripe is created in that transaction as well, under the lock of the currency
+ * row, so the purchase never needs a second connection.
+ * <p>
+ * Purchases are bucketed by their stored {@code purchased_at} time, so every bucket can be recomputed from the purchases
+ * table.
+ */
+@Component
+public class SalesBuckets {
+
+    private final SalesBucketRepository salesBucketRepository;
+    private final CurrencyRepository currencyRepository;
+    private final int stripes;
+
+    public SalesBuckets(
+            SalesBucketRepository salesBucketRepository,
+            CurrencyRepository currencyRepository,
+            @Value("${sales.totals.stripes:4}") int stripes
+    ) {
+        this.salesBucketRepository = salesBucketRepository;
+        this.currencyRepository = currencyRepository;
+        this.stripes = Math.max(1, stripes);
+    }
+
+    @EventListener
+    @Transactional
+    public void onPurchaseCreated(PurchaseCreatedEvent event) {
+        int stripe = ThreadLocalRandom.current().nextInt(stripes);
+        for (SalesReportGranularity granularity : SalesReportGranularity.values()) {
+            LocalDateTime bucketStart = granularity.truncate(event.purchasedAt());
+            if (add(granularity, bucketStart, event, stripe) == 0) {
+                currencyRepository.lockByCurrency(event.currency());
+                salesBucketRepository.createIfMissing(granularity.name(), bucketStart, event.currency(), stripe);
+                add(granularity, bucketStart, event, stripe);
+            }
+        }
+    }
+
+    private int add(SalesReportGranularity granularity, LocalDateTime bucketStart, PurchaseCreatedEvent event, int stripe) {
+        return salesBucketRepository.add(
+                granularity.name(),
+                bucketStart,
+                event.currency(),
+                stripe,
+                event.regularPrice(),
+                event.discountAmount(),
+                1
+        );
+    }
+}
@@ -1,20 +1,114 @@
 package com.test.sii.service;
 
+import com.test.sii.dto.CursorPageResponse;
+import com.test.sii.dto.DiscountStatisticsResponse;
+import com.test.sii.dto.PromoCodeSalesResponse;
+import com.test.sii.dto.SalesDriftResponse;
+import com.test.sii.dto.SalesReportBucketResponse;
 import com.test.sii.dto.SalesReportEntryResponse;
-import com.test.sii.repository.PurchaseRepository;
-import lombok.RequiredArgsConstructor;
+import com.test.sii.dto.SalesRankingMetric;
+import com.test.sii.dto.SalesReportGranularity;
+import com.test.sii.dto.SalesWindow;
+import com.test.sii.dto.TopProductResponse;
+import com.test.sii.repository.PromoCodeSalesRepository;
+import com.test.sii.repository.SalesBucketRepository;
+import com.test.sii.repository.SalesTotalRepository;
+import com.test.sii.util.CursorPagination;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Function;
 
 @Service
-@RequiredArgsConstructor
 public class SalesService {
 
-    private final PurchaseRepository purchaseRepository;
+    private final SalesTotalRepository salesTotalRepository;
+    private final SalesBucketRepository salesBucketRepository;
+    private final PromoCodeSalesRepository promoCodeSalesRepository;
+    private final SalesTotals salesTotals;
+    private final TopProducts topProducts;
+    private final DiscountStatistics discountStatistics;
+    private final CursorPagination cursorPagination;
+    private final long maxBuckets;
+
+    public SalesService(
+            SalesTotalRepository salesTotalRepository,
+            SalesBucketRepository salesBucketRepository,
+            PromoCodeSalesRepository promoCodeSalesRepository,
+            SalesTotals salesTotals,
+            TopProducts topProducts,
+            DiscountStatistics discountStatistics,
+            CursorPagination cursorPagination,
+            @Value("${sales.report.max-buckets:10000}") long maxBuckets
+    ) {
+        this.salesTotalRepository = salesTotalRepository;
+        this.salesBucketRepository = salesBucketRepository;
+        this.promoCodeSalesRepository = promoCodeSalesRepository;
+        this.salesTotals = salesTotals;
+        this.topProducts = topProducts;
+        this.discountStatistics = discountStatistics;
+        this.cursorPagination = cursorPagination;
+        this.maxBuckets = maxBuckets;
+    }
 
 
     public List<SalesReportEntryResponse> getSalesReport() {
-        return purchaseRepository.generateSalesReport();
+        return salesTotalRepository.generateSalesReport();
+    }
+
+    /**
+     * @param from first day of the report
+     * @param to last day of the report, inclusive
+     * @return sales per bucket and currency, buckets without sales are omitted; monthly buckets cover whole months
+     */
+    public List<SalesReportBucketResponse> getSalesReport(LocalDate from, LocalDate to, SalesReportGranularity granularity) {
+        if (to.isBefore(from)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid date range", new Exception("Date " + to + " is before " + from));
+        }
+
+        LocalDateTime start = granularity.truncate(from.atStartOfDay());
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+        if (granularity.buckets(start, end) > maxBuckets) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Date range too long", new Exception("Report cannot exceed " + maxBuckets + " buckets"));
+        }
+
+        return salesBucketRepository.generateSalesReport(granularity, start, end);
+    }
+
+    /**
+     * Redemptions, discount given and revenue per promo code with at least one redemption, paginated by cursor.
+     */
+    public CursorPageResponse<PromoCodeSalesResponse> getPromoCodeReport(Integer size, String cursor) {
+        int pageSize = cursorPagination.pageSize(size);
+        List<PromoCodeSalesResponse> result = promoCodeSalesRepository.generatePromoCodeReport(cursorPagination.afterId(cursor), PageRequest.of(0, pageSize + 1));
+
+        return cursorPagination.page(result, pageSize, PromoCodeSalesResponse::promoCodeId, Function.identity());
+    }
+
+    public List<DiscountStatisticsResponse> getDiscountStatistics() {
+        return discountStatistics.getStatistics();
+    }
+
+    /**
+     * @param exact whether to rank from the purchases table instead of the in-memory estimates
+     */
+    public List<TopProductResponse> getTopProducts(String currency, SalesWindow window, SalesRankingMetric metric, int limit, boolean exact) {
+        if (limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be greater than zero", new Exception("Limit cannot be " + limit));
+        }
+        int cappedLimit = Math.min(limit, topProducts.capacity());
+        return exact
+                ? topProducts.exact(currency, window, metric, cappedLimit)
+                : topProducts.top(currency, window, metric, cappedLimit);
+    }
+
+    public List<SalesDriftResponse> reconcileSales(boolean fix) {
+        return salesTotals.reconcile(fix);
     }
 }
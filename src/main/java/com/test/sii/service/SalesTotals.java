@@ -0,0 +1,139 @@
+package com.test.sii.service;
+
+import com.test.sii.dto.SalesDriftResponse;
+import com.test.sii.dto.SalesReportEntryResponse;
+import com.test.sii.model.PurchaseCreatedEvent;
+import com.test.sii.model.SalesTotal;
+import com.test.sii.repository.CurrencyRepository;
+import com.test.sii.repository.PurchaseRepository;
+import com.test.sii.repository.SalesTotalRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains {@link SalesTotal} rows, so the sales report reads a few rows per currency instead of aggregating all
+ * purchases. Totals are updated in the transaction which saves the purchase; the first purchase in a stripe creates
+ * it there too, see {@link CurrencyRepository#lockByCurrency}.
+ * <p>
+ * Purchases deleted or changed outside of the application are not reflected; the reconciliation compares the totals
+ * with the purchases table and reports (and, if enabled, corrects) the drift.
+ */
+@Slf4j
+@Component
+public class SalesTotals {
+
+    private final SalesTotalRepository salesTotalRepository;
+    private final PurchaseRepository purchaseRepository;
+    private final CurrencyRepository currencyRepository;
+    private final TransactionTemplate reconciliationTransactionTemplate;
+    private final int stripes;
+    private final boolean fixDrift;
+    private final AtomicLong driftingCurrencies = new AtomicLong();
+
+    public SalesTotals(
+            SalesTotalRepository salesTotalRepository,
+            PurchaseRepository purchaseRepository,
+            CurrencyRepository currencyRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${sales.totals.stripes:4}") int stripes,
+            @Value("${sales.totals.reconciliation.fix:false}") boolean fixDrift
+    ) {
+        this.salesTotalRepository = salesTotalRepository;
+        this.purchaseRepository = purchaseRepository;
+        this.currencyRepository = currencyRepository;
+        this.reconciliationTransactionTemplate = new TransactionTemplate(transactionManager);
+        // both aggregations must see the same snapshot, otherwise concurrent purchases show up as drift
+        this.reconciliationTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.stripes = Math.max(1, stripes);
+        this.fixDrift = fixDrift;
+        meterRegistry.gauge("sales.totals.drifting.currencies", driftingCurrencies);
+    }
+
+    @EventListener
+    @Transactional
+    public void onPurchaseCreated(PurchaseCreatedEvent event) {
+        add(event.currency(), ThreadLocalRandom.current().nextInt(stripes), event.regularPrice(), event.discountAmount(), 1);
+    }
+
+    private void add(String currency, int stripe, BigDecimal amount, BigDecimal discount, long purchases) {
+        if (salesTotalRepository.add(currency, stripe, amount, discount, purchases) == 0) {
+            currencyRepository.lockByCurrency(currency);
+            salesTotalRepository.createIfMissing(currency, stripe);
+            salesTotalRepository.add(currency, stripe, amount, discount, purchases);
+        }
+    }
+
+    @Scheduled(cron = "${sales.totals.reconciliation.cron:0 0 3 * * *}")
+    public void scheduledReconciliation() {
+        reconcile(fixDrift);
+    }
+
+    /**
+     * Recomputes the totals from the purchases table and compares them with the maintained ones.
+     *
+     * @param fix whether to correct the maintained totals by the drift
+     * @return currencies whose totals differ, drift is purchases minus maintained totals
+     */
+    public List<SalesDriftResponse> reconcile(boolean fix) {
+        List<SalesDriftResponse> drifts = reconciliationTransactionTemplate.execute(status -> {
+            Map<String, SalesReportEntryResponse> expected = byCurrency(purchaseRepository.generateSalesReport());
+            Map<String, SalesReportEntryResponse> actual = byCurrency(salesTotalRepository.generateSalesReport());
+
+            SortedSet<String> currencies = new TreeSet<>(expected.keySet());
+            currencies.addAll(actual.keySet());
+
+            List<SalesDriftResponse> result = currencies.stream()
+                    .map(currency -> drift(currency, expected.get(currency), actual.get(currency)))
+                    .filter(Objects::nonNull)
+                    .toList();
+
+            if (fix) {
+                // corrections are deltas, so purchases committed meanwhile are kept
+                result.forEach(drift -> add(drift.currency(), 0, drift.amountDrift(), drift.discountDrift(), drift.purchasesDrift()));
+            }
+            return result;
+        });
+
+        driftingCurrencies.set(fix ? 0 : drifts.size());
+        if (!drifts.isEmpty()) {
+            log.warn("Sales totals drifted from purchases{}: {}", fix ? " (corrected)" : "", drifts);
+        }
+        return drifts;
+    }
+
+    private static Map<String, SalesReportEntryResponse> byCurrency(List<SalesReportEntryResponse> report) {
+        return report.stream()
+                .collect(Collectors.toMap(SalesReportEntryResponse::currency, Function.identity()));
+    }
+
+    private static SalesDriftResponse drift(String currency, SalesReportEntryResponse expected, SalesReportEntryResponse actual) {
+        BigDecimal amountDrift = total(expected, SalesReportEntryResponse::totalAmount).subtract(total(actual, SalesReportEntryResponse::totalAmount));
+        BigDecimal discountDrift = total(expected, SalesReportEntryResponse::totalDiscount).subtract(total(actual, SalesReportEntryResponse::totalDiscount));
+        long purchasesDrift = (expected != null ? expected.numberOfPurchases() : 0) - (actual != null ? actual.numberOfPurchases() : 0);
+
+        if (amountDrift.signum() == 0 && discountDrift.signum() == 0 && purchasesDrift == 0) {
+            return null;
+        }
+        return new SalesDriftResponse(currency, amountDrift, discountDrift, purchasesDrift);
+    }
+
+    private static BigDecimal total(SalesReportEntryResponse entry, Function<SalesReportEntryResponse, BigDecimal> field) {
+        return entry != null ? Objects.requireNonNullElse(field.apply(entry), BigDecimal.ZERO) : BigDecimal.ZERO;
+    }
+}
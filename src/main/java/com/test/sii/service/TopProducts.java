@@ -0,0 +1,141 @@
+package com.test.sii.service;
+
+import com.test.sii.dto.SalesRankingMetric;
+import com.test.sii.dto.SalesWindow;
+import com.test.sii.dto.TopProductResponse;
+import com.test.sii.model.PurchaseCreatedEvent;
+import com.test.sii.repository.PurchaseRepository;
+import com.test.sii.util.SpaceSaving;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Best-selling products per currency over the last hour and day, estimated in memory from committed purchases.
+ * <p>
+ * Each window is split into slots with their own {@link SpaceSaving} summary, expired slots are reused, and a query
+ * merges the live ones. Estimates are upper bounds within {@code maxError} of the true value. The summaries are per
+ * instance and start empty; {@link #exact} answers the same question from the purchases table.
+ */
+@Component
+public class TopProducts {
+
+    private record Key(String currency, SalesWindow window, SalesRankingMetric metric) {}
+
+    private final PurchaseRepository purchaseRepository;
+    private final Clock clock;
+    private final int capacity;
+    private final Map<Key, SlidingSummary> summaries = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TopProducts(PurchaseRepository purchaseRepository, @Value("${sales.top-products.capacity:1000}") int capacity) {
+        this(purchaseRepository, capacity, Clock.systemDefaultZone());
+    }
+
+    TopProducts(PurchaseRepository purchaseRepository, int capacity, Clock clock) {
+        this.purchaseRepository = purchaseRepository;
+        this.capacity = capacity;
+        this.clock = clock;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPurchaseCreated(PurchaseCreatedEvent event) {
+        Instant now = clock.instant();
+        BigDecimal revenue = event.regularPrice().subtract(Objects.requireNonNullElse(event.discountAmount(), BigDecimal.ZERO));
+        for (SalesWindow window : SalesWindow.values()) {
+            summary(event.currency(), window, SalesRankingMetric.UNITS).add(now, event.productId(), 1);
+            summary(event.currency(), window, SalesRankingMetric.REVENUE).add(now, event.productId(), revenue.doubleValue());
+        }
+    }
+
+    public List<TopProductResponse> top(String currency, SalesWindow window, SalesRankingMetric metric, int limit) {
+        SlidingSummary summary = summaries.get(new Key(currency, window, metric));
+        if (summary == null) {
+            return List.of();
+        }
+        int scale = metric == SalesRankingMetric.UNITS ? 0 : 2;
+        return SpaceSaving.top(summary.snapshots(clock.instant()), limit).stream()
+                .map(estimate -> new TopProductResponse(
+                        estimate.key(),
+                        BigDecimal.valueOf(estimate.count()).setScale(scale, RoundingMode.HALF_UP),
+                        BigDecimal.valueOf(estimate.error()).setScale(scale, RoundingMode.HALF_UP)
+                ))
+                .toList();
+    }
+
+    /**
+     * Computes the ranking from the purchases table. Purchases only record their day, so the exact ranking covers
+     * whole days back to the day the window starts.
+     */
+    public List<TopProductResponse> exact(String currency, SalesWindow window, SalesRankingMetric metric, int limit) {
+        Date since = Date.valueOf(LocalDate.ofInstant(clock.instant().minus(window.duration()), clock.getZone()));
+        PageRequest page = PageRequest.of(0, limit);
+        return metric == SalesRankingMetric.UNITS
+                ? purchaseRepository.findTopProductsByUnits(currency, since, page)
+                : purchaseRepository.findTopProductsByRevenue(currency, since, page);
+    }
+
+    private SlidingSummary summary(String currency, SalesWindow window, SalesRankingMetric metric) {
+        return summaries.computeIfAbsent(new Key(currency, window, metric), key -> new SlidingSummary(window, capacity));
+    }
+
+    private static final class SlidingSummary {
+
+        private final long slotMillis;
+        private final SpaceSaving<Integer>[] slots;
+        private final long[] slotEpochs;
+        private final int capacity;
+
+        @SuppressWarnings("unchecked")
+        private SlidingSummary(SalesWindow window, int capacity) {
+            this.slotMillis = window.getSlot().toMillis();
+            this.slots = new SpaceSaving[window.getSlots()];
+            this.slotEpochs = new long[window.getSlots()];
+            this.capacity = capacity;
+        }
+
+        private void add(Instant now, Integer productId, double weight) {
+            long epoch = now.toEpochMilli() / slotMillis;
+            int index = (int) (epoch % slots.length);
+            // added under the lock, so a concurrent rotation cannot replace the slot in between and lose the count
+            synchronized (this) {
+                if (slots[index] == null || slotEpochs[index] != epoch) {
+                    slots[index] = new SpaceSaving<>(capacity);
+                    slotEpochs[index] = epoch;
+                }
+                slots[index].add(productId, weight);
+            }
+        }
+
+        private List<SpaceSaving.Snapshot<Integer>> snapshots(Instant now) {
+            long epoch = now.toEpochMilli() / slotMillis;
+            List<SpaceSaving<Integer>> live = new ArrayList<>(slots.length);
+            synchronized (this) {
+                for (int i = 0; i < slots.length; i++) {
+                    if (slots[i] != null && slotEpochs[i] > epoch - slots.length) {
+                        live.add(slots[i]);
+                    }
+                }
+            }
+            return live.stream().map(SpaceSaving::snapshot).toList();
+        }
+    }
+}
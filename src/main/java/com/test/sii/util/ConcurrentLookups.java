@@ -0,0 +1,59 @@
+package com.test.sii.util;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Runs two independent lookups concurrently, each on its own virtual thread, and combines their results. Works like
+ * {@code StructuredTaskScope.ShutdownOnFailure} (still a preview API in Java 21): the first lookup to fail cancels the
+ * other one and its exception is rethrown as is, and neither lookup outlives the call.
+ * <p>
+ * Inside a transaction the lookups run one after another on the calling thread instead, since forked threads would
+ * neither see the transaction nor share its connection, and could starve the pool while the caller holds one.
+ */
+public final class ConcurrentLookups {
+
+    private ConcurrentLookups() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <A, B, R> R join(Supplier<A> first, Supplier<B> second, BiFunction<? super A, ? super B, R> combine) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return combine.apply(first.get(), second.get());
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletionService<Object> lookups = new ExecutorCompletionService<>(executor);
+            Future<Object> firstResult = lookups.submit(first::get);
+            Future<Object> secondResult = lookups.submit(second::get);
+            try {
+                for (int i = 0; i < 2; i++) {
+                    Future<Object> done = lookups.take();
+                    if (done.state() == Future.State.FAILED) {
+                        firstResult.cancel(true);
+                        secondResult.cancel(true);
+                        throw rethrow(done.exceptionNow());
+                    }
+                }
+            } catch (InterruptedException e) {
+                firstResult.cancel(true);
+                secondResult.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for lookups", e);
+            }
+            return combine.apply((A) firstResult.resultNow(), (B) secondResult.resultNow());
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable failure) {
+        if (failure instanceof Error error) {
+            throw error;
+        }
+        return failure instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new CompletionException(failure);
+    }
+}
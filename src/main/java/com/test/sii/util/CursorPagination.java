@@ -0,0 +1,84 @@
+package com.test.sii.util;
+
+import com.test.sii.dto.CursorPageResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset pagination over ascending ids. The cursor is an opaque token of the last returned id, a page is read with
+ * {@code id > :afterId order by id limit :size + 1} so its cost does not depend on how deep it is; the extra row only
+ * tells whether there is a next page. Requests without a page size get at most {@code pagination.max-page-size} rows.
+ */
+@Component
+public class CursorPagination {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final String CURSOR_PREFIX = "id:";
+
+    private final int maxPageSize;
+
+    public CursorPagination(@Value("${pagination.max-page-size:1000}") int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    public int pageSize(Integer size) {
+        if (size == null) {
+            return maxPageSize;
+        }
+        if (size <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be greater than zero", new Exception("Page size cannot be " + size));
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    public int afterId(String cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(CURSOR_PREFIX)) {
+                throw new IllegalArgumentException(decoded);
+            }
+            return Integer.parseInt(decoded.substring(CURSOR_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", new Exception("Cursor " + cursor + " is not valid"));
+        }
+    }
+
+    public String cursor(int id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((CURSOR_PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param rows up to {@code pageSize + 1} rows ordered by id
+     */
+    public <E, R> CursorPageResponse<R> page(List<E> rows, int pageSize, Function<E, Integer> id, Function<E, R> mapper) {
+        List<E> content = rows.size() > pageSize ? rows.subList(0, pageSize) : rows;
+        String nextCursor = rows.size() > pageSize ? cursor(id.apply(content.getLast())) : null;
+
+        return new CursorPageResponse<>(
+                content.stream()
+                        .map(mapper)
+                        .toList(),
+                nextCursor
+        );
+    }
+
+    public HttpHeaders headers(CursorPageResponse<?> page) {
+        HttpHeaders headers = new HttpHeaders();
+        if (page.nextCursor() != null) {
+            headers.add(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return headers;
+    }
+}
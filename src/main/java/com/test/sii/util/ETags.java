@@ -0,0 +1,66 @@
+package com.test.sii.util;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Strong entity tags of versioned resources. A single resource is tagged with its version, a list with a hash of the
+ * ids and versions of its elements in order, so it changes whenever an element is added, removed or updated.
+ */
+public final class ETags {
+
+    private static final String ANY = "*";
+    private static final String WEAK_PREFIX = "W/";
+
+    private ETags() {
+    }
+
+    public static String of(long version) {
+        return quote(Long.toString(version));
+    }
+
+    public static <E> String of(List<E> elements, ToIntFunction<E> id, ToLongFunction<E> version) {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + Long.BYTES);
+        for (E element : elements) {
+            buffer.clear();
+            buffer.putInt(id.applyAsInt(element)).putLong(version.applyAsLong(element));
+            digest.update(buffer.array());
+        }
+        // 128 bits are plenty to tell versions of the same list apart
+        return quote(HexFormat.of().formatHex(digest.digest(), 0, 16));
+    }
+
+    /**
+     * Strong comparison of an {@code If-Match} header with the current tag, a missing header matches anything.
+     */
+    public static boolean matches(String ifMatch, String eTag) {
+        if (ifMatch == null) {
+            return true;
+        }
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals(ANY) || !tag.startsWith(WEAK_PREFIX) && tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every Java platform", e);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.test.sii.util;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe inverted index of documents with a name and a description, searched by word prefixes. Text is split into
+ * words at every character which is not a letter or digit and lower-cased, each word keeps a posting list of the sorted
+ * ids of the documents containing it and whether it occurs in their name, description or both.
+ * <p>
+ * A document matches when every searched word is a prefix of one of its words. Each searched word scores the best of
+ * its matches: 2 for the name, 1 for the description, 3 for both, doubled for a whole-word match. Hits are ordered by
+ * total score, then by id. Searched words shorter than {@code minPrefixLength} only match whole words, so a one or two
+ * letter word never expands to a large part of the vocabulary; longer words expand to every indexed word they are a
+ * prefix of, and the hits and their total stay exact.
+ * <p>
+ * Documents carry a version and are only ever replaced by a newer one.
+ */
+public final class InvertedIndex {
+
+    public record Hits(int total, List<Integer> ids) {
+
+        private static final Hits NONE = new Hits(0, List.of());
+    }
+
+    private static final byte NAME = 1;
+    private static final byte DESCRIPTION = 2;
+    private static final int MAX_WORD_SCORE = 6;
+
+    private static final class Postings {
+        private final String term;
+        private int[] ids = new int[2];
+        private byte[] fields = new byte[2];
+        private int size;
+
+        private Postings(String term) {
+            this.term = term;
+        }
+
+        private int indexOf(int id) {
+            return Arrays.binarySearch(ids, 0, size, id);
+        }
+
+        private void put(int id, byte field) {
+            // ids mostly grow, so new documents are appended
+            int index = size == 0 || ids[size - 1] < id ? -size - 1 : indexOf(id);
+            if (index >= 0) {
+                fields[index] = field;
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            System.arraycopy(fields, index, fields, index + 1, size - index);
+            ids[index] = id;
+            fields[index] = field;
+            size++;
+        }
+
+        private void remove(int id) {
+            int index = indexOf(id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                System.arraycopy(fields, index + 1, fields, index, size - index - 1);
+                size--;
+            }
+        }
+    }
+
+    private record Document(long version, Postings[] postings) {}
+
+    private final int minPrefixLength;
+    private final Map<String, Postings> terms = new HashMap<>();
+    // the same posting lists in word order, only for expanding prefixes
+    private final NavigableMap<String, Postings> sortedTerms = new TreeMap<>();
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public InvertedIndex(int minPrefixLength) {
+        if (minPrefixLength <= 0) {
+            throw new IllegalArgumentException("Minimum prefix length must be positive, got " + minPrefixLength);
+        }
+        this.minPrefixLength = minPrefixLength;
+    }
+
+    /**
+     * Lower-cased words of the text, in order and with repetitions.
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        String folded = text.toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean inWord = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                words.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Indexes the document, replacing the words of its previous version.
+     *
+     * @return false if a newer version of the document is already indexed
+     */
+    public boolean put(int id, long version, String name, String description) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Id must not be negative, got " + id);
+        }
+        Map<String, Byte> fields = new HashMap<>();
+        tokenize(name).forEach(word -> fields.merge(word, NAME, (left, right) -> (byte) (left | right)));
+        tokenize(description).forEach(word -> fields.merge(word, DESCRIPTION, (left, right) -> (byte) (left | right)));
+
+        lock.writeLock().lock();
+        try {
+            Document previous = documents.get(id);
+            if (previous != null && previous.version() > version) {
+                return false;
+            }
+            if (previous != null) {
+                for (Postings postings : previous.postings()) {
+                    if (!fields.containsKey(postings.term)) {
+                        postings.remove(id);
+                        if (postings.size == 0) {
+                            terms.remove(postings.term);
+                            sortedTerms.remove(postings.term);
+                        }
+                    }
+                }
+            }
+            Postings[] postings = new Postings[fields.size()];
+            int i = 0;
+            for (Map.Entry<String, Byte> field : fields.entrySet()) {
+                postings[i] = terms.computeIfAbsent(field.getKey(), this::newPostings);
+                postings[i++].put(id, field.getValue());
+            }
+            documents.put(id, new Document(version, postings));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param words  lower-cased words, see {@link #tokenize}
+     * @param offset number of best hits to skip
+     * @param limit  maximum number of ids returned
+     */
+    public Hits search(List<String> words, int offset, int limit) {
+        List<String> distinct = words.stream().distinct().toList();
+        if (distinct.isEmpty()) {
+            return Hits.NONE;
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Match> matches = new ArrayList<>(distinct.size());
+            for (String word : distinct) {
+                Match match = new Match(word, expand(word));
+                if (match.postings().length == 0) {
+                    return Hits.NONE;
+                }
+                matches.add(match);
+            }
+            // candidates come from the rarest word and shrink with every further one
+            matches.sort(Comparator.comparingLong(Match::size));
+
+            Candidates candidates = matches.getFirst().candidates();
+            for (Match match : matches.subList(1, matches.size())) {
+                match.retain(candidates);
+            }
+            return candidates.page(MAX_WORD_SCORE * matches.size(), offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indexed words starting with a searched word.
+     */
+    private record Match(String word, Postings[] postings) {
+
+        private long size() {
+            long size = 0;
+            for (Postings expanded : postings) {
+                size += expanded.size;
+            }
+            return size;
+        }
+
+        /**
+         * Documents containing any of the words, merged pairwise from the already sorted posting lists.
+         */
+        private Candidates candidates() {
+            List<Candidates> runs = new ArrayList<>(postings.length);
+            for (Postings expanded : postings) {
+                Candidates run = new Candidates(Arrays.copyOf(expanded.ids, expanded.size), new int[expanded.size], expanded.size);
+                for (int i = 0; i < run.count; i++) {
+                    run.scores[i] = score(expanded, i);
+                }
+                runs.add(run);
+            }
+            while (runs.size() > 1) {
+                List<Candidates> merged = new ArrayList<>((runs.size() + 1) / 2);
+                for (int i = 0; i < runs.size(); i += 2) {
+                    merged.add(i + 1 < runs.size() ? runs.get(i).union(runs.get(i + 1)) : runs.get(i));
+                }
+                runs = merged;
+            }
+            return runs.getFirst();
+        }
+
+        /**
+         * Drops the candidates containing none of the words and adds the score of the others. Candidates are sorted,
+         * so each posting list is only searched after the previous candidate's position.
+         */
+        private void retain(Candidates candidates) {
+            int[] from = new int[postings.length];
+            int retained = 0;
+            for (int i = 0; i < candidates.count; i++) {
+                int id = candidates.ids[i];
+                int best = 0;
+                for (int j = 0; j < postings.length; j++) {
+                    int index = Arrays.binarySearch(postings[j].ids, from[j], postings[j].size, id);
+                    if (index >= 0) {
+                        best = Math.max(best, score(postings[j], index));
+                        from[j] = index + 1;
+                    } else {
+                        from[j] = -index - 1;
+                    }
+                }
+                if (best > 0) {
+                    candidates.ids[retained] = id;
+                    candidates.scores[retained++] = candidates.scores[i] + best;
+                }
+            }
+            candidates.count = retained;
+        }
+
+        private int score(Postings expanded, int index) {
+            byte field = expanded.fields[index];
+            int score = ((field & NAME) != 0 ? 2 : 0) + ((field & DESCRIPTION) != 0 ? 1 : 0);
+            return expanded.term.length() == word.length() ? score * 2 : score;
+        }
+    }
+
+    /**
+     * Matching document ids in ascending order with their scores so far.
+     */
+    private static final class Candidates {
+        private final int[] ids;
+        private final int[] scores;
+        private int count;
+
+        private Candidates(int[] ids, int[] scores, int count) {
+            this.ids = ids;
+            this.scores = scores;
+            this.count = count;
+        }
+
+        /**
+         * Documents in either, scored with the better of their scores.
+         */
+        private Candidates union(Candidates other) {
+            Candidates union = new Candidates(new int[count + other.count], new int[count + other.count], 0);
+            int i = 0;
+            int j = 0;
+            while (i < count || j < other.count) {
+                if (j == other.count || i < count && ids[i] < other.ids[j]) {
+                    union.add(ids[i], scores[i++]);
+                } else if (i == count || other.ids[j] < ids[i]) {
+                    union.add(other.ids[j], other.scores[j++]);
+                } else {
+                    union.add(ids[i], Math.max(scores[i++], other.scores[j++]));
+                }
+            }
+            return union;
+        }
+
+        private void add(int id, int score) {
+            ids[count] = id;
+            scores[count++] = score;
+        }
+
+        /**
+         * Counting sort by descending score, stable so that equal scores stay in id order. Only the requested page is
+         * written out.
+         */
+        private Hits page(int maxScore, int offset, int limit) {
+            int[] starts = new int[maxScore + 2];
+            for (int i = 0; i < count; i++) {
+                starts[maxScore - scores[i] + 1]++;
+            }
+            for (int score = 1; score < starts.length; score++) {
+                starts[score] += starts[score - 1];
+            }
+            Integer[] page = new Integer[Math.max(0, Math.min(limit, count - offset))];
+            for (int i = 0; i < count && page.length > 0; i++) {
+                int position = starts[maxScore - scores[i]]++ - offset;
+                if (position >= 0 && position < page.length) {
+                    page[position] = ids[i];
+                }
+            }
+            return new Hits(count, List.of(page));
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Postings newPostings(String term) {
+        Postings postings = new Postings(term);
+        sortedTerms.put(term, postings);
+        return postings;
+    }
+
+    private Postings[] expand(String word) {
+        if (word.length() < minPrefixLength) {
+            Postings postings = terms.get(word);
+            return postings != null ? new Postings[]{postings} : new Postings[0];
+        }
+        return sortedTerms.subMap(word, true, word + Character.MAX_VALUE, false).values().toArray(Postings[]::new);
+    }
+}
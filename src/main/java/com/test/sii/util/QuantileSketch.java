@@ -0,0 +1,132 @@
+package com.test.sii.util;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Thread-safe, mergeable quantile sketch of non-negative values with relative accuracy {@code a}: values are counted in
+ * logarithmic buckets {@code (gamma^(i-1), gamma^i]} with {@code gamma = (1 + a) / (1 - a)}, so any quantile is
+ * returned within {@code a} of a value at that rank. Memory grows with the logarithm of the value range, not with the
+ * number of values.
+ */
+public final class QuantileSketch {
+
+    // smaller values (e.g. no discount) are counted as zero
+    private static final double MIN_INDEXED_VALUE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+    private long zeroCount;
+    private long count;
+    private double max;
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1, got " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public synchronized void add(double value) {
+        if (!(value >= 0)) {
+            throw new IllegalArgumentException("Value must be non-negative, got " + value);
+        }
+        count++;
+        max = Math.max(max, value);
+        if (value < MIN_INDEXED_VALUE) {
+            zeroCount++;
+        } else {
+            buckets.merge((int) Math.ceil(Math.log(value) / logGamma), 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Adds all values counted by the other sketch, which must have the same relative accuracy.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches of relative accuracy " + relativeAccuracy + " and " + other.relativeAccuracy);
+        }
+        QuantileSketch copy = other.copy();
+        synchronized (this) {
+            copy.buckets.forEach((index, bucketCount) -> buckets.merge(index, bucketCount, Long::sum));
+            zeroCount += copy.zeroCount;
+            count += copy.count;
+            max = Math.max(max, copy.max);
+        }
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return estimated value at the quantile, {@code NaN} if the sketch is empty
+     */
+    public synchronized double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1, got " + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(quantile * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return 0;
+        }
+        for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            seen += bucket.getValue();
+            if (rank < seen) {
+                return Math.min(max, 2 * Math.pow(gamma, bucket.getKey()) / (gamma + 1));
+            }
+        }
+        return max;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized double max() {
+        return max;
+    }
+
+    public double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public synchronized QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(relativeAccuracy);
+        copy.buckets.putAll(buckets);
+        copy.zeroCount = zeroCount;
+        copy.count = count;
+        copy.max = max;
+        return copy;
+    }
+
+    public synchronized byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(Double.BYTES * 2 + Long.BYTES + Integer.BYTES + buckets.size() * (Integer.BYTES + Long.BYTES));
+        buffer.putDouble(relativeAccuracy).putLong(zeroCount).putDouble(max).putInt(buckets.size());
+        buckets.forEach((index, bucketCount) -> buffer.putInt(index).putLong(bucketCount));
+        return buffer.array();
+    }
+
+    public static QuantileSketch fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        QuantileSketch sketch = new QuantileSketch(buffer.getDouble());
+        sketch.zeroCount = buffer.getLong();
+        sketch.max = buffer.getDouble();
+        sketch.count = sketch.zeroCount;
+        int bucketCount = buffer.getInt();
+        for (int i = 0; i < bucketCount; i++) {
+            int index = buffer.getInt();
+            long indexCount = buffer.getLong();
+            sketch.buckets.put(index, indexCount);
+            sketch.count += indexCount;
+        }
+        return sketch;
+    }
+}
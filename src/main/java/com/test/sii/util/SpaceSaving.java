@@ -0,0 +1,98 @@
+package com.test.sii.util;
+
+import java.util.*;
+
+/**
+ * Thread-safe Space-Saving summary of the heaviest keys of a weighted stream, keeping at most {@code capacity}
+ * counters. A key that is not tracked takes over the smallest counter, so estimates never undercount: the true weight of
+ * a key lies within {@code [count - error, count]}, and every key heavier than {@code total / capacity} is tracked.
+ */
+public final class SpaceSaving<K> {
+
+    public record Estimate<K>(K key, double count, double error) {}
+
+    /**
+     * Copy of the counters; {@code floor} bounds the weight of any key which is not tracked.
+     */
+    public record Snapshot<K>(Map<K, Estimate<K>> estimates, double floor) {}
+
+    private static final class Counter<K> {
+        private final K key;
+        private double count;
+        private double error;
+        private long sequence;
+
+        private Counter(K key) {
+            this.key = key;
+        }
+    }
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters;
+    private final TreeSet<Counter<K>> byCount = new TreeSet<>(
+            Comparator.<Counter<K>>comparingDouble(counter -> counter.count).thenComparingLong(counter -> counter.sequence)
+    );
+    private long sequence;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = HashMap.newHashMap(capacity);
+    }
+
+    public synchronized void add(K key, double weight) {
+        if (weight <= 0) {
+            return;
+        }
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            byCount.remove(counter);
+        } else if (counters.size() < capacity) {
+            counter = new Counter<>(key);
+            counters.put(key, counter);
+        } else {
+            Counter<K> smallest = byCount.pollFirst();
+            counters.remove(smallest.key);
+            counter = new Counter<>(key);
+            counter.count = smallest.count;
+            counter.error = smallest.count;
+            counters.put(key, counter);
+        }
+        counter.count += weight;
+        counter.sequence = sequence++;
+        byCount.add(counter);
+    }
+
+    public synchronized Snapshot<K> snapshot() {
+        Map<K, Estimate<K>> estimates = HashMap.newHashMap(counters.size());
+        counters.values().forEach(counter -> estimates.put(counter.key, new Estimate<>(counter.key, counter.count, counter.error)));
+        double floor = counters.size() < capacity ? 0 : byCount.first().count;
+        return new Snapshot<>(estimates, floor);
+    }
+
+    /**
+     * Merges summaries of disjoint streams (e.g. consecutive time slots) and returns the {@code n} heaviest keys. A key
+     * missing from a summary is counted with that summary's floor, keeping the estimates upper bounds.
+     */
+    public static <K> List<Estimate<K>> top(Collection<Snapshot<K>> snapshots, int n) {
+        Set<K> keys = new HashSet<>();
+        snapshots.forEach(snapshot -> keys.addAll(snapshot.estimates().keySet()));
+
+        List<Estimate<K>> merged = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            double count = 0;
+            double error = 0;
+            for (Snapshot<K> snapshot : snapshots) {
+                Estimate<K> estimate = snapshot.estimates().get(key);
+                count += estimate != null ? estimate.count() : snapshot.floor();
+                error += estimate != null ? estimate.error() : snapshot.floor();
+            }
+            merged.add(new Estimate<>(key, count, error));
+        }
+
+        merged.sort(Comparator.comparingDouble((Estimate<K> estimate) -> estimate.count()).reversed());
+        return List.copyOf(merged.subList(0, Math.min(n, merged.size())));
+    }
+}
@@ -2,6 +2,8 @@ package com.test.sii.integration;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.sii.dto.ProductBulkRequest;
+import com.test.sii.dto.ProductBulkUpdateRequest;
 import com.test.sii.dto.ProductCreateRequest;
 import com.test.sii.dto.ProductRequest;
 import com.test.sii.dto.ProductResponse;
@@ -9,21 +11,31 @@ import com.test.sii.model.Currency;
 import com.test.sii.model.Product;
 import com.test.sii.repository.CurrencyRepository;
 import com.test.sii.repository.ProductRepository;
+import com.test.sii.controller.ProductController;
+import com.test.sii.service.CurrencyRegistry;
+import com.test.sii.service.ProductSearchIndex;
+import com.test.sii.util.CursorPagination;
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
 import io.restassured.path.json.JsonPath;
+import io.restassured.response.ExtractableResponse;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 
 import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -40,11 +52,19 @@ class ProductControllerTest {
     @Autowired
     private CurrencyRepository currencyRepository;
 
+    @Autowired
+    private CurrencyRegistry currencyRegistry;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
     @BeforeEach
     void setUp() {
         RestAssured.baseURI = "http://localhost:" + port;
         productRepository.deleteAll();
         currencyRepository.deleteAll();
+        currencyRegistry.refresh();
+        productSearchIndex.rebuild();
     }
 
     @AfterEach
@@ -305,4 +325,310 @@ class ProductControllerTest {
                 .statusCode(HttpStatus.NOT_FOUND.value())
                 .body("title", containsStringIgnoringCase("product not found"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenExistingProducts_whenGetAllProductsWithCursor_thenFollowNextCursorToLastPage() {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        for (int i = 1; i <= 5; i++) {
+            productRepository.save(new Product(null, "Product " + i, null, BigDecimal.valueOf(i), currency));
+        }
+
+        // when
+        List<String> names = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            RequestSpecification request = given().queryParam("size", 2);
+            if (cursor != null) {
+                request.queryParam("cursor", cursor);
+            }
+            ExtractableResponse<Response> response = request
+                    .when()
+                    .get("/v1/api/products")
+                    .then()
+                    .statusCode(HttpStatus.OK.value())
+                    .extract();
+            names.addAll(response.jsonPath().getList("name", String.class));
+            cursor = response.header(CursorPagination.NEXT_CURSOR_HEADER);
+            pages++;
+        } while (cursor != null);
+
+        // then
+        assertThat(pages).isEqualTo(3);
+        assertThat(names).containsExactly("Product 1", "Product 2", "Product 3", "Product 4", "Product 5");
+    }
+
+    @Test
+    void givenExistingProducts_whenExportProducts_thenStreamProductsAsNdjson() throws JsonProcessingException {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        for (int i = 1; i <= 3; i++) {
+            productRepository.save(new Product(null, "Product " + i, null, BigDecimal.valueOf(i), currency));
+        }
+
+        // when
+        String body = given()
+                .when()
+                .get("/v1/api/products/export")
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .contentType("application/x-ndjson")
+                .extract()
+                .asString();
+
+        // then
+        List<String> lines = body.lines().toList();
+        assertThat(lines).hasSize(3);
+        for (int i = 0; i < lines.size(); i++) {
+            ProductResponse product = objectMapper.readValue(lines.get(i), ProductResponse.class);
+            assertThat(product.name()).isEqualTo("Product " + (i + 1));
+            assertThat(product.currency()).isEqualTo("USD");
+        }
+    }
+
+    @Test
+    void givenProductETag_whenGetProductWithIfNoneMatch_thenReturnNotModifiedUntilUpdated() {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        Product product = productRepository.save(new Product(null, "Product 1", null, BigDecimal.valueOf(100.00), currency));
+
+        String eTag = given()
+                .when()
+                .get("/v1/api/products/" + product.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("name", equalTo("Product 1"))
+                .extract()
+                .header(HttpHeaders.ETAG);
+
+        // when
+        // then
+        given()
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .when()
+                .get("/v1/api/products/" + product.getId())
+                .then()
+                .statusCode(HttpStatus.NOT_MODIFIED.value())
+                .header(HttpHeaders.ETAG, eTag);
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(new ProductRequest("Product 2", null, null, null))
+                .when()
+                .patch("/v1/api/products/" + product.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value());
+
+        given()
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .when()
+                .get("/v1/api/products/" + product.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(HttpHeaders.ETAG, not(eTag))
+                .body("name", equalTo("Product 2"));
+    }
+
+    @Test
+    void givenPageETag_whenGetAllProductsWithIfNoneMatch_thenReturnNotModifiedUntilProductUpdated() {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        Product product = productRepository.save(new Product(null, "Product 1", null, BigDecimal.valueOf(100.00), currency));
+        productRepository.save(new Product(null, "Product 2", null, BigDecimal.valueOf(10.00), currency));
+
+        String eTag = given()
+                .queryParam("size", 10)
+                .when()
+                .get("/v1/api/products")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .extract()
+                .header(HttpHeaders.ETAG);
+
+        // when
+        // then
+        given()
+                .queryParam("size", 10)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .when()
+                .get("/v1/api/products")
+                .then()
+                .statusCode(HttpStatus.NOT_MODIFIED.value());
+
+        product.setPrice(BigDecimal.valueOf(90.00));
+        productRepository.save(product);
+
+        given()
+                .queryParam("size", 10)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .when()
+                .get("/v1/api/products")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(HttpHeaders.ETAG, not(eTag))
+                .body("price", contains(90.0f, 10.0f));
+    }
+
+    @Test
+    void givenStaleIfMatch_whenUpdateProduct_thenReturnPreconditionFailed() {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        Product product = productRepository.save(new Product(null, "Product 1", null, BigDecimal.valueOf(100.00), currency));
+
+        String eTag = given()
+                .contentType(ContentType.JSON)
+                .header(HttpHeaders.IF_MATCH, "\"" + product.getVersion() + "\"")
+                .body(new ProductRequest("Product 2", null, null, null))
+                .when()
+                .patch("/v1/api/products/" + product.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .extract()
+                .header(HttpHeaders.ETAG);
+
+        // when
+        given()
+                .contentType(ContentType.JSON)
+                .header(HttpHeaders.IF_MATCH, "\"" + product.getVersion() + "\"")
+                .body(new ProductRequest("Product 3", null, null, null))
+                .when()
+                .patch("/v1/api/products/" + product.getId())
+
+                // then
+                .then()
+                .statusCode(HttpStatus.PRECONDITION_FAILED.value())
+                .body("title", containsStringIgnoringCase("product was modified"));
+
+        assertThat(eTag).isEqualTo("\"" + (product.getVersion() + 1) + "\"");
+        assertThat(productRepository.findById(product.getId()))
+                .get()
+                .extracting(Product::getName)
+                .isEqualTo("Product 2");
+    }
+
+    @Test
+    void givenCreatesAndUpdates_whenBulkProducts_thenReturnResultPerProduct() {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        Product product = productRepository.save(new Product(null, "Product 1", null, BigDecimal.valueOf(100.00), currency));
+
+        given()
+                .when()
+                .get("/v1/api/products/" + product.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("price", equalTo(100.0f));
+
+        ProductBulkRequest request = new ProductBulkRequest(
+                List.of(
+                        new ProductCreateRequest("Product 2", null, BigDecimal.valueOf(20.00), "eur"),
+                        new ProductCreateRequest("Product 1", null, BigDecimal.valueOf(10.00), "USD")
+                ),
+                List.of(
+                        new ProductBulkUpdateRequest(product.getId(), product.getVersion(), null, null, BigDecimal.valueOf(50.00), null),
+                        new ProductBulkUpdateRequest(product.getId() + 1000, null, null, null, BigDecimal.valueOf(50.00), null)
+                )
+        );
+
+        // when
+        given()
+                .contentType(ContentType.JSON)
+                .body(request)
+                .when()
+                .post("/v1/api/products/bulk")
+
+                // then
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("created", equalTo(1))
+                .body("updated", equalTo(1))
+                .body("failed", equalTo(2))
+                .body("create.status", contains("CREATED", "VALIDATION_ERROR"))
+                .body("create[1].message", equalTo("Product name already exists"))
+                .body("update.status", contains("UPDATED", "NOT_FOUND"))
+                .body("update[0].version", equalTo(1));
+
+        assertThat(productRepository.count()).isEqualTo(2);
+        assertThat(currencyRepository.findAll())
+                .extracting(Currency::getCurrency)
+                .containsExactlyInAnyOrder("USD", "EUR");
+
+        // the cached product is replaced
+        given()
+                .when()
+                .get("/v1/api/products/" + product.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(HttpHeaders.ETAG, "\"1\"")
+                .body("price", equalTo(50.0f));
+    }
+
+    @Test
+    void givenSavedProducts_whenSearchProducts_thenReturnBestMatchesFirst() {
+        // given
+        given()
+                .contentType(ContentType.JSON)
+                .body(new ProductCreateRequest("Office chair", "Ergonomic, with armrests", BigDecimal.valueOf(150.00), "USD"))
+                .when()
+                .post("/v1/api/products")
+                .then()
+                .statusCode(HttpStatus.CREATED.value());
+
+        Integer id = given()
+                .contentType(ContentType.JSON)
+                .body(new ProductCreateRequest("Desk", "Fits any office chair", BigDecimal.valueOf(300.00), "USD"))
+                .when()
+                .post("/v1/api/products")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract()
+                .path("id");
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(new ProductRequest("Standing desk", null, null, null))
+                .when()
+                .patch("/v1/api/products/" + id)
+                .then()
+                .statusCode(HttpStatus.OK.value());
+
+        // when
+        given()
+                .queryParam("q", "Office CHA")
+                .when()
+                .get("/v1/api/products/search")
+
+                // then
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(ProductController.TOTAL_COUNT_HEADER, "2")
+                .body("name", contains("Office chair", "Standing desk"));
+
+        given()
+                .queryParam("q", "stand")
+                .queryParam("size", 1)
+                .when()
+                .get("/v1/api/products/search")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .header(ProductController.TOTAL_COUNT_HEADER, "1")
+                .body("id", contains(id));
+    }
+
+    @Test
+    void givenBlankQuery_whenSearchProducts_thenReturnError() {
+        // given
+        // when
+        given()
+                .queryParam("q", " ")
+                .when()
+                .get("/v1/api/products/search")
+
+                // then
+                .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value())
+                .body("title", containsStringIgnoringCase("search query must not be blank"));
+    }
+}
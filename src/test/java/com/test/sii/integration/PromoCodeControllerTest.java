@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.test.sii.dto.DiscountMethod;
 import com.test.sii.dto.PromoCodeDetailsResponse;
+import com.test.sii.dto.PromoCodeGenerationRequest;
 import com.test.sii.dto.PromoCodeRequest;
 import com.test.sii.dto.PromoCodeResponse;
 import com.test.sii.model.Currency;
@@ -11,6 +12,7 @@ import com.test.sii.model.PromoCodeMonetary;
 import com.test.sii.model.PromoCodePercentage;
 import com.test.sii.repository.CurrencyRepository;
 import com.test.sii.repository.PromoCodeRepository;
+import com.test.sii.service.CurrencyRegistry;
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
 import io.restassured.path.json.JsonPath;
@@ -27,8 +29,10 @@ import java.sql.Date;
 import java.text.DateFormat;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -45,11 +49,15 @@ class PromoCodeControllerTest {
     @Autowired
     private CurrencyRepository currencyRepository;
 
+    @Autowired
+    private CurrencyRegistry currencyRegistry;
+
     @BeforeEach
     void setUp() {
         RestAssured.baseURI = "http://localhost:" + port;
         promoCodeRepository.deleteAll();
         currencyRepository.deleteAll();
+        currencyRegistry.refresh();
     }
 
     @AfterEach
@@ -403,4 +411,195 @@ class PromoCodeControllerTest {
                 .statusCode(HttpStatus.NOT_FOUND.value())
                 .body("title", containsStringIgnoringCase("promo code not found"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenExistingPromoCode_whenRebuildPromoCodeFilter_thenKeepPromoCodeResolvable() {
+        // given
+        String code = "promoCodeExample";
+
+        Currency currency = new Currency(null, "USD");
+        currency = currencyRepository.save(currency);
+
+        PromoCodeMonetary promoCode = new PromoCodeMonetary(
+                code,
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                100,
+                BigDecimal.valueOf(10.0),
+                currency
+        );
+        promoCodeRepository.save(promoCode);
+
+        // when
+        given()
+                .contentType(ContentType.JSON)
+                .when()
+                .post("/v1/api/promo-codes/filter/rebuild")
+
+                // then
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .body("rebuiltCodes", equalTo(1))
+                .body("bits", greaterThan(0));
+
+        given()
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/promo-codes/details/" + code)
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .body("code", equalTo(code));
+    }
+
+    @Test
+    void givenGenerationRequest_whenGeneratePromoCodes_thenInsertRequestedCountOfUniqueCodes() throws InterruptedException {
+        // given
+        PromoCodeGenerationRequest request = new PromoCodeGenerationRequest(
+                DiscountMethod.PERCENTAGE,
+                BigDecimal.valueOf(15),
+                "usd",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                1,
+                5000,
+                10,
+                null
+        );
+
+        // when
+        String jobId = given()
+                .contentType(ContentType.JSON)
+                .with()
+                .body(request)
+                .when()
+                .post("/v1/api/promo-codes/bulk")
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .body("requested", equalTo(5000))
+                .extract()
+                .path("id");
+
+        String status = "RUNNING";
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while ("RUNNING".equals(status) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+            status = given()
+                    .when()
+                    .get("/v1/api/promo-codes/bulk/" + jobId)
+                    .then()
+                    .statusCode(HttpStatus.OK.value())
+                    .extract()
+                    .path("status");
+        }
+
+        // then
+        assertThat(status).isEqualTo("COMPLETED");
+        assertThat(promoCodeRepository.count()).isEqualTo(5000);
+
+        String code = promoCodeRepository.findAll().getFirst().getCode();
+        given()
+                .when()
+                .get("/v1/api/promo-codes/details/" + code)
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .body("discountMethod", equalTo("PERCENTAGE"))
+                .body("currency", equalTo("USD"))
+                .body("usages", equalTo(0));
+    }
+
+    @Test
+    void givenTooSmallCodeSpace_whenGeneratePromoCodes_thenReturnBadRequest() {
+        // given
+        PromoCodeGenerationRequest request = new PromoCodeGenerationRequest(
+                DiscountMethod.MONETARY,
+                BigDecimal.valueOf(5),
+                "USD",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                1,
+                1000,
+                3,
+                "0123456789"
+        );
+
+        // when
+        given()
+                .contentType(ContentType.JSON)
+                .with()
+                .body(request)
+                .when()
+                .post("/v1/api/promo-codes/bulk")
+
+                // then
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.BAD_REQUEST.value());
+    }
+
+    @Test
+    void givenAlphabetWithRepeatedCharacters_whenGeneratePromoCodes_thenReturnBadRequest() {
+        // given
+        PromoCodeGenerationRequest request = new PromoCodeGenerationRequest(
+                DiscountMethod.MONETARY,
+                BigDecimal.valueOf(5),
+                "USD",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                1,
+                2,
+                24,
+                "aa"
+        );
+
+        // when
+        given()
+                .contentType(ContentType.JSON)
+                .with()
+                .body(request)
+                .when()
+                .post("/v1/api/promo-codes/bulk")
+
+                // then
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.BAD_REQUEST.value());
+    }
+
+    @Test
+    void givenCsvFile_whenImportPromoCodes_thenInsertValidRowsAndReportErrors() {
+        // given
+        StringBuilder csv = new StringBuilder("code,discountMethod,expirationDate,maxUsages,amount,currency\n");
+        for (int i = 0; i < 2500; i++) {
+            csv.append("importedCode").append(i).append(",MONETARY,2030-01-01,5,10.00,USD\n");
+        }
+        csv.append("x,MONETARY,2030-01-01,5,10.00,USD\n");
+
+        // when
+        given()
+                .contentType("text/csv")
+                .with()
+                .body(csv.toString())
+                .when()
+                .post("/v1/api/promo-codes/import")
+
+                // then
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .body("status", equalTo("COMPLETED"))
+                .body("requested", equalTo(2501))
+                .body("inserted", equalTo(2500))
+                .body("rejected", equalTo(1))
+                .body("errors[0].line", equalTo(2502))
+                .body("errors[0].code", equalTo("x"));
+
+        given()
+                .when()
+                .get("/v1/api/promo-codes/details/importedCode2499")
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .body("amount", equalTo(10.00f))
+                .body("currency", equalTo("USD"));
+    }
+}
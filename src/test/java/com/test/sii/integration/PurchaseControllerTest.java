@@ -2,16 +2,23 @@ package com.test.sii.integration;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.sii.dto.CheckoutItemRequest;
+import com.test.sii.dto.CheckoutRequest;
+import com.test.sii.dto.ProductRequest;
 import com.test.sii.dto.ProductResponse;
 import com.test.sii.dto.PurchaseRequest;
 import com.test.sii.dto.PurchaseResponse;
 import com.test.sii.model.Currency;
 import com.test.sii.model.Product;
+import com.test.sii.model.PromoCode;
 import com.test.sii.model.PromoCodeMonetary;
+import com.test.sii.model.Purchase;
 import com.test.sii.repository.CurrencyRepository;
 import com.test.sii.repository.ProductRepository;
 import com.test.sii.repository.PromoCodeRepository;
 import com.test.sii.repository.PurchaseRepository;
+import com.test.sii.service.ProductCache;
+import com.test.sii.service.PromoCodeCache;
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
 import io.restassured.path.json.JsonPath;
@@ -27,8 +34,15 @@ import java.math.BigDecimal;
 import java.sql.Date;
 import java.text.DateFormat;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -51,19 +65,27 @@ class PurchaseControllerTest {
     @Autowired
     private PromoCodeRepository promoCodeRepository;
 
+    @Autowired
+    private PromoCodeCache promoCodeCache;
+
+    @Autowired
+    private ProductCache productCache;
+
     @BeforeEach
     void setUp() {
         RestAssured.baseURI = "http://localhost:" + port;
-        promoCodeRepository.deleteAll();
+        promoCodeCache.invalidateAll();
+        productCache.invalidateAll();
         purchaseRepository.deleteAll();
+        promoCodeRepository.deleteAll();
         productRepository.deleteAll();
         currencyRepository.deleteAll();
     }
 
     @AfterEach
     void tearDown() {
-        promoCodeRepository.deleteAll();
         purchaseRepository.deleteAll();
+        promoCodeRepository.deleteAll();
         productRepository.deleteAll();
         currencyRepository.deleteAll();
     }
@@ -252,6 +274,86 @@ class PurchaseControllerTest {
                 ));
     }
 
+    @Test
+    void givenManyProductsAndValidPromoCode_whenGetDiscountPrices_thenReturnDiscountPricePerProduct() {
+        // given
+        String code = "promoCodeExample";
+
+        Currency usd = currencyRepository.save(new Currency(null, "USD"));
+        Currency eur = currencyRepository.save(new Currency(null, "EUR"));
+
+        Product product1 = productRepository.save(new Product(null, "Product 1", null, BigDecimal.valueOf(100.0), usd));
+        Product product2 = productRepository.save(new Product(null, "Product 2", null, BigDecimal.valueOf(10.0), usd));
+        Product product3 = productRepository.save(new Product(null, "Product 3", null, BigDecimal.valueOf(50.0), eur));
+
+        promoCodeRepository.save(new PromoCodeMonetary(
+                code,
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                100,
+                BigDecimal.valueOf(20.0),
+                usd
+        ));
+
+        // when
+        given()
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/purchases/discounts?productIds=" + product1.getId() + "," + product2.getId() + "," + product3.getId() + "&promoCode=" + code)
+
+                // then
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .body(product1.getId() + ".discountPrice", equalTo(80.0f))
+                .body(product2.getId() + ".discountPrice", equalTo(0))
+                .body(product3.getId() + ".discountPrice", equalTo(50.0f))
+                .body(product3.getId() + ".warning", containsStringIgnoringCase("currencies"));
+    }
+
+    @Test
+    void givenQuotedProductUpdated_whenGetDiscountPrice_thenQuoteNewPrice() {
+        // given
+        String code = "promoCodeExample";
+
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        Product product = productRepository.save(new Product(null, "Product 1", null, BigDecimal.valueOf(100.0), currency));
+        promoCodeRepository.save(new PromoCodeMonetary(
+                code,
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                100,
+                BigDecimal.valueOf(20.0),
+                currency
+        ));
+
+        String discountUrl = "/v1/api/purchases/discount?productId=" + product.getId() + "&promoCode=" + code;
+        given()
+                .when()
+                .get(discountUrl)
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("discountPrice", equalTo(80.0f));
+
+        given()
+                .contentType(ContentType.JSON)
+                .with()
+                .body(new ProductRequest(null, null, BigDecimal.valueOf(50.0), null))
+                .when()
+                .patch("/v1/api/products/" + product.getId())
+                .then()
+                .statusCode(HttpStatus.OK.value());
+
+        // when
+        given()
+                .when()
+                .get(discountUrl)
+
+                // then
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .body("discountPrice", equalTo(30.0f));
+    }
+
     @Test
     void givenValidPurchaseRequest_whenCreatePurchase_thenCreateNewPurchase() {
         // given
@@ -626,4 +728,177 @@ class PurchaseControllerTest {
                 .body("product", equalTo(JsonPath.from(expectedProductJSON).getMap("")))
                 .body("warning", containsStringIgnoringCase("maximum usages"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenPromoCodeRedeemedConcurrently_whenCreatePurchase_thenUsagesNeverExceedMaxUsages() throws Exception {
+        // given
+        int maxUsages = 50;
+        int requests = 300;
+
+        Currency currency = new Currency(null, "USD");
+        currency = currencyRepository.save(currency);
+
+        Product product = new Product(
+                null,
+                "Product 1",
+                null,
+                BigDecimal.valueOf(100.0),
+                currency
+        );
+
+        product = productRepository.save(product);
+
+        PromoCodeMonetary promoCode = new PromoCodeMonetary(
+                "promoCodeExample",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                maxUsages,
+                BigDecimal.valueOf(20.0),
+                currency
+        );
+
+        promoCode = promoCodeRepository.save(promoCode);
+
+        PurchaseRequest purchaseRequest = new PurchaseRequest(
+                product.getId(),
+                promoCode.getCode()
+        );
+
+        // when
+        List<Future<?>> responses = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                responses.add(executor.submit(() -> given()
+                        .contentType(ContentType.JSON)
+                        .with()
+                        .body(purchaseRequest)
+                        .when()
+                        .post("/v1/api/purchases")
+                        .then()
+                        .statusCode(HttpStatus.CREATED.value())));
+            }
+        }
+
+        // then
+        for (Future<?> response : responses) {
+            // rethrows a failed status code assertion of the request
+            response.get();
+        }
+
+        assertThat(promoCodeRepository.findByCode(promoCode.getCode()))
+                .isNotEmpty()
+                .get()
+                .extracting(PromoCode::getUsages)
+                .isEqualTo(maxUsages);
+
+        assertThat(purchaseRepository.findAll())
+                .hasSize(requests)
+                .filteredOn(purchase -> purchase.getDiscountAmount().signum() > 0)
+                .hasSize(maxUsages);
+    }
+
+    @Test
+    void givenCartWithPromoCode_whenCheckout_thenCreatePurchasesAndRedeemCodeOnce() {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        Product keyboard = productRepository.save(new Product(null, "Keyboard", null, BigDecimal.valueOf(30.0), currency));
+        Product mouse = productRepository.save(new Product(null, "Mouse", null, BigDecimal.valueOf(10.0), currency));
+        PromoCode promoCode = promoCodeRepository.save(new PromoCodeMonetary(
+                "checkoutCode",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                5,
+                BigDecimal.valueOf(20.0),
+                currency
+        ));
+
+        CheckoutRequest checkoutRequest = new CheckoutRequest(List.of(
+                new CheckoutItemRequest(keyboard.getId(), 2),
+                new CheckoutItemRequest(mouse.getId(), 2)
+        ), promoCode.getCode());
+
+        // when
+        given()
+                .contentType(ContentType.JSON)
+                .with()
+                .body(checkoutRequest)
+                .when()
+                .post("/v1/api/purchases/checkout")
+
+                // then
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.CREATED.value())
+                .body("lines", hasSize(2))
+                .body("totals[0].currency", equalTo("USD"))
+                .body("totals[0].discountAmount", equalTo(20.0f))
+                .body("totals[0].totalPrice", equalTo(60.0f))
+                .body("warning", nullValue());
+
+        assertThat(promoCodeRepository.findByCode(promoCode.getCode()))
+                .get()
+                .extracting(PromoCode::getUsages)
+                .isEqualTo(1);
+
+        List<Purchase> purchases = purchaseRepository.findAll();
+        assertThat(purchases).hasSize(4);
+        assertThat(purchases.stream()
+                .map(Purchase::getDiscountAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add))
+                .isEqualByComparingTo("20");
+    }
+
+    @Test
+    void givenRetriedRequestWithIdempotencyKey_whenCreatePurchase_thenCreateOnePurchase() {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        Product product = productRepository.save(new Product(null, "Product 1", null, BigDecimal.valueOf(100.0), currency));
+        PromoCode promoCode = promoCodeRepository.save(new PromoCodeMonetary(
+                "idempotentCode",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                5,
+                BigDecimal.valueOf(20.0),
+                currency
+        ));
+        PurchaseRequest purchaseRequest = new PurchaseRequest(product.getId(), promoCode.getCode());
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        // when
+        String first = given()
+                .contentType(ContentType.JSON)
+                .header("Idempotency-Key", idempotencyKey)
+                .body(purchaseRequest)
+                .when()
+                .post("/v1/api/purchases")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract()
+                .asString();
+
+        String retried = given()
+                .contentType(ContentType.JSON)
+                .header("Idempotency-Key", idempotencyKey)
+                .body(purchaseRequest)
+                .when()
+                .post("/v1/api/purchases")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract()
+                .asString();
+
+        // then
+        assertThat(retried).isEqualTo(first);
+        assertThat(purchaseRepository.findAll()).hasSize(1);
+        assertThat(promoCodeRepository.findByCode(promoCode.getCode()))
+                .get()
+                .extracting(PromoCode::getUsages)
+                .isEqualTo(1);
+
+        given()
+                .contentType(ContentType.JSON)
+                .header("Idempotency-Key", idempotencyKey)
+                .body(new PurchaseRequest(product.getId(), "otherCode"))
+                .when()
+                .post("/v1/api/purchases")
+                .then()
+                .statusCode(HttpStatus.UNPROCESSABLE_ENTITY.value());
+    }
+}
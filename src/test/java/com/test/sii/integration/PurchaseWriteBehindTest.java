@@ -0,0 +1,176 @@
+package com.test.sii.integration;
+
+import com.test.sii.dto.PurchaseRequest;
+import com.test.sii.model.Currency;
+import com.test.sii.model.Product;
+import com.test.sii.model.PromoCode;
+import com.test.sii.model.PromoCodeMonetary;
+import com.test.sii.model.PurchaseJournalCheckpoint;
+import com.test.sii.repository.CurrencyRepository;
+import com.test.sii.repository.ProductRepository;
+import com.test.sii.repository.PromoCodeRepository;
+import com.test.sii.repository.PurchaseJournalCheckpointRepository;
+import com.test.sii.repository.PurchaseRepository;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:sii-write-behind",
+                "purchases.write-behind.enabled=true",
+                "purchases.write-behind.batch-size=20",
+                "purchases.write-behind.journal-segment-size=2KB"
+        }
+)
+class PurchaseWriteBehindTest {
+
+    private static final Path JOURNAL_DIRECTORY;
+
+    static {
+        try {
+            JOURNAL_DIRECTORY = Files.createTempDirectory("purchase-journal");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void journalDirectory(DynamicPropertyRegistry registry) {
+        registry.add("purchases.write-behind.journal-dir", JOURNAL_DIRECTORY::toString);
+    }
+
+    @LocalServerPort
+    Integer port;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PromoCodeRepository promoCodeRepository;
+
+    @Autowired
+    private PurchaseJournalCheckpointRepository checkpointRepository;
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.baseURI = "http://localhost:" + port;
+        purchaseRepository.deleteAll();
+        promoCodeRepository.deleteAll();
+        productRepository.deleteAll();
+        currencyRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        purchaseRepository.deleteAll();
+        promoCodeRepository.deleteAll();
+        productRepository.deleteAll();
+        currencyRepository.deleteAll();
+    }
+
+    @Test
+    void givenConcurrentPurchases_whenCreatePurchase_thenInsertAllInBatchesAndCheckpointJournal() throws Exception {
+        // given
+        int requests = 100;
+
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        Product product = productRepository.save(new Product(null, "Product 1", null, BigDecimal.valueOf(100.0), currency));
+        PromoCode promoCode = promoCodeRepository.save(new PromoCodeMonetary(
+                "writeBehind",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                requests,
+                BigDecimal.valueOf(20.0),
+                currency
+        ));
+        long checkpointBefore = checkpointRepository.findAll().stream()
+                .mapToLong(PurchaseJournalCheckpoint::getSequence)
+                .max()
+                .orElse(0);
+
+        PurchaseRequest purchaseRequest = new PurchaseRequest(product.getId(), promoCode.getCode());
+
+        // when
+        List<Future<?>> responses = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                responses.add(executor.submit(() -> given()
+                        .contentType(ContentType.JSON)
+                        .with()
+                        .body(purchaseRequest)
+                        .when()
+                        .post("/v1/api/purchases")
+                        .then()
+                        .statusCode(HttpStatus.CREATED.value())));
+            }
+        }
+        for (Future<?> response : responses) {
+            // rethrows a failed status code assertion of the request
+            response.get();
+        }
+        for (int attempt = 0; attempt < 100 && (purchaseRepository.count() < requests || journalSize() > 0); attempt++) {
+            Thread.sleep(50);
+        }
+
+        // then
+        assertThat(purchaseRepository.findAll())
+                .hasSize(requests)
+                .allSatisfy(purchase -> assertThat(purchase.getDiscountAmount()).isEqualByComparingTo("20.0"));
+
+        assertThat(checkpointRepository.findAll())
+                .singleElement()
+                .extracting(PurchaseJournalCheckpoint::getSequence)
+                .isEqualTo(checkpointBefore + requests);
+
+        // the full segments are deleted, the one appended to is emptied
+        assertThat(journalSize()).isZero();
+        assertThat(journalSegments()).hasSize(1);
+    }
+
+    private static List<Path> journalSegments() throws IOException {
+        try (Stream<Path> files = Files.list(JOURNAL_DIRECTORY)) {
+            return files
+                    .filter(file -> file.getFileName().toString().endsWith(".log"))
+                    .toList();
+        }
+    }
+
+    private static long journalSize() throws IOException {
+        long size = 0;
+        for (Path segment : journalSegments()) {
+            size += Files.size(segment);
+        }
+        return size;
+    }
+}
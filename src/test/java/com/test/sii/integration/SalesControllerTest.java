@@ -2,14 +2,21 @@ package com.test.sii.integration;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.sii.dto.PurchaseRequest;
 import com.test.sii.dto.SalesReportEntryResponse;
 import com.test.sii.model.Currency;
 import com.test.sii.model.Product;
+import com.test.sii.model.PromoCode;
+import com.test.sii.model.PromoCodeMonetary;
 import com.test.sii.model.Purchase;
 import com.test.sii.repository.CurrencyRepository;
 import com.test.sii.repository.ProductRepository;
 import com.test.sii.repository.PromoCodeRepository;
+import com.test.sii.repository.PromoCodeSalesRepository;
 import com.test.sii.repository.PurchaseRepository;
+import com.test.sii.repository.SalesBucketRepository;
+import com.test.sii.repository.SalesTotalRepository;
+import com.test.sii.util.CursorPagination;
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
 import io.restassured.path.json.JsonPath;
@@ -24,11 +31,14 @@ import org.springframework.http.HttpStatus;
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 class SalesControllerTest {
@@ -50,21 +60,36 @@ class SalesControllerTest {
     @Autowired
     private PromoCodeRepository promoCodeRepository;
 
+    @Autowired
+    private SalesTotalRepository salesTotalRepository;
+
+    @Autowired
+    private SalesBucketRepository salesBucketRepository;
+
+    @Autowired
+    private PromoCodeSalesRepository promoCodeSalesRepository;
+
     @BeforeEach
     void setUp() {
         RestAssured.baseURI = "http://localhost:" + port;
-        promoCodeRepository.deleteAll();
         purchaseRepository.deleteAll();
+        promoCodeRepository.deleteAll();
         productRepository.deleteAll();
         currencyRepository.deleteAll();
+        salesTotalRepository.deleteAll();
+        salesBucketRepository.deleteAll();
+        promoCodeSalesRepository.deleteAll();
     }
 
     @AfterEach
     void tearDown() {
-        promoCodeRepository.deleteAll();
         purchaseRepository.deleteAll();
+        promoCodeRepository.deleteAll();
         productRepository.deleteAll();
         currencyRepository.deleteAll();
+        salesTotalRepository.deleteAll();
+        salesBucketRepository.deleteAll();
+        promoCodeSalesRepository.deleteAll();
     }
 
     @Test
@@ -159,4 +184,245 @@ class SalesControllerTest {
                 .statusCode(HttpStatus.OK.value())
                 .body("", empty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenPurchasesDeletedOutsideOfApplication_whenReconcileSales_thenReportAndFixDrift() {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        Product product = productRepository.save(new Product(
+                null,
+                "Product 1",
+                null,
+                BigDecimal.valueOf(100.00),
+                currency
+        ));
+        purchaseRepository.save(new Purchase(
+                null,
+                Date.valueOf(LocalDate.now()),
+                BigDecimal.valueOf(100.00),
+                BigDecimal.valueOf(25.00),
+                product
+        ));
+        purchaseRepository.deleteAllInBatch();
+
+        // when
+        given()
+                .contentType(ContentType.JSON)
+                .when()
+                .post("/v1/api/sales/reconcile?fix=true")
+
+                // then
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .body("[0].currency", equalTo("USD"))
+                .body("[0].amountDrift", equalTo(-100.0f))
+                .body("[0].discountDrift", equalTo(-25.0f))
+                .body("[0].purchasesDrift", equalTo(-1));
+
+        given()
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/sales/report")
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .body("", empty());
+    }
+
+    @Test
+    void givenPurchasesOnDifferentDays_whenGetDailySalesReport_thenReturnBucketsInRange() {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        Product product = productRepository.save(new Product(
+                null,
+                "Product 1",
+                null,
+                BigDecimal.valueOf(100.00),
+                currency
+        ));
+        LocalDate today = LocalDate.now();
+        for (LocalDate date : List.of(today.minusDays(10), today.minusDays(1), today.minusDays(1))) {
+            purchaseRepository.save(new Purchase(
+                    null,
+                    Date.valueOf(date),
+                    BigDecimal.valueOf(100.00),
+                    BigDecimal.valueOf(25.00),
+                    product
+            ));
+        }
+
+        // when
+        given()
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/sales/report?from=" + today.minusDays(2) + "&to=" + today + "&granularity=DAY")
+
+                // then
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .body("size()", equalTo(1))
+                .body("[0].periodStart", equalTo(today.minusDays(1).atStartOfDay().toString() + ":00"))
+                .body("[0].currency", equalTo("USD"))
+                .body("[0].totalAmount", equalTo(200.0f))
+                .body("[0].numberOfPurchases", equalTo(2));
+    }
+
+    @Test
+    void givenPurchasesAtDifferentHours_whenGetHourlySalesReport_thenReturnBucketsOfPurchaseTimes() {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        Product product = productRepository.save(new Product(
+                null,
+                "Product 1",
+                null,
+                BigDecimal.valueOf(100.00),
+                currency
+        ));
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        for (LocalDateTime purchasedAt : List.of(yesterday.atTime(9, 15), yesterday.atTime(9, 45), yesterday.atTime(14, 0))) {
+            purchaseRepository.save(new Purchase(
+                    null,
+                    Date.valueOf(yesterday),
+                    purchasedAt,
+                    BigDecimal.valueOf(100.00),
+                    BigDecimal.valueOf(25.00),
+                    product,
+                    null
+            ));
+        }
+
+        // when
+        given()
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/sales/report?from=" + yesterday + "&to=" + yesterday.plusDays(1) + "&granularity=HOUR")
+
+                // then
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .body("size()", equalTo(2))
+                .body("[0].periodStart", equalTo(yesterday.atTime(9, 0).toString() + ":00"))
+                .body("[0].numberOfPurchases", equalTo(2))
+                .body("[1].periodStart", equalTo(yesterday.atTime(14, 0).toString() + ":00"))
+                .body("[1].numberOfPurchases", equalTo(1));
+
+        assertThat(purchaseRepository.findAll())
+                .extracting(Purchase::getPurchasedAt)
+                .containsExactlyInAnyOrder(yesterday.atTime(9, 15), yesterday.atTime(9, 45), yesterday.atTime(14, 0));
+    }
+
+    @Test
+    void givenPurchases_whenGetTopProducts_thenReturnEstimatedAndExactRanking() {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "GBP"));
+        Product product1 = productRepository.save(new Product(null, "Product 1", null, BigDecimal.valueOf(10.00), currency));
+        Product product2 = productRepository.save(new Product(null, "Product 2", null, BigDecimal.valueOf(50.00), currency));
+        for (Product product : List.of(product1, product1, product2)) {
+            purchaseRepository.save(new Purchase(
+                    null,
+                    Date.valueOf(LocalDate.now()),
+                    product.getPrice(),
+                    BigDecimal.ZERO,
+                    product
+            ));
+        }
+
+        for (boolean exact : List.of(false, true)) {
+            // when
+            given()
+                    .contentType(ContentType.JSON)
+                    .when()
+                    .get("/v1/api/sales/top-products?currency=GBP&window=DAY&metric=REVENUE&exact=" + exact)
+
+                    // then
+                    .then()
+                    .assertThat()
+                    .statusCode(HttpStatus.OK.value())
+                    .body("productId", equalTo(List.of(product2.getId(), product1.getId())))
+                    .body("[0].value", equalTo(50.0f))
+                    .body("[1].value", equalTo(20.0f));
+        }
+    }
+
+    @Test
+    void givenPurchases_whenGetDiscountStatistics_thenReturnPercentiles() {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "CHF"));
+        Product product = productRepository.save(new Product(null, "Product 1", null, BigDecimal.valueOf(100.00), currency));
+        for (BigDecimal discount : List.of(BigDecimal.valueOf(10.00), BigDecimal.valueOf(10.00), BigDecimal.valueOf(50.00))) {
+            purchaseRepository.save(new Purchase(
+                    null,
+                    Date.valueOf(LocalDate.now()),
+                    product.getPrice(),
+                    discount,
+                    product
+            ));
+        }
+
+        // when
+        given()
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/sales/report/discounts")
+
+                // then
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .body("find { it.currency == 'CHF' }.numberOfPurchases", equalTo(3))
+                .body("find { it.currency == 'CHF' }.discountAmount.max", equalTo(50.0f))
+                .body("find { it.currency == 'CHF' }.discountRatio.max", equalTo(0.5f));
+    }
+
+    @Test
+    void givenPurchasesWithPromoCodes_whenGetPromoCodeReport_thenReturnPagesPerCode() throws JsonProcessingException {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        Product product = productRepository.save(new Product(null, "Product 1", null, BigDecimal.valueOf(100.00), currency));
+        PromoCode first = promoCodeRepository.save(new PromoCodeMonetary("salesReport1", Date.valueOf(LocalDate.now().plusYears(1)), 10, BigDecimal.valueOf(20.00), currency));
+        PromoCode second = promoCodeRepository.save(new PromoCodeMonetary("salesReport2", Date.valueOf(LocalDate.now().plusYears(1)), 10, BigDecimal.valueOf(5.00), currency));
+
+        for (PromoCode promoCode : List.of(first, first, second)) {
+            given()
+                    .contentType(ContentType.JSON)
+                    .body(objectMapper.writeValueAsString(new PurchaseRequest(product.getId(), promoCode.getCode())))
+                    .when()
+                    .post("/v1/api/purchases")
+                    .then()
+                    .statusCode(HttpStatus.CREATED.value());
+        }
+
+        // when
+        String nextCursor = given()
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/sales/report/promo-codes?size=1")
+
+                // then
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .body("size()", equalTo(1))
+                .body("[0].code", equalTo("salesReport1"))
+                .body("[0].redemptions", equalTo(2))
+                .body("[0].totalDiscount", equalTo(40.0f))
+                .body("[0].totalRevenue", equalTo(160.0f))
+                .extract()
+                .header(CursorPagination.NEXT_CURSOR_HEADER);
+
+        given()
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/sales/report/promo-codes?size=1&cursor=" + nextCursor)
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.OK.value())
+                .header(CursorPagination.NEXT_CURSOR_HEADER, nullValue())
+                .body("[0].code", equalTo("salesReport2"))
+                .body("[0].redemptions", equalTo(1))
+                .body("[0].totalRevenue", equalTo(95.0f));
+    }
+}
@@ -0,0 +1,62 @@
+package com.test.sii.repository;
+
+import com.test.sii.model.Currency;
+import com.test.sii.model.IdSequences;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(IdSequenceRepository.class)
+class IdSequenceRepositoryTest {
+
+    @Autowired
+    private IdSequenceRepository idSequenceRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void givenIdsTakenByJdbcAndJpa_whenNextIds_thenIdsNeverCollide() {
+        // given
+        List<Integer> jpaIds = new ArrayList<>();
+        jpaIds.add(currencyRepository.saveAndFlush(new Currency(null, "USD")).getId());
+
+        // when
+        List<Integer> jdbcIds = idSequenceRepository.nextIds(IdSequences.CURRENCIES, IdSequences.ALLOCATION_SIZE + 1);
+        for (int i = 0; i < IdSequences.ALLOCATION_SIZE; i++) {
+            jpaIds.add(currencyRepository.saveAndFlush(new Currency(null, "C" + i)).getId());
+        }
+
+        // then
+        assertThat(jdbcIds)
+                .hasSize(IdSequences.ALLOCATION_SIZE + 1)
+                .doesNotHaveDuplicates()
+                .doesNotContainAnyElementsOf(jpaIds);
+    }
+
+    @Test
+    void givenIdsInsertedAheadOfSequence_whenRestartAfterExistingIds_thenContinueAfterHighestId() {
+        // given
+        jdbcTemplate.update("insert into currencies (id, currency) values (1000, 'USD')");
+
+        // when
+        boolean restarted = idSequenceRepository.restartAfterExistingIds(IdSequences.CURRENCIES, "currencies");
+        boolean restartedAgain = idSequenceRepository.restartAfterExistingIds(IdSequences.CURRENCIES, "currencies");
+
+        // then
+        assertThat(restarted).isTrue();
+        assertThat(restartedAgain).isFalse();
+        assertThat(idSequenceRepository.nextIds(IdSequences.CURRENCIES, 1)).containsExactly(1001);
+    }
+}
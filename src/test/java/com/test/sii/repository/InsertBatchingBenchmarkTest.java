@@ -0,0 +1,100 @@
+package com.test.sii.repository;
+
+import com.test.sii.model.*;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares bulk inserts of products, promo codes and purchases sent one statement per row (as with identity ids) and
+ * in JDBC batches (possible with sequence ids). Run with
+ * {@code mvn test -Dbenchmark=true -Dtest=InsertBatchingBenchmarkTest}.
+ */
+@Slf4j
+@DataJpaTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class InsertBatchingBenchmarkTest {
+
+    private static final int ROWS = 20_000;
+    private static final int UNBATCHED = 1;
+    private static final int BATCHED = 50;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Currency currency;
+
+    @BeforeEach
+    void setUp() {
+        currency = entityManager.persistFlushFind(new Currency(null, "USD"));
+    }
+
+    @Test
+    void givenSequenceIds_whenInsertingInBatches_thenSendFewerStatements() {
+        // given
+        Product product = entityManager.persistFlushFind(new Product(null, "Product", null, BigDecimal.TEN, currency));
+
+        // when
+        List<Result> results = new ArrayList<>();
+        for (int batchSize : new int[]{UNBATCHED, BATCHED}) {
+            results.add(insert("products", batchSize, i -> new Product(null, "Product " + batchSize + "-" + i, null, BigDecimal.TEN, currency)));
+            results.add(insert("promo codes", batchSize, i -> new PromoCodeMonetary("code" + batchSize + "x" + i, Date.valueOf(LocalDate.now().plusYears(1)), 10, BigDecimal.ONE, currency)));
+            results.add(insert("purchases", batchSize, i -> new Purchase(null, Date.valueOf(LocalDate.now()), BigDecimal.TEN, BigDecimal.ONE, product)));
+        }
+        results.forEach(result -> log.info("{}", result));
+
+        // then
+        for (int i = 0; i < 3; i++) {
+            Result unbatched = results.get(i);
+            Result batched = results.get(i + 3);
+            assertThat(batched.statements()).isLessThan(unbatched.statements() / 10);
+        }
+    }
+
+    private Result insert(String entities, int batchSize, IntFunction<Object> entity) {
+        Session session = entityManager.getEntityManager().unwrap(Session.class);
+        session.setJdbcBatchSize(batchSize);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROWS; i++) {
+            session.persist(entity.apply(i));
+            if ((i + 1) % BATCHED == 0) {
+                session.flush();
+                session.clear();
+            }
+        }
+        session.flush();
+        session.clear();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        return new Result(entities, batchSize, statistics.getPrepareStatementCount(), Math.round(ROWS / seconds));
+    }
+
+    private record Result(String entities, int batchSize, long statements, long rowsPerSecond) {
+    }
+}
@@ -0,0 +1,143 @@
+package com.test.sii.repository;
+
+import com.test.sii.dto.ProductResponse;
+import com.test.sii.dto.PromoCodeResponse;
+import com.test.sii.model.IdSequences;
+import com.test.sii.model.Product;
+import com.test.sii.model.PromoCode;
+import com.test.sii.model.PromoCodeListItem;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares listing pages read as managed entities and copied into responses with pages selected straight into
+ * responses. Run with {@code mvn test -Dbenchmark=true -Dtest=ListingProjectionBenchmarkTest}.
+ */
+@Slf4j
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Import(IdSequenceRepository.class)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ListingProjectionBenchmarkTest {
+
+    private static final int PAGE_SIZE = 1000;
+    private static final int ROWS = PAGE_SIZE * 10;
+    private static final int RUNS = 25;
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PromoCodeRepository promoCodeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdSequenceRepository idSequenceRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        Integer currencyId = idSequenceRepository.nextIds(IdSequences.CURRENCIES, 1).getFirst();
+        jdbcTemplate.update("insert into currencies (id, currency) values (?, 'USD')", currencyId);
+
+        List<Integer> productIds = idSequenceRepository.nextIds(IdSequences.PRODUCTS, ROWS);
+        List<Integer> promoCodeIds = idSequenceRepository.nextIds(IdSequences.PROMO_CODES, ROWS);
+        List<Object[]> products = new ArrayList<>(ROWS);
+        List<Object[]> promoCodes = new ArrayList<>(ROWS);
+        Date expirationDate = Date.valueOf(LocalDate.now().plusYears(1));
+        for (int i = 0; i < ROWS; i++) {
+            products.add(new Object[]{productIds.get(i), "Product " + i, "Description of product " + i, 10, currencyId});
+            promoCodes.add(new Object[]{promoCodeIds.get(i), "code" + i, currencyId, expirationDate, 10, i % 2 == 0 ? 5 : 25, i % 2 == 0 ? "PromoCodeMonetary" : "PromoCodePercentage"});
+        }
+        jdbcTemplate.batchUpdate("insert into products (id, name, description, price, currency_id, version) values (?, ?, ?, ?, ?, 0)", products);
+        jdbcTemplate.batchUpdate("insert into promo_codes (id, code, currency_id, expiration_date, max_usages, usages, reserved_usages, amount, dtype) values (?, ?, ?, ?, ?, 0, 0, ?, ?)", promoCodes);
+    }
+
+    @Test
+    void givenThousandRowPage_whenListing_thenProjectionAllocatesLessThanEntities() {
+        // given
+        Supplier<List<ProductResponse>> productEntities = () -> entities("select p from Product p join fetch p.currency order by p.id", Product.class).stream()
+                .map(product -> new ProductResponse(product.getId(), product.getName(), product.getDescription(), product.getPrice(), product.getCurrency().getCurrency()))
+                .toList();
+        Supplier<List<ProductResponse>> productProjection = () -> productRepository.findResponsesByIdGreaterThan(0, Limit.of(PAGE_SIZE));
+        Supplier<List<PromoCodeResponse>> promoCodeEntities = () -> entities("select p from PromoCode p join fetch p.currency order by p.id", PromoCode.class).stream()
+                .map(promoCode -> new PromoCodeResponse(promoCode.getCode(), promoCode.getExpirationDate(), promoCode.getAmount(), promoCode.getCurrency().getCurrency(), promoCode.getDiscountMethod()))
+                .toList();
+        Supplier<List<PromoCodeResponse>> promoCodeProjection = () -> promoCodeRepository.findListItemsByIdGreaterThan(0, Limit.of(PAGE_SIZE)).stream()
+                .map(PromoCodeListItem::toResponse)
+                .toList();
+
+        // when
+        Result productEntitiesResult = measure(productEntities);
+        Result productProjectionResult = measure(productProjection);
+        Result promoCodeEntitiesResult = measure(promoCodeEntities);
+        Result promoCodeProjectionResult = measure(promoCodeProjection);
+
+        log.info("Page size: {}", PAGE_SIZE);
+        log.info("Products entities: {}, projection: {}", productEntitiesResult, productProjectionResult);
+        log.info("Promo codes entities: {}, projection: {}", promoCodeEntitiesResult, promoCodeProjectionResult);
+
+        // then
+        assertThat(productProjection.get()).isEqualTo(productEntities.get());
+        assertThat(promoCodeProjection.get()).isEqualTo(promoCodeEntities.get());
+        assertThat(productProjectionResult.bytes()).isLessThan(productEntitiesResult.bytes());
+        assertThat(promoCodeProjectionResult.bytes()).isLessThan(promoCodeEntitiesResult.bytes());
+    }
+
+    private <T> List<T> entities(String query, Class<T> type) {
+        return entityManager.getEntityManager().createQuery(query, type)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList();
+    }
+
+    private Result measure(Supplier<? extends List<?>> page) {
+        for (int i = 0; i < 5; i++) {
+            page.get();
+            entityManager.clear();
+        }
+        double[] millis = new double[RUNS];
+        long[] bytes = new long[RUNS];
+        long threadId = Thread.currentThread().threadId();
+        for (int i = 0; i < RUNS; i++) {
+            long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            page.get();
+            millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+            bytes[i] = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            entityManager.clear();
+        }
+        Arrays.sort(millis);
+        Arrays.sort(bytes);
+        return new Result(millis[RUNS / 2], bytes[RUNS / 2]);
+    }
+
+    private record Result(double millis, long bytes) {
+        @Override
+        public String toString() {
+            return millis + " ms, " + bytes / 1024 + " KiB";
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.test.sii.repository;
+
+import com.test.sii.model.Currency;
+import com.test.sii.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+class ProductBatchRepositoryTest {
+
+    private ProductBatchRepository productBatchRepository;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private IdSequenceRepository idSequenceRepository;
+
+    private final Currency currency = new Currency(1, "USD");
+
+    @BeforeEach
+    void setUp() {
+        productBatchRepository = new ProductBatchRepository(jdbcTemplate, idSequenceRepository);
+    }
+
+    @Test
+    void givenDriverReportsNoUpdateCounts_whenUpdate_thenReadBackWhichProductsWereWritten() throws Exception {
+        // given
+        Product written = new Product(1, "Chair", null, BigDecimal.valueOf(50.00), currency);
+        written.setVersion(3L);
+        Product changedMeanwhile = new Product(2, "Table", null, BigDecimal.valueOf(80.00), currency);
+        changedMeanwhile.setVersion(5L);
+
+        given(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                .willReturn(new int[]{Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO});
+
+        // product 1 is at the next version with the written values, product 2 was renamed by someone else
+        ResultSet first = row(1, "Chair", BigDecimal.valueOf(50.0), 4);
+        ResultSet second = row(2, "Desk", BigDecimal.valueOf(80.00), 6);
+        given(jdbcTemplate.query(anyString(), anyMap(), any(RowMapper.class))).willAnswer(invocation -> {
+            RowMapper<?> rowMapper = invocation.getArgument(2);
+            rowMapper.mapRow(first, 0);
+            rowMapper.mapRow(second, 1);
+            return List.of();
+        });
+
+        // when
+        boolean[] actual = productBatchRepository.update(List.of(written, changedMeanwhile));
+
+        // then
+        assertThat(actual).containsExactly(true, false);
+        assertThat(written.getVersion()).isEqualTo(4L);
+        assertThat(changedMeanwhile.getVersion()).isEqualTo(5L);
+    }
+
+    @Test
+    void givenDriverReportsUpdateCounts_whenUpdate_thenDoNotReadBack() {
+        // given
+        Product updated = new Product(1, "Chair", null, BigDecimal.valueOf(50.00), currency);
+        updated.setVersion(0L);
+        Product conflicting = new Product(2, "Table", null, BigDecimal.valueOf(80.00), currency);
+        conflicting.setVersion(0L);
+
+        given(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class))).willReturn(new int[]{1, 0});
+
+        // when
+        boolean[] actual = productBatchRepository.update(List.of(updated, conflicting));
+
+        // then
+        assertThat(actual).containsExactly(true, false);
+        assertThat(updated.getVersion()).isEqualTo(1L);
+    }
+
+    private static ResultSet row(int id, String name, BigDecimal price, long version) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        given(rs.getInt("id")).willReturn(id);
+        given(rs.getString("name")).willReturn(name);
+        given(rs.getString("description")).willReturn(null);
+        given(rs.getBigDecimal("price")).willReturn(price);
+        given(rs.getInt("currency_id")).willReturn(1);
+        given(rs.getString("currency")).willReturn("USD");
+        given(rs.getLong("version")).willReturn(version);
+        return rs;
+    }
+}
@@ -0,0 +1,106 @@
+package com.test.sii.repository;
+
+import com.test.sii.dto.ProductResponse;
+import com.test.sii.model.IdSequences;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares offset and keyset pagination of products on a deep page. Run with
+ * {@code mvn test -Dbenchmark=true -Dtest=ProductPaginationBenchmarkTest}.
+ */
+@Slf4j
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Import(IdSequenceRepository.class)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ProductPaginationBenchmarkTest {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int DEEP_PAGE = 10_000;
+    private static final int PRODUCTS = PAGE_SIZE * DEEP_PAGE;
+    private static final int RUNS = 25;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdSequenceRepository idSequenceRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private int firstId;
+
+    @BeforeEach
+    void setUp() {
+        Integer currencyId = idSequenceRepository.nextIds(IdSequences.CURRENCIES, 1).getFirst();
+        jdbcTemplate.update("insert into currencies (id, currency) values (?, 'USD')", currencyId);
+
+        List<Integer> ids = idSequenceRepository.nextIds(IdSequences.PRODUCTS, PRODUCTS);
+        List<Object[]> rows = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            rows.add(new Object[]{ids.get(i), "Product " + i, 10, currencyId});
+        }
+        jdbcTemplate.batchUpdate("insert into products (id, name, price, currency_id, version) values (?, ?, ?, ?, 0)", rows);
+        firstId = ids.getFirst();
+    }
+
+    @Test
+    void givenLargeCatalog_whenReadingDeepPage_thenKeysetLatencyDoesNotGrow() {
+        // given
+        int deepPageAfterId = firstId - 1 + (DEEP_PAGE - 1) * PAGE_SIZE;
+
+        // when
+        double offsetFirst = medianMillis(() -> productRepository.findResponses(PageRequest.of(0, PAGE_SIZE, Sort.by("id"))));
+        double offsetDeep = medianMillis(() -> productRepository.findResponses(PageRequest.of(DEEP_PAGE - 1, PAGE_SIZE, Sort.by("id"))));
+        double keysetFirst = medianMillis(() -> productRepository.findResponsesByIdGreaterThan(0, Limit.of(PAGE_SIZE + 1)));
+        double keysetDeep = medianMillis(() -> productRepository.findResponsesByIdGreaterThan(deepPageAfterId, Limit.of(PAGE_SIZE + 1)));
+
+        log.info("Products: {}, page size: {}", PRODUCTS, PAGE_SIZE);
+        log.info("Offset page 1: {} ms, page {}: {} ms", offsetFirst, DEEP_PAGE, offsetDeep);
+        log.info("Keyset page 1: {} ms, page {}: {} ms", keysetFirst, DEEP_PAGE, keysetDeep);
+
+        // then
+        assertThat(productRepository.findResponsesByIdGreaterThan(deepPageAfterId, Limit.of(PAGE_SIZE + 1)))
+                .extracting(ProductResponse::id)
+                .first()
+                .isEqualTo(deepPageAfterId + 1);
+        assertThat(keysetDeep).isLessThan(keysetFirst * 3 + 1);
+    }
+
+    private double medianMillis(Supplier<List<ProductResponse>> query) {
+        for (int i = 0; i < 5; i++) {
+            query.get();
+            entityManager.clear();
+        }
+        double[] millis = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            query.get();
+            millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+            entityManager.clear();
+        }
+        Arrays.sort(millis);
+        return millis[RUNS / 2];
+    }
+}
@@ -1,16 +1,26 @@
 package com.test.sii.repository;
 
+import com.test.sii.dto.DiscountMethod;
+import com.test.sii.dto.PromoCodeResponse;
 import com.test.sii.model.Currency;
 import com.test.sii.model.PromoCode;
+import com.test.sii.model.PromoCodeListItem;
 import com.test.sii.model.PromoCodeMonetary;
 import com.test.sii.model.PromoCodePercentage;
+import com.test.sii.model.PromoCodeReservation;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
 import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -24,6 +34,12 @@ class PromoCodeRepositoryTest {
     @Autowired
     private CurrencyRepository currencyRepository;
 
+    @Autowired
+    private PromoCodeReservationRepository reservationRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
     @AfterEach
     void tearDown() {
         promoCodeRepository.deleteAll();
@@ -98,4 +114,134 @@ class PromoCodeRepositoryTest {
         // then
         assertThat(actual).isEmpty();
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenPromoCodeWithRemainingUsages_whenRedeem_thenIncrementUsagesUpToMaxUsages() {
+        // given
+        String code = "promoCodeExample";
+
+        Currency currency = new Currency(null, "USD");
+        currency = currencyRepository.save(currency);
+
+        PromoCodeMonetary promoCode = new PromoCodeMonetary(
+                code,
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                2,
+                BigDecimal.valueOf(45.0),
+                currency
+        );
+
+        promoCodeRepository.save(promoCode);
+
+        Date today = Date.valueOf(LocalDate.now());
+
+        // when
+        int first = promoCodeRepository.redeem(code, today);
+        int second = promoCodeRepository.redeem(code, today);
+        int third = promoCodeRepository.redeem(code, today);
+
+        // then
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isEqualTo(1);
+        assertThat(third).isZero();
+
+        entityManager.clear();
+
+        assertThat(promoCodeRepository.findByCode(code))
+                .isNotEmpty()
+                .get()
+                .extracting(PromoCode::getUsages)
+                .isEqualTo(2);
+    }
+
+    @Test
+    void givenExpiredPromoCode_whenRedeem_thenReturnZero() {
+        // given
+        String code = "promoCodeExample";
+
+        Currency currency = new Currency(null, "USD");
+        currency = currencyRepository.save(currency);
+
+        PromoCodeMonetary promoCode = new PromoCodeMonetary(
+                code,
+                Date.valueOf(LocalDate.now().minusDays(1)),
+                10,
+                BigDecimal.valueOf(45.0),
+                currency
+        );
+
+        promoCodeRepository.save(promoCode);
+
+        // when
+        int actual = promoCodeRepository.redeem(code, Date.valueOf(LocalDate.now()));
+
+        // then
+        assertThat(actual).isZero();
+    }
+
+    @Test
+    void givenReservationsOfTwoInstances_whenReconcileReserved_thenCountOnlyOwnReservationsAsUsed() {
+        // given
+        String code = "promoCodeExample";
+
+        Currency currency = new Currency(null, "USD");
+        currency = currencyRepository.save(currency);
+
+        PromoCodeMonetary promoCode = new PromoCodeMonetary(
+                code,
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                100,
+                BigDecimal.valueOf(45.0),
+                currency
+        );
+        promoCode.setReservedUsages(30);
+        promoCodeRepository.save(promoCode);
+
+        reservationRepository.save(new PromoCodeReservation(null, code, "crashed", 10));
+        reservationRepository.save(new PromoCodeReservation(null, code, "running", 20));
+        entityManager.flush();
+
+        // when
+        int actual = promoCodeRepository.reconcileReserved("crashed");
+
+        // then
+        assertThat(actual).isEqualTo(1);
+
+        entityManager.clear();
+
+        assertThat(promoCodeRepository.findByCode(code))
+                .isNotEmpty()
+                .get()
+                .satisfies(reconciled -> {
+                    assertThat(reconciled.getUsages()).isEqualTo(10);
+                    assertThat(reconciled.getReservedUsages()).isEqualTo(20);
+                });
+    }
+
+    @Test
+    void givenMonetaryAndPercentagePromoCodes_whenFindListItems_thenSelectListingRows() {
+        // given
+        Currency currency = currencyRepository.save(new Currency(null, "USD"));
+        PromoCode monetary = promoCodeRepository.save(new PromoCodeMonetary("monetaryCode", Date.valueOf("2024-10-15"), 10, BigDecimal.valueOf(45.0), currency));
+        PromoCode percentage = promoCodeRepository.save(new PromoCodePercentage("percentageCode", Date.valueOf("2024-10-15"), 10, BigDecimal.valueOf(25.0), currency));
+        entityManager.flush();
+        entityManager.clear();
+
+        // when
+        List<PromoCodeListItem> actual = promoCodeRepository.findListItemsByIdGreaterThan(0, Limit.of(10));
+
+        // then
+        assertThat(actual)
+                .extracting(PromoCodeListItem::toResponse)
+                .containsExactly(
+                        new PromoCodeResponse("monetaryCode", Date.valueOf("2024-10-15"), new BigDecimal("45.00"), "USD", DiscountMethod.MONETARY),
+                        new PromoCodeResponse("percentageCode", Date.valueOf("2024-10-15"), new BigDecimal("25.00"), "USD", DiscountMethod.PERCENTAGE)
+                );
+        assertThat(actual)
+                .extracting(PromoCodeListItem::id)
+                .containsExactly(monetary.getId(), percentage.getId());
+        assertThat(promoCodeRepository.findListItems(PageRequest.of(1, 1, Sort.by("id"))))
+                .extracting(PromoCodeListItem::code)
+                .containsExactly("percentageCode");
+    }
+}
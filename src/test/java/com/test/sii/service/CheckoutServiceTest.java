@@ -0,0 +1,181 @@
+package com.test.sii.service;
+
+import com.test.sii.dto.CheckoutItemRequest;
+import com.test.sii.dto.CheckoutLineResponse;
+import com.test.sii.dto.CheckoutRequest;
+import com.test.sii.dto.CheckoutResponse;
+import com.test.sii.dto.CheckoutTotalResponse;
+import com.test.sii.model.Currency;
+import com.test.sii.model.Product;
+import com.test.sii.model.PromoCodeMonetary;
+import com.test.sii.model.PromoCodePercentage;
+import com.test.sii.model.Purchase;
+import com.test.sii.repository.ProductRepository;
+import com.test.sii.repository.PromoCodeRepository;
+import com.test.sii.repository.PurchaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CheckoutServiceTest {
+
+    private CheckoutService checkoutService;
+
+    @Mock
+    private PurchaseRepository purchaseRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private PromoCodeRepository promoCodeRepository;
+
+    @Mock
+    private PromoCodeService promoCodeService;
+
+    @Captor
+    private ArgumentCaptor<List<Purchase>> purchasesArgumentCaptor;
+
+    private final Currency usd = new Currency(1, "USD");
+    private final Currency eur = new Currency(2, "EUR");
+    private final Product keyboard = new Product(1, "Keyboard", null, BigDecimal.valueOf(30.00), usd);
+    private final Product mouse = new Product(2, "Mouse", null, BigDecimal.valueOf(10.00), usd);
+    private final Product cable = new Product(3, "Cable", null, BigDecimal.valueOf(5.00), eur);
+
+    @BeforeEach
+    void setUp() {
+        checkoutService = new CheckoutService(purchaseRepository, productRepository, promoCodeRepository, promoCodeService, 10);
+    }
+
+    @Test
+    void givenPercentagePromoCode_whenCheckout_thenDiscountItemsInCodeCurrencyAndRedeemOnce() {
+        // given
+        PromoCodePercentage promoCode = new PromoCodePercentage("percentage", Date.valueOf(LocalDate.now().plusYears(1)), 10, BigDecimal.valueOf(10.00), usd);
+        given(productRepository.findAllWithCurrencyByIdIn(any())).willReturn(List.of(keyboard, mouse, cable));
+        given(promoCodeRepository.findByCode("percentage")).willReturn(Optional.of(promoCode));
+        given(promoCodeService.redeem(promoCode)).willReturn(true);
+
+        // when
+        CheckoutResponse actual = checkoutService.checkout(new CheckoutRequest(List.of(
+                new CheckoutItemRequest(1, 2),
+                new CheckoutItemRequest(2, 1),
+                new CheckoutItemRequest(3, 1)
+        ), "percentage"));
+
+        // then
+        verify(promoCodeService, times(1)).redeem(promoCode);
+        verify(purchaseRepository).saveAll(purchasesArgumentCaptor.capture());
+        assertThat(purchasesArgumentCaptor.getValue())
+                .hasSize(4)
+                .filteredOn(purchase -> purchase.getPromoCode() != null)
+                .hasSize(3);
+
+        assertThat(actual.warning()).isNull();
+        assertThat(actual.lines())
+                .extracting(CheckoutLineResponse::discountAmount)
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(BigDecimal.valueOf(6), BigDecimal.valueOf(1), BigDecimal.ZERO);
+        assertThat(actual.lines().get(2).warning()).containsIgnoringCase("currencies");
+        assertThat(actual.totals())
+                .extracting(CheckoutTotalResponse::currency)
+                .containsExactly("EUR", "USD");
+        assertThat(actual.totals().get(1).totalPrice()).isEqualByComparingTo("63");
+    }
+
+    @Test
+    void givenMonetaryPromoCode_whenCheckout_thenSplitAmountOnceAcrossItems() {
+        // given
+        PromoCodeMonetary promoCode = new PromoCodeMonetary("monetary", Date.valueOf(LocalDate.now().plusYears(1)), 10, BigDecimal.valueOf(10.00), usd);
+        given(productRepository.findAllWithCurrencyByIdIn(any())).willReturn(List.of(keyboard, mouse));
+        given(promoCodeRepository.findByCode("monetary")).willReturn(Optional.of(promoCode));
+        given(promoCodeService.redeem(promoCode)).willReturn(true);
+
+        // when
+        CheckoutResponse actual = checkoutService.checkout(new CheckoutRequest(List.of(
+                new CheckoutItemRequest(1, 2),
+                new CheckoutItemRequest(2, 1)
+        ), "monetary"));
+
+        // then
+        verify(purchaseRepository).saveAll(purchasesArgumentCaptor.capture());
+        assertThat(purchasesArgumentCaptor.getValue().stream()
+                .map(Purchase::getDiscountAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add))
+                .isEqualByComparingTo("10");
+        assertThat(actual.lines())
+                .extracting(CheckoutLineResponse::discountAmount)
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("8.56"), new BigDecimal("1.44"));
+    }
+
+    @Test
+    void givenExhaustedPromoCode_whenCheckout_thenCreatePurchasesWithNoDiscount() {
+        // given
+        PromoCodeMonetary promoCode = new PromoCodeMonetary("monetary", Date.valueOf(LocalDate.now().plusYears(1)), 1, BigDecimal.valueOf(10.00), usd);
+        given(productRepository.findAllWithCurrencyByIdIn(any())).willReturn(List.of(keyboard));
+        given(promoCodeRepository.findByCode("monetary")).willReturn(Optional.of(promoCode));
+        given(promoCodeService.redeem(promoCode)).willReturn(false);
+
+        // when
+        CheckoutResponse actual = checkoutService.checkout(new CheckoutRequest(List.of(new CheckoutItemRequest(1, 3)), "monetary"));
+
+        // then
+        verify(purchaseRepository).saveAll(purchasesArgumentCaptor.capture());
+        assertThat(purchasesArgumentCaptor.getValue())
+                .hasSize(3)
+                .allSatisfy(purchase -> {
+                    assertThat(purchase.getDiscountAmount()).isEqualByComparingTo("0");
+                    assertThat(purchase.getPromoCode()).isNull();
+                });
+        assertThat(actual.warning()).containsIgnoringCase("maximum usages");
+    }
+
+    @Test
+    void givenUnknownProduct_whenCheckout_thenThrowException() {
+        // given
+        given(productRepository.findAllWithCurrencyByIdIn(any())).willReturn(List.of(keyboard));
+
+        // when
+        // then
+        assertThatThrownBy(() -> checkoutService.checkout(new CheckoutRequest(List.of(
+                new CheckoutItemRequest(1, 1),
+                new CheckoutItemRequest(42, 1)
+        ), null)))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.NOT_FOUND);
+        verify(purchaseRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void givenTooManyItems_whenCheckout_thenThrowException() {
+        // given
+        CheckoutRequest checkoutRequest = new CheckoutRequest(List.of(new CheckoutItemRequest(1, 11)), null);
+
+        // when
+        // then
+        assertThatThrownBy(() -> checkoutService.checkout(checkoutRequest))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    }
+}
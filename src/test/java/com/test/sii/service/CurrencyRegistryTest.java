@@ -0,0 +1,103 @@
+package com.test.sii.service;
+
+import com.test.sii.model.Currency;
+import com.test.sii.repository.CurrencyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CurrencyRegistryTest {
+
+    private CurrencyRegistry currencyRegistry;
+
+    @Mock
+    private CurrencyRepository currencyRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        currencyRegistry = new CurrencyRegistry(currencyRepository, transactionManager);
+    }
+
+    @Test
+    void givenLoadedCurrencies_whenGetOrCreate_thenReturnWithoutQuery() {
+        // given
+        Currency currency = new Currency(1, "USD");
+        given(currencyRepository.findAll()).willReturn(List.of(currency));
+        currencyRegistry.refresh();
+
+        // when
+        Currency actual = currencyRegistry.getOrCreate("USD");
+
+        // then
+        assertThat(actual).isSameAs(currency);
+        verify(currencyRepository, never()).findByCurrency(any());
+    }
+
+    @Test
+    void givenNewCurrencyRequestedConcurrently_whenGetOrCreate_thenInsertOnce() throws InterruptedException {
+        // given
+        CountDownLatch insertStarted = new CountDownLatch(1);
+        CountDownLatch releaseInsert = new CountDownLatch(1);
+        given(currencyRepository.findByCurrency("EUR")).willReturn(Optional.empty());
+        given(currencyRepository.saveAndFlush(any())).willAnswer(invocation -> {
+            insertStarted.countDown();
+            releaseInsert.await();
+            return new Currency(2, "EUR");
+        });
+        Set<Currency> results = ConcurrentHashMap.newKeySet();
+
+        // when
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> results.add(currencyRegistry.getOrCreate("EUR")));
+            insertStarted.await();
+            for (int i = 0; i < 10; i++) {
+                executor.submit(() -> results.add(currencyRegistry.getOrCreate("EUR")));
+            }
+            Thread.sleep(50);
+            releaseInsert.countDown();
+        }
+        Currency cached = currencyRegistry.getOrCreate("EUR");
+
+        // then
+        assertThat(results).hasSize(1);
+        assertThat(cached.getId()).isEqualTo(2);
+        verify(currencyRepository, times(1)).saveAndFlush(any());
+    }
+
+    @Test
+    void givenCurrencyInsertedElsewhere_whenGetOrCreate_thenReadExistingCurrency() {
+        // given
+        Currency existing = new Currency(3, "PLN");
+        given(currencyRepository.findByCurrency("PLN")).willReturn(Optional.empty(), Optional.of(existing));
+        given(currencyRepository.saveAndFlush(any())).willThrow(new DataIntegrityViolationException("duplicate"));
+
+        // when
+        Currency actual = currencyRegistry.getOrCreate("PLN");
+
+        // then
+        assertThat(actual).isSameAs(existing);
+    }
+}
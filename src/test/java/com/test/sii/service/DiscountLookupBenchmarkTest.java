@@ -0,0 +1,106 @@
+package com.test.sii.service;
+
+import com.test.sii.model.Currency;
+import com.test.sii.model.Product;
+import com.test.sii.model.ProductSnapshot;
+import com.test.sii.model.PromoCodeMonetary;
+import com.test.sii.model.PromoCodeSnapshot;
+import com.test.sii.repository.PromoCodeRepository;
+import com.test.sii.repository.PurchaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compares the latency of a discount quote with the product and promo code looked up one after another (as within a
+ * transaction) and concurrently, against a datasource answering every lookup in {@value #LOOKUP_MILLIS} ms. Run with
+ * {@code mvn test -Dbenchmark=true -Dtest=DiscountLookupBenchmarkTest}.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class DiscountLookupBenchmarkTest {
+
+    private static final long LOOKUP_MILLIS = 20;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 100;
+
+    private PurchaseService purchaseService;
+
+    @BeforeEach
+    void setUp() {
+        Currency currency = new Currency(1, "USD");
+        Product product = new Product(1, "Product 1", null, BigDecimal.valueOf(140.00), currency);
+        PromoCodeMonetary promoCode = new PromoCodeMonetary("promoCodeExample", Date.valueOf(LocalDate.now().plusYears(1)), 100, BigDecimal.valueOf(25.00), currency);
+
+        ProductCache productCache = mock(ProductCache.class);
+        PromoCodeService promoCodeService = mock(PromoCodeService.class);
+        given(productCache.get(1)).willAnswer(invocation -> slow(Optional.of(ProductSnapshot.of(product))));
+        given(promoCodeService.getPromoCodeSnapshot("promoCodeExample")).willAnswer(invocation -> slow(PromoCodeSnapshot.of(promoCode)));
+
+        purchaseService = new PurchaseService(
+                mock(PurchaseRepository.class),
+                productCache,
+                mock(PromoCodeRepository.class),
+                promoCodeService,
+                Optional.empty(),
+                mock(PlatformTransactionManager.class),
+                100
+        );
+    }
+
+    @Test
+    void givenSlowDatasource_whenGetDiscountPrice_thenConcurrentLookupsTakeAboutOneRoundTrip() {
+        // given
+        Supplier<Object> quote = () -> purchaseService.getDiscountPrice(1, "promoCodeExample");
+
+        // when
+        long sequential = medianMicros(() -> {
+            // an active transaction makes the lookups run one after another on the calling thread
+            TransactionSynchronizationManager.setActualTransactionActive(true);
+            try {
+                return quote.get();
+            } finally {
+                TransactionSynchronizationManager.setActualTransactionActive(false);
+            }
+        });
+        long concurrent = medianMicros(quote);
+        log.info("Median discount quote latency: sequential {} us, concurrent {} us", sequential, concurrent);
+
+        // then
+        assertThat(sequential).isGreaterThanOrEqualTo(2 * LOOKUP_MILLIS * 1000);
+        assertThat(concurrent).isLessThan(sequential * 3 / 4);
+    }
+
+    private static long medianMicros(Supplier<Object> quote) {
+        for (int i = 0; i < WARMUP; i++) {
+            quote.get();
+        }
+        long[] micros = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            quote.get();
+            micros[i] = (System.nanoTime() - start) / 1000;
+        }
+        Arrays.sort(micros);
+        return micros[ITERATIONS / 2];
+    }
+
+    private static <T> T slow(T result) throws InterruptedException {
+        Thread.sleep(LOOKUP_MILLIS);
+        return result;
+    }
+}
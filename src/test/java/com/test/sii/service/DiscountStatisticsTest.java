@@ -0,0 +1,91 @@
+package com.test.sii.service;
+
+import com.test.sii.dto.DiscountStatisticsResponse;
+import com.test.sii.model.DiscountSketch;
+import com.test.sii.model.PurchaseCreatedEvent;
+import com.test.sii.repository.DiscountSketchRepository;
+import com.test.sii.util.QuantileSketch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class DiscountStatisticsTest {
+
+    private DiscountStatistics discountStatistics;
+
+    @Mock
+    private DiscountSketchRepository discountSketchRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        discountStatistics = new DiscountStatistics(discountSketchRepository, transactionManager, 0.01);
+    }
+
+    private void purchase(String currency, String price, String discount) {
+        discountStatistics.onPurchaseCreated(new PurchaseCreatedEvent(1, null, currency, LocalDateTime.now(), new BigDecimal(price), new BigDecimal(discount)));
+    }
+
+    @Test
+    void givenPurchases_whenGetStatistics_thenReturnPercentilesPerCurrency() {
+        // given
+        for (int i = 0; i < 99; i++) {
+            purchase("USD", "100.00", "10.00");
+        }
+        purchase("USD", "100.00", "90.00");
+        purchase("EUR", "50.00", "0.00");
+
+        // when
+        List<DiscountStatisticsResponse> actual = discountStatistics.getStatistics();
+
+        // then
+        assertThat(actual).extracting(DiscountStatisticsResponse::currency).containsExactly("EUR", "USD");
+        DiscountStatisticsResponse usd = actual.get(1);
+        assertThat(usd.numberOfPurchases()).isEqualTo(100);
+        assertThat(usd.discountAmount().p50().doubleValue()).isCloseTo(10.0, within(0.1));
+        assertThat(usd.discountAmount().max()).isEqualByComparingTo("90.00");
+        assertThat(usd.discountRatio().p90().doubleValue()).isCloseTo(0.1, within(0.001));
+        assertThat(usd.discountRatio().max()).isEqualByComparingTo("0.9");
+        assertThat(actual.get(0).discountAmount().max()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void givenExistingCheckpoint_whenCheckpoint_thenMergePendingIntoStoredSketches() {
+        // given
+        QuantileSketch stored = new QuantileSketch(0.01);
+        stored.add(5);
+        DiscountSketch row = new DiscountSketch(1, "USD", stored.toBytes(), stored.toBytes());
+        given(discountSketchRepository.findByCurrency("USD")).willReturn(Optional.of(row));
+        given(discountSketchRepository.findAll()).willReturn(List.of(row));
+        purchase("USD", "100.00", "10.00");
+
+        // when
+        discountStatistics.checkpoint();
+
+        // then
+        ArgumentCaptor<DiscountSketch> saved = ArgumentCaptor.forClass(DiscountSketch.class);
+        verify(discountSketchRepository).save(saved.capture());
+        assertThat(QuantileSketch.fromBytes(saved.getValue().getAmounts()).count()).isEqualTo(2);
+        assertThat(discountStatistics.getStatistics())
+                .singleElement()
+                .extracting(DiscountStatisticsResponse::numberOfPurchases)
+                .isEqualTo(2L);
+    }
+}
@@ -0,0 +1,292 @@
+package com.test.sii.service;
+
+import com.test.sii.repository.PromoCodeRepository;
+import com.test.sii.repository.PromoCodeReservationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class HotPromoCodeCountersTest {
+
+    private static final String CODE = "promoCodeExample";
+    private static final String INSTANCE_ID = "instance-1";
+
+    private HotPromoCodeCounters hotPromoCodeCounters;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @Mock
+    private PromoCodeRepository promoCodeRepository;
+
+    @Mock
+    private PromoCodeReservationRepository reservationRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    // state of the promo code row, maintained by the repository answers below
+    private final AtomicInteger maxUsages = new AtomicInteger();
+    private final AtomicInteger usages = new AtomicInteger();
+    private final AtomicInteger reservedUsages = new AtomicInteger();
+    // reservedUsages recorded as reserved by this instance
+    private final AtomicInteger ownReservedUsages = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        hotPromoCodeCounters = new HotPromoCodeCounters(
+                promoCodeRepository,
+                reservationRepository,
+                transactionManager,
+                meterRegistry,
+                Set.of(CODE),
+                10,
+                4,
+                Duration.ofSeconds(5),
+                INSTANCE_ID
+        );
+
+        given(promoCodeRepository.findRemainingUsages(eq(CODE), any()))
+                .willAnswer(invocation -> Optional.of(maxUsages.get() - usages.get() - reservedUsages.get()));
+        given(promoCodeRepository.reserve(eq(CODE), anyInt(), any())).willAnswer(invocation -> {
+            int amount = invocation.getArgument(1);
+            synchronized (this) {
+                if (usages.get() + reservedUsages.get() + amount > maxUsages.get()) {
+                    return 0;
+                }
+                reservedUsages.addAndGet(amount);
+                return 1;
+            }
+        });
+        given(promoCodeRepository.confirmReserved(eq(CODE), anyInt())).willAnswer(invocation -> {
+            int amount = invocation.getArgument(1);
+            usages.addAndGet(amount);
+            reservedUsages.addAndGet(-amount);
+            return 1;
+        });
+        given(promoCodeRepository.releaseReserved(eq(CODE), anyInt())).willAnswer(invocation -> {
+            reservedUsages.addAndGet(-(int) invocation.getArgument(1));
+            return 1;
+        });
+        given(reservationRepository.add(eq(CODE), eq(INSTANCE_ID), anyInt())).willAnswer(invocation -> {
+            ownReservedUsages.addAndGet(invocation.getArgument(2));
+            return 1;
+        });
+    }
+
+    @Test
+    void givenHotPromoCode_whenAcquiredConcurrently_thenGrantExactlyMaxUsages() throws InterruptedException {
+        // given
+        maxUsages.set(257);
+        int requests = 1000;
+        AtomicInteger granted = new AtomicInteger();
+
+        // when
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                executor.submit(() -> {
+                    if (hotPromoCodeCounters.tryAcquire(CODE)) {
+                        granted.incrementAndGet();
+                    }
+                });
+            }
+        }
+        hotPromoCodeCounters.flush();
+
+        // then
+        assertThat(granted.get()).isEqualTo(maxUsages.get());
+        assertThat(usages.get()).isEqualTo(maxUsages.get());
+        assertThat(reservedUsages.get()).isZero();
+        assertThat(ownReservedUsages.get()).isZero();
+        assertThat(meterRegistry.counter("promo.codes.hot.refills", "code", CODE).count()).isEqualTo(26);
+    }
+
+    @Test
+    void givenPartiallyConsumedBlock_whenRelease_thenFlushConsumedAndReturnUnusedUsages() {
+        // given
+        maxUsages.set(100);
+
+        // when
+        for (int i = 0; i < 3; i++) {
+            assertThat(hotPromoCodeCounters.tryAcquire(CODE)).isTrue();
+        }
+        hotPromoCodeCounters.release();
+
+        // then
+        assertThat(usages.get()).isEqualTo(3);
+        assertThat(reservedUsages.get()).isZero();
+        assertThat(ownReservedUsages.get()).isZero();
+    }
+
+    @Test
+    void givenFlushOfOneCodeFails_whenFlush_thenFlushOtherCodesAndRetryFailedOneLater() {
+        // given
+        String failing = "failingPromoCode";
+        hotPromoCodeCounters = new HotPromoCodeCounters(
+                promoCodeRepository,
+                reservationRepository,
+                transactionManager,
+                meterRegistry,
+                Set.of(CODE, failing),
+                10,
+                4,
+                Duration.ofSeconds(5),
+                INSTANCE_ID
+        );
+        maxUsages.set(100);
+        given(promoCodeRepository.findRemainingUsages(eq(failing), any())).willReturn(Optional.of(100));
+        given(promoCodeRepository.reserve(eq(failing), anyInt(), any())).willReturn(1);
+        given(promoCodeRepository.confirmReserved(failing, 1))
+                .willThrow(new QueryTimeoutException("Lock timeout"))
+                .willReturn(1);
+
+        assertThat(hotPromoCodeCounters.tryAcquire(failing)).isTrue();
+        assertThat(hotPromoCodeCounters.tryAcquire(CODE)).isTrue();
+
+        // when
+        hotPromoCodeCounters.flush();
+        hotPromoCodeCounters.flush();
+
+        // then
+        assertThat(usages.get()).isEqualTo(1);
+        verify(promoCodeRepository, times(2)).confirmReserved(failing, 1);
+        verify(reservationRepository, times(1)).add(failing, INSTANCE_ID, -1);
+    }
+
+    @Test
+    void givenReservationsLeftByCrashedProcess_whenReconcile_thenReconcileOnlyOwnReservations() {
+        // given
+        given(promoCodeRepository.reconcileReserved(INSTANCE_ID)).willReturn(1);
+
+        // when
+        hotPromoCodeCounters.reconcile();
+
+        // then
+        verify(promoCodeRepository).reconcileReserved(INSTANCE_ID);
+        verify(reservationRepository).deleteByOwner(INSTANCE_ID);
+    }
+
+    @Test
+    void givenExhaustedPromoCode_whenTryAcquire_thenReturnFalse() {
+        // given
+        maxUsages.set(5);
+        usages.set(5);
+
+        // when
+        boolean actual = hotPromoCodeCounters.tryAcquire(CODE);
+
+        // then
+        assertThat(actual).isFalse();
+    }
+
+    @Test
+    void givenRefillTakingLongerThanTimeout_whenTryAcquire_thenThrowServiceUnavailable() throws Exception {
+        // given
+        hotPromoCodeCounters = new HotPromoCodeCounters(
+                promoCodeRepository,
+                reservationRepository,
+                transactionManager,
+                meterRegistry,
+                Set.of(CODE),
+                10,
+                4,
+                Duration.ofMillis(50),
+                INSTANCE_ID
+        );
+        maxUsages.set(100);
+        CountDownLatch refilling = new CountDownLatch(1);
+        CountDownLatch database = new CountDownLatch(1);
+        given(promoCodeRepository.findRemainingUsages(eq(CODE), any())).willAnswer(invocation -> {
+            refilling.countDown();
+            database.await();
+            return Optional.of(maxUsages.get() - usages.get() - reservedUsages.get());
+        });
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Boolean> first = executor.submit(() -> hotPromoCodeCounters.tryAcquire(CODE));
+            refilling.await();
+
+            // when
+            // then
+            assertThatThrownBy(() -> hotPromoCodeCounters.tryAcquire(CODE))
+                    .isInstanceOf(ResponseStatusException.class)
+                    .hasFieldOrPropertyWithValue("status", HttpStatus.SERVICE_UNAVAILABLE);
+
+            database.countDown();
+            assertThat(first.get()).isTrue();
+        }
+        assertThat(meterRegistry.counter("promo.codes.hot.refill.timeouts", "code", CODE).count()).isEqualTo(1);
+    }
+
+    @Test
+    void givenUsageFlushedBeforeTransactionRollsBack_whenFlush_thenReturnUsage() {
+        // given
+        maxUsages.set(100);
+        TransactionSynchronizationManager.initSynchronization();
+        List<TransactionSynchronization> synchronizations;
+        try {
+            assertThat(hotPromoCodeCounters.tryAcquire(CODE)).isTrue();
+            synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        hotPromoCodeCounters.flush();
+
+        // when
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        hotPromoCodeCounters.flush();
+
+        // then
+        assertThat(usages.get()).isZero();
+        assertThat(reservedUsages.get()).isEqualTo(10);
+        assertThat(ownReservedUsages.get()).isEqualTo(10);
+
+        hotPromoCodeCounters.release();
+        assertThat(reservedUsages.get()).isZero();
+        assertThat(ownReservedUsages.get()).isZero();
+    }
+
+    @Test
+    void givenNotHotPromoCode_whenTryAcquire_thenThrowException() {
+        // given
+        String code = "otherPromoCode";
+
+        // when
+        // then
+        assertThat(hotPromoCodeCounters.isHot(code)).isFalse();
+        assertThatThrownBy(() -> hotPromoCodeCounters.tryAcquire(code))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,82 @@
+package com.test.sii.service;
+
+import com.test.sii.dto.ProductBulkItemResponse;
+import com.test.sii.dto.ProductBulkRequest;
+import com.test.sii.dto.ProductBulkResponse;
+import com.test.sii.dto.ProductBulkUpdateRequest;
+import com.test.sii.dto.ProductCreateRequest;
+import com.test.sii.repository.CurrencyRepository;
+import com.test.sii.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Creates and then updates {@value #PRODUCTS} products with one bulk request each. Run with
+ * {@code mvn test -Dbenchmark=true -Dtest=ProductBulkBenchmarkTest}.
+ */
+@Slf4j
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ProductBulkBenchmarkTest {
+
+    private static final int PRODUCTS = 50_000;
+
+    @Autowired
+    private ProductBulkService productBulkService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private CurrencyRegistry currencyRegistry;
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAllInBatch();
+        currencyRepository.deleteAll();
+        currencyRegistry.refresh();
+    }
+
+    @Test
+    void givenManyProducts_whenBulkCreateAndUpdate_thenFinishWithinSeconds() {
+        // given
+        List<ProductCreateRequest> creates = IntStream.range(0, PRODUCTS)
+                .mapToObj(i -> new ProductCreateRequest("Bulk product " + i, null, BigDecimal.TEN, i % 2 == 0 ? "USD" : "EUR"))
+                .toList();
+
+        // when
+        long start = System.nanoTime();
+        ProductBulkResponse created = productBulkService.bulk(new ProductBulkRequest(creates, null));
+        long createMillis = (System.nanoTime() - start) / 1_000_000;
+
+        List<ProductBulkUpdateRequest> updates = created.create().stream()
+                .map(ProductBulkItemResponse::id)
+                .map(id -> new ProductBulkUpdateRequest(id, 0L, null, "Updated", BigDecimal.ONE, null))
+                .toList();
+
+        start = System.nanoTime();
+        ProductBulkResponse updated = productBulkService.bulk(new ProductBulkRequest(null, updates));
+        long updateMillis = (System.nanoTime() - start) / 1_000_000;
+
+        log.info("Created {} products in {} ms, updated them in {} ms", PRODUCTS, createMillis, updateMillis);
+
+        // then
+        assertThat(created.created()).isEqualTo(PRODUCTS);
+        assertThat(updated.updated()).isEqualTo(PRODUCTS);
+        assertThat(createMillis).isLessThan(10_000);
+        assertThat(updateMillis).isLessThan(10_000);
+    }
+}
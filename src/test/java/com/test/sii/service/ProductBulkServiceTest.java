@@ -0,0 +1,200 @@
+package com.test.sii.service;
+
+import com.test.sii.dto.ProductBulkItemResponse;
+import com.test.sii.dto.ProductBulkRequest;
+import com.test.sii.dto.ProductBulkResponse;
+import com.test.sii.dto.ProductBulkStatus;
+import com.test.sii.dto.ProductBulkUpdateRequest;
+import com.test.sii.dto.ProductCreateRequest;
+import com.test.sii.model.Currency;
+import com.test.sii.model.Product;
+import com.test.sii.model.ProductSavedEvent;
+import com.test.sii.model.ProductSnapshot;
+import com.test.sii.repository.ProductBatchRepository;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ProductBulkServiceTest {
+
+    private ProductBulkService productBulkService;
+
+    @Mock
+    private ProductBatchRepository productBatchRepository;
+
+    @Mock
+    private CurrencyRegistry currencyRegistry;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final Currency currency = new Currency(1, "USD");
+
+    @BeforeEach
+    void setUp() {
+        productBulkService = new ProductBulkService(
+                productBatchRepository,
+                currencyRegistry,
+                eventPublisher,
+                transactionManager,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                2,
+                10
+        );
+    }
+
+    @Test
+    void givenValidAndInvalidProducts_whenBulkCreate_thenInsertValidOnesAndReportOthers() {
+        // given
+        List<ProductCreateRequest> creates = List.of(
+                new ProductCreateRequest("Product 1", null, BigDecimal.valueOf(10.00), "usd"),
+                new ProductCreateRequest("Product 2", null, null, "USD"),
+                new ProductCreateRequest("Product 1", null, BigDecimal.valueOf(20.00), "USD"),
+                new ProductCreateRequest("Product 3", null, BigDecimal.valueOf(30.00), "USD"),
+                new ProductCreateRequest("Product 4", null, BigDecimal.valueOf(40.00), "USD")
+        );
+
+        given(currencyRegistry.getOrCreate("USD")).willReturn(currency);
+        given(productBatchRepository.findIdsByName(anyList())).willReturn(Map.of(), Map.of("Product 3", 9));
+        willAnswer(invocation -> {
+            List<Product> products = invocation.getArgument(0);
+            for (int i = 0; i < products.size(); i++) {
+                products.get(i).setId(100 + i);
+                products.get(i).setVersion(0L);
+            }
+            return null;
+        }).given(productBatchRepository).insert(anyList());
+
+        // when
+        ProductBulkResponse actual = productBulkService.bulk(new ProductBulkRequest(creates, null));
+
+        // then
+        assertThat(actual.create())
+                .extracting(ProductBulkItemResponse::status)
+                .containsExactly(
+                        ProductBulkStatus.CREATED,
+                        ProductBulkStatus.VALIDATION_ERROR,
+                        ProductBulkStatus.VALIDATION_ERROR,
+                        ProductBulkStatus.VALIDATION_ERROR,
+                        ProductBulkStatus.CREATED
+                );
+        assertThat(actual.create().get(1).message()).isEqualTo("price must not be null");
+        assertThat(actual.create().get(2).message()).isEqualTo("Duplicate product name");
+        assertThat(actual.create().get(3).message()).isEqualTo("Product name already exists");
+        assertThat(actual.created()).isEqualTo(2);
+        assertThat(actual.failed()).isEqualTo(3);
+
+        // one lookup per currency and request
+        verify(currencyRegistry, times(1)).getOrCreate("USD");
+        verify(eventPublisher, times(2)).publishEvent(any(ProductSavedEvent.class));
+    }
+
+    @Test
+    void givenUpdates_whenBulkUpdate_thenApplyCurrentVersionsAndReportOthers() {
+        // given
+        Product product = new Product(1, "Product 1", null, BigDecimal.valueOf(10.00), currency);
+        product.setVersion(0L);
+        Product modified = new Product(2, "Product 2", null, BigDecimal.valueOf(20.00), currency);
+        modified.setVersion(3L);
+
+        List<ProductBulkUpdateRequest> updates = List.of(
+                new ProductBulkUpdateRequest(1, 0L, null, null, BigDecimal.valueOf(15.00), null),
+                new ProductBulkUpdateRequest(2, 2L, null, null, BigDecimal.valueOf(25.00), null),
+                new ProductBulkUpdateRequest(3, null, null, null, BigDecimal.valueOf(35.00), null),
+                new ProductBulkUpdateRequest(1, null, "Product 5", null, null, null)
+        );
+
+        given(productBatchRepository.findAllById(List.of(1, 2))).willReturn(Map.of(1, ProductSnapshot.of(product), 2, ProductSnapshot.of(modified)));
+        given(productBatchRepository.findAllById(List.of(3))).willReturn(Map.of());
+        given(productBatchRepository.findIdsByName(anyList())).willReturn(Map.of());
+        given(productBatchRepository.update(anyList())).willAnswer(invocation -> {
+            List<Product> products = invocation.getArgument(0);
+            products.forEach(changed -> changed.setVersion(changed.getVersion() + 1));
+            boolean[] updated = new boolean[products.size()];
+            java.util.Arrays.fill(updated, true);
+            return updated;
+        });
+
+        // when
+        ProductBulkResponse actual = productBulkService.bulk(new ProductBulkRequest(null, updates));
+
+        // then
+        assertThat(actual.update())
+                .extracting(ProductBulkItemResponse::status)
+                .containsExactly(
+                        ProductBulkStatus.UPDATED,
+                        ProductBulkStatus.VERSION_CONFLICT,
+                        ProductBulkStatus.NOT_FOUND,
+                        ProductBulkStatus.VALIDATION_ERROR
+                );
+        assertThat(actual.update().get(0).version()).isEqualTo(1L);
+        assertThat(actual.update().get(1).version()).isEqualTo(3L);
+
+        ArgumentCaptor<ProductSavedEvent> event = ArgumentCaptor.forClass(ProductSavedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().product())
+                .extracting(Product::getPrice, Product::getVersion, Product::getName)
+                .containsExactly(BigDecimal.valueOf(15.00), 1L, "Product 1");
+    }
+
+    @Test
+    void givenProductUpdatedConcurrently_whenBulkUpdate_thenReportVersionConflict() {
+        // given
+        Product product = new Product(1, "Product 1", null, BigDecimal.valueOf(10.00), currency);
+        product.setVersion(0L);
+
+        given(productBatchRepository.findAllById(List.of(1))).willReturn(Map.of(1, ProductSnapshot.of(product)));
+        given(productBatchRepository.findIdsByName(anyList())).willReturn(Map.of());
+        given(productBatchRepository.update(anyList())).willReturn(new boolean[]{false});
+
+        // when
+        ProductBulkResponse actual = productBulkService.bulk(new ProductBulkRequest(
+                null,
+                List.of(new ProductBulkUpdateRequest(1, null, null, null, BigDecimal.valueOf(15.00), null))
+        ));
+
+        // then
+        assertThat(actual.update())
+                .extracting(ProductBulkItemResponse::status)
+                .containsExactly(ProductBulkStatus.VERSION_CONFLICT);
+        verify(eventPublisher, times(0)).publishEvent(any());
+    }
+
+    @Test
+    void givenTooManyProducts_whenBulk_thenThrowException() {
+        // given
+        List<ProductCreateRequest> creates = Collections.nCopies(11, new ProductCreateRequest("Product", null, BigDecimal.ONE, "USD"));
+
+        // when
+        // then
+        assertThatThrownBy(() -> productBulkService.bulk(new ProductBulkRequest(creates, null)))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    }
+}
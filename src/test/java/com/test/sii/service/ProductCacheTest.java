@@ -0,0 +1,126 @@
+package com.test.sii.service;
+
+import com.test.sii.model.Currency;
+import com.test.sii.model.Product;
+import com.test.sii.model.ProductSavedEvent;
+import com.test.sii.model.ProductSnapshot;
+import com.test.sii.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ProductCacheTest {
+
+    private ProductCache productCache;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private final Currency currency = new Currency(1, "USD");
+
+    @BeforeEach
+    void setUp() {
+        productCache = new ProductCache(productRepository, new SimpleMeterRegistry(), 100);
+    }
+
+    @Test
+    void givenValidProduct_whenGetTwice_thenLoadFromRepositoryOnce() {
+        // given
+        Product product = product(1, BigDecimal.valueOf(100.00), 0L);
+
+        given(productRepository.findById(1)).willReturn(Optional.of(product));
+
+        // when
+        Optional<ProductSnapshot> first = productCache.get(1);
+        Optional<ProductSnapshot> second = productCache.get(1);
+
+        // then
+        assertThat(first)
+                .isNotEmpty()
+                .contains(ProductSnapshot.of(product));
+        assertThat(second).isEqualTo(first);
+        verify(productRepository, times(1)).findById(1);
+    }
+
+    @Test
+    void givenSomeCachedProducts_whenGetAll_thenLoadOnlyMissingOnesWithOneQuery() {
+        // given
+        Product cached = product(1, BigDecimal.valueOf(100.00), 0L);
+        Product missing = product(2, BigDecimal.valueOf(10.00), 0L);
+
+        given(productRepository.findById(1)).willReturn(Optional.of(cached));
+        given(productRepository.findAllWithCurrencyByIdIn(Set.of(2, 3))).willReturn(List.of(missing));
+        productCache.get(1);
+
+        // when
+        Map<Integer, ProductSnapshot> actual = productCache.getAll(List.of(1, 2, 3));
+
+        // then
+        assertThat(actual)
+                .containsOnlyKeys(1, 2)
+                .containsEntry(2, ProductSnapshot.of(missing));
+        verify(productRepository, times(1)).findAllWithCurrencyByIdIn(Set.of(2, 3));
+    }
+
+    @Test
+    void givenProductSavedWhileReadingOlderVersion_whenGetAll_thenKeepNewerVersion() {
+        // given
+        Product updated = product(1, BigDecimal.valueOf(50.00), 1L);
+        Product stale = product(1, BigDecimal.valueOf(100.00), 0L);
+
+        given(productRepository.findAllWithCurrencyByIdIn(Set.of(1))).willAnswer(invocation -> {
+            // the update commits after the row was read
+            productCache.onProductSaved(new ProductSavedEvent(updated));
+            return List.of(stale);
+        });
+
+        // when
+        Map<Integer, ProductSnapshot> actual = productCache.getAll(List.of(1));
+
+        // then
+        assertThat(actual.get(1).version()).isEqualTo(1L);
+        assertThat(actual.get(1).price()).isEqualByComparingTo("50");
+        assertThat(productCache.getAll(List.of(1))).isEqualTo(actual);
+    }
+
+    @Test
+    void givenCachedProduct_whenOlderVersionIsSaved_thenKeepCachedVersion() {
+        // given
+        Product cached = product(1, BigDecimal.valueOf(50.00), 2L);
+        Product older = product(1, BigDecimal.valueOf(100.00), 1L);
+
+        given(productRepository.findById(1)).willReturn(Optional.of(cached));
+        productCache.get(1);
+
+        // when
+        productCache.onProductSaved(new ProductSavedEvent(older));
+        Optional<ProductSnapshot> actual = productCache.get(1);
+
+        // then
+        assertThat(actual)
+                .get()
+                .extracting(ProductSnapshot::version)
+                .isEqualTo(2L);
+    }
+
+    private Product product(int id, BigDecimal price, long version) {
+        Product product = new Product(id, "Product " + id, null, price, currency);
+        product.setVersion(version);
+        return product;
+    }
+}
@@ -0,0 +1,80 @@
+package com.test.sii.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.sii.dto.ProductResponse;
+import com.test.sii.model.Currency;
+import com.test.sii.model.Product;
+import com.test.sii.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ProductExportServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ProductExportService productExportService;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        productExportService = new ProductExportService(productRepository, entityManager, objectMapper);
+    }
+
+    @Test
+    void givenExistingProducts_whenExportProducts_thenWriteOneLinePerProductAndDetachIt() throws IOException {
+        // given
+        Currency currency = new Currency(1, "USD");
+        Product first = new Product(1, "Product 1", "Description", BigDecimal.valueOf(10.99), currency);
+        Product second = new Product(2, "Product 2", null, BigDecimal.valueOf(5), currency);
+
+        given(productRepository.streamAll()).willReturn(Stream.of(first, second));
+
+        // when
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        productExportService.exportProducts(outputStream);
+
+        // then
+        List<String> lines = outputStream.toString(StandardCharsets.UTF_8).lines().toList();
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines.get(0), ProductResponse.class))
+                .isEqualTo(new ProductResponse(1, "Product 1", "Description", BigDecimal.valueOf(10.99), "USD"));
+        assertThat(objectMapper.readValue(lines.get(1), ProductResponse.class))
+                .isEqualTo(new ProductResponse(2, "Product 2", null, BigDecimal.valueOf(5), "USD"));
+        verify(entityManager).detach(first);
+        verify(entityManager).detach(second);
+    }
+
+    @Test
+    void givenNoProducts_whenExportProducts_thenWriteNothing() throws IOException {
+        // given
+        given(productRepository.streamAll()).willReturn(Stream.empty());
+
+        // when
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        productExportService.exportProducts(outputStream);
+
+        // then
+        assertThat(outputStream.size()).isZero();
+    }
+}
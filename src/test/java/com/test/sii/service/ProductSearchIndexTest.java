@@ -0,0 +1,75 @@
+package com.test.sii.service;
+
+import com.test.sii.model.Currency;
+import com.test.sii.model.Product;
+import com.test.sii.model.ProductSavedEvent;
+import com.test.sii.model.ProductText;
+import com.test.sii.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class ProductSearchIndexTest {
+
+    private ProductSearchIndex productSearchIndex;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        productSearchIndex = new ProductSearchIndex(productRepository, transactionManager, new SimpleMeterRegistry(), 3);
+    }
+
+    @Test
+    void givenProductsInDatabase_whenRebuild_thenIndexThem() {
+        // given
+        given(productRepository.streamTexts()).willReturn(Stream.of(
+                new ProductText(1, "Red chair", "Wooden", 0L),
+                new ProductText(2, "Blue chair", null, null)
+        ));
+
+        // when
+        int actual = productSearchIndex.rebuild();
+
+        // then
+        assertThat(actual).isEqualTo(2);
+        assertThat(productSearchIndex.search(List.of("chair"), 0, 10).ids()).containsExactly(1, 2);
+        assertThat(productSearchIndex.search(List.of("wood"), 0, 10).ids()).containsExactly(1);
+    }
+
+    @Test
+    void givenProductSavedWhileRebuilding_whenRebuild_thenKeepSavedVersion() {
+        // given
+        Product updated = new Product(1, "Blue chair", null, BigDecimal.valueOf(50.00), new Currency(1, "USD"));
+        updated.setVersion(1L);
+
+        given(productRepository.streamTexts()).willAnswer(invocation -> {
+            // the update commits after the row was read
+            productSearchIndex.onProductSaved(new ProductSavedEvent(updated));
+            return Stream.of(new ProductText(1, "Red chair", null, 0L));
+        });
+
+        // when
+        productSearchIndex.rebuild();
+
+        // then
+        assertThat(productSearchIndex.search(List.of("red"), 0, 10).total()).isZero();
+        assertThat(productSearchIndex.search(List.of("blue"), 0, 10).ids()).containsExactly(1);
+    }
+}
@@ -1,31 +1,43 @@
 package com.test.sii.service;
 
+import com.test.sii.dto.CursorPageResponse;
+import com.test.sii.dto.ETaggedResponse;
 import com.test.sii.dto.ProductCreateRequest;
 import com.test.sii.dto.ProductRequest;
 import com.test.sii.dto.ProductResponse;
+import com.test.sii.dto.ProductSearchResponse;
 import com.test.sii.model.Currency;
 import com.test.sii.model.Product;
-import com.test.sii.repository.CurrencyRepository;
+import com.test.sii.model.ProductSnapshot;
+import com.test.sii.model.ProductVersion;
 import com.test.sii.repository.ProductRepository;
+import com.test.sii.util.CursorPagination;
+import com.test.sii.util.InvertedIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,11 +49,17 @@ class ProductServiceTest {
     private ProductRepository productRepository;
 
     @Mock
-    private CurrencyRepository currencyRepository;
+    private CurrencyRegistry currencyRegistry;
+
+    @Mock
+    private ProductCache productCache;
+
+    @Mock
+    private ProductSearchIndex productSearchIndex;
 
     @BeforeEach
     void setUp() {
-        productService = new ProductService(productRepository, currencyRepository);
+        productService = new ProductService(productRepository, currencyRegistry, new CursorPagination(1000), productCache, productSearchIndex);
     }
 
     @Test
@@ -56,10 +74,10 @@ class ProductServiceTest {
         );
 
 
-        given(productRepository.findAll()).willReturn(List.of(product));
+        given(productRepository.findResponsesByIdGreaterThan(0, Limit.of(1001))).willReturn(List.of(toResponse(product)));
 
         // when
-        List<ProductResponse> actual = productService.getAllProducts(null, null);
+        List<ProductResponse> actual = productService.getAllProducts(null, null, null).content();
 
         // then
         List<ProductResponse> expected = List.of(
@@ -89,10 +107,10 @@ class ProductServiceTest {
         int page = 1;
         int size = 1;
 
-        given(productRepository.findAll(PageRequest.of(page - 1, size))).willReturn(new PageImpl<>(List.of(product)));
+        given(productRepository.findResponses(PageRequest.of(page - 1, size, Sort.by("id")))).willReturn(List.of(toResponse(product)));
 
         // when
-        List<ProductResponse> actual = productService.getAllProducts(page, size);
+        List<ProductResponse> actual = productService.getAllProducts(page, size, null).content();
 
         // then
         List<ProductResponse> expected = List.of(
@@ -111,10 +129,10 @@ class ProductServiceTest {
     @Test
     void givenNoExistingProducts_whenGetAllProducts_thenReturnEmptyList() {
         // given
-        given(productRepository.findAll()).willReturn(List.of());
+        given(productRepository.findResponsesByIdGreaterThan(0, Limit.of(1001))).willReturn(List.of());
 
         // when
-        List<ProductResponse> actual = productService.getAllProducts(null, null);
+        List<ProductResponse> actual = productService.getAllProducts(null, null, null).content();
 
         // then
         assertThat(actual).isEmpty();
@@ -128,7 +146,7 @@ class ProductServiceTest {
 
         // when
         // then
-        assertThatThrownBy(() -> productService.getAllProducts(page, size))
+        assertThatThrownBy(() -> productService.getAllProducts(page, size, null))
                 .isInstanceOf(ResponseStatusException.class)
                 .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
     }
@@ -141,7 +159,99 @@ class ProductServiceTest {
 
         // when
         // then
-        assertThatThrownBy(() -> productService.getAllProducts(page, size))
+        assertThatThrownBy(() -> productService.getAllProducts(page, size, null))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void givenPageNumberWithZeroPageSize_whenGetAllProducts_thenThrowException() {
+        // given
+        Integer page = 1;
+        Integer size = 0;
+
+        // when
+        // then
+        assertThatThrownBy(() -> productService.getAllProducts(page, size, null))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void givenPageNumberWithPageSizeAboveMaximum_whenGetAllProducts_thenCapPageSize() {
+        // given
+        int page = 2;
+        int size = 5000;
+
+        given(productRepository.findResponses(PageRequest.of(page - 1, 1000, Sort.by("id")))).willReturn(List.of());
+
+        // when
+        List<ProductResponse> actual = productService.getAllProducts(page, size, null).content();
+
+        // then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void givenMoreProductsThanPageSize_whenGetAllProductsWithCursor_thenReturnPageAndNextCursor() {
+        // given
+        List<ProductResponse> products = List.of(
+                new ProductResponse(1, "Product 1", null, BigDecimal.valueOf(10.00), "USD"),
+                new ProductResponse(2, "Product 2", null, BigDecimal.valueOf(20.00), "USD"),
+                new ProductResponse(3, "Product 3", null, BigDecimal.valueOf(30.00), "USD")
+        );
+
+        given(productRepository.findResponsesByIdGreaterThan(0, Limit.of(3))).willReturn(products);
+        given(productRepository.findResponsesByIdGreaterThan(2, Limit.of(3))).willReturn(products.subList(2, 3));
+
+        // when
+        CursorPageResponse<ProductResponse> firstPage = productService.getAllProducts(null, 2, null);
+        CursorPageResponse<ProductResponse> secondPage = productService.getAllProducts(null, 2, firstPage.nextCursor());
+
+        // then
+        assertThat(firstPage.content())
+                .extracting(ProductResponse::id)
+                .containsExactly(1, 2);
+        assertThat(firstPage.nextCursor()).isNotNull();
+        assertThat(secondPage.content())
+                .extracting(ProductResponse::id)
+                .containsExactly(3);
+        assertThat(secondPage.nextCursor()).isNull();
+    }
+
+    @Test
+    void givenPageSizeAboveLimit_whenGetAllProducts_thenCapPageSize() {
+        // given
+        given(productRepository.findResponsesByIdGreaterThan(0, Limit.of(1001))).willReturn(List.of());
+
+        // when
+        CursorPageResponse<ProductResponse> actual = productService.getAllProducts(null, 1_000_000, null);
+
+        // then
+        assertThat(actual.content()).isEmpty();
+        assertThat(actual.nextCursor()).isNull();
+    }
+
+    @Test
+    void givenInvalidCursor_whenGetAllProducts_thenThrowException() {
+        // given
+        String cursor = "not a cursor";
+
+        // when
+        // then
+        assertThatThrownBy(() -> productService.getAllProducts(null, 10, cursor))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void givenPageNumberAndCursor_whenGetAllProducts_thenThrowException() {
+        // given
+        String cursor = new CursorPagination(1000).cursor(5);
+
+        // when
+        // then
+        assertThatThrownBy(() -> productService.getAllProducts(1, 10, cursor))
                 .isInstanceOf(ResponseStatusException.class)
                 .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
     }
@@ -158,8 +268,7 @@ class ProductServiceTest {
 
         Currency currency = new Currency(1, "USD");
 
-        given(currencyRepository.findByCurrency(any())).willReturn(Optional.empty());
-        given(currencyRepository.save(any())).willReturn(currency);
+        given(currencyRegistry.getOrCreate(any())).willReturn(currency);
 
         Product expected = new Product(
                 1,
@@ -169,7 +278,7 @@ class ProductServiceTest {
                 currency
         );
 
-        given(productRepository.save(any())).willReturn(expected);
+        given(productRepository.saveAndFlush(any())).willReturn(expected);
 
         // when
         ProductResponse actualResponse = productService.createProduct(productRequest);
@@ -177,7 +286,7 @@ class ProductServiceTest {
         // then
         ArgumentCaptor<Product> productArgumentCaptor = ArgumentCaptor.forClass(Product.class);
 
-        verify(productRepository).save(productArgumentCaptor.capture());
+        verify(productRepository).saveAndFlush(productArgumentCaptor.capture());
 
         Product actual = productArgumentCaptor.getValue();
 
@@ -209,7 +318,7 @@ class ProductServiceTest {
 
         Currency currency = new Currency(1, "USD");
 
-        given(currencyRepository.findByCurrency(currency.getCurrency())).willReturn(Optional.of(currency));
+        given(currencyRegistry.getOrCreate(currency.getCurrency())).willReturn(currency);
 
         Product expected = new Product(
                 1,
@@ -219,7 +328,7 @@ class ProductServiceTest {
                 currency
         );
 
-        given(productRepository.save(any())).willReturn(expected);
+        given(productRepository.saveAndFlush(any())).willReturn(expected);
 
         // when
         ProductResponse actualResponse = productService.createProduct(productRequest);
@@ -227,7 +336,7 @@ class ProductServiceTest {
         // then
         ArgumentCaptor<Product> productArgumentCaptor = ArgumentCaptor.forClass(Product.class);
 
-        verify(productRepository).save(productArgumentCaptor.capture());
+        verify(productRepository).saveAndFlush(productArgumentCaptor.capture());
 
         Product actual = productArgumentCaptor.getValue();
 
@@ -257,7 +366,7 @@ class ProductServiceTest {
                 "USD"
         );
 
-        given(productRepository.save(any())).willThrow(new RuntimeException());
+        given(productRepository.saveAndFlush(any())).willThrow(new RuntimeException());
 
         // when
         // then
@@ -279,9 +388,6 @@ class ProductServiceTest {
 
         Currency currency = new Currency(1, "USD");
 
-        given(currencyRepository.findByCurrency(any())).willReturn(Optional.empty());
-        given(currencyRepository.save(any())).willReturn(currency);
-
         Product product = new Product(
                 1,
                 "Product 2",
@@ -300,15 +406,15 @@ class ProductServiceTest {
                 product.getCurrency()
         );
 
-        given(productRepository.save(any())).willReturn(expected);
+        given(productRepository.saveAndFlush(any())).willReturn(expected);
 
         // when
-        ProductResponse actualResponse = productService.updateProduct(productId, productRequest);
+        ProductResponse actualResponse = productService.updateProduct(productId, productRequest, null).content();
 
         // then
         ArgumentCaptor<Product> productArgumentCaptor = ArgumentCaptor.forClass(Product.class);
 
-        verify(productRepository).save(productArgumentCaptor.capture());
+        verify(productRepository).saveAndFlush(productArgumentCaptor.capture());
 
         Product actual = productArgumentCaptor.getValue();
 
@@ -343,8 +449,7 @@ class ProductServiceTest {
 
         Currency currency = new Currency(1, "USD");
 
-        given(currencyRepository.findByCurrency(any())).willReturn(Optional.empty());
-        given(currencyRepository.save(any())).willReturn(currency);
+        given(currencyRegistry.getOrCreate(any())).willReturn(currency);
 
         Product product = new Product(
                 1,
@@ -364,15 +469,15 @@ class ProductServiceTest {
                 currency
         );
 
-        given(productRepository.save(any())).willReturn(expected);
+        given(productRepository.saveAndFlush(any())).willReturn(expected);
 
         // when
-        ProductResponse actualResponse = productService.updateProduct(productId, productRequest);
+        ProductResponse actualResponse = productService.updateProduct(productId, productRequest, null).content();
 
         // then
         ArgumentCaptor<Product> productArgumentCaptor = ArgumentCaptor.forClass(Product.class);
 
-        verify(productRepository).save(productArgumentCaptor.capture());
+        verify(productRepository).saveAndFlush(productArgumentCaptor.capture());
 
         Product actual = productArgumentCaptor.getValue();
 
@@ -410,8 +515,114 @@ class ProductServiceTest {
 
         // when
         // then
-        assertThatThrownBy(() -> productService.updateProduct(productId, productRequest))
+        assertThatThrownBy(() -> productService.updateProduct(productId, productRequest, null))
                 .isInstanceOf(ResponseStatusException.class)
                 .hasFieldOrPropertyWithValue("status", HttpStatus.NOT_FOUND);
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenCachedProduct_whenGetProductDetails_thenReturnProductTaggedWithVersion() {
+        // given
+        Product product = new Product(1, "Product 1", null, BigDecimal.valueOf(100.00), new Currency(1, "USD"));
+        product.setVersion(3L);
+
+        given(productCache.get(1)).willReturn(Optional.of(ProductSnapshot.of(product)));
+
+        // when
+        ETaggedResponse<ProductResponse> actual = productService.getProductDetails(1);
+
+        // then
+        assertThat(actual.content()).isEqualTo(new ProductResponse(1, "Product 1", null, BigDecimal.valueOf(100.00), "USD"));
+        assertThat(actual.eTag()).isEqualTo("\"3\"");
+    }
+
+    @Test
+    void givenProductUpdated_whenGetAllProductsETag_thenReturnDifferentTag() {
+        // given
+        given(productRepository.findVersionsByIdGreaterThanOrderById(0, Limit.of(3)))
+                .willReturn(List.of(new ProductVersion(1, 0L), new ProductVersion(2, 0L)))
+                .willReturn(List.of(new ProductVersion(1, 0L), new ProductVersion(2, 0L)))
+                .willReturn(List.of(new ProductVersion(1, 0L), new ProductVersion(2, 1L)));
+
+        // when
+        String first = productService.getAllProductsETag(null, 2, null);
+        String unchanged = productService.getAllProductsETag(null, 2, null);
+        String updated = productService.getAllProductsETag(null, 2, null);
+
+        // then
+        assertThat(unchanged).isEqualTo(first);
+        assertThat(updated).isNotEqualTo(first);
+        verify(productRepository, never()).findResponsesByIdGreaterThan(any(), any());
+    }
+
+    @Test
+    void givenStaleIfMatch_whenUpdateProduct_thenThrowPreconditionFailed() {
+        // given
+        Product product = new Product(1, "Product 1", null, BigDecimal.valueOf(100.00), new Currency(1, "USD"));
+        product.setVersion(2L);
+
+        given(productRepository.findById(1)).willReturn(Optional.of(product));
+
+        ProductRequest productRequest = new ProductRequest("Product 2", null, null, null);
+
+        // when
+        // then
+        assertThatThrownBy(() -> productService.updateProduct(1, productRequest, "\"1\""))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.PRECONDITION_FAILED);
+        verify(productRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void givenProductUpdatedConcurrently_whenUpdateProduct_thenThrowPreconditionFailed() {
+        // given
+        Product product = new Product(1, "Product 1", null, BigDecimal.valueOf(100.00), new Currency(1, "USD"));
+        product.setVersion(1L);
+
+        given(productRepository.findById(1)).willReturn(Optional.of(product));
+        given(productRepository.saveAndFlush(any())).willThrow(new ObjectOptimisticLockingFailureException(Product.class, 1));
+
+        ProductRequest productRequest = new ProductRequest("Product 2", null, null, null);
+
+        // when
+        // then
+        assertThatThrownBy(() -> productService.updateProduct(1, productRequest, "\"1\""))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @Test
+    void givenMatchingProducts_whenSearchProducts_thenReturnCachedProductsInHitOrder() {
+        // given
+        Currency currency = new Currency(1, "USD");
+        Product first = new Product(3, "Red chair", null, BigDecimal.valueOf(100.00), currency);
+        Product second = new Product(1, "Chair", "Red", BigDecimal.valueOf(50.00), currency);
+
+        given(productSearchIndex.search(List.of("red", "chair"), 10, 10)).willReturn(new InvertedIndex.Hits(13, List.of(3, 2, 1)));
+        // product 2 was deleted since it was indexed
+        given(productCache.getAll(List.of(3, 2, 1))).willReturn(Map.of(3, ProductSnapshot.of(first), 1, ProductSnapshot.of(second)));
+
+        // when
+        ProductSearchResponse actual = productService.searchProducts("RED chair, red", 2, 10);
+
+        // then
+        assertThat(actual.content()).containsExactly(toResponse(first), toResponse(second));
+        assertThat(actual.total()).isEqualTo(13);
+    }
+
+    @Test
+    void givenBlankQuery_whenSearchProducts_thenThrowException() {
+        // given
+        // when
+        // then
+        assertThatThrownBy(() -> productService.searchProducts(" - ", null, null))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST)
+                .hasMessageContaining("Search query must not be blank");
+        verify(productSearchIndex, never()).search(anyList(), anyInt(), anyInt());
+    }
+
+    private static ProductResponse toResponse(Product product) {
+        return new ProductResponse(product.getId(), product.getName(), product.getDescription(), product.getPrice(), product.getCurrency().getCurrency());
+    }
+}
@@ -0,0 +1,260 @@
+package com.test.sii.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.sii.dto.DiscountMethod;
+import com.test.sii.dto.PromoCodeGenerationRequest;
+import com.test.sii.dto.PromoCodeImportError;
+import com.test.sii.dto.PromoCodeImportFormat;
+import com.test.sii.dto.PromoCodeJobResponse;
+import com.test.sii.dto.PromoCodeJobStatus;
+import com.test.sii.model.Currency;
+import com.test.sii.repository.PromoCodeBatchRepository;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class PromoCodeBulkServiceTest {
+
+    private PromoCodeBulkService promoCodeBulkService;
+
+    @Mock
+    private PromoCodeBatchRepository promoCodeBatchRepository;
+
+    @Mock
+    private CurrencyRegistry currencyRegistry;
+
+    @Mock
+    private PromoCodeFilter promoCodeFilter;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        promoCodeBulkService = new PromoCodeBulkService(
+                promoCodeBatchRepository,
+                currencyRegistry,
+                promoCodeFilter,
+                transactionManager,
+                Runnable::run,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new ObjectMapper(),
+                100,
+                10,
+                Duration.ofHours(1)
+        );
+    }
+
+    private PromoCodeGenerationRequest generationRequest(int count) {
+        return new PromoCodeGenerationRequest(
+                DiscountMethod.MONETARY,
+                BigDecimal.valueOf(10),
+                "USD",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                1,
+                count,
+                8,
+                null
+        );
+    }
+
+    @Test
+    void givenSomeCodesTaken_whenGeneratePromoCodes_thenReplaceCollisionsAndCompleteJob() {
+        // given
+        given(currencyRegistry.getOrCreate("USD")).willReturn(new Currency(1, "USD"));
+
+        Set<String> inserted = new HashSet<>();
+        given(promoCodeBatchRepository.insertAbsent(any())).willAnswer(invocation -> {
+            List<String> codes = ((Collection<PromoCodeBatchRepository.Row>) invocation.getArgument(0)).stream()
+                    .map(PromoCodeBatchRepository.Row::code)
+                    .toList();
+            // every full batch collides on its first code
+            List<String> absent = codes.subList(codes.size() == 100 ? 1 : 0, codes.size());
+            inserted.addAll(absent);
+            return absent;
+        });
+
+        // when
+        PromoCodeJobResponse started = promoCodeBulkService.generatePromoCodes(generationRequest(250));
+        PromoCodeJobResponse actual = promoCodeBulkService.getJob(started.id());
+
+        // then
+        assertThat(actual.status()).isEqualTo(PromoCodeJobStatus.COMPLETED);
+        assertThat(actual.inserted()).isEqualTo(250);
+        assertThat(actual.collisions()).isGreaterThanOrEqualTo(2);
+        assertThat(inserted).hasSize(250).allMatch(code -> code.matches("^[0-9a-zA-Z]{8}$"));
+        verify(promoCodeFilter, times(250)).add(anyString());
+    }
+
+    @Test
+    void givenConcurrentInsert_whenGeneratePromoCodes_thenRetryBatch() {
+        // given
+        given(currencyRegistry.getOrCreate("USD")).willReturn(new Currency(1, "USD"));
+        given(promoCodeBatchRepository.insertAbsent(any()))
+                .willThrow(new DuplicateKeyException("duplicate"))
+                .willAnswer(invocation -> ((Collection<PromoCodeBatchRepository.Row>) invocation.getArgument(0)).stream()
+                        .map(PromoCodeBatchRepository.Row::code)
+                        .toList());
+
+        // when
+        PromoCodeJobResponse actual = promoCodeBulkService.generatePromoCodes(generationRequest(50));
+
+        // then
+        actual = promoCodeBulkService.getJob(actual.id());
+        assertThat(actual.status()).isEqualTo(PromoCodeJobStatus.COMPLETED);
+        assertThat(actual.inserted()).isEqualTo(50);
+        assertThat(actual.collisions()).isGreaterThanOrEqualTo(50);
+    }
+
+    @Test
+    void givenNoCodeEverInserted_whenGeneratePromoCodes_thenFailJob() {
+        // given
+        given(currencyRegistry.getOrCreate("USD")).willReturn(new Currency(1, "USD"));
+        given(promoCodeBatchRepository.insertAbsent(any())).willReturn(List.of());
+
+        // when
+        PromoCodeJobResponse actual = promoCodeBulkService.generatePromoCodes(generationRequest(10));
+
+        // then
+        actual = promoCodeBulkService.getJob(actual.id());
+        assertThat(actual.status()).isEqualTo(PromoCodeJobStatus.FAILED);
+        assertThat(actual.inserted()).isZero();
+        assertThat(actual.error()).isNotBlank();
+    }
+
+    @Test
+    void givenCodeSpaceTooSmall_whenGeneratePromoCodes_thenThrowException() {
+        // given
+        PromoCodeGenerationRequest request = new PromoCodeGenerationRequest(
+                DiscountMethod.MONETARY,
+                BigDecimal.valueOf(10),
+                "USD",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                1,
+                1000,
+                3,
+                "ab"
+        );
+
+        // when
+        // then
+        assertThatThrownBy(() -> promoCodeBulkService.generatePromoCodes(request))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("Code length or alphabet too small");
+    }
+
+    @Test
+    void givenUnknownJob_whenGetJob_thenThrowException() {
+        // when
+        // then
+        assertThatThrownBy(() -> promoCodeBulkService.getJob(UUID.randomUUID()))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("Job not found");
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void givenCsvWithInvalidRows_whenImportPromoCodes_thenInsertValidRowsAndReportErrors() {
+        // given
+        String csv = """
+                code,discountMethod,expirationDate,maxUsages,amount,currency
+                promoCodeOne,MONETARY,2030-01-01,10,5.00,usd
+                promo code!,MONETARY,2030-01-01,10,5.00,USD
+                promoCodeTwo,PERCENTAGE,not-a-date,10,15,USD
+                promoCodeOne,MONETARY,2030-01-01,10,5.00,USD
+
+                promoCodeTaken,percentage,2030-01-01,1,20,EUR
+                """;
+        given(currencyRegistry.getOrCreate("USD")).willReturn(new Currency(1, "USD"));
+        given(currencyRegistry.getOrCreate("EUR")).willReturn(new Currency(2, "EUR"));
+        given(promoCodeBatchRepository.insertAbsent(any())).willReturn(List.of("promoCodeOne"));
+
+        // when
+        PromoCodeJobResponse actual = promoCodeBulkService.importPromoCodes(body(csv), PromoCodeImportFormat.CSV);
+
+        // then
+        assertThat(actual.status()).isEqualTo(PromoCodeJobStatus.COMPLETED);
+        assertThat(actual.requested()).isEqualTo(5);
+        assertThat(actual.inserted()).isEqualTo(1);
+        assertThat(actual.rejected()).isEqualTo(4);
+        assertThat(actual.errors())
+                .extracting(PromoCodeImportError::line)
+                .containsExactly(3L, 4L, 5L, 7L);
+        assertThat(actual.errors().get(3).message()).isEqualTo("Promo code already exists");
+        verify(currencyRegistry, times(1)).getOrCreate("USD");
+        verify(promoCodeFilter).add("promoCodeOne");
+    }
+
+    @Test
+    void givenNdjson_whenImportPromoCodes_thenInsertInBatches() {
+        // given
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            ndjson.append("""
+                    {"code":"promoCode%d","discountMethod":"MONETARY","expirationDate":"2030-01-01","maxUsages":1,"amount":10,"currency":"USD"}
+                    """.formatted(i));
+        }
+        given(currencyRegistry.getOrCreate("USD")).willReturn(new Currency(1, "USD"));
+        given(promoCodeBatchRepository.insertAbsent(any())).willAnswer(invocation -> ((Collection<PromoCodeBatchRepository.Row>) invocation.getArgument(0)).stream()
+                .map(PromoCodeBatchRepository.Row::code)
+                .toList());
+
+        // when
+        PromoCodeJobResponse actual = promoCodeBulkService.importPromoCodes(body(ndjson.toString()), PromoCodeImportFormat.NDJSON);
+
+        // then
+        assertThat(actual.status()).isEqualTo(PromoCodeJobStatus.COMPLETED);
+        assertThat(actual.inserted()).isEqualTo(250);
+        assertThat(actual.rejected()).isZero();
+        verify(promoCodeBatchRepository, times(3)).insertAbsent(any());
+    }
+
+    @Test
+    void givenCsvWithoutRequiredColumns_whenImportPromoCodes_thenThrowException() {
+        // given
+        String csv = """
+                code,amount
+                promoCodeOne,5.00
+                """;
+
+        // when
+        // then
+        assertThatThrownBy(() -> promoCodeBulkService.importPromoCodes(body(csv), PromoCodeImportFormat.CSV))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("Invalid CSV header");
+        verify(promoCodeBatchRepository, never()).insertAbsent(any());
+    }
+}
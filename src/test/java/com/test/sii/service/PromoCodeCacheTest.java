@@ -0,0 +1,126 @@
+package com.test.sii.service;
+
+import com.test.sii.model.Currency;
+import com.test.sii.model.PromoCodeMonetary;
+import com.test.sii.model.PromoCodeSnapshot;
+import com.test.sii.repository.PromoCodeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class PromoCodeCacheTest {
+
+    private PromoCodeCache promoCodeCache;
+
+    @Mock
+    private PromoCodeRepository promoCodeRepository;
+
+    @BeforeEach
+    void setUp() {
+        promoCodeCache = new PromoCodeCache(promoCodeRepository, new SimpleMeterRegistry(), 100);
+    }
+
+    @Test
+    void givenValidPromoCode_whenGetTwice_thenLoadFromRepositoryOnce() {
+        // given
+        PromoCodeMonetary promoCode = new PromoCodeMonetary(
+                "promoCodeExample",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                100,
+                BigDecimal.valueOf(45.00),
+                new Currency(1, "USD")
+        );
+
+        given(promoCodeRepository.findByCode(promoCode.getCode())).willReturn(Optional.of(promoCode));
+
+        // when
+        Optional<PromoCodeSnapshot> first = promoCodeCache.get(promoCode.getCode());
+        Optional<PromoCodeSnapshot> second = promoCodeCache.get(promoCode.getCode());
+
+        // then
+        assertThat(first)
+                .isNotEmpty()
+                .contains(PromoCodeSnapshot.of(promoCode));
+        assertThat(second).isEqualTo(first);
+        verify(promoCodeRepository, times(1)).findByCode(promoCode.getCode());
+    }
+
+    @Test
+    void givenExpiredPromoCode_whenGetTwice_thenDoNotRetainEntry() {
+        // given
+        PromoCodeMonetary promoCode = new PromoCodeMonetary(
+                "promoCodeExample",
+                Date.valueOf(LocalDate.now().minusDays(1)),
+                100,
+                BigDecimal.valueOf(45.00),
+                new Currency(1, "USD")
+        );
+
+        given(promoCodeRepository.findByCode(promoCode.getCode())).willReturn(Optional.of(promoCode));
+
+        // when
+        promoCodeCache.get(promoCode.getCode());
+        Optional<PromoCodeSnapshot> actual = promoCodeCache.get(promoCode.getCode());
+
+        // then
+        assertThat(actual)
+                .isNotEmpty()
+                .get()
+                .extracting(PromoCodeSnapshot::isExpired)
+                .isEqualTo(true);
+        verify(promoCodeRepository, times(2)).findByCode(promoCode.getCode());
+    }
+
+    @Test
+    void givenInvalidPromoCode_whenGetTwice_thenReturnEmptyAndDoNotCacheMiss() {
+        // given
+        String code = "promoCodeExample";
+
+        given(promoCodeRepository.findByCode(code)).willReturn(Optional.empty());
+
+        // when
+        promoCodeCache.get(code);
+        Optional<PromoCodeSnapshot> actual = promoCodeCache.get(code);
+
+        // then
+        assertThat(actual).isEmpty();
+        verify(promoCodeRepository, times(2)).findByCode(code);
+    }
+
+    @Test
+    void givenCachedPromoCode_whenInvalidate_thenReloadFromRepository() {
+        // given
+        PromoCodeMonetary promoCode = new PromoCodeMonetary(
+                "promoCodeExample",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                100,
+                BigDecimal.valueOf(45.00),
+                new Currency(1, "USD")
+        );
+
+        given(promoCodeRepository.findByCode(promoCode.getCode())).willReturn(Optional.of(promoCode));
+
+        promoCodeCache.get(promoCode.getCode());
+
+        // when
+        promoCodeCache.invalidate(promoCode.getCode());
+        promoCodeCache.get(promoCode.getCode());
+
+        // then
+        verify(promoCodeRepository, times(2)).findByCode(promoCode.getCode());
+    }
+}
@@ -0,0 +1,84 @@
+package com.test.sii.service;
+
+import com.test.sii.model.PurchaseCreatedEvent;
+import com.test.sii.repository.PromoCodeRepository;
+import com.test.sii.repository.PromoCodeSalesRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.InOrder;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class PromoCodeSalesTotalsTest {
+
+    private PromoCodeSalesTotals promoCodeSalesTotals;
+
+    @Mock
+    private PromoCodeSalesRepository promoCodeSalesRepository;
+
+    @Mock
+    private PromoCodeRepository promoCodeRepository;
+
+    @BeforeEach
+    void setUp() {
+        promoCodeSalesTotals = new PromoCodeSalesTotals(promoCodeSalesRepository, promoCodeRepository, 1);
+    }
+
+    @Test
+    void givenPurchaseWithPromoCode_whenPurchaseCreated_thenAddDiscountAndRevenue() {
+        // given
+        PurchaseCreatedEvent event = new PurchaseCreatedEvent(1, 7, "USD", LocalDateTime.now(), BigDecimal.TEN, BigDecimal.ONE);
+        given(promoCodeSalesRepository.add(7, 0, BigDecimal.ONE, BigDecimal.valueOf(9))).willReturn(1);
+
+        // when
+        promoCodeSalesTotals.onPurchaseCreated(event);
+
+        // then
+        verify(promoCodeSalesRepository, times(1)).add(7, 0, BigDecimal.ONE, BigDecimal.valueOf(9));
+        verify(promoCodeSalesRepository, never()).createIfMissing(any(), anyInt());
+        verifyNoInteractions(promoCodeRepository);
+    }
+
+    @Test
+    void givenFirstPurchaseWithPromoCode_whenPurchaseCreated_thenCreateStripeUnderPromoCodeLockAndAdd() {
+        // given
+        PurchaseCreatedEvent event = new PurchaseCreatedEvent(1, 7, "USD", LocalDateTime.now(), BigDecimal.TEN, BigDecimal.ONE);
+        given(promoCodeSalesRepository.add(7, 0, BigDecimal.ONE, BigDecimal.valueOf(9))).willReturn(0, 1);
+
+        // when
+        promoCodeSalesTotals.onPurchaseCreated(event);
+
+        // then
+        InOrder inOrder = inOrder(promoCodeSalesRepository, promoCodeRepository);
+        inOrder.verify(promoCodeSalesRepository).add(7, 0, BigDecimal.ONE, BigDecimal.valueOf(9));
+        inOrder.verify(promoCodeRepository).lockById(7);
+        inOrder.verify(promoCodeSalesRepository).createIfMissing(7, 0);
+        inOrder.verify(promoCodeSalesRepository).add(7, 0, BigDecimal.ONE, BigDecimal.valueOf(9));
+    }
+
+    @Test
+    void givenPurchaseWithoutPromoCode_whenPurchaseCreated_thenIgnore() {
+        // given
+        PurchaseCreatedEvent event = new PurchaseCreatedEvent(1, null, "USD", LocalDateTime.now(), BigDecimal.TEN, BigDecimal.ZERO);
+
+        // when
+        promoCodeSalesTotals.onPurchaseCreated(event);
+
+        // then
+        verifyNoInteractions(promoCodeSalesRepository, promoCodeRepository);
+    }
+}
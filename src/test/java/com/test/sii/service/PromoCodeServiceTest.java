@@ -6,30 +6,36 @@ import com.test.sii.dto.PromoCodeRequest;
 import com.test.sii.dto.PromoCodeResponse;
 import com.test.sii.model.Currency;
 import com.test.sii.model.PromoCode;
+import com.test.sii.model.PromoCodeListItem;
 import com.test.sii.model.PromoCodeMonetary;
 import com.test.sii.model.PromoCodePercentage;
-import com.test.sii.repository.CurrencyRepository;
+import com.test.sii.model.PromoCodeSnapshot;
 import com.test.sii.repository.PromoCodeRepository;
+import com.test.sii.util.CursorPagination;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.sql.Date;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,11 +47,20 @@ class PromoCodeServiceTest {
     private PromoCodeRepository promoCodeRepository;
 
     @Mock
-    private CurrencyRepository currencyRepository;
+    private CurrencyRegistry currencyRegistry;
+
+    @Mock
+    private HotPromoCodeCounters hotPromoCodeCounters;
+
+    @Mock
+    private PromoCodeCache promoCodeCache;
+
+    @Mock
+    private PromoCodeFilter promoCodeFilter;
 
     @BeforeEach
     void setUp() {
-        promoCodeService = new PromoCodeService(promoCodeRepository, currencyRepository);
+        promoCodeService = new PromoCodeService(promoCodeRepository, currencyRegistry, hotPromoCodeCounters, promoCodeCache, promoCodeFilter, new CursorPagination(1000));
     }
 
     @Test
@@ -67,10 +82,10 @@ class PromoCodeServiceTest {
                 new Currency(1, "USD")
         );
 
-        given(promoCodeRepository.findAll()).willReturn(List.of(promoCodeMonetary, promoCodePercentage));
+        given(promoCodeRepository.findListItemsByIdGreaterThan(0, Limit.of(1001))).willReturn(List.of(toListItem(1, promoCodeMonetary), toListItem(2, promoCodePercentage)));
 
         // when
-        List<PromoCodeResponse> actual = promoCodeService.getAllPromoCodes(null, null);
+        List<PromoCodeResponse> actual = promoCodeService.getAllPromoCodes(null, null, null).content();
 
         // then
         List<PromoCodeResponse> expected = List.of(
@@ -117,10 +132,10 @@ class PromoCodeServiceTest {
         int page = 1;
         int size = 1;
 
-        given(promoCodeRepository.findAll(PageRequest.of(page - 1, size))).willReturn(new PageImpl<>(List.of(promoCodeMonetary)));
+        given(promoCodeRepository.findListItems(PageRequest.of(page - 1, size, Sort.by("id")))).willReturn(List.of(toListItem(1, promoCodeMonetary)));
 
         // when
-        List<PromoCodeResponse> actual = promoCodeService.getAllPromoCodes(page, size);
+        List<PromoCodeResponse> actual = promoCodeService.getAllPromoCodes(page, size, null).content();
 
         // then
         List<PromoCodeResponse> expected = List.of(
@@ -141,10 +156,10 @@ class PromoCodeServiceTest {
     @Test
     void givenNoPromoCodes_whenGetAllPromoCodes_thenReturnEmptyList() {
         // given
-        given(promoCodeRepository.findAll()).willReturn(List.of());
+        given(promoCodeRepository.findListItemsByIdGreaterThan(0, Limit.of(1001))).willReturn(List.of());
 
         // when
-        List<PromoCodeResponse> actual = promoCodeService.getAllPromoCodes(null, null);
+        List<PromoCodeResponse> actual = promoCodeService.getAllPromoCodes(null, null, null).content();
 
         // then
         assertThat(actual).isEmpty();
@@ -158,7 +173,7 @@ class PromoCodeServiceTest {
 
         // when
         // then
-        assertThatThrownBy(() -> promoCodeService.getAllPromoCodes(page, size))
+        assertThatThrownBy(() -> promoCodeService.getAllPromoCodes(page, size, null))
                 .isInstanceOf(ResponseStatusException.class)
                 .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
     }
@@ -171,7 +186,7 @@ class PromoCodeServiceTest {
 
         // when
         // then
-        assertThatThrownBy(() -> promoCodeService.getAllPromoCodes(page, size))
+        assertThatThrownBy(() -> promoCodeService.getAllPromoCodes(page, size, null))
                 .isInstanceOf(ResponseStatusException.class)
                 .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
     }
@@ -189,7 +204,7 @@ class PromoCodeServiceTest {
 
         Currency currency = new Currency(1, promoCodeRequest.currency());
 
-        given(currencyRepository.findByCurrency(any())).willReturn(Optional.of(currency));
+        given(currencyRegistry.getOrCreate(any())).willReturn(currency);
 
         // when
         PromoCodeResponse actualResponse = promoCodeService.createMonetaryPromoCode(promoCodeRequest);
@@ -197,7 +212,7 @@ class PromoCodeServiceTest {
         // then
         ArgumentCaptor<PromoCodeMonetary> promoCodeMonetaryArgumentCaptor = ArgumentCaptor.forClass(PromoCodeMonetary.class);
 
-        verify(promoCodeRepository).save(promoCodeMonetaryArgumentCaptor.capture());
+        verify(promoCodeRepository).saveAndFlush(promoCodeMonetaryArgumentCaptor.capture());
 
         PromoCodeMonetary actual = promoCodeMonetaryArgumentCaptor.getValue();
 
@@ -237,11 +252,9 @@ class PromoCodeServiceTest {
                 "USD"
         );
 
-        given(currencyRepository.findByCurrency(any())).willReturn(Optional.empty());
-
         Currency currency = new Currency(1, promoCodeRequest.currency());
 
-        given(currencyRepository.save(any())).willReturn(currency);
+        given(currencyRegistry.getOrCreate(any())).willReturn(currency);
 
         // when
         PromoCodeResponse actualResponse = promoCodeService.createMonetaryPromoCode(promoCodeRequest);
@@ -249,7 +262,7 @@ class PromoCodeServiceTest {
         // then
         ArgumentCaptor<PromoCodeMonetary> promoCodeMonetaryArgumentCaptor = ArgumentCaptor.forClass(PromoCodeMonetary.class);
 
-        verify(promoCodeRepository).save(promoCodeMonetaryArgumentCaptor.capture());
+        verify(promoCodeRepository).saveAndFlush(promoCodeMonetaryArgumentCaptor.capture());
 
         PromoCodeMonetary actual = promoCodeMonetaryArgumentCaptor.getValue();
 
@@ -289,9 +302,9 @@ class PromoCodeServiceTest {
                 "USD"
         );
 
-        given(currencyRepository.findByCurrency(any())).willReturn(Optional.empty());
+        given(currencyRegistry.getOrCreate(any())).willReturn(new Currency(1, "USD"));
 
-        given(promoCodeRepository.save(any())).willThrow(new RuntimeException());
+        given(promoCodeRepository.saveAndFlush(any())).willThrow(new RuntimeException());
 
         // when
         // then
@@ -313,7 +326,7 @@ class PromoCodeServiceTest {
 
         Currency currency = new Currency(1, promoCodeRequest.currency());
 
-        given(currencyRepository.findByCurrency(any())).willReturn(Optional.of(currency));
+        given(currencyRegistry.getOrCreate(any())).willReturn(currency);
 
         // when
         PromoCodeResponse actualResponse = promoCodeService.createPercentagePromoCode(promoCodeRequest);
@@ -321,7 +334,7 @@ class PromoCodeServiceTest {
         // then
         ArgumentCaptor<PromoCodePercentage> promoCodePercentageArgumentCaptor = ArgumentCaptor.forClass(PromoCodePercentage.class);
 
-        verify(promoCodeRepository).save(promoCodePercentageArgumentCaptor.capture());
+        verify(promoCodeRepository).saveAndFlush(promoCodePercentageArgumentCaptor.capture());
 
         PromoCodePercentage actual = promoCodePercentageArgumentCaptor.getValue();
 
@@ -361,11 +374,9 @@ class PromoCodeServiceTest {
                 "USD"
         );
 
-        given(currencyRepository.findByCurrency(any())).willReturn(Optional.empty());
-
         Currency currency = new Currency(1, promoCodeRequest.currency());
 
-        given(currencyRepository.save(any())).willReturn(currency);
+        given(currencyRegistry.getOrCreate(any())).willReturn(currency);
 
         // when
         PromoCodeResponse actualResponse = promoCodeService.createPercentagePromoCode(promoCodeRequest);
@@ -373,7 +384,7 @@ class PromoCodeServiceTest {
         // then
         ArgumentCaptor<PromoCodePercentage> promoCodePercentageArgumentCaptor = ArgumentCaptor.forClass(PromoCodePercentage.class);
 
-        verify(promoCodeRepository).save(promoCodePercentageArgumentCaptor.capture());
+        verify(promoCodeRepository).saveAndFlush(promoCodePercentageArgumentCaptor.capture());
 
         PromoCodePercentage actual = promoCodePercentageArgumentCaptor.getValue();
 
@@ -413,9 +424,9 @@ class PromoCodeServiceTest {
                 "USD"
         );
 
-        given(currencyRepository.findByCurrency(any())).willReturn(Optional.empty());
+        given(currencyRegistry.getOrCreate(any())).willReturn(new Currency(1, "USD"));
 
-        given(promoCodeRepository.save(any())).willThrow(new RuntimeException());
+        given(promoCodeRepository.saveAndFlush(any())).willThrow(new RuntimeException());
 
         // when
         // then
@@ -437,6 +448,7 @@ class PromoCodeServiceTest {
                 new Currency(1, "USD")
         );
 
+        given(promoCodeFilter.mightExist(code)).willReturn(true);
         given(promoCodeRepository.findByCode(code)).willReturn(Optional.of(promoCode));
 
         // when
@@ -463,6 +475,7 @@ class PromoCodeServiceTest {
         // given
         String code = "promoCodeExample";
 
+        given(promoCodeFilter.mightExist(code)).willReturn(true);
         given(promoCodeRepository.findByCode(code)).willReturn(Optional.empty());
 
         // when
@@ -470,5 +483,127 @@ class PromoCodeServiceTest {
         assertThatThrownBy(() -> promoCodeService.getPromoCodeDetails(code))
                 .isInstanceOf(ResponseStatusException.class)
                 .hasFieldOrPropertyWithValue("status", HttpStatus.NOT_FOUND);
+
+        verify(promoCodeFilter).recordMiss();
+    }
+
+    @Test
+    void givenPromoCodeRejectedByFilter_whenGetPromoCodeDetails_thenThrowExceptionWithoutLookup() {
+        // given
+        String code = "promoCodeExample";
+
+        given(promoCodeFilter.mightExist(code)).willReturn(false);
+
+        // when
+        // then
+        assertThatThrownBy(() -> promoCodeService.getPromoCodeDetails(code))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.NOT_FOUND);
+
+        verify(promoCodeRepository, never()).findByCode(any());
+    }
+
+    @Test
+    void givenPromoCodeWithRemainingUsages_whenRedeem_thenRedeemInDatabase() {
+        // given
+        PromoCodeMonetary promoCode = new PromoCodeMonetary(
+                "promoCodeExample",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                100,
+                BigDecimal.valueOf(45.00),
+                new Currency(1, "USD")
+        );
+
+        given(promoCodeRepository.redeem(eq(promoCode.getCode()), any())).willReturn(1);
+
+        // when
+        boolean actual = promoCodeService.redeem(promoCode);
+
+        // then
+        assertThat(actual).isTrue();
+        verify(hotPromoCodeCounters, never()).tryAcquire(any());
+    }
+
+    @Test
+    void givenExhaustedPromoCode_whenRedeem_thenReturnFalseWithoutUpdate() {
+        // given
+        PromoCodeMonetary promoCode = new PromoCodeMonetary(
+                "promoCodeExample",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                1,
+                BigDecimal.valueOf(45.00),
+                new Currency(1, "USD")
+        );
+        promoCode.setUsages(1);
+
+        // when
+        boolean actual = promoCodeService.redeem(promoCode);
+
+        // then
+        assertThat(actual).isFalse();
+        verify(promoCodeRepository, never()).redeem(any(), any());
+    }
+
+    @Test
+    void givenHotPromoCode_whenRedeem_thenRedeemFromHotCounters() {
+        // given
+        PromoCodeMonetary promoCode = new PromoCodeMonetary(
+                "promoCodeExample",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                100,
+                BigDecimal.valueOf(45.00),
+                new Currency(1, "USD")
+        );
+
+        given(hotPromoCodeCounters.isHot(promoCode.getCode())).willReturn(true);
+        given(hotPromoCodeCounters.tryAcquire(promoCode.getCode())).willReturn(true);
+
+        // when
+        boolean actual = promoCodeService.redeem(promoCode);
+
+        // then
+        assertThat(actual).isTrue();
+        verify(promoCodeRepository, never()).redeem(any(), any());
+    }
+
+    @Test
+    void givenCachedPromoCode_whenGetPromoCodeSnapshot_thenReturnSnapshot() {
+        // given
+        PromoCodeSnapshot snapshot = PromoCodeSnapshot.of(new PromoCodeMonetary(
+                "promoCodeExample",
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                100,
+                BigDecimal.valueOf(45.00),
+                new Currency(1, "USD")
+        ));
+
+        given(promoCodeFilter.mightExist(snapshot.code())).willReturn(true);
+        given(promoCodeCache.get(snapshot.code())).willReturn(Optional.of(snapshot));
+
+        // when
+        PromoCodeSnapshot actual = promoCodeService.getPromoCodeSnapshot(snapshot.code());
+
+        // then
+        assertThat(actual).isEqualTo(snapshot);
+    }
+
+    @Test
+    void givenInvalidPromoCode_whenGetPromoCodeSnapshot_thenThrowException() {
+        // given
+        String code = "promoCodeExample";
+
+        given(promoCodeFilter.mightExist(code)).willReturn(false);
+
+        // when
+        // then
+        assertThatThrownBy(() -> promoCodeService.getPromoCodeSnapshot(code))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.NOT_FOUND);
+
+        verify(promoCodeCache, never()).get(any());
+    }
+
+    private static PromoCodeListItem toListItem(int id, PromoCode promoCode) {
+        return new PromoCodeListItem(id, promoCode.getCode(), promoCode.getExpirationDate(), promoCode.getAmount(), promoCode.getCurrency().getCurrency(), promoCode.getDiscountMethod());
     }
-}
\ No newline at end of file
+}
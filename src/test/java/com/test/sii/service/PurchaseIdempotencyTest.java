@@ -0,0 +1,215 @@
+package com.test.sii.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.sii.dto.ProductResponse;
+import com.test.sii.dto.PurchaseRequest;
+import com.test.sii.dto.PurchaseResponse;
+import com.test.sii.model.PurchaseIdempotencyKey;
+import com.test.sii.repository.PurchaseIdempotencyKeyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class PurchaseIdempotencyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final PurchaseRequest purchaseRequest = new PurchaseRequest(1, "promoCodeExample");
+
+    private final PurchaseResponse purchaseResponse = new PurchaseResponse(
+            BigDecimal.valueOf(100.0),
+            BigDecimal.valueOf(20.0),
+            Date.valueOf(LocalDate.of(2024, 5, 13)),
+            new ProductResponse(1, "Product 1", null, BigDecimal.valueOf(100.0), "USD"),
+            null
+    );
+
+    private PurchaseIdempotency purchaseIdempotency;
+
+    @Mock
+    private PurchaseIdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        purchaseIdempotency = new PurchaseIdempotency(idempotencyKeyRepository, objectMapper, transactionManager, new SimpleMeterRegistry(), Duration.ofHours(24), 1000);
+    }
+
+    @Test
+    void givenRetriedRequest_whenCreatePurchase_thenReturnOriginalResponseWithoutExecutingAgain() {
+        // given
+        AtomicInteger executions = new AtomicInteger();
+        given(idempotencyKeyRepository.findById("key")).willReturn(Optional.empty());
+
+        // when
+        PurchaseResponse first = purchaseIdempotency.createPurchase("key", purchaseRequest, () -> {
+            executions.incrementAndGet();
+            return purchaseResponse;
+        });
+        PurchaseResponse retried = purchaseIdempotency.createPurchase("key", purchaseRequest, () -> {
+            executions.incrementAndGet();
+            return purchaseResponse;
+        });
+
+        // then
+        assertThat(executions).hasValue(1);
+        assertThat(retried).isSameAs(first);
+        verify(idempotencyKeyRepository).insert(eq("key"), anyString(), any());
+        verify(idempotencyKeyRepository).setResponse(eq("key"), anyString());
+        verify(idempotencyKeyRepository, times(1)).findById("key");
+    }
+
+    @Test
+    void givenResponseStoredBeforeRestart_whenCreatePurchase_thenReturnStoredResponse() throws Exception {
+        // given
+        given(idempotencyKeyRepository.findById("key")).willReturn(Optional.empty());
+        purchaseIdempotency.createPurchase("key", purchaseRequest, () -> purchaseResponse);
+        String requestFingerprint = storedFingerprint();
+
+        PurchaseIdempotency restarted = new PurchaseIdempotency(idempotencyKeyRepository, objectMapper, transactionManager, new SimpleMeterRegistry(), Duration.ofHours(24), 1000);
+        given(idempotencyKeyRepository.findById("key")).willReturn(Optional.of(new PurchaseIdempotencyKey(
+                "key", requestFingerprint, objectMapper.writeValueAsString(purchaseResponse), LocalDateTime.now().minusMinutes(1))));
+
+        // when
+        PurchaseResponse actual = restarted.createPurchase("key", purchaseRequest, () -> {
+            throw new AssertionError("must not execute");
+        });
+
+        // then
+        assertThat(actual).isEqualTo(purchaseResponse);
+    }
+
+    @Test
+    void givenKeyUsedForDifferentRequest_whenCreatePurchase_thenThrowException() {
+        // given
+        given(idempotencyKeyRepository.findById("key")).willReturn(Optional.empty());
+        purchaseIdempotency.createPurchase("key", purchaseRequest, () -> purchaseResponse);
+
+        // when
+        // then
+        assertThatThrownBy(() -> purchaseIdempotency.createPurchase("key", new PurchaseRequest(2, "promoCodeExample"), () -> purchaseResponse))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    void givenConcurrentDuplicates_whenCreatePurchase_thenExecuteOnce() throws Exception {
+        // given
+        CountDownLatch executionStarted = new CountDownLatch(1);
+        CountDownLatch releaseExecution = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        given(idempotencyKeyRepository.findById("key")).willReturn(Optional.empty());
+
+        // when
+        List<Future<PurchaseResponse>> responses;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<PurchaseResponse> first = executor.submit(() -> purchaseIdempotency.createPurchase("key", purchaseRequest, () -> {
+                executions.incrementAndGet();
+                executionStarted.countDown();
+                try {
+                    releaseExecution.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return purchaseResponse;
+            }));
+            executionStarted.await();
+            List<Callable<PurchaseResponse>> duplicates = IntStream.range(0, 10)
+                    .<Callable<PurchaseResponse>>mapToObj(i -> () -> purchaseIdempotency.createPurchase("key", purchaseRequest, () -> {
+                        executions.incrementAndGet();
+                        return purchaseResponse;
+                    }))
+                    .toList();
+            List<Future<PurchaseResponse>> duplicateResponses = duplicates.stream().map(executor::submit).toList();
+            Thread.sleep(50);
+            releaseExecution.countDown();
+            responses = new ArrayList<>(duplicateResponses);
+            responses.add(first);
+        }
+
+        // then
+        assertThat(executions).hasValue(1);
+        for (Future<PurchaseResponse> response : responses) {
+            assertThat(response.get()).isSameAs(purchaseResponse);
+        }
+    }
+
+    @Test
+    void givenFailedExecution_whenRetried_thenExecuteAgain() {
+        // given
+        given(idempotencyKeyRepository.findById("key")).willReturn(Optional.empty());
+        assertThatThrownBy(() -> purchaseIdempotency.createPurchase("key", purchaseRequest, () -> {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found");
+        })).isInstanceOf(ResponseStatusException.class);
+
+        // when
+        PurchaseResponse actual = purchaseIdempotency.createPurchase("key", purchaseRequest, () -> purchaseResponse);
+
+        // then
+        assertThat(actual).isSameAs(purchaseResponse);
+        verify(idempotencyKeyRepository, times(1)).setResponse(eq("key"), anyString());
+    }
+
+    @Test
+    void givenKeyClaimedOnAnotherInstance_whenCreatePurchase_thenReturnItsResponseWithoutExecuting() throws Exception {
+        // given
+        given(idempotencyKeyRepository.findById("key")).willReturn(Optional.empty());
+        new PurchaseIdempotency(idempotencyKeyRepository, objectMapper, transactionManager, new SimpleMeterRegistry(), Duration.ofHours(24), 1000)
+                .createPurchase("key", purchaseRequest, () -> purchaseResponse);
+        String requestFingerprint = storedFingerprint();
+
+        willThrow(new DataIntegrityViolationException("duplicate")).given(idempotencyKeyRepository).insert(eq("key"), anyString(), any());
+        given(idempotencyKeyRepository.findById("key")).willReturn(
+                Optional.empty(),
+                Optional.of(new PurchaseIdempotencyKey("key", requestFingerprint, objectMapper.writeValueAsString(purchaseResponse), LocalDateTime.now()))
+        );
+
+        // when
+        PurchaseResponse actual = purchaseIdempotency.createPurchase("key", purchaseRequest, () -> {
+            throw new AssertionError("must not execute");
+        });
+
+        // then
+        assertThat(actual).isEqualTo(purchaseResponse);
+        verify(idempotencyKeyRepository, times(1)).setResponse(eq("key"), anyString());
+    }
+
+    private String storedFingerprint() {
+        ArgumentCaptor<String> fingerprint = ArgumentCaptor.forClass(String.class);
+        verify(idempotencyKeyRepository).insert(anyString(), fingerprint.capture(), any());
+        return fingerprint.getValue();
+    }
+}
@@ -0,0 +1,174 @@
+package com.test.sii.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.sii.model.PendingPurchase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PurchaseJournalTest {
+
+    private static final long SEGMENT_SIZE = 1024 * 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void givenAppendedPurchases_whenReopen_thenReplayThemInSequenceOrder() throws InterruptedException {
+        // given
+        List<PendingPurchase> written = new ArrayList<>();
+        String journalId;
+        try (PurchaseJournal journal = PurchaseJournal.open(directory, objectMapper, SEGMENT_SIZE)) {
+            journalId = journal.journalId();
+            journal.sync(journal.append(purchase(1), written::add));
+            journal.sync(journal.append(purchase(2), written::add));
+        }
+
+        // when
+        List<PendingPurchase> replayed = new ArrayList<>();
+        try (PurchaseJournal journal = PurchaseJournal.open(directory, objectMapper, SEGMENT_SIZE)) {
+            long actual = journal.replay(0, 10, replayed::addAll);
+
+            // then
+            assertThat(journal.journalId()).isEqualTo(journalId);
+            assertThat(actual).isEqualTo(2);
+        }
+        assertThat(replayed).containsExactlyElementsOf(written);
+        assertThat(replayed).extracting(PendingPurchase::sequence).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void givenPurchasesAfterCheckpoint_whenReplay_thenStreamThemInBatches() throws InterruptedException {
+        // given
+        try (PurchaseJournal journal = PurchaseJournal.open(directory, objectMapper, 1)) {
+            for (int i = 1; i <= 7; i++) {
+                journal.append(purchase(i), purchase -> {
+                });
+            }
+        }
+
+        // when
+        List<List<Long>> batches = new ArrayList<>();
+        try (PurchaseJournal journal = PurchaseJournal.open(directory, objectMapper, SEGMENT_SIZE)) {
+            long actual = journal.replay(2, 2, batch -> batches.add(batch.stream().map(PendingPurchase::sequence).toList()));
+
+            // then
+            assertThat(actual).isEqualTo(7);
+        }
+        assertThat(batches).containsExactly(List.of(3L, 4L), List.of(5L, 6L), List.of(7L));
+    }
+
+    @Test
+    void givenTornLastLine_whenReopen_thenDropItAndContinueAfterLastCompletePurchase() throws IOException, InterruptedException {
+        // given
+        try (PurchaseJournal journal = PurchaseJournal.open(directory, objectMapper, SEGMENT_SIZE)) {
+            journal.sync(journal.append(purchase(1), purchase -> {
+            }));
+        }
+        Files.writeString(PurchaseJournal.segment(directory, 1), "{\"sequence\":2,\"da", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        // when
+        List<PendingPurchase> written = new ArrayList<>();
+        try (PurchaseJournal journal = PurchaseJournal.open(directory, objectMapper, SEGMENT_SIZE)) {
+            journal.append(purchase(3), written::add);
+        }
+
+        // then
+        List<PendingPurchase> replayed = new ArrayList<>();
+        try (PurchaseJournal journal = PurchaseJournal.open(directory, objectMapper, SEGMENT_SIZE)) {
+            journal.replay(0, 10, replayed::addAll);
+        }
+        assertThat(replayed).extracting(PendingPurchase::sequence).containsExactly(1L, 2L);
+        assertThat(replayed.getLast()).isEqualTo(written.getFirst());
+    }
+
+    @Test
+    void givenFullSegments_whenDeleteFlushed_thenDeleteOnlySegmentsOfInsertedPurchases() throws IOException, InterruptedException {
+        // given
+        try (PurchaseJournal journal = PurchaseJournal.open(directory, objectMapper, 1)) {
+            for (int i = 1; i <= 3; i++) {
+                journal.append(purchase(i), purchase -> {
+                });
+            }
+
+            // when
+            journal.deleteFlushed(2);
+        }
+
+        // then
+        assertThat(Files.exists(PurchaseJournal.segment(directory, 1))).isFalse();
+        assertThat(Files.exists(PurchaseJournal.segment(directory, 2))).isFalse();
+        assertThat(Files.readAllLines(PurchaseJournal.segment(directory, 3))).hasSize(1);
+
+        List<PendingPurchase> replayed = new ArrayList<>();
+        try (PurchaseJournal journal = PurchaseJournal.open(directory, objectMapper, SEGMENT_SIZE)) {
+            journal.replay(2, 10, replayed::addAll);
+        }
+        assertThat(replayed).extracting(PendingPurchase::sequence).containsExactly(3L);
+    }
+
+    @Test
+    void givenAllPurchasesFlushed_whenDeleteFlushed_thenEmptyJournalAndContinueSequence() throws IOException {
+        // given
+        List<PendingPurchase> written = new ArrayList<>();
+        try (PurchaseJournal journal = PurchaseJournal.open(directory, objectMapper, SEGMENT_SIZE)) {
+            journal.append(purchase(1), written::add);
+            journal.append(purchase(2), written::add);
+
+            // when
+            journal.deleteFlushed(1);
+            long partial = Files.size(PurchaseJournal.segment(directory, 1));
+            journal.deleteFlushed(2);
+            long full = Files.size(PurchaseJournal.segment(directory, 1));
+            journal.append(purchase(3), written::add);
+
+            // then
+            assertThat(partial).isPositive();
+            assertThat(full).isZero();
+        }
+        assertThat(written).extracting(PendingPurchase::sequence).containsExactly(1L, 2L, 3L);
+        assertThat(Files.readAllLines(PurchaseJournal.segment(directory, 1))).hasSize(1);
+    }
+
+    @Test
+    void givenEmptyJournalAndCheckpoint_whenAppend_thenContinueAfterCheckpoint() {
+        // given
+        List<PendingPurchase> written = new ArrayList<>();
+        try (PurchaseJournal journal = PurchaseJournal.open(directory, objectMapper, SEGMENT_SIZE)) {
+            journal.continueAfter(41);
+
+            // when
+            journal.append(purchase(1), written::add);
+        }
+
+        // then
+        assertThat(written).extracting(PendingPurchase::sequence).containsExactly(42L);
+    }
+
+    private static PendingPurchase purchase(int productId) {
+        return new PendingPurchase(
+                0,
+                LocalDate.of(2024, 5, 1),
+                BigDecimal.valueOf(100),
+                BigDecimal.valueOf(25),
+                productId,
+                null,
+                "USD",
+                LocalDateTime.of(2024, 5, 1, 12, 30)
+        );
+    }
+}
@@ -5,10 +5,12 @@ import com.test.sii.dto.PurchaseDiscountResponse;
 import com.test.sii.dto.PurchaseRequest;
 import com.test.sii.dto.PurchaseResponse;
 import com.test.sii.model.Currency;
+import com.test.sii.model.PendingPurchase;
 import com.test.sii.model.Product;
+import com.test.sii.model.ProductSnapshot;
 import com.test.sii.model.PromoCodeMonetary;
+import com.test.sii.model.PromoCodeSnapshot;
 import com.test.sii.model.Purchase;
-import com.test.sii.repository.ProductRepository;
 import com.test.sii.repository.PromoCodeRepository;
 import com.test.sii.repository.PurchaseRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,17 +20,23 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
@@ -40,14 +48,20 @@ class PurchaseServiceTest {
     private PurchaseRepository purchaseRepository;
 
     @Mock
-    private ProductRepository productRepository;
+    private ProductCache productCache;
 
     @Mock
     private PromoCodeRepository promoCodeRepository;
 
+    @Mock
+    private PromoCodeService promoCodeService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @BeforeEach
     void setUp() {
-        purchaseService = new PurchaseService(purchaseRepository, productRepository, promoCodeRepository);
+        purchaseService = new PurchaseService(purchaseRepository, productCache, promoCodeRepository, promoCodeService, Optional.empty(), transactionManager, 3);
     }
 
     @Test
@@ -74,8 +88,9 @@ class PurchaseServiceTest {
                 currency
         );
 
-        given(productRepository.findById(productId)).willReturn(Optional.of(product));
-        given(promoCodeRepository.findByCode(code)).willReturn(Optional.of(promoCode));
+        product.setVersion(0L);
+        given(productCache.get(productId)).willReturn(Optional.of(ProductSnapshot.of(product)));
+        given(promoCodeService.getPromoCodeSnapshot(code)).willReturn(PromoCodeSnapshot.of(promoCode));
 
         // when
         PurchaseDiscountResponse actualResponse = purchaseService.getDiscountPrice(productId, code);
@@ -97,7 +112,7 @@ class PurchaseServiceTest {
         // given
         Integer productId = 1;
 
-        given(productRepository.findById(productId)).willReturn(Optional.empty());
+        given(productCache.get(productId)).willReturn(Optional.empty());
 
         // when
         // then
@@ -122,8 +137,9 @@ class PurchaseServiceTest {
                 currency
         );
 
-        given(productRepository.findById(productId)).willReturn(Optional.of(product));
-        given(promoCodeRepository.findByCode(any())).willReturn(Optional.empty());
+        product.setVersion(0L);
+        given(productCache.get(productId)).willReturn(Optional.of(ProductSnapshot.of(product)));
+        given(promoCodeService.getPromoCodeSnapshot(any())).willThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "Promo code not found"));
 
         // when
         // then
@@ -156,8 +172,9 @@ class PurchaseServiceTest {
                 currency
         );
 
-        given(productRepository.findById(productId)).willReturn(Optional.of(product));
-        given(promoCodeRepository.findByCode(code)).willReturn(Optional.of(promoCode));
+        product.setVersion(0L);
+        given(productCache.get(productId)).willReturn(Optional.of(ProductSnapshot.of(product)));
+        given(promoCodeService.getPromoCodeSnapshot(code)).willReturn(PromoCodeSnapshot.of(promoCode));
 
         // when
         PurchaseDiscountResponse actualResponse = purchaseService.getDiscountPrice(productId, code);
@@ -202,8 +219,9 @@ class PurchaseServiceTest {
                 currency2
         );
 
-        given(productRepository.findById(productId)).willReturn(Optional.of(product));
-        given(promoCodeRepository.findByCode(code)).willReturn(Optional.of(promoCode));
+        product.setVersion(0L);
+        given(productCache.get(productId)).willReturn(Optional.of(ProductSnapshot.of(product)));
+        given(promoCodeService.getPromoCodeSnapshot(code)).willReturn(PromoCodeSnapshot.of(promoCode));
 
         // when
         PurchaseDiscountResponse actualResponse = purchaseService.getDiscountPrice(productId, code);
@@ -225,6 +243,76 @@ class PurchaseServiceTest {
                 .isEqualTo(expectedResponse);
     }
 
+    @Test
+    void givenManyProductIds_whenGetDiscountPrices_thenLoadPromoCodeOnceAndQuoteEveryProductInRequestOrder() {
+        // given
+        String code = "promoCodeExample";
+
+        Currency usd = new Currency(1, "USD");
+        Currency eur = new Currency(2, "EUR");
+
+        Product product1 = new Product(1, "Product 1", null, BigDecimal.valueOf(140.00), usd);
+        Product product2 = new Product(2, "Product 2", null, BigDecimal.valueOf(10.00), usd);
+        Product product3 = new Product(3, "Product 3", null, BigDecimal.valueOf(50.00), eur);
+
+        PromoCodeMonetary promoCode = new PromoCodeMonetary(
+                code,
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                100,
+                BigDecimal.valueOf(25.00),
+                usd
+        );
+
+        given(productCache.getAll(any())).willReturn(Map.of(
+                1, ProductSnapshot.of(product1),
+                2, ProductSnapshot.of(product2),
+                3, ProductSnapshot.of(product3)
+        ));
+        given(promoCodeService.getPromoCodeSnapshot(code)).willReturn(PromoCodeSnapshot.of(promoCode));
+
+        // when
+        Map<Integer, PurchaseDiscountResponse> actualResponse = purchaseService.getDiscountPrices(List.of(3, 1, 2, 1), code);
+
+        // then
+        verify(promoCodeService, times(1)).getPromoCodeSnapshot(code);
+        verify(productCache, never()).get(any());
+
+        assertThat(actualResponse).containsOnlyKeys(3, 1, 2);
+        assertThat(actualResponse.keySet()).containsExactly(3, 1, 2);
+        assertThat(actualResponse.get(1).discountPrice()).isEqualByComparingTo("115");
+        assertThat(actualResponse.get(2).discountPrice()).isEqualByComparingTo("0");
+        assertThat(actualResponse.get(3).discountPrice()).isEqualByComparingTo("50");
+        assertThat(actualResponse.get(3).warning()).containsIgnoringCase("currencies");
+    }
+
+    @Test
+    void givenUnknownProductId_whenGetDiscountPrices_thenThrowException() {
+        // given
+        Currency currency = new Currency(1, "USD");
+        Product product = new Product(1, "Product 1", null, BigDecimal.valueOf(140.00), currency);
+
+        given(productCache.getAll(any())).willReturn(Map.of(1, ProductSnapshot.of(product)));
+
+        // when
+        // then
+        assertThatThrownBy(() -> purchaseService.getDiscountPrices(List.of(1, 42), "promoCodeExample"))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void givenTooManyProductIds_whenGetDiscountPrices_thenThrowException() {
+        // given
+        List<Integer> productIds = List.of(1, 2, 3, 4);
+
+        // when
+        // then
+        assertThatThrownBy(() -> purchaseService.getDiscountPrices(productIds, "promoCodeExample"))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+        verify(productCache, never()).getAll(any());
+    }
+
     @Test
     void givenValidPurchaseRequest_whenCreatePurchase_thenCreateNewPurchase() {
         // given
@@ -246,7 +334,8 @@ class PurchaseServiceTest {
                 currency
         );
 
-        given(productRepository.findById(productId)).willReturn(Optional.of(product));
+        product.setVersion(0L);
+        given(productCache.get(productId)).willReturn(Optional.of(ProductSnapshot.of(product)));
 
         PromoCodeMonetary promoCode = new PromoCodeMonetary(
                 code,
@@ -257,6 +346,7 @@ class PurchaseServiceTest {
         );
 
         given(promoCodeRepository.findByCode(code)).willReturn(Optional.of(promoCode));
+        given(promoCodeService.redeem(promoCode)).willReturn(true);
 
         // when
         PurchaseResponse actualResponse = purchaseService.createPurchase(purchaseRequest);
@@ -275,15 +365,17 @@ class PurchaseServiceTest {
                 Date.valueOf(LocalDate.now()),
                 product.getPrice(),
                 discountAmount,
-                product
+                product,
+                promoCode
         );
 
         assertThat(actual)
                 .usingRecursiveComparison()
-                .ignoringFields("date")
+                .ignoringFields("date", "purchasedAt")
                 .isEqualTo(expected);
 
         assertThat(actual.getDate()).isToday();
+        assertThat(actual.getPurchasedAt().toLocalDate()).isEqualTo(actual.getDate().toLocalDate());
 
         PurchaseResponse expectedResponse = new PurchaseResponse(
                 product.getPrice(),
@@ -328,7 +420,8 @@ class PurchaseServiceTest {
                 currency
         );
 
-        given(productRepository.findById(productId)).willReturn(Optional.of(product));
+        product.setVersion(0L);
+        given(productCache.get(productId)).willReturn(Optional.of(ProductSnapshot.of(product)));
 
         PromoCodeMonetary promoCode = new PromoCodeMonetary(
                 code,
@@ -360,10 +453,11 @@ class PurchaseServiceTest {
 
         assertThat(actual)
                 .usingRecursiveComparison()
-                .ignoringFields("date")
+                .ignoringFields("date", "purchasedAt")
                 .isEqualTo(expected);
 
         assertThat(actual.getDate()).isToday();
+        assertThat(actual.getPurchasedAt().toLocalDate()).isEqualTo(actual.getDate().toLocalDate());
 
         PurchaseResponse expectedResponse = new PurchaseResponse(
                 product.getPrice(),
@@ -411,7 +505,8 @@ class PurchaseServiceTest {
                 currency1
         );
 
-        given(productRepository.findById(productId)).willReturn(Optional.of(product));
+        product.setVersion(0L);
+        given(productCache.get(productId)).willReturn(Optional.of(ProductSnapshot.of(product)));
 
         PromoCodeMonetary promoCode = new PromoCodeMonetary(
                 code,
@@ -443,10 +538,11 @@ class PurchaseServiceTest {
 
         assertThat(actual)
                 .usingRecursiveComparison()
-                .ignoringFields("date")
+                .ignoringFields("date", "purchasedAt")
                 .isEqualTo(expected);
 
         assertThat(actual.getDate()).isToday();
+        assertThat(actual.getPurchasedAt().toLocalDate()).isEqualTo(actual.getDate().toLocalDate());
 
         PurchaseResponse expectedResponse = new PurchaseResponse(
                 product.getPrice(),
@@ -485,7 +581,7 @@ class PurchaseServiceTest {
                 code
         );
 
-        given(productRepository.findById(productId)).willReturn(Optional.empty());
+        given(productCache.get(productId)).willReturn(Optional.empty());
 
         // when
         // then
@@ -516,7 +612,8 @@ class PurchaseServiceTest {
                 currency
         );
 
-        given(productRepository.findById(productId)).willReturn(Optional.of(product));
+        product.setVersion(0L);
+        given(productCache.get(productId)).willReturn(Optional.of(ProductSnapshot.of(product)));
 
         PromoCodeMonetary promoCode = new PromoCodeMonetary(
                 code,
@@ -550,10 +647,11 @@ class PurchaseServiceTest {
 
         assertThat(actual)
                 .usingRecursiveComparison()
-                .ignoringFields("date")
+                .ignoringFields("date", "purchasedAt")
                 .isEqualTo(expected);
 
         assertThat(actual.getDate()).isToday();
+        assertThat(actual.getPurchasedAt().toLocalDate()).isEqualTo(actual.getDate().toLocalDate());
 
         PurchaseResponse expectedResponse = new PurchaseResponse(
                 product.getPrice(),
@@ -580,6 +678,115 @@ class PurchaseServiceTest {
                 .containsIgnoringCase("maximum usages");
     }
 
+    @Test
+    void givenValidPurchaseRequestWithPromoCodeExhaustedConcurrently_whenCreatePurchase_thenCreateNewPurchaseWithNoDiscount() {
+        // given
+        Integer productId = 1;
+        String code = "promoCodeExample";
+
+        PurchaseRequest purchaseRequest = new PurchaseRequest(
+                productId,
+                code
+        );
+
+        Currency currency = new Currency(1, "USD");
+
+        Product product = new Product(
+                1,
+                "Product 1",
+                "Description of Product 1",
+                BigDecimal.valueOf(140.00),
+                currency
+        );
+
+        product.setVersion(0L);
+        given(productCache.get(productId)).willReturn(Optional.of(ProductSnapshot.of(product)));
+
+        PromoCodeMonetary promoCode = new PromoCodeMonetary(
+                code,
+                Date.valueOf(LocalDate.now().plusYears(1)),
+                1,
+                BigDecimal.valueOf(25.00),
+                currency
+        );
+
+        given(promoCodeRepository.findByCode(code)).willReturn(Optional.of(promoCode));
+        given(promoCodeService.redeem(promoCode)).willReturn(false);
+
+        // when
+        PurchaseResponse actualResponse = purchaseService.createPurchase(purchaseRequest);
+
+        // then
+        ArgumentCaptor<Purchase> purchaseArgumentCaptor = ArgumentCaptor.forClass(Purchase.class);
+
+        verify(purchaseRepository).save(purchaseArgumentCaptor.capture());
+
+        assertThat(purchaseArgumentCaptor.getValue().getDiscountAmount()).isEqualTo(BigDecimal.ZERO);
+
+        assertThat(actualResponse.discountAmount()).isEqualTo(BigDecimal.ZERO);
+
+        assertThat(actualResponse.warning())
+                .containsIgnoringCase("maximum usages");
+    }
+
+    @Test
+    void givenWriteBehindEnabled_whenCreatePurchase_thenSubmitPurchaseInsteadOfSaving() {
+        // given
+        PurchaseWriteBehind purchaseWriteBehind = mock(PurchaseWriteBehind.class);
+        PurchaseWriteBehind.Reservation reservation = mock(PurchaseWriteBehind.Reservation.class);
+        purchaseService = new PurchaseService(purchaseRepository, productCache, promoCodeRepository, promoCodeService, Optional.of(purchaseWriteBehind), transactionManager, 3);
+
+        Currency currency = new Currency(1, "USD");
+        Product product = new Product(1, "Product 1", "Description of Product 1", BigDecimal.valueOf(140.00), currency);
+        PromoCodeMonetary promoCode = new PromoCodeMonetary("promoCodeExample", Date.valueOf(LocalDate.now().plusYears(1)), 10, BigDecimal.valueOf(25.00), currency);
+        promoCode.setId(7);
+
+        product.setVersion(0L);
+        given(productCache.get(1)).willReturn(Optional.of(ProductSnapshot.of(product)));
+        given(promoCodeRepository.findByCode("promoCodeExample")).willReturn(Optional.of(promoCode));
+        given(purchaseWriteBehind.reserve()).willReturn(reservation);
+        given(promoCodeService.redeem(promoCode)).willReturn(true);
+
+        // when
+        PurchaseResponse actualResponse = purchaseService.createPurchase(new PurchaseRequest(1, "promoCodeExample"));
+
+        // then
+        ArgumentCaptor<PendingPurchase> pendingPurchaseArgumentCaptor = ArgumentCaptor.forClass(PendingPurchase.class);
+        verify(reservation).submit(pendingPurchaseArgumentCaptor.capture());
+        verify(purchaseRepository, never()).save(any());
+
+        PendingPurchase pendingPurchase = pendingPurchaseArgumentCaptor.getValue();
+        assertThat(pendingPurchase.productId()).isEqualTo(1);
+        assertThat(pendingPurchase.promoCodeId()).isEqualTo(7);
+        assertThat(pendingPurchase.currency()).isEqualTo("USD");
+        assertThat(pendingPurchase.discountAmount()).isEqualByComparingTo("25.00");
+        assertThat(pendingPurchase.date()).isEqualTo(LocalDate.now());
+        assertThat(actualResponse.discountAmount()).isEqualByComparingTo("25.00");
+    }
+
+    @Test
+    void givenWriteBehindQueueFull_whenCreatePurchase_thenRejectWithoutRedeemingPromoCode() {
+        // given
+        PurchaseWriteBehind purchaseWriteBehind = mock(PurchaseWriteBehind.class);
+        purchaseService = new PurchaseService(purchaseRepository, productCache, promoCodeRepository, promoCodeService, Optional.of(purchaseWriteBehind), transactionManager, 3);
+
+        Currency currency = new Currency(1, "USD");
+        Product product = new Product(1, "Product 1", "Description of Product 1", BigDecimal.valueOf(140.00), currency);
+        PromoCodeMonetary promoCode = new PromoCodeMonetary("promoCodeExample", Date.valueOf(LocalDate.now().plusYears(1)), 10, BigDecimal.valueOf(25.00), currency);
+
+        product.setVersion(0L);
+        given(productCache.get(1)).willReturn(Optional.of(ProductSnapshot.of(product)));
+        given(promoCodeRepository.findByCode("promoCodeExample")).willReturn(Optional.of(promoCode));
+        given(purchaseWriteBehind.reserve()).willThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many purchases, try again later"));
+
+        // when
+        // then
+        assertThatThrownBy(() -> purchaseService.createPurchase(new PurchaseRequest(1, "promoCodeExample")))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.SERVICE_UNAVAILABLE);
+        verify(promoCodeService, never()).redeem(any());
+    }
+
     @Test
     void givenInvalidPurchaseRequestWithInvalidPromoCode_whenCreatePurchase_thenThrowException() {
         // given
@@ -601,7 +808,8 @@ class PurchaseServiceTest {
                 currency
         );
 
-        given(productRepository.findById(productId)).willReturn(Optional.of(product));
+        product.setVersion(0L);
+        given(productCache.get(productId)).willReturn(Optional.of(ProductSnapshot.of(product)));
 
         given(promoCodeRepository.findByCode(code)).willReturn(Optional.empty());
 
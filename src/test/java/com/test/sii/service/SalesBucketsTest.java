@@ -0,0 +1,75 @@
+package com.test.sii.service;
+
+import com.test.sii.model.PurchaseCreatedEvent;
+import com.test.sii.repository.CurrencyRepository;
+import com.test.sii.repository.SalesBucketRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.InOrder;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class SalesBucketsTest {
+
+    private SalesBuckets salesBuckets;
+
+    @Mock
+    private SalesBucketRepository salesBucketRepository;
+
+    @Mock
+    private CurrencyRepository currencyRepository;
+
+    @BeforeEach
+    void setUp() {
+        salesBuckets = new SalesBuckets(salesBucketRepository, currencyRepository, 1);
+    }
+
+    @Test
+    void givenExistingBuckets_whenPurchaseCreated_thenAddToHourDayAndMonth() {
+        // given
+        PurchaseCreatedEvent event = new PurchaseCreatedEvent(1, null, "USD", LocalDateTime.of(2024, 3, 15, 13, 45), BigDecimal.TEN, BigDecimal.ONE);
+        given(salesBucketRepository.add(any(), any(), eq("USD"), eq(0), eq(BigDecimal.TEN), eq(BigDecimal.ONE), eq(1L))).willReturn(1);
+
+        // when
+        salesBuckets.onPurchaseCreated(event);
+
+        // then
+        verify(salesBucketRepository).add("HOUR", LocalDateTime.of(2024, 3, 15, 13, 0), "USD", 0, BigDecimal.TEN, BigDecimal.ONE, 1L);
+        verify(salesBucketRepository).add("DAY", LocalDateTime.of(2024, 3, 15, 0, 0), "USD", 0, BigDecimal.TEN, BigDecimal.ONE, 1L);
+        verify(salesBucketRepository).add("MONTH", LocalDateTime.of(2024, 3, 1, 0, 0), "USD", 0, BigDecimal.TEN, BigDecimal.ONE, 1L);
+        verify(salesBucketRepository, never()).createIfMissing(any(), any(), any(), anyInt());
+        verifyNoInteractions(currencyRepository);
+    }
+
+    @Test
+    void givenNewHour_whenPurchaseCreated_thenCreateHourBucketUnderCurrencyLock() {
+        // given
+        PurchaseCreatedEvent event = new PurchaseCreatedEvent(1, null, "USD", LocalDateTime.of(2024, 3, 15, 14, 5), BigDecimal.TEN, BigDecimal.ONE);
+        given(salesBucketRepository.add(any(), any(), eq("USD"), anyInt(), any(), any(), eq(1L))).willReturn(1);
+        given(salesBucketRepository.add("HOUR", LocalDateTime.of(2024, 3, 15, 14, 0), "USD", 0, BigDecimal.TEN, BigDecimal.ONE, 1L)).willReturn(0, 1);
+
+        // when
+        salesBuckets.onPurchaseCreated(event);
+
+        // then
+        InOrder inOrder = inOrder(salesBucketRepository, currencyRepository);
+        inOrder.verify(salesBucketRepository).add("HOUR", LocalDateTime.of(2024, 3, 15, 14, 0), "USD", 0, BigDecimal.TEN, BigDecimal.ONE, 1L);
+        inOrder.verify(currencyRepository).lockByCurrency("USD");
+        inOrder.verify(salesBucketRepository).createIfMissing("HOUR", LocalDateTime.of(2024, 3, 15, 14, 0), "USD", 0);
+        inOrder.verify(salesBucketRepository).add("HOUR", LocalDateTime.of(2024, 3, 15, 14, 0), "USD", 0, BigDecimal.TEN, BigDecimal.ONE, 1L);
+    }
+}
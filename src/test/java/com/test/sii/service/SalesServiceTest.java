@@ -1,22 +1,34 @@
 package com.test.sii.service;
 
+import com.test.sii.dto.SalesReportBucketResponse;
 import com.test.sii.dto.SalesReportEntryResponse;
+import com.test.sii.dto.SalesRankingMetric;
+import com.test.sii.dto.SalesReportGranularity;
+import com.test.sii.dto.SalesWindow;
+import com.test.sii.dto.TopProductResponse;
 import com.test.sii.model.Currency;
 import com.test.sii.model.Product;
 import com.test.sii.model.Purchase;
-import com.test.sii.repository.PurchaseRepository;
+import com.test.sii.repository.PromoCodeSalesRepository;
+import com.test.sii.repository.SalesBucketRepository;
+import com.test.sii.repository.SalesTotalRepository;
+import com.test.sii.util.CursorPagination;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.BDDMockito.given;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,11 +37,35 @@ class SalesServiceTest {
     private SalesService salesService;
 
     @Mock
-    private PurchaseRepository purchaseRepository;
+    private SalesTotalRepository salesTotalRepository;
+
+    @Mock
+    private SalesBucketRepository salesBucketRepository;
+
+    @Mock
+    private PromoCodeSalesRepository promoCodeSalesRepository;
+
+    @Mock
+    private SalesTotals salesTotals;
+
+    @Mock
+    private TopProducts topProducts;
+
+    @Mock
+    private DiscountStatistics discountStatistics;
 
     @BeforeEach
     void setUp() {
-        salesService = new SalesService(purchaseRepository);
+        salesService = new SalesService(
+                salesTotalRepository,
+                salesBucketRepository,
+                promoCodeSalesRepository,
+                salesTotals,
+                topProducts,
+                discountStatistics,
+                new CursorPagination(1000),
+                400
+        );
     }
 
     @Test
@@ -78,7 +114,7 @@ class SalesServiceTest {
                 )
         );
 
-        given(purchaseRepository.generateSalesReport()).willReturn(expected);
+        given(salesTotalRepository.generateSalesReport()).willReturn(expected);
 
         // when
         List<SalesReportEntryResponse> actual = salesService.getSalesReport();
@@ -93,7 +129,7 @@ class SalesServiceTest {
     @Test
     void givenNoExistingPurchases_whenGetSalesReport_thenGenerateEmptyReport() {
         // given
-        given(purchaseRepository.generateSalesReport()).willReturn(List.of());
+        given(salesTotalRepository.generateSalesReport()).willReturn(List.of());
 
         // when
         List<SalesReportEntryResponse> actual = salesService.getSalesReport();
@@ -102,4 +138,74 @@ class SalesServiceTest {
         assertThat(actual).isEmpty();
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenDateRange_whenGetMonthlySalesReport_thenReadWholeMonths() {
+        // given
+        LocalDate from = LocalDate.of(2024, 1, 15);
+        LocalDate to = LocalDate.of(2024, 2, 10);
+        List<SalesReportBucketResponse> expected = List.of(
+                new SalesReportBucketResponse(LocalDateTime.of(2024, 1, 1, 0, 0), "USD", BigDecimal.TEN, BigDecimal.ONE, 1L)
+        );
+        given(salesBucketRepository.generateSalesReport(
+                SalesReportGranularity.MONTH,
+                LocalDateTime.of(2024, 1, 1, 0, 0),
+                LocalDateTime.of(2024, 2, 11, 0, 0)
+        )).willReturn(expected);
+
+        // when
+        List<SalesReportBucketResponse> actual = salesService.getSalesReport(from, to, SalesReportGranularity.MONTH);
+
+        // then
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void givenEndBeforeStart_whenGetSalesReport_thenThrowException() {
+        // given
+        LocalDate from = LocalDate.of(2024, 2, 1);
+        LocalDate to = LocalDate.of(2024, 1, 1);
+
+        // when
+        // then
+        assertThatThrownBy(() -> salesService.getSalesReport(from, to, SalesReportGranularity.DAY))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void givenRangeWithTooManyBuckets_whenGetSalesReport_thenThrowException() {
+        // given
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LocalDate to = LocalDate.of(2024, 1, 17);
+
+        // when
+        // then
+        assertThatThrownBy(() -> salesService.getSalesReport(from, to, SalesReportGranularity.HOUR))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void givenLimitAboveCapacity_whenGetTopProducts_thenCapLimit() {
+        // given
+        List<TopProductResponse> expected = List.of(new TopProductResponse(1, BigDecimal.ONE, BigDecimal.ZERO));
+        given(topProducts.capacity()).willReturn(100);
+        given(topProducts.top("USD", SalesWindow.DAY, SalesRankingMetric.UNITS, 100)).willReturn(expected);
+
+        // when
+        List<TopProductResponse> actual = salesService.getTopProducts("USD", SalesWindow.DAY, SalesRankingMetric.UNITS, 1000, false);
+
+        // then
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void givenNonPositiveLimit_whenGetTopProducts_thenThrowException() {
+        // when
+        // then
+        assertThatThrownBy(() -> salesService.getTopProducts("USD", SalesWindow.DAY, SalesRankingMetric.UNITS, 0, false))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    }
+}
@@ -0,0 +1,125 @@
+package com.test.sii.service;
+
+import com.test.sii.dto.SalesDriftResponse;
+import com.test.sii.dto.SalesReportEntryResponse;
+import com.test.sii.model.PurchaseCreatedEvent;
+import com.test.sii.repository.CurrencyRepository;
+import com.test.sii.repository.PurchaseRepository;
+import com.test.sii.repository.SalesTotalRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.InOrder;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class SalesTotalsTest {
+
+    private SalesTotals salesTotals;
+
+    @Mock
+    private SalesTotalRepository salesTotalRepository;
+
+    @Mock
+    private PurchaseRepository purchaseRepository;
+
+    @Mock
+    private CurrencyRepository currencyRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        salesTotals = new SalesTotals(salesTotalRepository, purchaseRepository, currencyRepository, transactionManager, new SimpleMeterRegistry(), 2, false);
+    }
+
+    @Test
+    void givenExistingStripes_whenPurchaseCreated_thenAddToStripe() {
+        // given
+        PurchaseCreatedEvent event = new PurchaseCreatedEvent(1, null, "USD", LocalDateTime.now(), BigDecimal.TEN, BigDecimal.ONE);
+        given(salesTotalRepository.add(eq("USD"), anyInt(), eq(BigDecimal.TEN), eq(BigDecimal.ONE), eq(1L))).willReturn(1);
+
+        // when
+        salesTotals.onPurchaseCreated(event);
+
+        // then
+        verify(salesTotalRepository, times(1)).add(eq("USD"), anyInt(), eq(BigDecimal.TEN), eq(BigDecimal.ONE), eq(1L));
+        verify(salesTotalRepository, never()).createIfMissing(any(), anyInt());
+        verifyNoInteractions(currencyRepository);
+    }
+
+    @Test
+    void givenNewCurrency_whenPurchaseCreated_thenCreateStripeUnderCurrencyLockAndAdd() {
+        // given
+        PurchaseCreatedEvent event = new PurchaseCreatedEvent(1, null, "EUR", LocalDateTime.now(), BigDecimal.TEN, BigDecimal.ONE);
+        given(salesTotalRepository.add(eq("EUR"), anyInt(), eq(BigDecimal.TEN), eq(BigDecimal.ONE), eq(1L))).willReturn(0, 1);
+
+        // when
+        salesTotals.onPurchaseCreated(event);
+
+        // then
+        InOrder inOrder = inOrder(salesTotalRepository, currencyRepository);
+        inOrder.verify(salesTotalRepository).add(eq("EUR"), anyInt(), eq(BigDecimal.TEN), eq(BigDecimal.ONE), eq(1L));
+        inOrder.verify(currencyRepository).lockByCurrency("EUR");
+        inOrder.verify(salesTotalRepository).createIfMissing(eq("EUR"), anyInt());
+        inOrder.verify(salesTotalRepository).add(eq("EUR"), anyInt(), eq(BigDecimal.TEN), eq(BigDecimal.ONE), eq(1L));
+    }
+
+    @Test
+    void givenTotalsDifferFromPurchases_whenReconcile_thenReportDrift() {
+        // given
+        given(purchaseRepository.generateSalesReport()).willReturn(List.of(
+                new SalesReportEntryResponse("EUR", BigDecimal.valueOf(50), BigDecimal.ZERO, 1L),
+                new SalesReportEntryResponse("USD", BigDecimal.valueOf(100), BigDecimal.TEN, 2L)
+        ));
+        given(salesTotalRepository.generateSalesReport()).willReturn(List.of(
+                new SalesReportEntryResponse("EUR", BigDecimal.valueOf(50), BigDecimal.ZERO, 1L),
+                new SalesReportEntryResponse("USD", BigDecimal.valueOf(150), BigDecimal.TEN, 3L)
+        ));
+
+        // when
+        List<SalesDriftResponse> actual = salesTotals.reconcile(false);
+
+        // then
+        assertThat(actual).containsExactly(
+                new SalesDriftResponse("USD", BigDecimal.valueOf(-50), BigDecimal.ZERO, -1L)
+        );
+        verify(salesTotalRepository, never()).add(any(), anyInt(), any(), any(), any(Long.class));
+    }
+
+    @Test
+    void givenDrift_whenReconcileWithFix_thenAddDriftToTotals() {
+        // given
+        given(purchaseRepository.generateSalesReport()).willReturn(List.of());
+        given(salesTotalRepository.generateSalesReport()).willReturn(List.of(
+                new SalesReportEntryResponse("USD", BigDecimal.valueOf(100), BigDecimal.TEN, 1L)
+        ));
+        given(salesTotalRepository.add("USD", 0, BigDecimal.valueOf(-100), BigDecimal.valueOf(-10), -1L)).willReturn(1);
+
+        // when
+        List<SalesDriftResponse> actual = salesTotals.reconcile(true);
+
+        // then
+        assertThat(actual).hasSize(1);
+        verify(salesTotalRepository, times(1)).add("USD", 0, BigDecimal.valueOf(-100), BigDecimal.valueOf(-10), -1L);
+    }
+}
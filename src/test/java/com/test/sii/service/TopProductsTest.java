@@ -0,0 +1,120 @@
+package com.test.sii.service;
+
+import com.test.sii.dto.SalesRankingMetric;
+import com.test.sii.dto.SalesWindow;
+import com.test.sii.dto.TopProductResponse;
+import com.test.sii.model.PurchaseCreatedEvent;
+import com.test.sii.repository.PurchaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.*;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class TopProductsTest {
+
+    private static final Instant START = Instant.parse("2024-03-15T12:00:00Z");
+
+    private TopProducts topProducts;
+
+    private Instant now = START;
+
+    @Mock
+    private PurchaseRepository purchaseRepository;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return now;
+            }
+        };
+        topProducts = new TopProducts(purchaseRepository, 100, clock);
+    }
+
+    private void purchase(Integer productId, String currency, String price, String discount) {
+        topProducts.onPurchaseCreated(new PurchaseCreatedEvent(
+                productId,
+                null,
+                currency,
+                LocalDateTime.ofInstant(now, ZoneOffset.UTC),
+                new BigDecimal(price),
+                new BigDecimal(discount)
+        ));
+    }
+
+    @Test
+    void givenPurchases_whenTop_thenRankProductsByMetric() {
+        // given
+        purchase(1, "USD", "10.00", "0.00");
+        purchase(1, "USD", "10.00", "2.00");
+        purchase(2, "USD", "100.00", "0.00");
+        purchase(3, "EUR", "500.00", "0.00");
+
+        // when
+        List<TopProductResponse> byUnits = topProducts.top("USD", SalesWindow.HOUR, SalesRankingMetric.UNITS, 10);
+        List<TopProductResponse> byRevenue = topProducts.top("USD", SalesWindow.HOUR, SalesRankingMetric.REVENUE, 10);
+
+        // then
+        assertThat(byUnits).containsExactly(
+                new TopProductResponse(1, new BigDecimal("2"), new BigDecimal("0")),
+                new TopProductResponse(2, new BigDecimal("1"), new BigDecimal("0"))
+        );
+        assertThat(byRevenue).containsExactly(
+                new TopProductResponse(2, new BigDecimal("100.00"), new BigDecimal("0.00")),
+                new TopProductResponse(1, new BigDecimal("18.00"), new BigDecimal("0.00"))
+        );
+    }
+
+    @Test
+    void givenPurchasesOlderThanWindow_whenTop_thenExcludeThem() {
+        // given
+        purchase(1, "USD", "10.00", "0.00");
+        now = START.plus(Duration.ofMinutes(90));
+        purchase(2, "USD", "10.00", "0.00");
+
+        // when
+        List<TopProductResponse> lastHour = topProducts.top("USD", SalesWindow.HOUR, SalesRankingMetric.UNITS, 10);
+        List<TopProductResponse> lastDay = topProducts.top("USD", SalesWindow.DAY, SalesRankingMetric.UNITS, 10);
+
+        // then
+        assertThat(lastHour).extracting(TopProductResponse::productId).containsExactly(2);
+        assertThat(lastDay).extracting(TopProductResponse::productId).containsExactlyInAnyOrder(1, 2);
+    }
+
+    @Test
+    void givenExactRanking_whenExact_thenQueryPurchasesSinceWindowStartDay() {
+        // given
+        now = Instant.parse("2024-03-15T00:30:00Z");
+        List<TopProductResponse> expected = List.of(new TopProductResponse(1, BigDecimal.TEN, BigDecimal.ZERO));
+        given(purchaseRepository.findTopProductsByRevenue("USD", Date.valueOf(LocalDate.of(2024, 3, 14)), PageRequest.of(0, 5)))
+                .willReturn(expected);
+
+        // when
+        List<TopProductResponse> actual = topProducts.exact("USD", SalesWindow.HOUR, SalesRankingMetric.REVENUE, 5);
+
+        // then
+        assertThat(actual).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,49 @@
+package com.test.sii.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BloomFilterTest {
+
+    @Test
+    void givenInsertedValues_whenMightContain_thenReturnTrueForAll() {
+        // given
+        BloomFilter bloomFilter = BloomFilter.create(10_000, 0.01);
+
+        IntStream.range(0, 10_000).forEach(i -> bloomFilter.put("code" + i));
+
+        // when
+        // then
+        assertThat(IntStream.range(0, 10_000).allMatch(i -> bloomFilter.mightContain("code" + i))).isTrue();
+    }
+
+    @Test
+    void givenFilledFilter_whenMightContainUnknownValues_thenFalsePositiveRateStaysNearConfiguredRate() {
+        // given
+        double falsePositiveRate = 0.01;
+        BloomFilter bloomFilter = BloomFilter.create(10_000, falsePositiveRate);
+
+        IntStream.range(0, 10_000).forEach(i -> bloomFilter.put("code" + i));
+
+        // when
+        long falsePositives = IntStream.range(0, 100_000)
+                .filter(i -> bloomFilter.mightContain("unknown" + i))
+                .count();
+
+        // then
+        assertThat(falsePositives / 100_000.0).isLessThan(falsePositiveRate * 2);
+    }
+
+    @Test
+    void givenInvalidFalsePositiveRate_whenCreate_thenThrowException() {
+        // given
+        // when
+        // then
+        assertThatThrownBy(() -> BloomFilter.create(100, 1.0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,94 @@
+package com.test.sii.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrentLookupsTest {
+
+    @Test
+    void givenTwoLookups_whenJoin_thenRunThemConcurrently() {
+        // given
+        // each lookup waits for the other one to start, which never happens if they run one after another
+        CountDownLatch started = new CountDownLatch(2);
+
+        // when
+        String actual = ConcurrentLookups.join(
+                () -> awaitOther(started, "product"),
+                () -> awaitOther(started, "promoCode"),
+                (product, promoCode) -> product + ":" + promoCode
+        );
+
+        // then
+        assertThat(actual).isEqualTo("product:promoCode");
+    }
+
+    @Test
+    void givenFailingLookup_whenJoin_thenCancelOtherAndRethrowItsException() {
+        // given
+        ResponseStatusException notFound = new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found");
+        CountDownLatch otherStarted = new CountDownLatch(2);
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        // when
+        // then
+        assertThatThrownBy(() -> ConcurrentLookups.join(
+                () -> {
+                    awaitOther(otherStarted, null);
+                    throw notFound;
+                },
+                () -> {
+                    otherStarted.countDown();
+                    try {
+                        Thread.sleep(60_000);
+                    } catch (InterruptedException e) {
+                        interrupted.set(true);
+                    }
+                    return "promoCode";
+                },
+                (product, promoCode) -> product + ":" + promoCode
+        )).isSameAs(notFound);
+        assertThat(interrupted).isTrue();
+    }
+
+    @Test
+    void givenActiveTransaction_whenJoin_thenRunLookupsOnCallingThread() {
+        // given
+        Thread caller = Thread.currentThread();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        // when
+        try {
+            boolean actual = ConcurrentLookups.join(
+                    () -> Thread.currentThread() == caller,
+                    () -> Thread.currentThread() == caller,
+                    Boolean::logicalAnd
+            );
+
+            // then
+            assertThat(actual).isTrue();
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    private static String awaitOther(CountDownLatch started, String result) {
+        started.countDown();
+        try {
+            if (!started.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Lookups did not run concurrently");
+            }
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,43 @@
+package com.test.sii.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ETagsTest {
+
+    @Test
+    void givenSameIdsAndVersions_whenTagList_thenReturnSameTag() {
+        // given
+        List<long[]> products = List.of(new long[]{1, 0}, new long[]{2, 5});
+        List<long[]> reordered = List.of(new long[]{2, 5}, new long[]{1, 0});
+
+        // when
+        String tag = ETags.of(products, product -> (int) product[0], product -> product[1]);
+        String sameTag = ETags.of(List.of(new long[]{1, 0}, new long[]{2, 5}), product -> (int) product[0], product -> product[1]);
+        String reorderedTag = ETags.of(reordered, product -> (int) product[0], product -> product[1]);
+
+        // then
+        assertThat(tag)
+                .isEqualTo(sameTag)
+                .isNotEqualTo(reorderedTag)
+                .startsWith("\"")
+                .endsWith("\"");
+    }
+
+    @Test
+    void givenIfMatchHeader_whenMatches_thenCompareStrongly() {
+        // given
+        String eTag = ETags.of(3);
+
+        // when
+        // then
+        assertThat(ETags.matches(null, eTag)).isTrue();
+        assertThat(ETags.matches("*", eTag)).isTrue();
+        assertThat(ETags.matches("\"2\", \"3\"", eTag)).isTrue();
+        assertThat(ETags.matches("\"2\"", eTag)).isFalse();
+        assertThat(ETags.matches("W/\"3\"", eTag)).isFalse();
+    }
+}
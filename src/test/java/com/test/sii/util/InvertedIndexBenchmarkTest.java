@@ -0,0 +1,95 @@
+package com.test.sii.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Searches an index of a million products with a three-word name plus a unique code and a twelve-word description,
+ * drawn from a vocabulary of {@value #VOCABULARY} words. Queries are one or two words, the last one cut to a prefix.
+ * Run with {@code mvn test -Dbenchmark=true -Dtest=InvertedIndexBenchmarkTest}.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class InvertedIndexBenchmarkTest {
+
+    private static final int PRODUCTS = 1_000_000;
+    private static final int VOCABULARY = 20_000;
+    private static final int WARM_UP_QUERIES = 20_000;
+    private static final int QUERIES = 20_000;
+    private static final int PAGE_SIZE = 20;
+
+    @Test
+    void givenMillionProducts_whenSearch_thenAnswerWithinMillisecond() {
+        // given
+        Random random = new Random(42);
+        String[] vocabulary = IntStream.range(0, VOCABULARY)
+                .mapToObj(i -> word(random))
+                .toArray(String[]::new);
+
+        String[] names = new String[PRODUCTS];
+        String[] descriptions = new String[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            names[i] = words(vocabulary, random, 3) + " SKU-" + Integer.toString(i + 1, 36);
+            descriptions[i] = words(vocabulary, random, 12);
+        }
+
+        InvertedIndex index = new InvertedIndex(3);
+        long start = System.nanoTime();
+        for (int i = 0; i < PRODUCTS; i++) {
+            index.put(i + 1, 0, names[i], descriptions[i]);
+        }
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // when
+        for (int i = 0; i < WARM_UP_QUERIES; i++) {
+            index.search(query(vocabulary, random), 0, PAGE_SIZE);
+        }
+        long[] nanos = new long[QUERIES];
+        long hits = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            List<String> query = query(vocabulary, random);
+            start = System.nanoTime();
+            hits += index.search(query, 0, PAGE_SIZE).total();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        double p50 = nanos[QUERIES / 2] / 1_000_000.0;
+        double p99 = nanos[QUERIES * 99 / 100] / 1_000_000.0;
+
+        log.info("Indexed {} products in {} ms, {} hits per query, p50 {} ms, p99 {} ms", PRODUCTS, buildMillis, hits / QUERIES, p50, p99);
+
+        // then
+        assertThat(p99).isLessThan(1.0);
+    }
+
+    private static String word(Random random) {
+        char[] letters = new char[4 + random.nextInt(7)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+
+    private static String words(String[] vocabulary, Random random, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> vocabulary[random.nextInt(vocabulary.length)])
+                .collect(Collectors.joining(" "));
+    }
+
+    private static List<String> query(String[] vocabulary, Random random) {
+        String last = vocabulary[random.nextInt(vocabulary.length)];
+        String prefix = last.substring(0, 3 + random.nextInt(last.length() - 2));
+        return random.nextBoolean()
+                ? List.of(prefix)
+                : List.of(vocabulary[random.nextInt(vocabulary.length)], prefix);
+    }
+}
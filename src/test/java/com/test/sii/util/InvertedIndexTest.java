@@ -0,0 +1,140 @@
+package com.test.sii.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvertedIndexTest {
+
+    @Test
+    void givenText_whenTokenize_thenReturnLowerCasedWords() {
+        // given
+        String text = "Wireless MOUSE, 2.4GHz - Über-light";
+
+        // when
+        List<String> actual = InvertedIndex.tokenize(text);
+
+        // then
+        assertThat(actual).containsExactly("wireless", "mouse", "2", "4ghz", "über", "light");
+    }
+
+    @Test
+    void givenDocuments_whenSearch_thenReturnDocumentsMatchingEveryWordPrefix() {
+        // given
+        InvertedIndex index = new InvertedIndex(3);
+        index.put(1, 0, "Wireless mouse", "Ergonomic");
+        index.put(2, 0, "Wired mouse", null);
+        index.put(3, 0, "Wireless keyboard", "Works with any mouse");
+        index.put(4, 0, "Mousepad", null);
+
+        // when
+        InvertedIndex.Hits actual = index.search(List.of("wire", "mouse"), 0, 10);
+
+        // then
+        assertThat(actual.total()).isEqualTo(3);
+        assertThat(actual.ids()).containsExactlyInAnyOrder(1, 2, 3);
+    }
+
+    @Test
+    void givenDocuments_whenSearch_thenRankWholeWordAndNameMatchesFirst() {
+        // given
+        InvertedIndex index = new InvertedIndex(3);
+        index.put(1, 0, "Mousepad", null);
+        index.put(2, 0, "Keyboard", "Comes with a mouse");
+        index.put(3, 0, "Mouse", null);
+        index.put(4, 0, "Mouse", "The best mouse");
+        index.put(5, 0, "Keyboard", "Comes with a mousepad");
+
+        // when
+        InvertedIndex.Hits actual = index.search(List.of("mouse"), 0, 10);
+
+        // then
+        // name and description 6, name 4, description 2, prefix of a name 2, prefix of a description 1
+        assertThat(actual.ids()).containsExactly(4, 3, 1, 2, 5);
+    }
+
+    @Test
+    void givenManyHits_whenSearchPages_thenReturnEachHitOnce() {
+        // given
+        InvertedIndex index = new InvertedIndex(3);
+        for (int id = 1; id <= 25; id++) {
+            index.put(id, 0, id % 2 == 0 ? "Lamp" : "Lamp shade", id % 3 == 0 ? "Shade included" : null);
+        }
+
+        // when
+        InvertedIndex.Hits first = index.search(List.of("lamp", "shade"), 0, 10);
+        InvertedIndex.Hits second = index.search(List.of("lamp", "shade"), 10, 10);
+
+        // then
+        // odd ids have the shade in the name, multiples of 6 in the description only
+        assertThat(first.ids()).containsExactly(3, 9, 15, 21, 1, 5, 7, 11, 13, 17);
+        assertThat(second.ids()).containsExactly(19, 23, 25, 6, 12, 18, 24);
+        assertThat(second.total()).isEqualTo(17);
+    }
+
+    @Test
+    void givenUpdatedDocument_whenSearch_thenMatchOnlyNewWords() {
+        // given
+        InvertedIndex index = new InvertedIndex(3);
+        index.put(1, 0, "Red chair", null);
+        index.put(1, 1, "Blue chair", null);
+
+        // when
+        InvertedIndex.Hits red = index.search(List.of("red"), 0, 10);
+        InvertedIndex.Hits blue = index.search(List.of("blue"), 0, 10);
+
+        // then
+        assertThat(red.total()).isZero();
+        assertThat(blue.ids()).containsExactly(1);
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void givenNewerVersionIndexed_whenPutOlderVersion_thenKeepNewerVersion() {
+        // given
+        InvertedIndex index = new InvertedIndex(3);
+        index.put(1, 2, "Blue chair", null);
+
+        // when
+        boolean actual = index.put(1, 1, "Red chair", null);
+
+        // then
+        assertThat(actual).isFalse();
+        assertThat(index.search(List.of("red"), 0, 10).total()).isZero();
+        assertThat(index.search(List.of("blue"), 0, 10).ids()).containsExactly(1);
+    }
+
+    @Test
+    void givenWordShorterThanMinimumPrefixLength_whenSearch_thenMatchWholeWordsOnly() {
+        // given
+        InvertedIndex index = new InvertedIndex(3);
+        index.put(1, 0, "TV stand", null);
+        index.put(2, 0, "TV", null);
+        index.put(3, 0, "Tvorog", null);
+
+        // when
+        InvertedIndex.Hits actual = index.search(List.of("tv"), 0, 10);
+
+        // then
+        assertThat(actual.total()).isEqualTo(2);
+        assertThat(actual.ids()).containsExactly(1, 2);
+    }
+
+    @Test
+    void givenPrefixOfManyWords_whenSearch_thenCountEveryHit() {
+        // given
+        InvertedIndex index = new InvertedIndex(3);
+        for (int id = 1; id <= 100; id++) {
+            index.put(id, 0, "Tab" + id, null);
+        }
+
+        // when
+        InvertedIndex.Hits actual = index.search(List.of("tab"), 0, 10);
+
+        // then
+        assertThat(actual.total()).isEqualTo(100);
+        assertThat(actual.ids()).hasSize(10);
+    }
+}
@@ -0,0 +1,82 @@
+package com.test.sii.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class QuantileSketchTest {
+
+    @Test
+    void givenSkewedValues_whenQuantile_thenStayWithinRelativeAccuracy() {
+        // given
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        Random random = new Random(42);
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(random.nextGaussian() * 2);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        // when
+        // then
+        for (double quantile : new double[]{0.5, 0.9, 0.99}) {
+            double exact = values[(int) Math.floor(quantile * (values.length - 1))];
+            assertThat(sketch.quantile(quantile)).isCloseTo(exact, within(exact * 0.01));
+        }
+        assertThat(sketch.max()).isEqualTo(values[values.length - 1]);
+        assertThat(sketch.count()).isEqualTo(values.length);
+    }
+
+    @Test
+    void givenSketchesOfParts_whenMerge_thenEqualSketchOfWhole() {
+        // given
+        QuantileSketch whole = new QuantileSketch(0.01);
+        QuantileSketch first = new QuantileSketch(0.01);
+        QuantileSketch second = new QuantileSketch(0.01);
+        for (int i = 0; i < 1000; i++) {
+            whole.add(i);
+            (i % 2 == 0 ? first : second).add(i);
+        }
+
+        // when
+        first.merge(second);
+
+        // then
+        assertThat(first.count()).isEqualTo(whole.count());
+        assertThat(first.quantile(0.9)).isEqualTo(whole.quantile(0.9));
+        assertThat(first.max()).isEqualTo(whole.max());
+    }
+
+    @Test
+    void givenSerializedSketch_whenFromBytes_thenRestoreSketch() {
+        // given
+        QuantileSketch sketch = new QuantileSketch(0.02);
+        sketch.add(0);
+        sketch.add(1.5);
+        sketch.add(250);
+
+        // when
+        QuantileSketch actual = QuantileSketch.fromBytes(sketch.toBytes());
+
+        // then
+        assertThat(actual.relativeAccuracy()).isEqualTo(0.02);
+        assertThat(actual.count()).isEqualTo(3);
+        assertThat(actual.quantile(0)).isZero();
+        assertThat(actual.quantile(0.5)).isEqualTo(sketch.quantile(0.5));
+        assertThat(actual.max()).isEqualTo(250);
+    }
+
+    @Test
+    void givenSketchesOfDifferentAccuracy_whenMerge_thenThrowException() {
+        // when
+        // then
+        assertThatThrownBy(() -> new QuantileSketch(0.01).merge(new QuantileSketch(0.02)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
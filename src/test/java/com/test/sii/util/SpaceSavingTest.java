@@ -0,0 +1,69 @@
+package com.test.sii.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SpaceSavingTest {
+
+    @Test
+    void givenSkewedStream_whenTop_thenReturnHeaviestKeysWithinErrorBounds() {
+        // given
+        SpaceSaving<Integer> spaceSaving = new SpaceSaving<>(100);
+        Map<Integer, Double> exact = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            // about a third of the weight goes to keys 0-9, the rest is spread over 10 000 keys
+            int key = random.nextInt(3) == 0 ? random.nextInt(10) : 10 + random.nextInt(10_000);
+            spaceSaving.add(key, 1);
+            exact.merge(key, 1.0, Double::sum);
+        }
+
+        // when
+        List<SpaceSaving.Estimate<Integer>> actual = SpaceSaving.top(List.of(spaceSaving.snapshot()), 10);
+
+        // then
+        assertThat(actual)
+                .extracting(SpaceSaving.Estimate::key)
+                .containsExactlyInAnyOrder(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(actual).allSatisfy(estimate -> {
+            assertThat(estimate.count()).isGreaterThanOrEqualTo(exact.get(estimate.key()));
+            assertThat(estimate.count() - estimate.error()).isLessThanOrEqualTo(exact.get(estimate.key()));
+        });
+    }
+
+    @Test
+    void givenSummariesOfDisjointStreams_whenTop_thenSumEstimates() {
+        // given
+        SpaceSaving<String> first = new SpaceSaving<>(10);
+        SpaceSaving<String> second = new SpaceSaving<>(10);
+        first.add("a", 5);
+        first.add("b", 1);
+        second.add("a", 2.5);
+        second.add("c", 4);
+
+        // when
+        List<SpaceSaving.Estimate<String>> actual = SpaceSaving.top(List.of(first.snapshot(), second.snapshot()), 2);
+
+        // then
+        assertThat(actual).containsExactly(
+                new SpaceSaving.Estimate<>("a", 7.5, 0),
+                new SpaceSaving.Estimate<>("c", 4, 0)
+        );
+    }
+
+    @Test
+    void givenNonPositiveCapacity_whenCreate_thenThrowException() {
+        // when
+        // then
+        assertThatThrownBy(() -> new SpaceSaving<>(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}